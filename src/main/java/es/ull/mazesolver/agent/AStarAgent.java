@@ -25,34 +25,54 @@
  */
 package es.ull.mazesolver.agent;
 
-import es.ull.mazesolver.agent.util.Path;
+import es.ull.mazesolver.gui.MainWindow;
 import es.ull.mazesolver.gui.configuration.AgentConfigurationPanel;
 import es.ull.mazesolver.gui.configuration.HeuristicAgentConfigurationPanel;
 import es.ull.mazesolver.gui.environment.Environment;
+import es.ull.mazesolver.maze.Maze;
+import es.ull.mazesolver.maze.MazeGraph;
 import es.ull.mazesolver.util.Direction;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.Iterator;
-import java.util.PriorityQueue;
+import java.util.Arrays;
+import java.util.Collections;
 
 /**
  * Agente que implementa el comportamiento del algoritmo A*.
  */
 public class AStarAgent extends HeuristicAgent {
     private static final long serialVersionUID = 4696525877860033142L;
-    private static final double STEP_COST = 1.0;
+    private static final int STEP_COST = 1;
+
+    /**
+     * Número máximo de aberturas del borde del laberinto entre las que se busca
+     * la más cercana al calcular la heurística. Con más aberturas se utiliza la
+     * distancia hasta el borde.
+     */
+    private static final int MAX_HEURISTIC_OPENINGS = 16;
 
-    private transient Point m_exit;
 
     private transient int m_direction_index;
     private transient ArrayList<Direction> m_directions;
 
+    /**
+     * Vectores de trabajo de la búsqueda. Como cada búsqueda termina antes de
+     * empezar la siguiente, todos los agentes A* de un mismo hilo comparten los
+     * mismos.
+     */
+    private static final ThreadLocal<SearchScratch> s_scratch = new ThreadLocal<SearchScratch>();
+
+    private transient long m_plan_stamp;
+    private transient int[] m_path;
+    private transient int[] m_openings;
+    private transient int m_opening_count;
+
     /**
      * Inicializa el agente A* con la distancia de Manhattan por defecto.
      *
@@ -102,7 +122,6 @@ public class AStarAgent extends HeuristicAgent {
     public void setEnvironment(Environment env) {
         super.setEnvironment(env);
         resetMemory();
-        m_exit = m_env.getMaze().getExit();
     }
 
     /*
@@ -112,7 +131,9 @@ public class AStarAgent extends HeuristicAgent {
      */
     @Override
     public Direction getNextMovement() {
-        if (m_directions == null || (m_direction_index == m_directions.size() && !m_pos.equals(m_exit)))
+        if (m_directions == null || (m_direction_index == m_directions.size() &&
+                m_env.getMaze().containsPoint(m_pos))
+                || pathInvalidated())
             calculatePath();
 
         return m_directions != null && m_direction_index != m_directions.size() ?
@@ -127,7 +148,8 @@ public class AStarAgent extends HeuristicAgent {
     @Override
     public void doMovement(Direction dir) {
         super.doMovement(dir);
-        if (m_directions.get(m_direction_index) == dir && m_directions != null)
+        if (m_directions != null && m_direction_index < m_directions.size() &&
+                m_directions.get(m_direction_index) == dir)
             m_direction_index++;
     }
 
@@ -140,6 +162,7 @@ public class AStarAgent extends HeuristicAgent {
     public void resetMemory() {
         m_directions = null;
         m_direction_index = 0;
+        m_path = null;
     }
 
     /*
@@ -166,75 +189,78 @@ public class AStarAgent extends HeuristicAgent {
         return ag;
     }
 
-    /**
-     * Clase comparadora de caminos que tiene en cuenta el coste real del camino
-     * y el coste estimado entre la última posición del camino y el punto en el
-     * que se encuentra la salida del laberinto.
-     */
-    private class HeuristicPathComparator implements Comparator<Path> {
-        /*
-         * (non-Javadoc)
-         *
-         * @see java.util.Comparator#compare(java.lang.Object, java.lang.Object)
-         */
-        @Override
-        public int compare(Path o1, Path o2) {
-            double h1 = m_dist.distance(o1.getEndPoint(), m_exit);
-            double h2 = m_dist.distance(o2.getEndPoint(), m_exit);
-
-            // La ordenación se hace por coste acumulado (m_cost) + coste estimado
-            // (distancia a la salida)
-            return Double.compare(o1.getCost() + h1, o2.getCost() + h2);
-        }
-    }
-
     /**
      * Recalcula el camino hacia la salida del laberinto desde la posición actual.
+     * <br><br>
+     * La búsqueda se hace sobre el índice de adyacencia del laberinto y con
+     * vectores indexados por nodo que se reutilizan entre búsquedas, de manera
+     * que no se crea ningún objeto por cada nodo expandido. Las celdas ocupadas
+     * por otros agentes se consideran bloqueadas.
      */
     private void calculatePath() {
-        Path solution = null;
+        MazeGraph graph = m_env.getMaze().getGraph();
+        SearchScratch sc = SearchScratch.get(graph.getNodeCount());
+        int[] cost = sc.m_cost, parent = sc.m_parent, state = sc.m_state;
+        int seen = sc.m_search | SearchScratch.SEEN;
+        int closed = sc.m_search | SearchScratch.CLOSED;
+        int blocked = sc.m_search | SearchScratch.BLOCKED;
+
+        // Se consultan los agentes del entorno y no sus copias, que no conservan
+        // la posición
+        for (int i = 0; i < m_env.getAgentCount(); i++) {
+            Agent ag = m_env.getAgent(i);
+            if (ag != this && m_env.getMaze().containsPoint(ag.getPos()))
+                state[graph.getNode(ag.getX(), ag.getY())] = blocked;
+        }
+
+        findOpenings(m_env.getMaze());
 
-        ArrayList<Path> closed = new ArrayList<Path>();
-        PriorityQueue<Path> open = new PriorityQueue<Path>(10, new HeuristicPathComparator());
+        int start = graph.getNode(m_pos.x, m_pos.y);
+        int goal = graph.getExitNode();
+        int solution = -1;
 
-        // Inicialmente la lista abierta contiene una trayectoria formada por sólo
-        // el nodo de inicio
-        open.add(new Path(m_pos));
+        // Inicialmente la lista abierta contiene sólo el nodo de inicio
+        cost[start] = 0;
+        parent[start] = -1;
+        state[start] = seen;
+        sc.push(start, heuristic(graph, start));
 
-        // Repetimos mientras hayan posibles trayectorias por recorrer
-        while (!open.isEmpty()) {
-            // Sacamos la trayectoria de la lista abierta
-            Path path = open.poll();
+        // Mientras no encontremos la salida, guardamos el nodo cerrado más cercano
+        // a ella
+        int closest = start;
+        double closest_dist = heuristic(graph, start);
 
-            // Si la trayectoria finaliza en la salida, se trata de la trayectoria
-            // óptima: Salimos del bucle
-            if (path.getEndPoint().equals(m_exit)) {
-                solution = path;
+        while (sc.m_heap_size > 0) {
+            int node = sc.pop();
+            if (state[node] == closed)
+                continue;
+
+            // Si el nodo es la salida, hemos encontrado la trayectoria óptima
+            if (node == goal) {
+                solution = node;
                 break;
             }
 
-            // Insertamos la trayectoria en la lista cerrada
-            insertPath(path, closed);
-
-            // Expandimos la trayectoria actual para obtener los posibles pasos que
-            // se pueden dar desde la posición actual
-            Point pos = path.getEndPoint();
-            int n_steps = path.getLength();
-            for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
-                Direction dir = Direction.fromIndex(i);
-
-                // Para añadir el paso a la trayectoria tiene que ser posible llevarlo
-                // a cabo en el entorno y además no puede ser el paso opuesto al que
-                // dio justo antes en la trayectoria (sabemos que así no se va a generar
-                // una mejor solución, porque repite posiciones)
-                if (m_env.movementAllowed(pos, dir)) {
-                    Point n_pos = dir.movePoint(pos);
-                    if (n_steps < 2 || !path.getPoint(n_steps - 2).equals(n_pos)) {
-                        Path expanded_path = path.addStep(dir, STEP_COST);
-                        Path discarded = insertPath(expanded_path, open);
-                        if (discarded != null && discarded != expanded_path)
-                            insertPath(discarded, closed);
-                    }
+            state[node] = closed;
+            double dist = heuristic(graph, node);
+            if (dist < closest_dist) {
+                closest = node;
+                closest_dist = dist;
+            }
+
+            // Expandimos el nodo a través de sus vecinos accesibles
+            int degree = graph.getDegree(node);
+            for (int i = 0; i < degree; i++) {
+                int next = graph.getNeighbour(node, i);
+                if (state[next] == closed || state[next] == blocked)
+                    continue;
+
+                int next_cost = cost[node] + STEP_COST;
+                if (state[next] != seen || next_cost < cost[next]) {
+                    state[next] = seen;
+                    cost[next] = next_cost;
+                    parent[next] = node;
+                    sc.push(next, next_cost + heuristic(graph, next));
                 }
             }
         }
@@ -242,60 +268,209 @@ public class AStarAgent extends HeuristicAgent {
         // Si no encontramos una solución, al menos nos acercamos lo más posible a
         // la salida, por si más tarde se puede llegar (un agente se ha quitado de
         // la trayectoria hasta la salida)
-        if (solution == null) {
-            double dist = Double.MAX_VALUE;
-            for (Path p : closed) {
-                double p_dist = m_dist.distance(p.getEndPoint(), m_exit);
-                if (p_dist < dist) {
-                    solution = p;
-                    dist = p_dist;
-                }
-            }
+        if (solution == -1)
+            solution = closest;
+
+        m_directions = new ArrayList<Direction>(cost[solution]);
+        int[] path = new int[cost[solution] + 1];
+        int length = 0;
+        for (int node = solution; parent[node] != -1; node = parent[node]) {
+            m_directions.add(graph.getDirection(parent[node], node));
+            path[length++] = node;
         }
-
-        ArrayList<Point> path = solution.getPath();
-        m_directions = new ArrayList<Direction>(path.size() - 1);
-        for (int i = 1; i < path.size(); i++)
-            m_directions.add(Direction.fromPoints(path.get(i - 1), path.get(i)));
+        path[length++] = start;
+        Collections.reverse(m_directions);
+        setPath(path, length);
 
         m_direction_index = 0;
+        m_plan_stamp = m_env.getMaze().getStamp();
     }
 
     /**
-     * Buscamos en la lista una trayectoria que acabe en el mismo punto que la que
-     * está siendo procesada. Si la encuentra, dependiendo de los costes de ambas
-     * trayectorias sólo se deja en la lista la de menor coste. Si no la
-     * encuentra, simplemente añade la trayectoria a la lista.
+     * Comprueba si el laberinto ha cambiado desde que se calculó el camino de
+     * forma que éste haya dejado de ser válido u óptimo: si se ha puesto una
+     * pared en medio del camino o si se ha quitado alguna pared, lo que podría
+     * dar lugar a un camino más corto. Si el laberinto no ha cambiado, no se
+     * hace ningún trabajo.
      *
-     * @param path Trayectoria a añadir a la lista.
-     * @param list Lista de trayectorias a la que se quiere añadir la trayectoria.
-     * @return La trayectoria eliminada de la lista, la trayectoria de entrada si
-     * no fue insertada o null, dependiendo del caso.
+     * @return Si hay que volver a calcular el camino.
      */
-    private Path insertPath(Path path, Collection<Path> list) {
-        Path discarded = null;
-        boolean add_path = true;
-
-        Iterator<Path> iter = list.iterator();
-        while (iter.hasNext()) {
-            Path p = iter.next();
-            if (p.endsInTheSamePoint(path)) {
-                HeuristicPathComparator comp = new HeuristicPathComparator();
-                if (comp.compare(p, path) <= 0) {
-                    discarded = path;
-                    add_path = false;
-                } else {
-                    discarded = p;
-                    iter.remove();
-                }
-                break;
+    private boolean pathInvalidated() {
+        Maze maze = m_env.getMaze();
+        long stamp = maze.getStamp();
+        if (stamp == m_plan_stamp)
+            return false;
+
+        // Si el registro ya no contiene todos los cambios, hay que recalcular
+        int count = maze.getChangeCount(m_plan_stamp);
+        boolean invalid = count < 0;
+
+        MazeGraph graph = maze.getGraph();
+        for (int i = 0; i < count && !invalid; i++) {
+            long change = maze.getChange(m_plan_stamp, i);
+            if (!Maze.isChangeWall(change))
+                invalid = true;
+            else {
+                int row = maze.getChangeRow(change), column = maze.getChangeColumn(change);
+                Direction dir = Maze.getChangeDirection(change);
+                int from = graph.getNode(column, row);
+                int to = graph.getNode(column + dir.getDeltaX(), row + dir.getDeltaY());
+                invalid = isOnPath(from) && isOnPath(to);
             }
         }
 
-        if (add_path)
-            list.add(path);
+        m_plan_stamp = stamp;
+        return invalid;
+    }
+
+    /**
+     * Guarda los nodos por los que pasa el camino calculado, ordenados para
+     * poder buscarlos rápidamente. Sólo se guardan los del camino, y no una
+     * marca por cada nodo del laberinto.
+     *
+     * @param nodes  Nodos del camino, en cualquier orden.
+     * @param length Número de nodos válidos en el vector.
+     */
+    private void setPath(int[] nodes, int length) {
+        m_path = length == nodes.length ? nodes : Arrays.copyOf(nodes, length);
+        Arrays.sort(m_path);
+    }
+
+    /**
+     * @param node Nodo.
+     * @return Si el nodo forma parte del camino calculado.
+     */
+    private boolean isOnPath(int node) {
+        return m_path != null && Arrays.binarySearch(m_path, node) >= 0;
+    }
+
+    /**
+     * Busca las aberturas del borde del laberinto, por las que se puede salir
+     * de él, y guarda las posiciones exteriores a las que llevan. Si hay
+     * demasiadas, no se guardan y se deja el contador por encima del máximo.
+     *
+     * @param maze Laberinto.
+     */
+    private void findOpenings(Maze maze) {
+        if (m_openings == null)
+            m_openings = new int[2 * MAX_HEURISTIC_OPENINGS];
+
+        m_opening_count = 0;
+        int rows = maze.getHeight(), columns = maze.getWidth();
+        for (int x = 0; x < columns && m_opening_count <= MAX_HEURISTIC_OPENINGS; x++) {
+            if (!maze.hasWall(0, x, Direction.UP))
+                addOpening(x, -1);
+            if (!maze.hasWall(rows - 1, x, Direction.DOWN))
+                addOpening(x, rows);
+        }
+        for (int y = 0; y < rows && m_opening_count <= MAX_HEURISTIC_OPENINGS; y++) {
+            if (!maze.hasWall(y, 0, Direction.LEFT))
+                addOpening(-1, y);
+            if (!maze.hasWall(y, columns - 1, Direction.RIGHT))
+                addOpening(columns, y);
+        }
+    }
+
+    /**
+     * Añade una abertura a la lista de aberturas del borde del laberinto.
+     *
+     * @param x Columna exterior a la que lleva la abertura.
+     * @param y Fila exterior a la que lleva la abertura.
+     */
+    private void addOpening(int x, int y) {
+        if (m_opening_count < MAX_HEURISTIC_OPENINGS) {
+            m_openings[2 * m_opening_count] = x;
+            m_openings[2 * m_opening_count + 1] = y;
+        }
+        m_opening_count++;
+    }
+
+    /**
+     * Calcula la distancia estimada entre un nodo y la salida del laberinto.
+     * Se puede salir por cualquier abertura del borde, así que para no
+     * sobreestimar la distancia se toma la de la abertura más cercana. Si hay
+     * demasiadas aberturas, se utiliza el número de pasos hasta el borde.
+     *
+     * @param graph Índice de adyacencia.
+     * @param node  Nodo.
+     * @return Distancia estimada hasta la salida.
+     */
+    private double heuristic(MazeGraph graph, int node) {
+        if (node == graph.getExitNode() || m_opening_count == 0)
+            return 0;
+
+        int x = graph.getX(node), y = graph.getY(node);
+        if (m_opening_count > MAX_HEURISTIC_OPENINGS) {
+            Maze maze = m_env.getMaze();
+            return Math.min(Math.min(x, maze.getWidth() - 1 - x),
+                            Math.min(y, maze.getHeight() - 1 - y)) + 1;
+        }
+
+        double dist = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < m_opening_count; i++)
+            dist = Math.min(dist, m_dist.distance(x, y, m_openings[2 * i], m_openings[2 * i + 1]));
 
-        return discarded;
+        return dist;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeState(java.io.DataOutput)
+     */
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+
+        // Si el laberinto ha cambiado de forma que el plan ya no es válido, se
+        // descarta, igual que se haría antes del siguiente movimiento
+        if (m_directions != null && pathInvalidated())
+            resetMemory();
+
+        out.writeBoolean(m_directions != null);
+        if (m_directions != null) {
+            AgentFile.writeDirections(out, m_directions);
+            out.writeInt(m_direction_index);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readState(java.io.DataInput)
+     */
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        super.readState(in);
+        resetMemory();
+
+        if (in.readBoolean()) {
+            ArrayList<Direction> directions = new ArrayList<Direction>();
+            AgentFile.readDirections(in, directions);
+            int index = in.readInt();
+            if (index < 0 || index > directions.size())
+                throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+
+            // Se marcan las celdas del camino, que empieza en la posición en la que
+            // estaba el agente antes de dar los pasos del plan que ya ha dado
+            MazeGraph graph = m_env.getMaze().getGraph();
+            Point pos = new Point(m_pos);
+            for (int i = index - 1; i >= 0; i--)
+                pos = directions.get(i).getOpposite().movePoint(pos);
+
+            int[] path = new int[directions.size() + 1];
+            int length = 0;
+            path[length++] = graph.getNode(pos.x, pos.y);
+            for (Direction dir : directions) {
+                pos = dir.movePoint(pos);
+                path[length++] = graph.getNode(pos.x, pos.y);
+            }
+            setPath(path, length);
+
+            m_directions = directions;
+            m_direction_index = index;
+            m_plan_stamp = m_env.getMaze().getStamp();
+        }
     }
 
     /**
@@ -310,4 +485,112 @@ public class AStarAgent extends HeuristicAgent {
         input.defaultReadObject();
         m_pos = new Point();
     }
+
+    /**
+     * Vectores indexados por nodo que utiliza una búsqueda, junto con la lista
+     * abierta. En lugar de un vector de marcas por cada estado, un único vector
+     * guarda para cada nodo la marca de la búsqueda en la que se visitó y, en
+     * los dos bits inferiores, si está abierto, cerrado o bloqueado. Las marcas
+     * evitan tener que limpiar los vectores en cada búsqueda.
+     */
+    private static final class SearchScratch {
+        static final int SEEN = 1, CLOSED = 2, BLOCKED = 3;
+        private static final int STATE_BITS = 2;
+
+        int[] m_cost, m_parent, m_state;
+        int[] m_heap = new int[16];
+        double[] m_heap_keys = new double[16];
+        int m_heap_size;
+        int m_search;
+
+        /**
+         * Obtiene los vectores del hilo actual preparados para una nueva
+         * búsqueda en un grafo con el número de nodos indicado.
+         *
+         * @param nodes Número de nodos del grafo.
+         * @return Vectores de trabajo, con la marca de la nueva búsqueda en los
+         *         bits superiores de {@code m_search}.
+         */
+        static SearchScratch get(int nodes) {
+            SearchScratch sc = s_scratch.get();
+            if (sc == null) {
+                sc = new SearchScratch();
+                s_scratch.set(sc);
+            }
+
+            if (sc.m_state == null || sc.m_state.length < nodes) {
+                sc.m_cost = new int[nodes];
+                sc.m_parent = new int[nodes];
+                sc.m_state = new int[nodes];
+                sc.m_search = 0;
+            }
+
+            if (sc.m_search == Integer.MAX_VALUE >>> STATE_BITS << STATE_BITS) {
+                Arrays.fill(sc.m_state, 0);
+                sc.m_search = 0;
+            }
+
+            sc.m_search += 1 << STATE_BITS;
+            sc.m_heap_size = 0;
+            return sc;
+        }
+
+        /**
+         * Introduce un nodo en la lista abierta, implementada como un montículo
+         * binario. Un nodo puede aparecer varias veces con distintas
+         * prioridades, y las entradas de los nodos que ya están cerrados se
+         * descartan al sacarlas.
+         *
+         * @param node Nodo.
+         * @param key  Coste acumulado más coste estimado hasta la salida.
+         */
+        void push(int node, double key) {
+            if (m_heap_size == m_heap.length) {
+                m_heap = Arrays.copyOf(m_heap, m_heap_size * 2);
+                m_heap_keys = Arrays.copyOf(m_heap_keys, m_heap_size * 2);
+            }
+
+            int i = m_heap_size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (m_heap_keys[parent] <= key)
+                    break;
+                m_heap[i] = m_heap[parent];
+                m_heap_keys[i] = m_heap_keys[parent];
+                i = parent;
+            }
+
+            m_heap[i] = node;
+            m_heap_keys[i] = key;
+        }
+
+        /**
+         * Saca de la lista abierta el nodo con menor prioridad.
+         *
+         * @return Nodo extraído.
+         */
+        int pop() {
+            int top = m_heap[0];
+            int node = m_heap[--m_heap_size];
+            double key = m_heap_keys[m_heap_size];
+
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= m_heap_size)
+                    break;
+                if (child + 1 < m_heap_size && m_heap_keys[child + 1] < m_heap_keys[child])
+                    child++;
+                if (key <= m_heap_keys[child])
+                    break;
+                m_heap[i] = m_heap[child];
+                m_heap_keys[i] = m_heap_keys[child];
+                i = child;
+            }
+
+            m_heap[i] = node;
+            m_heap_keys[i] = key;
+            return top;
+        }
+    }
 }
@@ -33,20 +33,27 @@ import es.ull.mazesolver.util.Direction;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * Clase que representa un agente abstracto que se encuentra en algún laberinto.
  * Sus subclases implementan los distintos algoritmos para resolver laberintos.
  * <br><br>
- * Cada agente debe implementar los métodos de serialización para poder
- * guardarse y cargarse correctamente, en caso de que requiriesen configuración
- * adicional a la genérica.
+ * Cada agente debe implementar los métodos
+ * {@link Agent#writeConfiguration(DataOutput)} y
+ * {@link Agent#readConfiguration(DataInput)} para poder guardarse y cargarse
+ * correctamente, en caso de que requiriesen configuración adicional a la
+ * genérica.
  */
 public abstract class Agent implements Cloneable, Serializable {
     private static final long serialVersionUID = 1L;
@@ -229,8 +236,10 @@ public abstract class Agent implements Cloneable, Serializable {
     }
 
     /**
-     * Carga la descripción serializada del agente de un fichero, lo crea y lo
-     * devuelve.
+     * Carga la descripción de un agente de un fichero, lo crea y lo devuelve.
+     * <br><br>
+     * El fichero puede estar en el formato de {@link AgentFile} o haber sido
+     * guardado con la serialización de Java por versiones anteriores.
      *
      * @param filename Nombre del fichero de entrada.
      * @param env      Entorno en el que cargar el agente.
@@ -238,13 +247,42 @@ public abstract class Agent implements Cloneable, Serializable {
      * @throws IOException Si no es posible leer el fichero.
      */
     public static Agent loadFile(String filename, Environment env) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(filename)));
+
+        try {
+            in.mark(2);
+            if (in.readShort() == ObjectStreamConstants.STREAM_MAGIC) {
+                in.reset();
+                return loadLegacyFile(in, env);
+            }
+
+            in.reset();
+            ArrayList<Agent> agents = AgentFile.read(in, env);
+            if (agents.size() != 1)
+                throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+
+            return agents.get(0);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Carga un agente guardado con la serialización de Java.
+     *
+     * @param file_in Flujo de entrada del fichero.
+     * @param env     Entorno en el que cargar el agente.
+     * @return El agente creado.
+     * @throws IOException Si no es posible leer el fichero.
+     */
+    private static Agent loadLegacyFile(DataInputStream file_in, Environment env)
+            throws IOException {
         try {
             Agent ag;
-            FileInputStream file_in = new FileInputStream(filename);
             ObjectInputStream in = new ObjectInputStream(file_in);
             ag = (Agent) in.readObject();
             in.close();
-            file_in.close();
 
             ag.m_agent_id = s_agent_count++;
             ag.m_name = ag.getAlgorithmName() + " " + String.valueOf(ag.m_agent_id);
@@ -258,17 +296,72 @@ public abstract class Agent implements Cloneable, Serializable {
     }
 
     /**
-     * Guarda la instancia del agente en un fichero utilizando su serialización.
+     * Guarda la configuración del agente en un fichero en el formato de
+     * {@link AgentFile}.
      *
      * @param filename Nombre del fichero de salida.
      * @throws IOException Si no es posible guardar el fichero.
      */
     public void saveFile(String filename) throws IOException {
-        FileOutputStream file_out = new FileOutputStream(filename);
-        ObjectOutputStream out = new ObjectOutputStream(file_out);
-        out.writeObject(this);
-        out.close();
-        file_out.close();
+        AgentFile.write(filename, Collections.singletonList(this));
+    }
+
+    /**
+     * Escribe la configuración propia del tipo de agente en un flujo binario.
+     * La configuración genérica (el color) la guarda {@link AgentFile}.
+     * <br><br>
+     * Las clases derivadas con configuración adicional deben sobrecargar este
+     * método y {@link Agent#readConfiguration(DataInput)}, llamando primero a la
+     * implementación de su clase base.
+     *
+     * @param out Flujo de salida.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    protected void writeConfiguration(DataOutput out) throws IOException {
+        // La clase base no tiene configuración adicional
+    }
+
+    /**
+     * Lee la configuración propia del tipo de agente escrita por
+     * {@link Agent#writeConfiguration(DataOutput)}.
+     *
+     * @param in Flujo de entrada.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es
+     *                     válido.
+     */
+    protected void readConfiguration(DataInput in) throws IOException {
+        // La clase base no tiene configuración adicional
+    }
+
+    /**
+     * Escribe el estado de ejecución del agente en un flujo binario, para poder
+     * continuar la simulación más adelante desde el mismo punto. La clase base
+     * guarda la posición del agente.
+     * <br><br>
+     * Las clases derivadas que tengan memoria deben sobrecargar este método y
+     * {@link Agent#readState(DataInput)}, llamando primero a la implementación
+     * de su clase base.
+     *
+     * @param out Flujo de salida.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    protected void writeState(DataOutput out) throws IOException {
+        out.writeInt(m_pos.x);
+        out.writeInt(m_pos.y);
+    }
+
+    /**
+     * Restaura el estado de ejecución escrito por
+     * {@link Agent#writeState(DataOutput)}. La posición se cambia sin pasar por
+     * {@link Agent#setPosition(Point)}, para no borrar la memoria del agente.
+     *
+     * @param in Flujo de entrada.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es
+     *                     válido.
+     */
+    protected void readState(DataInput in) throws IOException {
+        int x = in.readInt();
+        m_pos = new Point(x, in.readInt());
     }
 
     /**
@@ -0,0 +1,417 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file AgentFile.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.agent;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.gui.environment.Environment;
+import es.ull.mazesolver.util.Direction;
+
+import java.awt.Color;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Describe el formato binario en el que se guardan las configuraciones de los
+ * agentes, que no depende de la serialización de Java.
+ * <br><br>
+ * El fichero empieza por una cabecera con el número mágico ({@code int}), la
+ * versión del formato ({@code short}) y el número de agentes ({@code int}). A
+ * continuación se guarda un registro por agente:
+ * <ul>
+ * <li>Tipo de agente ({@code byte}), que es su índice en
+ * {@link AgentFile#TYPES}.</li>
+ * <li>Color del agente en formato ARGB ({@code int}).</li>
+ * <li>Longitud de la configuración en bytes ({@code int}).</li>
+ * <li>Configuración propia del tipo de agente, tal como la escribe
+ * {@link Agent#writeConfiguration(DataOutput)}.</li>
+ * </ul>
+ * Como la longitud de la configuración está en el registro, se pueden añadir
+ * campos al final de la configuración de un agente sin romper la lectura de
+ * los ficheros ya existentes. Los enumerados se guardan como el índice del
+ * valor en un byte. Todos los valores se guardan en orden big-endian.
+ */
+public final class AgentFile {
+    /**
+     * Número mágico que identifica los ficheros en este formato ("MZAG").
+     */
+    public static final int MAGIC = 0x4D5A4147;
+
+    /**
+     * Versión actual del formato.
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * Tamaño máximo de la configuración de un agente, en bytes.
+     */
+    static final int MAX_CONFIGURATION_BYTES = 16 << 20;
+
+    /**
+     * Tamaño de los bloques en los que se leen los vectores de bytes, para no
+     * reservar más memoria que los datos que realmente contiene el flujo.
+     */
+    private static final int READ_CHUNK_BYTES = 64 << 10;
+
+    /**
+     * Tipos de agente que se pueden guardar. El índice de cada clase es la
+     * etiqueta con la que se identifica en el fichero, por lo que sólo se deben
+     * añadir nuevos tipos al final.
+     */
+    private static final Class<?>[] TYPES = {
+            PATableAgent.class,
+            SARulesAgent.class,
+            AStarAgent.class,
+            DStarAgent.class,
+            HillClimbAgent.class,
+            SimulatedAnnealingAgent.class,
+            RecursiveAgent.class,
+            WallFollowerAgent.class
+    };
+
+    private static Constructor<?>[] s_constructors;
+
+    private AgentFile() {}
+
+    /**
+     * Guarda un conjunto de agentes en un fichero.
+     *
+     * @param fileName Nombre del fichero de salida.
+     * @param agents   Agentes que se quieren guardar.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    public static void write(String fileName, Collection<? extends Agent> agents)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileName)));
+        try {
+            write(out, agents);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Escribe un conjunto de agentes en un flujo binario.
+     *
+     * @param out    Flujo de salida.
+     * @param agents Agentes que se quieren guardar.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    public static void write(DataOutput out, Collection<? extends Agent> agents)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(agents.size());
+
+        for (Agent ag : agents)
+            writeAgent(out, ag);
+    }
+
+    /**
+     * Escribe el registro de un agente, sin la cabecera del fichero.
+     *
+     * @param out Flujo de salida.
+     * @param ag  Agente que se quiere guardar.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    public static void writeAgent(DataOutput out, Agent ag) throws IOException {
+        ByteArrayOutputStream config = new ByteArrayOutputStream();
+        ag.writeConfiguration(new DataOutputStream(config));
+
+        out.writeByte(typeOf(ag));
+        out.writeInt(ag.getAgentColor().getRGB());
+        out.writeInt(config.size());
+        out.write(config.toByteArray());
+    }
+
+    /**
+     * Carga todos los agentes guardados en un fichero.
+     *
+     * @param fileName Nombre del fichero de entrada.
+     * @param env      Entorno en el que se crean los agentes.
+     * @return Agentes cargados, en el mismo orden en el que se guardaron.
+     * @throws IOException Si no se puede leer el fichero o su contenido no es
+     *                     válido.
+     */
+    public static ArrayList<Agent> read(String fileName, Environment env) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(fileName)));
+        try {
+            return read(in, env);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Lee un conjunto de agentes de un flujo binario.
+     *
+     * @param in  Flujo de entrada.
+     * @param env Entorno en el que se crean los agentes.
+     * @return Agentes leídos, en el mismo orden en el que se guardaron.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es
+     *                     válido.
+     */
+    public static ArrayList<Agent> read(DataInput in, Environment env) throws IOException {
+        if (in.readInt() != MAGIC || in.readShort() > VERSION)
+            throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+
+        int count = in.readInt();
+        if (count < 0)
+            throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+
+        ArrayList<Agent> agents = new ArrayList<Agent>(Math.min(count, 1 << 16));
+        for (int i = 0; i < count; i++)
+            agents.add(readAgent(in, env));
+
+        return agents;
+    }
+
+    /**
+     * Lee el registro de un agente escrito con
+     * {@link AgentFile#writeAgent(DataOutput, Agent)}.
+     *
+     * @param in  Flujo de entrada.
+     * @param env Entorno en el que se crea el agente.
+     * @return Agente leído.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es
+     *                     válido.
+     */
+    public static Agent readAgent(DataInput in, Environment env) throws IOException {
+        Agent ag = create(readIndex(in, TYPES.length), env);
+        ag.setAgentColor(new Color(in.readInt(), true));
+
+        byte[] config = readBytes(in, MAX_CONFIGURATION_BYTES);
+        ag.readConfiguration(new DataInputStream(new ByteArrayInputStream(config)));
+        return ag;
+    }
+
+    /**
+     * Escribe el estado de ejecución de un agente: su posición y la memoria que
+     * haya acumulado durante la simulación.
+     *
+     * @param out Flujo de salida.
+     * @param ag  Agente.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    public static void writeState(DataOutput out, Agent ag) throws IOException {
+        ag.writeState(out);
+    }
+
+    /**
+     * Restaura el estado de ejecución de un agente escrito con
+     * {@link AgentFile#writeState(DataOutput, Agent)}. El agente debe estar ya
+     * en su entorno, junto con los agentes que tenía cuando se guardó el estado.
+     *
+     * @param in Flujo de entrada.
+     * @param ag Agente.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es
+     *                     válido.
+     */
+    public static void readState(DataInput in, Agent ag) throws IOException {
+        ag.readState(in);
+    }
+
+    /**
+     * Escribe un vector de valores lógicos empaquetado en bits.
+     *
+     * @param out    Flujo de salida.
+     * @param values Valores.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    static void writeBits(DataOutput out, boolean[] values) throws IOException {
+        for (int i = 0; i < values.length; i += 8) {
+            int bits = 0;
+            for (int j = i; j < Math.min(i + 8, values.length); j++)
+                if (values[j])
+                    bits |= 1 << (j - i);
+            out.writeByte(bits);
+        }
+    }
+
+    /**
+     * Lee un vector de valores lógicos escrito con
+     * {@link AgentFile#writeBits(DataOutput, boolean[])}.
+     *
+     * @param in     Flujo de entrada.
+     * @param values Vector donde guardar los valores, del mismo tamaño que el
+     *               que se escribió.
+     * @throws IOException Si no se puede leer el flujo.
+     */
+    static void readBits(DataInput in, boolean[] values) throws IOException {
+        for (int i = 0; i < values.length; i += 8) {
+            int bits = in.readUnsignedByte();
+            for (int j = i; j < Math.min(i + 8, values.length); j++)
+                values[j] = (bits & (1 << (j - i))) != 0;
+        }
+    }
+
+    /**
+     * Escribe una secuencia de direcciones, precedida de su longitud.
+     *
+     * @param out        Flujo de salida.
+     * @param directions Direcciones.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    static void writeDirections(DataOutput out, List<Direction> directions) throws IOException {
+        out.writeInt(directions.size());
+        for (Direction dir : directions)
+            out.writeByte(dir.ordinal());
+    }
+
+    /**
+     * Lee una secuencia de direcciones escrita con
+     * {@link AgentFile#writeDirections(DataOutput, List)}.
+     *
+     * @param in         Flujo de entrada.
+     * @param directions Lista a la que añadir las direcciones leídas.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es
+     *                     válido.
+     */
+    static void readDirections(DataInput in, List<Direction> directions) throws IOException {
+        int count = in.readInt();
+        if (count < 0)
+            throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+
+        Direction[] values = Direction.values();
+        for (int i = 0; i < count; i++)
+            directions.add(readEnum(in, values));
+    }
+
+    /**
+     * Lee un vector de bytes precedido por su longitud. La longitud se
+     * comprueba antes de reservar memoria y el vector se lee por bloques, así
+     * que una longitud corrupta no puede reservar más memoria que la de los
+     * bytes que quedan en el flujo.
+     *
+     * @param in  Flujo de entrada.
+     * @param max Longitud máxima permitida.
+     * @return Bytes leídos.
+     * @throws IOException Si no se puede leer el flujo o la longitud no es
+     *                     válida.
+     */
+    static byte[] readBytes(DataInput in, int max) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > max)
+            throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+
+        byte[] bytes = new byte[Math.min(length, READ_CHUNK_BYTES)];
+        int read = 0;
+        while (read < length) {
+            if (read == bytes.length)
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+
+            int count = bytes.length - read;
+            in.readFully(bytes, read, count);
+            read += count;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Lee un valor de un enumerado guardado como su índice en un byte.
+     *
+     * @param in     Flujo de entrada.
+     * @param values Valores del enumerado.
+     * @return Valor leído.
+     * @throws IOException Si no se puede leer el flujo o el índice no es válido.
+     */
+    public static <E extends Enum<E>> E readEnum(DataInput in, E[] values) throws IOException {
+        return values[readIndex(in, values.length)];
+    }
+
+    /**
+     * Lee un índice guardado en un byte y comprueba que esté dentro del rango.
+     *
+     * @param in    Flujo de entrada.
+     * @param count Número de valores posibles.
+     * @return Índice leído.
+     * @throws IOException Si no se puede leer el flujo o el índice no es válido.
+     */
+    private static int readIndex(DataInput in, int count) throws IOException {
+        int index = in.readUnsignedByte();
+        if (index >= count)
+            throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+        return index;
+    }
+
+    /**
+     * Obtiene la etiqueta del tipo de un agente.
+     *
+     * @param ag Agente.
+     * @return Índice de la clase del agente en {@link AgentFile#TYPES}.
+     */
+    private static int typeOf(Agent ag) {
+        for (int i = 0; i < TYPES.length; i++)
+            if (TYPES[i] == ag.getClass())
+                return i;
+
+        throw new IllegalArgumentException(MainWindow.getTranslations().exception().invalidAgent());
+    }
+
+    /**
+     * Crea un agente con la configuración por defecto de su tipo.
+     *
+     * @param type Etiqueta del tipo de agente.
+     * @param env  Entorno en el que se crea el agente.
+     * @return Agente creado.
+     * @throws IOException Si no se puede crear el agente.
+     */
+    private static Agent create(int type, Environment env) throws IOException {
+        if (s_constructors == null) {
+            Constructor<?>[] constructors = new Constructor<?>[TYPES.length];
+            try {
+                for (int i = 0; i < TYPES.length; i++)
+                    constructors[i] = TYPES[i].getConstructor(Environment.class);
+            } catch (NoSuchMethodException e) {
+                throw new IOException(e);
+            }
+            s_constructors = constructors;
+        }
+
+        try {
+            return (Agent) s_constructors[type].newInstance(env);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+}
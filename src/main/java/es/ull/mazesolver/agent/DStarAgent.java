@@ -26,18 +26,22 @@
 package es.ull.mazesolver.agent;
 
 import es.ull.mazesolver.agent.util.BlackboardCommunication;
+import es.ull.mazesolver.gui.MainWindow;
 import es.ull.mazesolver.gui.configuration.AgentConfigurationPanel;
 import es.ull.mazesolver.gui.configuration.HeuristicAgentConfigurationPanel;
 import es.ull.mazesolver.gui.environment.Environment;
 import es.ull.mazesolver.maze.Maze;
 import es.ull.mazesolver.maze.MazeCell;
+import es.ull.mazesolver.maze.MazeGraph;
 import es.ull.mazesolver.maze.algorithm.EmptyMaze;
 import es.ull.mazesolver.util.BlackboardManager;
 import es.ull.mazesolver.util.Direction;
 
 import java.awt.Color;
 import java.awt.Point;
-import java.util.ArrayList;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.PriorityQueue;
 
 /**
@@ -76,10 +80,10 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
         public Point exit;
 
         /**
-         * Representa la matriz de posiciones del laberinto con el estado del agente
-         * asociado a cada celda.
+         * Estado del agente asociado a cada celda, indexado por el identificador
+         * de nodo de la celda en el índice de adyacencia del laberinto.
          */
-        public ArrayList<ArrayList<State>> state_maze;
+        public State[] states;
 
         /**
          * Lista "open" de estados del algoritmo.
@@ -145,12 +149,10 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
             // Creamos la matriz de estados, donde cada celda representa un nodo en el
             // grafo que manipula el algoritmo. Esto será lo que se comparta entre
             // todos los agentes.
-            m_st.state_maze = new ArrayList<ArrayList<State>>(m_st.maze.getHeight());
-            for (int i = 0; i < m_st.maze.getHeight(); i++) {
-                m_st.state_maze.add(new ArrayList<State>(m_st.maze.getWidth()));
-                for (int j = 0; j < m_st.maze.getWidth(); j++)
-                    m_st.state_maze.get(i).add(new State(new Point(j, i)));
-            }
+            MazeGraph graph = m_st.maze.getGraph();
+            m_st.states = new State[graph.getNodeCount() - 1];
+            for (int i = 0; i < m_st.states.length; i++)
+                m_st.states[i] = new State(i, new Point(graph.getX(i), graph.getY(i)));
 
             // La salida la colocaremos dentro del laberinto para que el agente pueda
             // utilizarla como un estado más, luego en el método getNextMovement() se
@@ -184,29 +186,28 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
         }
 
         // Si no se sabe a dónde moverse, hay que calcular la ruta completa
-        if (m_st.state_maze.get(m_pos.y).get(m_pos.x).backpointer == null)
+        if (state(m_pos).backpointer == null)
             calculatePath();
 
-        // Obtenemos las celdas real y estimada para compararlas y actualizar el
-        // mapa consecuentemente
-        MazeCell known_cell = m_st.maze.get(m_pos.y, m_pos.x);
-        MazeCell real_cell = m_env.getMaze().get(m_pos.y, m_pos.x);
+        // Obtenemos las paredes de las celdas real y estimada para compararlas y
+        // actualizar el mapa consecuentemente
+        short known_walls = m_st.maze.getWalls(m_pos.y, m_pos.x);
+        short real_walls = m_env.getMaze().getWalls(m_pos.y, m_pos.x);
 
         // Comprobamos en todas las direcciones que las paredes están colocadas en
         // los mismos sitios
         boolean changed = false;
-        for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
+        for (int i = 1; i < Direction.MAX_DIRECTIONS && known_walls != real_walls; i++) {
             Direction dir = Direction.fromIndex(i);
 
             // En las direcciones en las que encontremos diferencias hacemos que la
             // representación interna del agente se actualice
-            if (real_cell.hasWall(dir) != known_cell.hasWall(dir)) {
-                known_cell.toggleWall(dir);
+            if (((real_walls ^ known_walls) & dir.val) != 0) {
+                m_st.maze.toggleWall(m_pos.y, m_pos.x, dir);
 
                 Point new_point = dir.movePoint(m_pos);
                 if (m_st.maze.containsPoint(new_point)) {
-                    m_st.maze.get(new_point.y, new_point.x).toggleWall(dir.getOpposite());
-                    modifyCost(m_st.state_maze.get(new_point.y).get(new_point.x));
+                    modifyCost(state(new_point));
                     changed = true;
                 }
             }
@@ -217,18 +218,18 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
         // ha cambiado, así que hay que actualizar la ruta calculada por si ha
         // dejado de ser factible.
         if (changed)
-            calculatePartialPath(m_st.state_maze.get(m_pos.y).get(m_pos.x));
+            calculatePartialPath(state(m_pos));
 
         // printBackpointers();
 
-        Point next_pos = m_st.state_maze.get(m_pos.y).get(m_pos.x).backpointer.point;
+        Point next_pos = state(m_pos).backpointer.point;
         Direction dir = Direction.fromPoints(m_pos, next_pos);
         if (look(dir) != MazeCell.Vision.WALL)
             return dir;
         else {
-            modifyCost(m_st.state_maze.get(next_pos.y).get(next_pos.x));
-            calculatePartialPath(m_st.state_maze.get(m_pos.y).get(m_pos.x));
-            next_pos = m_st.state_maze.get(m_pos.y).get(m_pos.x).backpointer.point;
+            modifyCost(state(next_pos));
+            calculatePartialPath(state(m_pos));
+            next_pos = state(m_pos).backpointer.point;
             return Direction.fromPoints(m_pos, next_pos);
         }
     }
@@ -241,15 +242,12 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
     @Override
     public void resetMemory() {
         if (m_st != null) {
-            if (m_st.state_maze != null) {
-                for (ArrayList<State> l : m_st.state_maze)
-                    for (State s : l)
-                        s.reset();
+            if (m_st.states != null) {
+                for (State s : m_st.states)
+                    s.reset();
             }
 
-            for (int i = 0; i < m_st.maze.getHeight(); i++)
-                for (int j = 0; j < m_st.maze.getWidth(); j++)
-                    m_st.maze.get(i, j).removeWalls();
+            m_st.maze.removeWalls();
 
             m_st.open = new PriorityQueue<State>();
         }
@@ -286,7 +284,7 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
      */
     @Override
     public Object getBlackboard() {
-        return m_st.state_maze;
+        return m_st.states;
     }
 
     /*
@@ -322,6 +320,7 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
         // Double.MAX_VALUE
         private static final double BIG_COST = 1000000.0;
 
+        public int node;
         public Point point;
         public State backpointer; // b(X)
         public Tag tag; // t(X)
@@ -333,9 +332,11 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
          * Crea un estado a partir de su posición en el laberinto. Se marca como
          * "nuevo" y se le asignan costes de infinito para todas sus propiedades.
          *
-         * @param pos
+         * @param node Identificador de nodo de la celda.
+         * @param pos  Posición de la celda.
          */
-        public State(Point pos) {
+        public State(int node, Point pos) {
+            this.node = node;
             point = (Point) pos.clone();
             reset();
         }
@@ -358,26 +359,6 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
         public int compareTo(State s) {
             return Double.compare(key_value, s.key_value);
         }
-
-        /**
-         * Analiza los vecinos que tiene en todas las direcciones y devuelve todos
-         * aquellos que existen. Es decir, las celdas adyacentes que están dentro
-         * del laberinto.
-         *
-         * @return Una lista con los vecinos del estado.
-         */
-        public ArrayList<State> getNeighbours() {
-            ArrayList<State> neighbours = new ArrayList<State>();
-
-            for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
-                Direction dir = Direction.fromIndex(i);
-                Point new_pos = dir.movePoint(point);
-                if (m_st.maze.containsPoint(new_pos))
-                    neighbours.add(m_st.state_maze.get(new_pos.y).get(new_pos.x));
-            }
-
-            return neighbours;
-        }
     }
 
     /**
@@ -387,8 +368,8 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
      * utilizar sólo una vez por entorno.
      */
     private void calculatePath() {
-        State initial = m_st.state_maze.get(m_pos.y).get(m_pos.x);
-        State goal = m_st.state_maze.get(m_st.exit.y).get(m_st.exit.x);
+        State initial = state(m_pos);
+        State goal = state(m_st.exit);
 
         goal.path_cost = 0.0;
         insert(goal);
@@ -433,44 +414,58 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
         m_st.k_old = getKmin();
         delete(x);
 
-        ArrayList<State> neighbours = x.getNeighbours();
+        // Los vecinos son todas las celdas adyacentes, pero la distancia a las que
+        // están separadas por una pared es infinita
+        MazeGraph graph = m_st.maze.getGraph();
+        int adjacent = graph.getAdjacentCount(x.node), degree = graph.getDegree(x.node);
 
         // Reducimos el coste del nodo actual si se puede desde alguno de sus
         // vecinos, pero sólo si el camino actual a los vecinos es óptimo
-        for (State y : neighbours) {
+        for (int i = 0; i < adjacent; i++) {
+            State y = neighbour(graph, x, i);
+            if (y == null)
+                continue;
+
+            double dist = distance(x, y, i < degree);
             if (y.tag == Tag.CLOSED && y.path_cost <= m_st.k_old
-                    && x.path_cost > y.path_cost + distance(y, x)) {
+                    && x.path_cost > y.path_cost + dist) {
                 x.backpointer = y;
-                x.path_cost = y.path_cost + distance(y, x);
+                x.path_cost = y.path_cost + dist;
             }
         }
 
-        for (State y : neighbours) {
+        for (int i = 0; i < adjacent; i++) {
+            State y = neighbour(graph, x, i);
+            if (y == null)
+                continue;
+
+            double dist = distance(x, y, i < degree);
+
             // Propagación del coste a los estados no visitados
             if (y.tag == Tag.NEW) {
                 y.backpointer = x;
-                y.path_cost = x.path_cost + distance(x, y);
+                y.path_cost = x.path_cost + dist;
                 y.previous_cost = y.path_cost;
                 insert(y);
             } else {
                 // Propagación de costes a través de los backpointers
-                if (y.backpointer == x && y.path_cost != x.path_cost + distance(x, y)) {
+                if (y.backpointer == x && y.path_cost != x.path_cost + dist) {
                     if (y.tag == Tag.OPEN) {
                         if (y.path_cost < y.previous_cost)
                             y.previous_cost = y.path_cost;
 
-                        y.path_cost = x.path_cost + distance(x, y);
+                        y.path_cost = x.path_cost + dist;
                     } else {
-                        y.path_cost = x.path_cost + distance(x, y);
+                        y.path_cost = x.path_cost + dist;
                         y.previous_cost = y.path_cost;
                     }
                     insert(y);
                 } else {
                     // Mejora los costes de los vecinos si puede
-                    if (y.backpointer != x && y.path_cost > x.path_cost + distance(x, y)) {
+                    if (y.backpointer != x && y.path_cost > x.path_cost + dist) {
                         if (x.previous_cost >= x.path_cost) {
                             y.backpointer = x;
-                            y.path_cost = x.path_cost + distance(x, y);
+                            y.path_cost = x.path_cost + dist;
 
                             if (y.tag == Tag.CLOSED)
                                 y.previous_cost = y.path_cost;
@@ -481,7 +476,7 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
                             insert(x);
                         }
                     } else {
-                        if (y.backpointer != x && x.path_cost > y.path_cost + distance(y, x)
+                        if (y.backpointer != x && x.path_cost > y.path_cost + dist
                                 && y.tag == Tag.CLOSED && y.path_cost > m_st.k_old) {
                             y.previous_cost = y.path_cost;
                             insert(y);
@@ -562,16 +557,40 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
      * Calcula la distancia entre dos estados vecinos teniendo en cuenta que si
      * hay una pared que los separa, la distancia es infinita.
      *
-     * @param x Estado X.
-     * @param y Estado Y.
+     * @param x    Estado X.
+     * @param y    Estado Y.
+     * @param open Si no hay pared entre ambos estados.
      * @return El valor de la distancia entre ambos estados.
      */
-    private double distance(State x, State y) {
-        Point pos = x.point;
-        if (m_st.maze.get(pos.y, pos.x).hasWall(Direction.fromPoints(pos, y.point)))
+    private double distance(State x, State y, boolean open) {
+        if (!open)
             return State.BIG_COST;
         else
-            return m_dist.distance(pos, y.point);
+            return m_dist.distance(x.point.x, x.point.y, y.point.x, y.point.y);
+    }
+
+    /**
+     * Obtiene el estado de uno de los vecinos de un estado.
+     *
+     * @param graph Índice de adyacencia del laberinto que conoce el agente.
+     * @param x     Estado.
+     * @param index Índice del vecino en el índice de adyacencia.
+     * @return El estado vecino o null si se trata de la salida, que no tiene
+     * estado asociado.
+     */
+    private State neighbour(MazeGraph graph, State x, int index) {
+        int node = graph.getNeighbour(x.node, index);
+        return node < m_st.states.length ? m_st.states[node] : null;
+    }
+
+    /**
+     * Obtiene el estado asociado a una posición del laberinto.
+     *
+     * @param pos Posición.
+     * @return Estado de la celda.
+     */
+    private State state(Point pos) {
+        return m_st.states[pos.y * m_st.maze.getWidth() + pos.x];
     }
 
     /**
@@ -581,7 +600,7 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
     private void printBackpointers() {
         for (int i = 0; i < m_st.maze.getHeight(); i++) {
             for (int j = 0; j < m_st.maze.getWidth(); j++) {
-                State s = m_st.state_maze.get(i).get(j);
+                State s = m_st.states[i * m_st.maze.getWidth() + j];
                 if (s.backpointer == null)
                     System.out.print("·");
                 else {
@@ -608,4 +627,121 @@ public class DStarAgent extends HeuristicAgent implements BlackboardCommunicatio
         }
         System.out.println();
     }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeState(java.io.DataOutput)
+     */
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+
+        // El estado compartido sólo lo guarda el primer agente que lo utiliza
+        boolean owner = ownsSharedState();
+        out.writeBoolean(owner);
+        if (!owner)
+            return;
+
+        Maze maze = m_st.maze;
+        for (int y = 0; y < maze.getHeight(); y++)
+            for (int x = 0; x < maze.getWidth(); x++)
+                out.writeByte(maze.getWalls(y, x));
+
+        out.writeInt(m_st.exit.x);
+        out.writeInt(m_st.exit.y);
+
+        for (State s : m_st.states) {
+            out.writeInt(s.backpointer != null ? s.backpointer.node : -1);
+            out.writeByte(s.tag.ordinal());
+            out.writeDouble(s.path_cost);
+            out.writeDouble(s.previous_cost);
+            out.writeDouble(s.key_value);
+        }
+
+        // Se guarda el orden interno de la cola para que al volver a insertar los
+        // estados en ese orden se obtenga exactamente la misma cola
+        Object[] open = m_st.open.toArray();
+        out.writeInt(open.length);
+        for (Object s : open)
+            out.writeInt(((State) s).node);
+
+        out.writeDouble(m_st.k_old);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readState(java.io.DataInput)
+     */
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        super.readState(in);
+        if (!in.readBoolean())
+            return;
+
+        Maze maze = m_st.maze;
+        for (int y = 0; y < maze.getHeight(); y++) {
+            for (int x = 0; x < maze.getWidth(); x++) {
+                int walls = in.readUnsignedByte();
+                for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
+                    Direction dir = Direction.fromIndex(i);
+                    if (maze.hasWall(y, x, dir) != ((walls & dir.val) != 0))
+                        maze.toggleWall(y, x, dir);
+                }
+            }
+        }
+
+        int exit_x = in.readInt();
+        m_st.exit = new Point(exit_x, in.readInt());
+
+        Tag[] tags = Tag.values();
+        for (State s : m_st.states) {
+            int backpointer = in.readInt();
+            s.backpointer = backpointer >= 0 ? stateOfNode(backpointer) : null;
+            s.tag = AgentFile.readEnum(in, tags);
+            s.path_cost = in.readDouble();
+            s.previous_cost = in.readDouble();
+            s.key_value = in.readDouble();
+        }
+
+        int open = in.readInt();
+        m_st.open = new PriorityQueue<State>();
+        for (int i = 0; i < open; i++)
+            m_st.open.add(stateOfNode(in.readInt()));
+
+        m_st.k_old = in.readDouble();
+    }
+
+    /**
+     * Indica si el agente es el primero del entorno que utiliza su estado
+     * compartido con otros agentes D*.
+     *
+     * @return Si el agente es el responsable de guardar el estado compartido.
+     */
+    private boolean ownsSharedState() {
+        for (int i = 0; i < m_env.getAgentCount(); i++) {
+            Agent ag = m_env.getAgent(i);
+            if (ag instanceof DStarAgent && ((DStarAgent) ag).m_st == m_st)
+                return ag == this;
+        }
+
+        return true;
+    }
+
+    /**
+     * Obtiene el estado asociado a un nodo leído de un flujo, comprobando que
+     * sea válido.
+     *
+     * @param node Identificador del nodo.
+     * @return Estado asociado al nodo.
+     * @throws IOException Si el nodo no es válido.
+     */
+    private State stateOfNode(int node) throws IOException {
+        if (node < 0 || node >= m_st.states.length)
+            throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+
+        return m_st.states[node];
+    }
+
 }
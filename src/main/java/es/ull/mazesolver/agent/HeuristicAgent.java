@@ -26,10 +26,15 @@
 package es.ull.mazesolver.agent;
 
 import es.ull.mazesolver.agent.distance.DistanceCalculator;
+import es.ull.mazesolver.agent.distance.DistanceCalculator.DistanceType;
 import es.ull.mazesolver.agent.distance.ManhattanDistance;
 import es.ull.mazesolver.gui.MainWindow;
 import es.ull.mazesolver.gui.environment.Environment;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Representa las características comunes a todos los agentes heurísticos, que
  * son la estrategia de medida de distancias y la parte de la interfaz que
@@ -54,6 +59,21 @@ public abstract class HeuristicAgent extends Agent {
         m_dist = new ManhattanDistance();
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see agent.Agent#setEnvironment(gui.environment.Environment)
+     */
+    @Override
+    public void setEnvironment(Environment env) {
+        super.setEnvironment(env);
+
+        // El constructor de Agent llama a este método antes de que se cree el
+        // algoritmo de cálculo de distancias
+        if (m_dist != null)
+            m_dist.setMaze(env.getMaze());
+    }
+
     /**
      * Cambia el algoritmo de cálculo de distancias.
      *
@@ -65,6 +85,8 @@ public abstract class HeuristicAgent extends Agent {
                     MainWindow.getTranslations().exception().invalidDistanceCalculator());
 
         m_dist = (DistanceCalculator) dist.clone();
+        if (m_env != null)
+            m_dist.setMaze(m_env.getMaze());
     }
 
     /**
@@ -74,4 +96,27 @@ public abstract class HeuristicAgent extends Agent {
         return m_dist;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeConfiguration(java.io.DataOutput)
+     */
+    @Override
+    protected void writeConfiguration(DataOutput out) throws IOException {
+        super.writeConfiguration(out);
+        out.writeByte(m_dist.getType().ordinal());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readConfiguration(java.io.DataInput)
+     */
+    @Override
+    protected void readConfiguration(DataInput in) throws IOException {
+        super.readConfiguration(in);
+        setDistanceCalculator(DistanceCalculator.fromType(
+                AgentFile.readEnum(in, DistanceType.values())));
+    }
+
 }
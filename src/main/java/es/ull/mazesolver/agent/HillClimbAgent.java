@@ -30,15 +30,17 @@ import es.ull.mazesolver.gui.configuration.HeuristicAgentConfigurationPanel;
 import es.ull.mazesolver.gui.environment.Environment;
 import es.ull.mazesolver.maze.Maze;
 import es.ull.mazesolver.maze.MazeCell;
+import es.ull.mazesolver.maze.MazeGraph;
 import es.ull.mazesolver.util.Direction;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.util.Map.Entry;
+import java.util.Arrays;
 import java.util.Stack;
-import java.util.TreeMap;
 
 /**
  * Agente que implementa el comportamiento del algoritmo de escalada. Siempre
@@ -50,7 +52,7 @@ public class HillClimbAgent extends HeuristicAgent {
 
     private transient boolean m_backtracking;
     private transient Stack<Direction> m_stack;
-    private transient boolean[][] m_visited;
+    private transient boolean[] m_visited;
 
     /**
      * Crea el agente en el entorno indicado y con la distancia de Manhattan por
@@ -73,7 +75,7 @@ public class HillClimbAgent extends HeuristicAgent {
         super.setEnvironment(env);
 
         Maze maze = env.getMaze();
-        m_visited = new boolean[maze.getHeight()][maze.getWidth()];
+        m_visited = new boolean[maze.getHeight() * maze.getWidth()];
     }
 
     /*
@@ -123,7 +125,7 @@ public class HillClimbAgent extends HeuristicAgent {
     @Override
     public void doMovement(Direction dir) {
         Point prev = m_pos;
-        m_visited[m_pos.y][m_pos.x] = true;
+        m_visited[m_pos.y * m_env.getMaze().getWidth() + m_pos.x] = true;
         super.doMovement(dir);
 
         if (!prev.equals(m_pos)) {
@@ -155,10 +157,7 @@ public class HillClimbAgent extends HeuristicAgent {
     @Override
     public void resetMemory() {
         m_stack.clear();
-        for (int i = 0; i < m_visited.length; i++) {
-            for (int j = 0; j < m_visited[i].length; j++)
-                m_visited[i][j] = false;
-        }
+        Arrays.fill(m_visited, false);
     }
 
     /*
@@ -193,25 +192,32 @@ public class HillClimbAgent extends HeuristicAgent {
      * hay ninguna celda adyacente accesible no visitada.
      */
     private Direction selectDirection() {
-        Point exit = m_env.getMaze().getExit();
-        TreeMap<Direction, Double> costs = new TreeMap<Direction, Double>();
-
-        for (int i = 0; i < Direction.MAX_DIRECTIONS; i++) {
-            Direction dir = Direction.fromIndex(i);
-            Point pos = dir.movePoint(m_pos);
-            if (pos.equals(exit))
-                return dir;
-
-            if (look(dir) == MazeCell.Vision.EMPTY && !m_visited[pos.y][pos.x])
-                costs.put(dir, m_dist.distance(pos, exit));
-        }
+        MazeGraph graph = m_env.getMaze().getGraph();
+        int node = graph.getNode(m_pos.x, m_pos.y);
+        int exit = graph.getExitNode();
+        if (node == exit)
+            return Direction.NONE;
 
+        int exit_x = graph.getX(exit), exit_y = graph.getY(exit);
         Direction closest = Direction.NONE;
         double closest_val = Double.MAX_VALUE;
-        for (Entry<Direction, Double> entry : costs.entrySet()) {
-            if (entry.getValue() < closest_val) {
-                closest_val = entry.getValue();
-                closest = entry.getKey();
+
+        // Sólo se consideran los vecinos accesibles. En caso de empate se elige
+        // la dirección con menor índice, de manera que la elección no depende del
+        // orden de los vecinos en el índice.
+        int degree = graph.getDegree(node);
+        for (int i = 0; i < degree; i++) {
+            int next = graph.getNeighbour(node, i);
+            Direction dir = graph.getDirection(node, next);
+            if (next == exit)
+                return dir;
+
+            if (!m_visited[next] && look(dir) == MazeCell.Vision.EMPTY) {
+                double val = m_dist.distance(graph.getX(next), graph.getY(next), exit_x, exit_y);
+                if (val < closest_val || (val == closest_val && dir.ordinal() < closest.ordinal())) {
+                    closest_val = val;
+                    closest = dir;
+                }
             }
         }
 
@@ -230,4 +236,32 @@ public class HillClimbAgent extends HeuristicAgent {
         input.defaultReadObject();
         m_stack = new Stack<Direction>();
     }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeState(java.io.DataOutput)
+     */
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeBoolean(m_backtracking);
+        AgentFile.writeDirections(out, m_stack);
+        AgentFile.writeBits(out, m_visited);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readState(java.io.DataInput)
+     */
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        super.readState(in);
+        m_backtracking = in.readBoolean();
+        m_stack.clear();
+        AgentFile.readDirections(in, m_stack);
+        AgentFile.readBits(in, m_visited);
+    }
+
 }
@@ -32,6 +32,9 @@ import es.ull.mazesolver.maze.MazeCell.Vision;
 import es.ull.mazesolver.util.Direction;
 
 import java.awt.Color;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Clase que representa a un agente basado en una tabla de percepción-acción.
@@ -191,4 +194,38 @@ public class PATableAgent extends Agent {
         return result;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeConfiguration(java.io.DataOutput)
+     */
+    @Override
+    protected void writeConfiguration(DataOutput out) throws IOException {
+        super.writeConfiguration(out);
+
+        // Las 16 entradas de la tabla en el mismo orden que sus índices
+        for (Direction[][][] up : m_table)
+            for (Direction[][] down : up)
+                for (Direction[] left : down)
+                    for (Direction action : left)
+                        out.writeByte(action.ordinal());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readConfiguration(java.io.DataInput)
+     */
+    @Override
+    protected void readConfiguration(DataInput in) throws IOException {
+        super.readConfiguration(in);
+
+        Direction[] values = Direction.values();
+        for (Direction[][][] up : m_table)
+            for (Direction[][] down : up)
+                for (Direction[] left : down)
+                    for (int i = 0; i < left.length; i++)
+                        left[i] = AgentFile.readEnum(in, values);
+    }
+
 }
@@ -34,6 +34,8 @@ import es.ull.mazesolver.util.Direction;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.Stack;
@@ -214,4 +216,34 @@ public class RecursiveAgent extends Agent {
         input.defaultReadObject();
         m_stack = new Stack<Direction>();
     }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeState(java.io.DataOutput)
+     */
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeBoolean(m_backtracking);
+        AgentFile.writeDirections(out, m_stack);
+        for (boolean[] row : m_visited)
+            AgentFile.writeBits(out, row);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readState(java.io.DataInput)
+     */
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        super.readState(in);
+        m_backtracking = in.readBoolean();
+        m_stack.clear();
+        AgentFile.readDirections(in, m_stack);
+        for (boolean[] row : m_visited)
+            AgentFile.readBits(in, row);
+    }
+
 }
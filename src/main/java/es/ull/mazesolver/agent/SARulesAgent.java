@@ -31,6 +31,7 @@ import es.ull.mazesolver.agent.rules.parser.SituationActionErrorHandler;
 import es.ull.mazesolver.agent.rules.parser.SituationActionLexer;
 import es.ull.mazesolver.agent.rules.parser.SituationActionParser;
 import es.ull.mazesolver.agent.rules.parser.SituationActionParser.Sa_ruleContext;
+import es.ull.mazesolver.gui.MainWindow;
 import es.ull.mazesolver.gui.configuration.AgentConfigurationPanel;
 import es.ull.mazesolver.gui.configuration.SARulesAgentConfigurationPanel;
 import es.ull.mazesolver.gui.environment.Environment;
@@ -42,6 +43,8 @@ import org.antlr.v4.runtime.CommonTokenStream;
 import java.awt.Color;
 import java.awt.Point;
 import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
@@ -57,6 +60,13 @@ public class SARulesAgent extends Agent {
     private static final long serialVersionUID = -6154538349034427858L;
     public static final int MINIMUM_WIDTH = 300;
     public static final int MINIMUM_HEIGHT = 100;
+
+    /**
+     * Tamaño máximo del código fuente de las reglas que se lee de un fichero,
+     * en bytes.
+     */
+    private static final int MAX_CODE_BYTES = 1 << 20;
+
     public static final String DEFAULT_AGENT_SRC =
             "// Reglas de máxima prioridad para salir del laberinto\n"
                     + "DOWN OFFLIMITS -> MOVE DOWN.\n"
@@ -82,8 +92,11 @@ public class SARulesAgent extends Agent {
     private String m_code;
     private transient SituationActionErrorHandler m_error_handler;
     private transient ArrayList<SituationActionRule> m_rules;
+    private transient String m_compiled_code;
     private transient boolean[][] m_visited;
 
+    private static ArrayList<SituationActionRule> s_default_rules;
+
     /**
      * Crea un agente basado en reglas de situación-acción con el comportamiento
      * por defecto.
@@ -93,9 +106,15 @@ public class SARulesAgent extends Agent {
     public SARulesAgent(Environment env) {
         super(env);
         m_error_handler = new SituationActionErrorHandler();
-        m_rules = new ArrayList<SituationActionRule>();
         m_code = DEFAULT_AGENT_SRC;
-        compileCode();
+
+        // El código por defecto sólo se compila la primera vez
+        if (s_default_rules == null) {
+            compileCode();
+            s_default_rules = m_rules;
+        }
+        m_rules = copyRules(s_default_rules);
+        m_compiled_code = m_code;
     }
 
     /**
@@ -149,6 +168,7 @@ public class SARulesAgent extends Agent {
             return false;
         else {
             m_rules = rules;
+            m_compiled_code = m_code;
             return true;
         }
     }
@@ -267,9 +287,8 @@ public class SARulesAgent extends Agent {
         SARulesAgent ag = new SARulesAgent(m_env);
         ag.setAgentColor(getAgentColor());
         ag.m_code = m_code;
-        ag.m_rules = new ArrayList<SituationActionRule>(m_rules.size());
-        for (SituationActionRule r : m_rules)
-            ag.m_rules.add((SituationActionRule) r.clone());
+        ag.m_rules = copyRules(m_rules);
+        ag.m_compiled_code = m_compiled_code;
 
         return ag;
     }
@@ -289,4 +308,95 @@ public class SARulesAgent extends Agent {
         m_rules = new ArrayList<SituationActionRule>();
         compileCode();
     }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeConfiguration(java.io.DataOutput)
+     */
+    @Override
+    protected void writeConfiguration(DataOutput out) throws IOException {
+        super.writeConfiguration(out);
+
+        byte[] code = m_code.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(code.length);
+        out.write(code);
+
+        // Las reglas compiladas sólo se guardan si corresponden al código, para
+        // poder cargar el agente sin volver a compilarlo
+        boolean compiled = m_code.equals(m_compiled_code);
+        out.writeBoolean(compiled);
+        if (compiled) {
+            out.writeInt(m_rules.size());
+            for (SituationActionRule r : m_rules)
+                r.write(out);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readConfiguration(java.io.DataInput)
+     */
+    @Override
+    protected void readConfiguration(DataInput in) throws IOException {
+        super.readConfiguration(in);
+
+        byte[] code = AgentFile.readBytes(in, MAX_CODE_BYTES);
+        m_code = new String(code, StandardCharsets.UTF_8);
+
+        if (in.readBoolean()) {
+            int count = in.readInt();
+            if (count < 0)
+                throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+            ArrayList<SituationActionRule> rules =
+                    new ArrayList<SituationActionRule>(Math.max(0, Math.min(count, 1024)));
+            for (int i = 0; i < count; i++)
+                rules.add(SituationActionRule.read(in));
+
+            m_rules = rules;
+            m_compiled_code = m_code;
+        }
+        else
+            compileCode();
+    }
+
+    /**
+     * Crea una copia de una lista de reglas.
+     *
+     * @param rules Reglas que se quieren copiar.
+     * @return Lista con una copia de cada regla.
+     */
+    private static ArrayList<SituationActionRule> copyRules(ArrayList<SituationActionRule> rules) {
+        ArrayList<SituationActionRule> copy = new ArrayList<SituationActionRule>(rules.size());
+        for (SituationActionRule r : rules)
+            copy.add((SituationActionRule) r.clone());
+
+        return copy;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeState(java.io.DataOutput)
+     */
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        for (boolean[] row : m_visited)
+            AgentFile.writeBits(out, row);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readState(java.io.DataInput)
+     */
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        super.readState(in);
+        for (boolean[] row : m_visited)
+            AgentFile.readBits(in, row);
+    }
+
 }
@@ -33,6 +33,8 @@ import es.ull.mazesolver.util.Direction;
 
 import java.awt.Color;
 import java.awt.Point;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
@@ -220,4 +222,50 @@ public class SimulatedAnnealingAgent extends HeuristicAgent {
         return neighbours;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.HeuristicAgent#writeConfiguration(java.io.DataOutput)
+     */
+    @Override
+    protected void writeConfiguration(DataOutput out) throws IOException {
+        super.writeConfiguration(out);
+        out.writeInt(m_initial_temp);
+        out.writeDouble(m_cooling_rate);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.HeuristicAgent#readConfiguration(java.io.DataInput)
+     */
+    @Override
+    protected void readConfiguration(DataInput in) throws IOException {
+        super.readConfiguration(in);
+        m_actual_temp = m_initial_temp = in.readInt();
+        m_cooling_rate = in.readDouble();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeState(java.io.DataOutput)
+     */
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeInt(m_actual_temp);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readState(java.io.DataInput)
+     */
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        super.readState(in);
+        m_actual_temp = in.readInt();
+    }
+
 }
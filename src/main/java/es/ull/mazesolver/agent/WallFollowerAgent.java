@@ -32,6 +32,8 @@ import es.ull.mazesolver.util.Direction;
 import es.ull.mazesolver.util.Rotation;
 
 import java.awt.Color;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 
@@ -182,4 +184,48 @@ public class WallFollowerAgent extends Agent {
         m_last_dir = Direction.RIGHT;
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeConfiguration(java.io.DataOutput)
+     */
+    @Override
+    protected void writeConfiguration(DataOutput out) throws IOException {
+        super.writeConfiguration(out);
+        out.writeByte(m_rot.ordinal());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readConfiguration(java.io.DataInput)
+     */
+    @Override
+    protected void readConfiguration(DataInput in) throws IOException {
+        super.readConfiguration(in);
+        m_rot = AgentFile.readEnum(in, Rotation.values());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#writeState(java.io.DataOutput)
+     */
+    @Override
+    protected void writeState(DataOutput out) throws IOException {
+        super.writeState(out);
+        out.writeByte(m_last_dir.ordinal());
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.Agent#readState(java.io.DataInput)
+     */
+    @Override
+    protected void readState(DataInput in) throws IOException {
+        super.readState(in);
+        m_last_dir = AgentFile.readEnum(in, Direction.values());
+    }
+
 }
@@ -25,6 +25,8 @@
  */
 package es.ull.mazesolver.agent.distance;
 
+import es.ull.mazesolver.maze.Maze;
+
 import java.awt.Point;
 import java.io.Serializable;
 
@@ -40,7 +42,7 @@ public abstract class DistanceCalculator implements Serializable, Cloneable {
      * {@link DistanceCalculator}.
      */
     public static enum DistanceType {
-        EUCLIDEAN, MANHATTAN;
+        EUCLIDEAN, MANHATTAN, MAZE;
 
         public String toString() {
             switch (this) {
@@ -48,6 +50,8 @@ public abstract class DistanceCalculator implements Serializable, Cloneable {
                     return "Euclidean Distance";
                 case MANHATTAN:
                     return "Manhattan Distance";
+                case MAZE:
+                    return "Maze Distance";
                 default:
                     return "";
             }
@@ -67,11 +71,22 @@ public abstract class DistanceCalculator implements Serializable, Cloneable {
                 return new EuclideanDistance();
             case MANHATTAN:
                 return new ManhattanDistance();
+            case MAZE:
+                return new MazeDistance();
             default:
                 return null;
         }
     }
 
+    /**
+     * Indica el laberinto sobre el que se van a medir las distancias. Las
+     * métricas geométricas no lo necesitan, así que por defecto no hace nada.
+     *
+     * @param maze Laberinto en el que se encuentra el agente.
+     */
+    public void setMaze(Maze maze) {
+    }
+
     /**
      * Mide la distancia entre 2 puntos.
      *
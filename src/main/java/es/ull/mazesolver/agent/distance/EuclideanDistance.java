@@ -44,6 +44,16 @@ public class EuclideanDistance extends DistanceCalculator {
         return Math.sqrt(Math.pow(p2.x - p1.x, 2) + Math.pow(p2.y - p1.y, 2));
     }
 
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.distance.DistanceCalculator#distance(int, int, int, int)
+     */
+    @Override
+    public double distance(int x1, int y1, int x2, int y2) {
+        return Math.sqrt(Math.pow(x2 - x1, 2) + Math.pow(y2 - y1, 2));
+    }
+
     /*
      * (non-Javadoc)
      *
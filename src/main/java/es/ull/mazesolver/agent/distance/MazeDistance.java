@@ -0,0 +1,118 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeDistance.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.agent.distance;
+
+import es.ull.mazesolver.maze.Maze;
+import es.ull.mazesolver.maze.MazeDistanceField;
+
+import java.awt.Point;
+
+/**
+ * Métrica de distancia que mide el número de pasos reales que hay que dar por
+ * los pasillos del laberinto para llegar a la salida. Es exacta, así que los
+ * agentes heurísticos que la utilizan se dirigen directamente a la salida.
+ * <br><br>
+ * Las distancias se consultan en el {@link MazeDistanceField} del laberinto,
+ * que se calcula una sola vez y lo comparten todos los agentes que se mueven
+ * por él. Sólo se conoce la distancia hasta la salida, así que para medir la
+ * distancia entre dos celdas cualesquiera se utiliza la distancia de
+ * Manhattan, al igual que mientras no se conozca el laberinto.
+ */
+public class MazeDistance extends DistanceCalculator {
+    private static final long serialVersionUID = 1L;
+
+    private transient Maze m_maze;
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.distance.DistanceCalculator#setMaze(es.ull.mazesolver.maze.Maze)
+     */
+    @Override
+    public void setMaze(Maze maze) {
+        m_maze = maze;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see agent.distance.DistanceCalculator#distance(java.awt.Point,
+     * java.awt.Point)
+     */
+    @Override
+    public double distance(Point p1, Point p2) {
+        return distance(p1.x, p1.y, p2.x, p2.y);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.agent.distance.DistanceCalculator#distance(int, int, int, int)
+     */
+    @Override
+    public double distance(int x1, int y1, int x2, int y2) {
+        // La salida es el único punto fuera del laberinto al que se puede llegar
+        if (m_maze != null) {
+            if (outside(x2, y2))
+                return m_maze.getDistanceField().getDistance(x1, y1);
+            if (outside(x1, y1))
+                return m_maze.getDistanceField().getDistance(x2, y2);
+        }
+
+        return Math.abs(x2 - x1) + Math.abs(y2 - y1);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see agent.distance.DistanceCalculator#getType()
+     */
+    @Override
+    public DistanceType getType() {
+        return DistanceType.MAZE;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see agent.distance.DistanceCalculator#clone()
+     */
+    @Override
+    public Object clone() {
+        MazeDistance dist = new MazeDistance();
+        dist.m_maze = m_maze;
+        return dist;
+    }
+
+    /**
+     * @param x Columna.
+     * @param y Fila.
+     * @return Si la posición queda fuera del laberinto.
+     */
+    private boolean outside(int x, int y) {
+        return x < 0 || y < 0 || x >= m_maze.getWidth() || y >= m_maze.getHeight();
+    }
+}
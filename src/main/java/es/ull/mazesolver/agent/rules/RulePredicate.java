@@ -25,6 +25,7 @@
  */
 package es.ull.mazesolver.agent.rules;
 
+import es.ull.mazesolver.agent.AgentFile;
 import es.ull.mazesolver.agent.SARulesAgent;
 import es.ull.mazesolver.agent.rules.parser.SituationActionParser.AndContext;
 import es.ull.mazesolver.agent.rules.parser.SituationActionParser.DirectionContext;
@@ -33,15 +34,32 @@ import es.ull.mazesolver.agent.rules.parser.SituationActionParser.ParensContext;
 import es.ull.mazesolver.agent.rules.parser.SituationActionParser.SingleTermContext;
 import es.ull.mazesolver.agent.rules.parser.SituationActionParser.SituationContext;
 import es.ull.mazesolver.agent.rules.parser.SituationActionParser.TermContext;
+import es.ull.mazesolver.gui.MainWindow;
 import es.ull.mazesolver.maze.MazeCell;
 import es.ull.mazesolver.util.Direction;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Representa una situación o predicado dentro de una regla de situación-acción.
  */
 public abstract class RulePredicate implements Cloneable {
     protected boolean m_negated = false;
 
+    // Tipos de nodo en la forma binaria de los predicados
+    private static final int NODE_VISION = 0;
+    private static final int NODE_VISITED = 1;
+    private static final int NODE_OR = 2;
+    private static final int NODE_AND = 3;
+    private static final int NODE_NEGATED = 0x80;
+
+    /**
+     * Profundidad máxima de los predicados que se leen de un flujo binario.
+     */
+    private static final int MAX_READ_DEPTH = 256;
+
     /**
      * Distintos conectores de reglas que soporta el lenguaje.
      */
@@ -114,6 +132,77 @@ public abstract class RulePredicate implements Cloneable {
     @Override
     public abstract Object clone();
 
+    /**
+     * Escribe el predicado en forma prefija en un flujo binario. Cada nodo
+     * ocupa un byte con su tipo y si está negado, seguido de sus operandos.
+     *
+     * @param out Flujo de salida.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    public abstract void write(DataOutput out) throws IOException;
+
+    /**
+     * Lee un predicado escrito con {@link RulePredicate#write(DataOutput)}.
+     *
+     * @param in Flujo de entrada.
+     * @return Predicado leído.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es un
+     *                     predicado válido.
+     */
+    public static RulePredicate read(DataInput in) throws IOException {
+        return read(in, 0);
+    }
+
+    /**
+     * Lee un nodo de un predicado escrito en forma binaria, comprobando que no
+     * se supere la profundidad máxima.
+     *
+     * @param in    Flujo de entrada.
+     * @param depth Profundidad del nodo.
+     * @return Predicado leído.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es un
+     *                     predicado válido.
+     */
+    private static RulePredicate read(DataInput in, int depth) throws IOException {
+        if (depth >= MAX_READ_DEPTH)
+            throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+
+        int node = in.readUnsignedByte();
+        RulePredicate pred;
+
+        switch (node & ~NODE_NEGATED) {
+            case NODE_VISION:
+                pred = new SimpleRulePredicate(AgentFile.readEnum(in, Direction.values()),
+                        AgentFile.readEnum(in, MazeCell.Vision.values()));
+                break;
+            case NODE_VISITED:
+                pred = new SimpleRulePredicate(AgentFile.readEnum(in, Direction.values()));
+                break;
+            case NODE_OR:
+            case NODE_AND:
+                RulePredicate p1 = read(in, depth + 1);
+                pred = new ComplexRulePredicate(p1, read(in, depth + 1),
+                        (node & ~NODE_NEGATED) == NODE_OR ? RuleConnector.OR : RuleConnector.AND);
+                break;
+            default:
+                throw new IOException(MainWindow.getTranslations().exception().invalidAgent());
+        }
+
+        pred.m_negated = (node & NODE_NEGATED) != 0;
+        return pred;
+    }
+
+    /**
+     * Escribe la cabecera de un nodo de la forma binaria.
+     *
+     * @param out  Flujo de salida.
+     * @param node Tipo del nodo.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    protected void writeNode(DataOutput out, int node) throws IOException {
+        out.writeByte(m_negated ? node | NODE_NEGATED : node);
+    }
+
     /**
      * Subclase que gestiona una regla sin conectores. Es decir, un término de la
      * gramática: "term".
@@ -224,6 +313,19 @@ public abstract class RulePredicate implements Cloneable {
             return pred;
         }
 
+        /*
+         * (non-Javadoc)
+         *
+         * @see es.ull.mazesolver.agent.rules.RulePredicate#write(java.io.DataOutput)
+         */
+        @Override
+        public void write(DataOutput out) throws IOException {
+            writeNode(out, m_visited_status ? NODE_VISITED : NODE_VISION);
+            out.writeByte(m_direction.ordinal());
+            if (!m_visited_status)
+                out.writeByte(m_vision.ordinal());
+        }
+
     }
 
     /**
@@ -279,6 +381,18 @@ public abstract class RulePredicate implements Cloneable {
             return pred;
         }
 
+        /*
+         * (non-Javadoc)
+         *
+         * @see es.ull.mazesolver.agent.rules.RulePredicate#write(java.io.DataOutput)
+         */
+        @Override
+        public void write(DataOutput out) throws IOException {
+            writeNode(out, m_connector == RuleConnector.OR ? NODE_OR : NODE_AND);
+            m_p1.write(out);
+            m_p2.write(out);
+        }
+
     }
 
 }
@@ -25,9 +25,15 @@
  */
 package es.ull.mazesolver.agent.rules;
 
+import es.ull.mazesolver.agent.AgentFile;
 import es.ull.mazesolver.agent.SARulesAgent;
 import es.ull.mazesolver.agent.rules.parser.SituationActionParser.Sa_ruleContext;
 import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.util.Direction;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Clase que modela una regla de situación-acción.
@@ -89,4 +95,30 @@ public class SituationActionRule implements Cloneable {
                 (RuleAction) m_action.clone());
     }
 
+    /**
+     * Escribe la regla compilada en un flujo binario: el predicado, tal como lo
+     * escribe {@link RulePredicate#write(DataOutput)}, seguido del índice de la
+     * dirección de la acción.
+     *
+     * @param out Flujo de salida.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    public void write(DataOutput out) throws IOException {
+        m_predicate.write(out);
+        out.writeByte(m_action.getDirection().ordinal());
+    }
+
+    /**
+     * Lee una regla escrita con {@link SituationActionRule#write(DataOutput)}.
+     *
+     * @param in Flujo de entrada.
+     * @return Regla leída.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es una
+     *                     regla válida.
+     */
+    public static SituationActionRule read(DataInput in) throws IOException {
+        RulePredicate pred = RulePredicate.read(in);
+        return new SituationActionRule(pred, new RuleAction(AgentFile.readEnum(in, Direction.values())));
+    }
+
 }
@@ -259,12 +259,14 @@ public class EnvSelectorDialog extends JDialog {
                         exit_dialog = false;
                     }
                 }
-                // Utilizar laberinto contenido en otro entorno
+                // Utilizar laberinto contenido en otro entorno. Se utiliza una
+                // instantánea para que al editar uno de los entornos no cambie el
+                // otro, pero sin duplicar el laberinto completo
                 else /* m_loaded_maze.isSelected() */ {
                     String env_name = (String) m_loaded_envs.getSelectedItem();
                     for (Environment env : m_envs.getEnvironmentList()) {
                         if (env.getEnvName().equals(env_name)) {
-                            m_result = new Environment(env.getMaze(), name);
+                            m_result = new Environment(env.getMaze().snapshot(), name);
                             break;
                         }
                     }
@@ -27,9 +27,15 @@ package es.ull.mazesolver.gui;
 
 import es.ull.mazesolver.agent.Agent;
 import es.ull.mazesolver.gui.environment.Environment;
+import es.ull.mazesolver.gui.environment.EnvironmentSet;
 import es.ull.mazesolver.maze.Maze;
+import es.ull.mazesolver.maze.MazeArchive;
+import es.ull.mazesolver.maze.MazeTextFormat;
 import es.ull.mazesolver.translations.MessageTranslations;
 import es.ull.mazesolver.translations.Translations;
+import es.ull.mazesolver.util.SimulationCheckpoint;
+import es.ull.mazesolver.util.SimulationReplay;
+import es.ull.mazesolver.util.SimulationTrace;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
@@ -50,6 +56,38 @@ public class FileDialog {
      */
     public static final String MAZE_EXT = "maze";
 
+    /**
+     * Extensión de los ficheros donde se almacenan los laberintos en el formato
+     * empaquetado que se proyecta en memoria.
+     */
+    public static final String MAPPED_MAZE_EXT = "mzw";
+
+    /**
+     * Extensión de los ficheros que contienen colecciones de laberintos
+     * comprimidos.
+     */
+    public static final String MAZE_ARCHIVE_EXT = "mza";
+
+    /**
+     * Extensión de los ficheros que contienen laberintos dibujados en ASCII.
+     */
+    public static final String ASCII_MAZE_EXT = "txt";
+
+    /**
+     * Extensión de los ficheros que contienen mapas de celdas bloqueadas.
+     */
+    public static final String GRID_MAP_EXT = "map";
+
+    /**
+     * Extensión de las imágenes a las que se exportan los laberintos.
+     */
+    public static final String PNG_EXT = "png";
+
+    /**
+     * Tamaño en píxeles de cada celda en las imágenes exportadas.
+     */
+    private static final int PNG_CELL_SIZE_PX = 5;
+
     /**
      * Extensión de los ficheros donde se almacenan los registros.
      */
@@ -60,13 +98,26 @@ public class FileDialog {
      */
     public static final String AGENT_EXT = "agent";
 
+    /**
+     * Extensión de los ficheros donde se graban las simulaciones.
+     */
+    public static final String TRACE_EXT = "trace";
+
+    /**
+     * Extensión de los ficheros donde se guardan los puntos de control de las
+     * simulaciones.
+     */
+    public static final String CHECKPOINT_EXT = "ckpt";
+
     // Esta clase no se puede instanciar
     private FileDialog() {
     }
 
     /**
      * Muestra un diálogo al usuario para que indique el fichero de salida donde
-     * desea guardar el laberinto.
+     * desea guardar el laberinto. Las imágenes PNG se exportan en segundo plano
+     * con un {@link MazeImageExporter}, a partir de una instantánea del
+     * laberinto para que se pueda seguir editando mientras tanto.
      *
      * @param maze Laberinto que se desea guardar.
      * @throws IOException Si no se pueden obtener permisos de escritura en el fichero
@@ -80,46 +131,66 @@ public class FileDialog {
 
         JFileChooser chooser = createFileChooser(
                 tr.message().mazeFiles() + " (*." + MAZE_EXT + ")", MAZE_EXT);
+        FileFilter mapped = addMappedMazeFilter(chooser);
+        FileFilter ascii = addFilter(chooser, tr.message().asciiMazeFiles(), ASCII_MAZE_EXT);
+        FileFilter grid = addFilter(chooser, tr.message().gridMapFiles(), GRID_MAP_EXT);
+        FileFilter png = addFilter(chooser, tr.message().pngImageFiles(), PNG_EXT);
         int result = chooser.showSaveDialog(null);
 
         if (result == JFileChooser.APPROVE_OPTION) {
+            FileFilter filter = chooser.getFileFilter();
+            String ext = filter == mapped ? MAPPED_MAZE_EXT :
+                         filter == ascii ? ASCII_MAZE_EXT :
+                         filter == grid ? GRID_MAP_EXT :
+                         filter == png ? PNG_EXT : MAZE_EXT;
             File f_chosen = chooser.getSelectedFile();
-            File file = new File(f_chosen.getAbsolutePath() + extension(f_chosen.getName(),
-                    MAZE_EXT));
+            File file = new File(f_chosen.getAbsolutePath() + extension(f_chosen.getName(), ext));
 
             // Si va a sobreescribir un archivo preguntamos primero
-            if (promptOverwrite(file))
-                maze.saveFile(file.getAbsolutePath());
+            if (promptOverwrite(file)) {
+                if (filter == mapped)
+                    maze.saveMapped(file.getAbsolutePath());
+                else if (filter == ascii)
+                    MazeTextFormat.writeAscii(maze, file.getAbsolutePath());
+                else if (filter == grid)
+                    MazeTextFormat.writeGridMap(maze, file.getAbsolutePath());
+                else if (filter == png)
+                    new MazeImageExporter(maze.snapshot(), file.getAbsolutePath(),
+                                          PNG_CELL_SIZE_PX).execute();
+                else
+                    maze.saveFile(file.getAbsolutePath());
+            }
         }
     }
 
     /**
      * Muestra un diálogo para que el usuario seleccione un conjunto de ficheros
-     * de los que cargar laberintos.
+     * de los que cargar laberintos, y crea un entorno para cada laberinto. Los
+     * ficheros que contienen colecciones de laberintos ({@link MazeArchive})
+     * aportan todos sus laberintos.
+     * <br><br>
+     * Los laberintos se cargan en paralelo en segundo plano, mostrando el
+     * progreso, y cada entorno se añade en cuanto su laberinto está cargado.
      *
-     * @return El laberinto cargado.
-     * @throws IOException Si hay un problema al leer el fichero seleccionado.
+     * @param env_set Conjunto de entornos en el que se añaden los laberintos.
+     * @return La tarea que carga los laberintos, o null si el usuario cancela la
+     *         operación.
      */
-    public static Maze[] loadMazes() throws IOException {
+    public static MazeLoader loadMazes(EnvironmentSet env_set) {
         JFileChooser chooser = createFileChooser(
                 MainWindow.getTranslations().message().mazeFiles() + " (*." + MAZE_EXT + ")",
                 MAZE_EXT);
         chooser.setMultiSelectionEnabled(true);
+        addMazeArchiveFilter(chooser);
         int result = chooser.showOpenDialog(null);
 
-        Maze[] mazes = new Maze[0];
-
+        MazeLoader loader = null;
         if (result == JFileChooser.APPROVE_OPTION) {
-            File[] files = chooser.getSelectedFiles();
-            mazes = new Maze[files.length];
-
-            for (int i = 0; i < files.length; i++) {
-                Maze maze = new Maze(files[i].getAbsolutePath());
-                mazes[i] = maze;
-            }
+            loader = new MazeLoader(MainWindow.getInstance(), chooser.getSelectedFiles(), env_set);
+            loader.execute();
         }
 
-        return mazes;
+        return loader;
     }
 
     /**
@@ -133,17 +204,56 @@ public class FileDialog {
         JFileChooser chooser = createFileChooser(
                 MainWindow.getTranslations().message().mazeFiles() + " (*." + MAZE_EXT + ")",
                 MAZE_EXT);
+        Translations tr = MainWindow.getTranslations();
+        addMappedMazeFilter(chooser);
+        addFilter(chooser, tr.message().asciiMazeFiles(), ASCII_MAZE_EXT);
+        addFilter(chooser, tr.message().gridMapFiles(), GRID_MAP_EXT);
         int result = chooser.showOpenDialog(null);
 
         Maze maze = null;
-        if (result == JFileChooser.APPROVE_OPTION) {
-            File file = chooser.getSelectedFile();
-            maze = new Maze(file.getAbsolutePath());
-        }
+        if (result == JFileChooser.APPROVE_OPTION)
+            maze = readMaze(chooser.getSelectedFile());
 
         return maze;
     }
 
+    /**
+     * Lee un laberinto de un fichero según su extensión.
+     *
+     * @param file Fichero del laberinto.
+     * @return El laberinto cargado.
+     * @throws IOException Si hay un problema al leer el fichero.
+     */
+    static Maze readMaze(File file) throws IOException {
+        // Los laberintos empaquetados se proyectan en memoria en lugar de
+        // cargarse por completo. La proyección es privada para que editar el
+        // laberinto no modifique el fichero hasta que se guarde. Si no se puede
+        // escribir en el fichero, se abre en modo de sólo lectura
+        if (extension(file.getName(), MAPPED_MAZE_EXT).isEmpty()) {
+            if (file.canWrite())
+                return Maze.mapPrivate(file.getAbsolutePath());
+            else
+                return Maze.map(file.getAbsolutePath(), true);
+        }
+        else if (extension(file.getName(), ASCII_MAZE_EXT).isEmpty())
+            return MazeTextFormat.readAscii(file.getAbsolutePath());
+        else if (extension(file.getName(), GRID_MAP_EXT).isEmpty())
+            return MazeTextFormat.readGridMap(file.getAbsolutePath());
+        else
+            return new Maze(file.getAbsolutePath());
+    }
+
+    /**
+     * Indica si un fichero contiene una colección de laberintos
+     * ({@link MazeArchive}).
+     *
+     * @param file Fichero.
+     * @return Si el fichero es una colección de laberintos.
+     */
+    static boolean isMazeArchive(File file) {
+        return extension(file.getName(), MAZE_ARCHIVE_EXT).isEmpty();
+    }
+
     /**
      * Muestra un diálogo para que el usuario seleccione un fichero en el que
      * guardar el log del programa.
@@ -214,6 +324,92 @@ public class FileDialog {
         }
     }
 
+    /**
+     * Muestra un diálogo para que el usuario seleccione un fichero en el que
+     * grabar la simulación.
+     *
+     * @return La grabación creada, o null si el usuario cancela la operación.
+     * @throws IOException Si no se puede crear el fichero.
+     */
+    public static SimulationTrace createTrace() throws IOException {
+        JFileChooser chooser = createFileChooser(
+                MainWindow.getTranslations().message().traceFiles() + " (*." + TRACE_EXT + ")",
+                TRACE_EXT);
+        int result = chooser.showSaveDialog(null);
+
+        if (result == JFileChooser.APPROVE_OPTION) {
+            File f_chosen = chooser.getSelectedFile();
+            File file = new File(f_chosen.getAbsolutePath() + extension(f_chosen.getName(), TRACE_EXT));
+
+            if (promptOverwrite(file))
+                return new SimulationTrace(file.getAbsolutePath());
+        }
+
+        return null;
+    }
+
+    /**
+     * Muestra un diálogo para que el usuario seleccione una grabación de una
+     * simulación para reproducirla.
+     *
+     * @return La grabación abierta, o null si el usuario cancela la operación.
+     * @throws IOException Si hay un problema al leer el fichero seleccionado.
+     */
+    public static SimulationReplay loadTrace() throws IOException {
+        JFileChooser chooser = createFileChooser(
+                MainWindow.getTranslations().message().traceFiles() + " (*." + TRACE_EXT + ")",
+                TRACE_EXT);
+        int result = chooser.showOpenDialog(null);
+
+        if (result == JFileChooser.APPROVE_OPTION)
+            return new SimulationReplay(chooser.getSelectedFile().getAbsolutePath());
+
+        return null;
+    }
+
+    /**
+     * Muestra un diálogo para que el usuario seleccione un fichero en el que
+     * guardar los puntos de control de la simulación.
+     *
+     * @return El fichero de puntos de control, o null si el usuario cancela la
+     *         operación.
+     */
+    public static SimulationCheckpoint createCheckpoint() {
+        JFileChooser chooser = createFileChooser(
+                MainWindow.getTranslations().message().checkpointFiles() + " (*." + CHECKPOINT_EXT + ")",
+                CHECKPOINT_EXT);
+        int result = chooser.showSaveDialog(null);
+
+        if (result == JFileChooser.APPROVE_OPTION) {
+            File f_chosen = chooser.getSelectedFile();
+            File file = new File(f_chosen.getAbsolutePath() + extension(f_chosen.getName(), CHECKPOINT_EXT));
+
+            if (promptOverwrite(file))
+                return new SimulationCheckpoint(file.getAbsolutePath());
+        }
+
+        return null;
+    }
+
+    /**
+     * Muestra un diálogo para que el usuario seleccione un fichero de puntos de
+     * control desde el que continuar una simulación.
+     *
+     * @return Ruta del fichero seleccionado, o null si el usuario cancela la
+     *         operación.
+     */
+    public static String loadCheckpoint() {
+        JFileChooser chooser = createFileChooser(
+                MainWindow.getTranslations().message().checkpointFiles() + " (*." + CHECKPOINT_EXT + ")",
+                CHECKPOINT_EXT);
+        int result = chooser.showOpenDialog(null);
+
+        if (result == JFileChooser.APPROVE_OPTION)
+            return chooser.getSelectedFile().getAbsolutePath();
+
+        return null;
+    }
+
     /**
      * Crea un diálogo para seleccionar ficheros con una extensión concreta.
      *
@@ -229,6 +425,43 @@ public class FileDialog {
         return chooser;
     }
 
+    /**
+     * Añade a un diálogo el filtro de los ficheros de laberintos empaquetados.
+     *
+     * @param chooser Diálogo al que añadir el filtro.
+     * @return El filtro añadido.
+     */
+    private static FileFilter addMappedMazeFilter(JFileChooser chooser) {
+        return addFilter(chooser, MainWindow.getTranslations().message().mappedMazeFiles(),
+                         MAPPED_MAZE_EXT);
+    }
+
+    /**
+     * Añade a un diálogo el filtro de los ficheros de colecciones de laberintos.
+     *
+     * @param chooser Diálogo al que añadir el filtro.
+     * @return El filtro añadido.
+     */
+    private static FileFilter addMazeArchiveFilter(JFileChooser chooser) {
+        return addFilter(chooser, MainWindow.getTranslations().message().mazeArchiveFiles(),
+                         MAZE_ARCHIVE_EXT);
+    }
+
+    /**
+     * Añade a un diálogo un filtro de ficheros adicional.
+     *
+     * @param chooser     Diálogo al que añadir el filtro.
+     * @param description Descripción del formato.
+     * @param extension   Extensión de los ficheros.
+     * @return El filtro añadido.
+     */
+    private static FileFilter addFilter(JFileChooser chooser, String description, String extension) {
+        FileFilter filter = new FileNameExtensionFilter(description + " (*." + extension + ")", extension);
+        chooser.addChoosableFileFilter(filter);
+
+        return filter;
+    }
+
     /**
      * Decide si el nombre del fichero especificado necesita la extensión o no y
      * la devuelve si hace falta.
@@ -43,8 +43,11 @@ import es.ull.mazesolver.translations.Translatable;
 import es.ull.mazesolver.translations.Translations;
 import es.ull.mazesolver.util.InteractionMode;
 import es.ull.mazesolver.util.Pair;
+import es.ull.mazesolver.util.SimulationCheckpoint;
 import es.ull.mazesolver.util.SimulationManager;
+import es.ull.mazesolver.util.SimulationReplay;
 import es.ull.mazesolver.util.SimulationResults;
+import es.ull.mazesolver.util.SimulationTrace;
 
 import javax.swing.AbstractAction;
 import javax.swing.ActionMap;
@@ -52,6 +55,7 @@ import javax.swing.ButtonGroup;
 import javax.swing.ImageIcon;
 import javax.swing.InputMap;
 import javax.swing.JButton;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -106,6 +110,9 @@ public class MainWindow extends JFrame implements Observer, Translatable {
     private static final String API_DOCS_URL = "https://mazesolver.github.io/MazeSolver/";
     private static final String ISSUES_URL = "https://github.com/MazeSolver/MazeSolver/labels/bug";
 
+    // Pasos de simulación entre cada punto de control
+    private static final int CHECKPOINT_INTERVAL = 100;
+
     private static final long serialVersionUID = 1L;
     private static MainWindow s_instance;
     private static Translations s_tr;
@@ -174,12 +181,14 @@ public class MainWindow extends JFrame implements Observer, Translatable {
     private JMenu m_menu_file, m_menu_env, m_menu_agent, m_menu_sim,
             m_menu_config, m_menu_language, m_menu_help;
     private JMenuItem m_itm_exit;
-    private JMenuItem m_itm_env_new, m_itm_env_save, m_itm_env_config,
-            m_itm_env_close;
+    private JMenuItem m_itm_env_new, m_itm_env_open, m_itm_env_save,
+            m_itm_env_config, m_itm_env_close;
     private JMenuItem m_itm_agent_new, m_itm_agent_open, m_itm_agent_save,
             m_itm_agent_copy, m_itm_agent_config, m_itm_agent_remove;
     private JMenuItem m_itm_sim_run, m_itm_sim_step, m_itm_sim_pause,
-            m_itm_sim_stop, m_itm_sim_fastrun;
+            m_itm_sim_stop, m_itm_sim_fastrun, m_itm_sim_replay,
+            m_itm_sim_resume;
+    private JCheckBoxMenuItem m_itm_sim_record, m_itm_sim_checkpoint;
     private JRadioButtonMenuItem m_itm_mode_sim, m_itm_mode_edit;
     private JMenuItem m_itm_language_spanish, m_itm_language_english,
             m_itm_language_german, m_itm_language_russian,
@@ -191,6 +200,8 @@ public class MainWindow extends JFrame implements Observer, Translatable {
     // Representación del modelo
     private EnvironmentSet m_environments;
     private SimulationManager m_simulation;
+    private SimulationTrace m_trace;
+    private SimulationCheckpoint m_checkpoint;
 
     // Interacción con el usuario
     private LoggingConsole m_console;
@@ -338,11 +349,13 @@ public class MainWindow extends JFrame implements Observer, Translatable {
 
         // Menú "Environment"
         m_itm_env_new = new JMenuItem();
+        m_itm_env_open = new JMenuItem();
         m_itm_env_config = new JMenuItem();
         m_itm_env_save = new JMenuItem();
         m_itm_env_close = new JMenuItem();
 
         m_menu_env.add(m_itm_env_new);
+        m_menu_env.add(m_itm_env_open);
         m_menu_env.add(m_itm_env_config);
         m_menu_env.addSeparator();
         m_menu_env.add(m_itm_env_save);
@@ -372,6 +385,10 @@ public class MainWindow extends JFrame implements Observer, Translatable {
         m_itm_sim_pause = new JMenuItem();
         m_itm_sim_stop = new JMenuItem();
         m_itm_sim_fastrun = new JMenuItem();
+        m_itm_sim_record = new JCheckBoxMenuItem();
+        m_itm_sim_replay = new JMenuItem();
+        m_itm_sim_checkpoint = new JCheckBoxMenuItem();
+        m_itm_sim_resume = new JMenuItem();
 
         m_menu_sim.add(m_itm_sim_run);
         m_menu_sim.add(m_itm_sim_step);
@@ -379,6 +396,12 @@ public class MainWindow extends JFrame implements Observer, Translatable {
         m_menu_sim.add(m_itm_sim_stop);
         m_menu_sim.addSeparator();
         m_menu_sim.add(m_itm_sim_fastrun);
+        m_menu_sim.addSeparator();
+        m_menu_sim.add(m_itm_sim_record);
+        m_menu_sim.add(m_itm_sim_replay);
+        m_menu_sim.addSeparator();
+        m_menu_sim.add(m_itm_sim_checkpoint);
+        m_menu_sim.add(m_itm_sim_resume);
 
         // Menú "Configuration"
         m_itm_mode_sim = new JRadioButtonMenuItem();
@@ -494,6 +517,13 @@ public class MainWindow extends JFrame implements Observer, Translatable {
             }
         });
 
+        m_itm_env_open.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                FileDialog.loadMazes(m_environments);
+            }
+        });
+
         m_itm_env_config.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
@@ -673,6 +703,110 @@ public class MainWindow extends JFrame implements Observer, Translatable {
             }
         });
 
+        m_itm_sim_record.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    if (m_itm_sim_record.isSelected()) {
+                        m_trace = FileDialog.createTrace();
+                        if (m_trace != null)
+                            m_simulation.setTrace(m_trace);
+                    } else if (m_trace != null) {
+                        m_simulation.setTrace(null);
+                        m_trace.close();
+                        m_trace = null;
+                    }
+                } catch (IOException exc) {
+                    m_trace = null;
+                    JOptionPane.showMessageDialog(null, exc.getMessage(),
+                            s_tr.message().fileSaveFailed(), JOptionPane.ERROR_MESSAGE);
+                }
+
+                m_itm_sim_record.setSelected(m_trace != null);
+            }
+        });
+
+        m_itm_sim_replay.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    SimulationReplay replay = FileDialog.loadTrace();
+
+                    if (replay != null) {
+                        for (Environment env : replay.getEnvironments())
+                            m_environments.addEnvironment(env);
+
+                        ReplayDialog dialog = new ReplayDialog(MainWindow.this, replay);
+                        dialog.setLocationRelativeTo(MainWindow.this);
+                        dialog.setVisible(true);
+                    }
+                } catch (IOException exc) {
+                    JOptionPane.showMessageDialog(null, exc.getMessage(),
+                            s_tr.message().fileOpenFailed(), JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+
+        m_itm_sim_checkpoint.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    if (m_itm_sim_checkpoint.isSelected()) {
+                        m_checkpoint = FileDialog.createCheckpoint();
+                        if (m_checkpoint != null)
+                            m_simulation.setCheckpoint(m_checkpoint, CHECKPOINT_INTERVAL);
+                    } else if (m_checkpoint != null) {
+                        m_simulation.setCheckpoint(null, CHECKPOINT_INTERVAL);
+                        SimulationCheckpoint checkpoint = m_checkpoint;
+                        m_checkpoint = null;
+                        checkpoint.close();
+                    }
+                } catch (IOException exc) {
+                    JOptionPane.showMessageDialog(null, exc.getMessage(),
+                            s_tr.message().fileSaveFailed(), JOptionPane.ERROR_MESSAGE);
+                }
+
+                m_itm_sim_checkpoint.setSelected(m_checkpoint != null);
+            }
+        });
+
+        m_itm_sim_resume.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String file_name = FileDialog.loadCheckpoint();
+                if (file_name == null)
+                    return;
+
+                // La simulación continúa sobre los entornos guardados, así que
+                // se cierran los que estén abiertos
+                if (m_environments.getEnvironmentCount() > 0) {
+                    int choice = JOptionPane.showConfirmDialog(null,
+                            s_tr.message().closeEnvironments(), s_tr.menu().resumeCheckpoint(),
+                            JOptionPane.YES_NO_OPTION);
+                    if (choice != JOptionPane.YES_OPTION)
+                        return;
+
+                    m_environments.removeAllEnvironments();
+                }
+
+                try {
+                    SimulationCheckpoint.resume(file_name, m_simulation);
+
+                    // Si la simulación se estaba ejecutando ya se ha notificado
+                    // su comienzo, pero si estaba pausada hay que actualizar
+                    // los menús aquí
+                    if (m_simulation.isPaused()) {
+                        setSimulatingState();
+                        setPausedContinuedState();
+                    }
+                } catch (IOException exc) {
+                    m_environments.removeAllEnvironments();
+                    JOptionPane.showMessageDialog(null, exc.getMessage(),
+                            s_tr.message().fileOpenFailed(), JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+
         // Menú "Configuration"
         // /////////////////////////////////////////////////////////////////////////
         m_itm_mode_sim.addActionListener(new ActionListener() {
@@ -883,9 +1017,15 @@ public class MainWindow extends JFrame implements Observer, Translatable {
             SimulationResults results = (SimulationResults) obj;
 
             ArrayList<Environment> envs = m_environments.getEnvironmentList();
+            // Los laberintos con el mismo contenido se agrupan aunque sean
+            // instantáneas distintas o se hayan cargado por separado
             ArrayList<Maze> mazes = new ArrayList<Maze>();
             for (Environment env : envs) {
-                if (!mazes.contains(env.getMaze()))
+                boolean repeated = false;
+                for (Maze maze : mazes)
+                    repeated |= maze.sameContent(env.getMaze());
+
+                if (!repeated)
                     mazes.add(env.getMaze());
             }
 
@@ -904,7 +1044,7 @@ public class MainWindow extends JFrame implements Observer, Translatable {
 
                 for (int j = 0; j < envs.size(); j++) {
                     Environment env = envs.get(j);
-                    if (env.getMaze() == maze) {
+                    if (env.getMaze().sameContent(maze)) {
                         Agent env_winner = results.getWinner(env);
                         m_console.writeInfo("  == " + env.getTitle() + " ==");
                         m_console.writeInfo("* " + tr_sim.timeTakenFirst() + ": " + results.timeTakenFirst(env));
@@ -952,6 +1092,7 @@ public class MainWindow extends JFrame implements Observer, Translatable {
 
         m_itm_exit.setText(m_tr.exit());
         m_itm_env_new.setText(m_tr.newEnv() + "...");
+        m_itm_env_open.setText(m_tr.openMazes() + "...");
         m_itm_env_config.setText(m_tr.configEnv() + "...");
         m_itm_env_save.setText(m_tr.saveMaze() + "...");
         m_itm_env_close.setText(m_tr.closeEnv());
@@ -965,6 +1106,10 @@ public class MainWindow extends JFrame implements Observer, Translatable {
         m_itm_sim_step.setText(b_tr.step());
         m_itm_sim_stop.setText(b_tr.stop());
         m_itm_sim_fastrun.setText(b_tr.fastRun() + "...");
+        m_itm_sim_record.setText(m_tr.recordTrace() + "...");
+        m_itm_sim_replay.setText(m_tr.replayTrace() + "...");
+        m_itm_sim_checkpoint.setText(m_tr.saveCheckpoints() + "...");
+        m_itm_sim_resume.setText(m_tr.resumeCheckpoint() + "...");
         m_itm_mode_sim.setText(m_tr.simulationMode());
         m_itm_mode_edit.setText(m_tr.editMode());
         m_itm_language_spanish.setText(m_lang_tr.spanish());
@@ -1055,6 +1200,7 @@ public class MainWindow extends JFrame implements Observer, Translatable {
     private void setSimulatingState() {
         // Desactivamos los menús que no se pueden utilizar durante la simulación
         m_itm_env_new.setEnabled(false);
+        m_itm_env_open.setEnabled(false);
         m_itm_env_config.setEnabled(false);
 
         m_run.setEnabled(false);
@@ -1066,6 +1212,7 @@ public class MainWindow extends JFrame implements Observer, Translatable {
         m_itm_sim_step.setEnabled(false);
         m_itm_sim_pause.setEnabled(true);
         m_itm_sim_stop.setEnabled(true);
+        m_itm_sim_resume.setEnabled(false);
 
         m_itm_mode_edit.setEnabled(false);
     }
@@ -1095,6 +1242,7 @@ public class MainWindow extends JFrame implements Observer, Translatable {
      */
     private void setStoppedState() {
         m_itm_env_new.setEnabled(true);
+        m_itm_env_open.setEnabled(true);
         m_itm_env_config.setEnabled(true);
 
         m_pause.setText(s_tr.button().pause());
@@ -1108,6 +1256,7 @@ public class MainWindow extends JFrame implements Observer, Translatable {
         m_itm_sim_step.setEnabled(true);
         m_itm_sim_pause.setEnabled(false);
         m_itm_sim_stop.setEnabled(false);
+        m_itm_sim_resume.setEnabled(true);
 
         m_itm_mode_edit.setEnabled(true);
     }
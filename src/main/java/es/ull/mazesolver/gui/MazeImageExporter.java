@@ -0,0 +1,98 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeImageExporter.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.gui;
+
+import es.ull.mazesolver.maze.Maze;
+import es.ull.mazesolver.maze.MazeImageWriter;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tarea que exporta la imagen de un laberinto a un fichero PNG en segundo
+ * plano, para que la interfaz gráfica siga respondiendo mientras se genera.
+ * Si la exportación falla, se borra el fichero incompleto y se avisa al
+ * usuario.
+ */
+public class MazeImageExporter extends SwingWorker<Void, Void> {
+    private final Maze m_maze;
+    private final String m_file_name;
+    private final int m_cell_size;
+
+    /**
+     * Crea la tarea de exportación. No empieza hasta que se llama a
+     * {@link SwingWorker#execute()}.
+     *
+     * @param maze      Laberinto a exportar. No debe cambiar mientras dura la
+     *                  exportación.
+     * @param fileName  Nombre del fichero PNG.
+     * @param cell_size Tamaño de cada celda en píxeles.
+     */
+    public MazeImageExporter(Maze maze, String fileName, int cell_size) {
+        m_maze = maze;
+        m_file_name = fileName;
+        m_cell_size = cell_size;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.SwingWorker#doInBackground()
+     */
+    @Override
+    protected Void doInBackground() throws Exception {
+        try {
+            MazeImageWriter.writePng(m_maze, m_file_name, m_cell_size);
+        } catch (IOException | RuntimeException e) {
+            new File(m_file_name).delete();
+            throw e;
+        }
+
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.SwingWorker#done()
+     */
+    @Override
+    protected void done() {
+        try {
+            get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            JOptionPane.showMessageDialog(null, e.getCause().getMessage(),
+                    MainWindow.getTranslations().message().fileSaveFailed(),
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeLoader.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.gui;
+
+import es.ull.mazesolver.gui.environment.Environment;
+import es.ull.mazesolver.gui.environment.EnvironmentSet;
+import es.ull.mazesolver.maze.Maze;
+import es.ull.mazesolver.maze.MazeArchive;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tarea que carga un conjunto de ficheros de laberintos en segundo plano y
+ * crea un entorno para cada laberinto.
+ * <br><br>
+ * Los laberintos se decodifican en paralelo, con tantos hilos como
+ * procesadores haya, y cada entorno se añade al conjunto de entornos en cuanto
+ * su laberinto está listo. Mientras tanto se muestra el progreso en un diálogo
+ * desde el que se puede cancelar la carga de los laberintos restantes.
+ */
+public class MazeLoader extends SwingWorker<Void, Maze> {
+    private static final int CANCEL_POLL_MSEC = 100;
+
+    private final File[] m_files;
+    private final EnvironmentSet m_env_set;
+    private final ProgressMonitor m_monitor;
+    private final Timer m_cancel_poll;
+    private volatile IOException m_error;
+
+    /**
+     * Crea la tarea de carga de laberintos. La carga no empieza hasta que se
+     * llama a {@link SwingWorker#execute()}.
+     *
+     * @param parent  Componente sobre el que se muestra el progreso.
+     * @param files   Ficheros de laberintos o de colecciones de laberintos.
+     * @param env_set Conjunto de entornos en el que se añaden los laberintos.
+     */
+    public MazeLoader(Component parent, File[] files, EnvironmentSet env_set) {
+        m_files = files;
+        m_env_set = env_set;
+
+        m_monitor = new ProgressMonitor(parent,
+                MainWindow.getTranslations().message().loadingMazes(), null, 0, 100);
+        addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if ("progress".equals(evt.getPropertyName()))
+                    m_monitor.setProgress((Integer) evt.getNewValue());
+            }
+        });
+
+        // El diálogo de progreso no avisa cuando se pulsa el botón de cancelar
+        m_cancel_poll = new Timer(CANCEL_POLL_MSEC, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (m_monitor.isCanceled())
+                    cancel(true);
+            }
+        });
+        m_cancel_poll.start();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.SwingWorker#doInBackground()
+     */
+    @Override
+    protected Void doInBackground() throws Exception {
+        ArrayList<MazeArchive> archives = new ArrayList<MazeArchive>();
+        ExecutorService executor = null;
+
+        try {
+            // Se crea una tarea por laberinto, de manera que los laberintos de una
+            // misma colección también se cargan en paralelo
+            ArrayList<Callable<Maze>> tasks = new ArrayList<Callable<Maze>>();
+            for (final File file : m_files) {
+                if (FileDialog.isMazeArchive(file)) {
+                    final MazeArchive archive = new MazeArchive(file.getAbsolutePath());
+                    archives.add(archive);
+
+                    for (int i = 0; i < archive.size(); i++) {
+                        final int index = i;
+                        tasks.add(new Callable<Maze>() {
+                            @Override
+                            public Maze call() throws IOException {
+                                return archive.load(index);
+                            }
+                        });
+                    }
+                } else {
+                    tasks.add(new Callable<Maze>() {
+                        @Override
+                        public Maze call() throws IOException {
+                            return FileDialog.readMaze(file);
+                        }
+                    });
+                }
+            }
+
+            if (tasks.isEmpty())
+                return null;
+
+            int threads = Math.min(Runtime.getRuntime().availableProcessors(), tasks.size());
+            executor = Executors.newFixedThreadPool(threads);
+            CompletionService<Maze> completion = new ExecutorCompletionService<Maze>(executor);
+            for (Callable<Maze> task : tasks)
+                completion.submit(task);
+
+            // Los laberintos se entregan en el orden en el que terminan de cargarse
+            for (int done = 1; done <= tasks.size() && !isCancelled(); done++) {
+                try {
+                    publish(completion.take().get());
+                } catch (ExecutionException e) {
+                    if (m_error == null)
+                        m_error = e.getCause() instanceof IOException ?
+                                (IOException) e.getCause() : new IOException(e.getCause());
+                }
+
+                setProgress(done * 100 / tasks.size());
+            }
+        } catch (IOException e) {
+            m_error = e;
+        } finally {
+            if (executor != null)
+                executor.shutdownNow();
+            for (MazeArchive archive : archives)
+                archive.close();
+        }
+
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.SwingWorker#process(java.util.List)
+     */
+    @Override
+    protected void process(List<Maze> mazes) {
+        if (isCancelled())
+            return;
+
+        for (Maze maze : mazes)
+            m_env_set.addEnvironment(new Environment(maze));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.SwingWorker#done()
+     */
+    @Override
+    protected void done() {
+        m_cancel_poll.stop();
+        m_monitor.close();
+
+        if (m_error != null)
+            JOptionPane.showMessageDialog(null, m_error.getMessage(),
+                    MainWindow.getTranslations().message().fileOpenFailed(),
+                    JOptionPane.ERROR_MESSAGE);
+    }
+
+}
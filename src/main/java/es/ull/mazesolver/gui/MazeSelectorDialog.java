@@ -28,8 +28,10 @@ package es.ull.mazesolver.gui;
 import es.ull.mazesolver.maze.Maze;
 import es.ull.mazesolver.maze.MazeCreationAlgorithm;
 import es.ull.mazesolver.maze.algorithm.AldousBroder;
+import es.ull.mazesolver.maze.algorithm.Eller;
 import es.ull.mazesolver.maze.algorithm.HuntAndKill;
 import es.ull.mazesolver.maze.algorithm.Kruskal;
+import es.ull.mazesolver.maze.algorithm.ParallelTiles;
 import es.ull.mazesolver.maze.algorithm.Prim;
 import es.ull.mazesolver.maze.algorithm.RecursiveBacktracking;
 import es.ull.mazesolver.maze.algorithm.RecursiveDivision;
@@ -40,6 +42,7 @@ import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.ButtonGroup;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JDialog;
 import javax.swing.JLabel;
@@ -67,9 +70,14 @@ public class MazeSelectorDialog extends JDialog {
     private static final int MIN_MAZE_SIZE = 10;
     private static final int MAX_MAZE_SIZE = 100;
 
+    // Los laberintos generados por bloques pueden ser mucho más grandes, y sólo
+    // a partir de dos bloques por lado se reparte el trabajo
+    private static final int MAX_TILED_MAZE_SIZE = 4096;
+
     private JButton m_ok, m_cancel;
     private JComboBox<String> m_algorithms;
     private JSpinner m_rows, m_columns;
+    private JCheckBox m_parallel;
 
     private ButtonGroup m_type;
     private JRadioButton m_perfect, m_add_cycles, m_add_components;
@@ -86,7 +94,7 @@ public class MazeSelectorDialog extends JDialog {
         super(parent);
 
         String[] algos =
-                {"Aldous Broder", "Hunt and Kill", "Kruskal", "Prim", "Recursive Backtracking",
+                {"Aldous Broder", "Eller", "Hunt and Kill", "Kruskal", "Prim", "Recursive Backtracking",
                         "Recursive Division", "Wilson"};
         m_algorithms = new JComboBox<String>(algos);
 
@@ -118,8 +126,8 @@ public class MazeSelectorDialog extends JDialog {
         setLayout(new BorderLayout());
 
         JPanel basic_global = new JPanel(new BorderLayout(5, 5));
-        JPanel basic_labels = new JPanel(new GridLayout(3, 1, 5, 5));
-        JPanel basic_controls = new JPanel(new GridLayout(3, 1, 5, 5));
+        JPanel basic_labels = new JPanel(new GridLayout(4, 1, 5, 5));
+        JPanel basic_controls = new JPanel(new GridLayout(4, 1, 5, 5));
 
         m_rows = new JSpinner(new SpinnerNumberModel(MIN_MAZE_SIZE, MIN_MAZE_SIZE, MAX_MAZE_SIZE, 1));
         m_columns =
@@ -132,6 +140,10 @@ public class MazeSelectorDialog extends JDialog {
         basic_labels.add(new JLabel(tr.maze().columns() + ":"));
         basic_controls.add(m_columns);
 
+        m_parallel = new JCheckBox();
+        basic_labels.add(new JLabel(tr.maze().parallelTiles() + ":"));
+        basic_controls.add(m_parallel);
+
         basic_global.add(basic_labels, BorderLayout.WEST);
         basic_global.add(basic_controls, BorderLayout.CENTER);
         basic_global.setBorder(BorderFactory.createCompoundBorder(BorderFactory.createEmptyBorder(2, 5,
@@ -220,6 +232,18 @@ public class MazeSelectorDialog extends JDialog {
         m_rows.addChangeListener(dim_change_listener);
         m_columns.addChangeListener(dim_change_listener);
 
+        m_parallel.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                int max_size = m_parallel.isSelected() ? MAX_TILED_MAZE_SIZE : MAX_MAZE_SIZE;
+                for (JSpinner spinner : new JSpinner[] {m_rows, m_columns}) {
+                    SpinnerNumberModel model = (SpinnerNumberModel) spinner.getModel();
+                    model.setMaximum(max_size);
+                    model.setValue(Math.min((Integer) model.getValue(), max_size));
+                }
+            }
+        });
+
         ActionListener types_listener = new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
@@ -235,35 +259,21 @@ public class MazeSelectorDialog extends JDialog {
         m_ok.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                String alg_name = (String) m_algorithms.getSelectedItem();
+                final String alg_name = (String) m_algorithms.getSelectedItem();
                 int rows = (Integer) m_rows.getValue();
                 int columns = (Integer) m_columns.getValue();
 
-                MazeCreationAlgorithm alg = null;
-
-                switch (alg_name) {
-                    case "Aldous Broder":
-                        alg = new AldousBroder(rows, columns);
-                        break;
-                    case "Hunt and Kill":
-                        alg = new HuntAndKill(rows, columns);
-                        break;
-                    case "Kruskal":
-                        alg = new Kruskal(rows, columns);
-                        break;
-                    case "Prim":
-                        alg = new Prim(rows, columns);
-                        break;
-                    case "Recursive Division":
-                        alg = new RecursiveDivision(rows, columns);
-                        break;
-                    case "Recursive Backtracking":
-                        alg = new RecursiveBacktracking(rows, columns);
-                        break;
-                    case "Wilson":
-                        alg = new Wilson(rows, columns);
-                        break;
+                MazeCreationAlgorithm alg;
+                if (m_parallel.isSelected()) {
+                    alg = new ParallelTiles(rows, columns, new ParallelTiles.TileFactory() {
+                        @Override
+                        public MazeCreationAlgorithm create(int tile_rows, int tile_columns) {
+                            return createAlgorithm(alg_name, tile_rows, tile_columns, false);
+                        }
+                    });
                 }
+                else
+                    alg = createAlgorithm(alg_name, rows, columns, true);
 
                 if (alg != null) {
                     String command = m_type.getSelection().getActionCommand();
@@ -289,4 +299,52 @@ public class MazeSelectorDialog extends JDialog {
         });
     }
 
+    /**
+     * Crea el algoritmo de generación de laberintos indicado.
+     *
+     * @param alg_name Nombre del algoritmo.
+     * @param rows     Número de filas del laberinto.
+     * @param columns  Número de columnas del laberinto.
+     * @param parallel Si los algoritmos que pueden repartir su trabajo entre
+     *                 varios hilos deben hacerlo.
+     * @return El algoritmo, o {@code null} si el nombre no es válido.
+     */
+    private static MazeCreationAlgorithm createAlgorithm(String alg_name, int rows, int columns,
+                                                         boolean parallel) {
+        MazeCreationAlgorithm alg = null;
+
+        switch (alg_name) {
+            case "Aldous Broder":
+                alg = new AldousBroder(rows, columns);
+                break;
+            case "Eller":
+                alg = new Eller(rows, columns);
+                break;
+            case "Hunt and Kill":
+                alg = new HuntAndKill(rows, columns);
+                break;
+            case "Kruskal":
+                Kruskal kruskal = new Kruskal(rows, columns);
+                kruskal.setParallel(parallel);
+                alg = kruskal;
+                break;
+            case "Prim":
+                alg = new Prim(rows, columns);
+                break;
+            case "Recursive Division":
+                RecursiveDivision division = new RecursiveDivision(rows, columns);
+                division.setParallel(parallel);
+                alg = division;
+                break;
+            case "Recursive Backtracking":
+                alg = new RecursiveBacktracking(rows, columns);
+                break;
+            case "Wilson":
+                alg = new Wilson(rows, columns);
+                break;
+        }
+
+        return alg;
+    }
+
 }
@@ -0,0 +1,221 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file ReplayDialog.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.gui;
+
+import com.alee.extended.layout.VerticalFlowLayout;
+import es.ull.mazesolver.translations.Translations;
+import es.ull.mazesolver.util.SimulationReplay;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.Timer;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+
+/**
+ * Interfaz gráfica para controlar la reproducción de una simulación grabada:
+ * permite reproducirla a cualquier velocidad y saltar a cualquier paso.
+ */
+public class ReplayDialog extends JDialog {
+    private static final long serialVersionUID = 1L;
+    private static final int DEFAULT_INTERVAL = 200;
+    private static final int MIN_INTERVAL = 1;
+    private static final int MAX_INTERVAL = 2000;
+
+    private SimulationReplay m_replay;
+    private Timer m_timer;
+    private boolean m_updating;
+
+    private JSlider m_position;
+    private JLabel m_step;
+    private JButton m_play;
+    private JSpinner m_interval;
+
+    /**
+     * Crea el diálogo de reproducción de una simulación grabada. Cuando se
+     * cierra el diálogo se cierra también la grabación.
+     *
+     * @param parent Ventana padre del diálogo.
+     * @param replay Grabación que se reproduce.
+     */
+    public ReplayDialog(Window parent, SimulationReplay replay) {
+        super(parent);
+        m_replay = replay;
+
+        m_timer = new Timer(DEFAULT_INTERVAL, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                try {
+                    if (!m_replay.step())
+                        setPlaying(false);
+                    updatePosition();
+                } catch (IOException exc) {
+                    showError(exc);
+                }
+            }
+        });
+
+        buildInterface();
+        setResizable(false);
+        setModal(false);
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    }
+
+    /**
+     * Construye la interfaz gráfica y configura los listeners.
+     */
+    private void buildInterface() {
+        final Translations tr = MainWindow.getTranslations();
+
+        setTitle(tr.menu().replayTrace());
+        setLayout(new VerticalFlowLayout(0, 5));
+
+        m_position = new JSlider(0, (int) Math.min(m_replay.getStepCount(), Integer.MAX_VALUE), 0);
+        m_step = new JLabel();
+        m_play = new JButton(tr.button().run());
+        m_interval = new JSpinner(new SpinnerNumberModel(DEFAULT_INTERVAL, MIN_INTERVAL,
+                MAX_INTERVAL, 10));
+
+        JPanel position = new JPanel(new BorderLayout(5, 0));
+        position.add(new JLabel(tr.other().replayStep() + ":"), BorderLayout.WEST);
+        position.add(m_position, BorderLayout.CENTER);
+        position.add(m_step, BorderLayout.EAST);
+        position.setBorder(BorderFactory.createEmptyBorder(10, 5, 0, 5));
+
+        JPanel interval = new JPanel(new BorderLayout(5, 0));
+        interval.add(new JLabel(tr.other().stepInterval() + ":"), BorderLayout.WEST);
+        interval.add(m_interval, BorderLayout.CENTER);
+        interval.setBorder(BorderFactory.createEmptyBorder(0, 5, 0, 5));
+
+        JPanel buttons_panel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 0));
+        buttons_panel.add(m_play);
+
+        add(position);
+        add(interval);
+        add(buttons_panel);
+        updatePosition();
+        pack();
+
+        m_position.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                if (m_updating)
+                    return;
+
+                try {
+                    m_replay.seek(m_position.getValue());
+                    updatePosition();
+                } catch (IOException exc) {
+                    showError(exc);
+                }
+            }
+        });
+
+        m_interval.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                m_timer.setDelay((Integer) m_interval.getValue());
+            }
+        });
+
+        m_play.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // Si se ha llegado al final se vuelve a empezar
+                if (!m_timer.isRunning() && m_replay.getStep() == m_replay.getStepCount())
+                    m_position.setValue(0);
+
+                setPlaying(!m_timer.isRunning());
+            }
+        });
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                m_timer.stop();
+                try {
+                    m_replay.close();
+                } catch (IOException exc) {
+                    // La grabación sólo se estaba leyendo
+                }
+            }
+        });
+    }
+
+    /**
+     * Inicia o detiene la reproducción automática.
+     *
+     * @param playing Si se debe reproducir la grabación.
+     */
+    private void setPlaying(boolean playing) {
+        Translations tr = MainWindow.getTranslations();
+
+        if (playing) {
+            m_timer.start();
+            m_play.setText(tr.button().pause());
+        } else {
+            m_timer.stop();
+            m_play.setText(tr.button().run());
+        }
+    }
+
+    /**
+     * Actualiza el control deslizante y la etiqueta con el paso actual.
+     */
+    private void updatePosition() {
+        m_updating = true;
+        m_position.setValue((int) Math.min(m_replay.getStep(), Integer.MAX_VALUE));
+        m_step.setText(m_replay.getStep() + " / " + m_replay.getStepCount());
+        m_updating = false;
+    }
+
+    /**
+     * Detiene la reproducción y muestra un error de lectura de la grabación.
+     *
+     * @param exc Error producido.
+     */
+    private void showError(IOException exc) {
+        setPlaying(false);
+        JOptionPane.showMessageDialog(this, exc.getMessage(),
+                MainWindow.getTranslations().message().fileOpenFailed(), JOptionPane.ERROR_MESSAGE);
+    }
+
+}
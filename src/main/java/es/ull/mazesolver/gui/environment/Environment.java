@@ -105,12 +105,10 @@ public class Environment extends BaseInternalFrame {
                 Direction dir = selected.second;
                 Point adj = dir.movePoint(pos);
 
-                // Si las dos celdas están dentro, se crea/eliminan las dos paredes que
-                // las unen
-                if (m_maze.containsPoint(adj)) {
-                    m_maze.get(pos.y, pos.x).toggleWall(dir);
-                    m_maze.get(adj.y, adj.x).toggleWall(dir.getOpposite());
-                }
+                // Si las dos celdas están dentro, se crea/elimina la pared que las
+                // une
+                if (m_maze.containsPoint(adj))
+                    m_maze.toggleWall(pos.y, pos.x, dir);
                 // Si sólo una de las dos celdas está dentro hay que cambiar la posición
                 // de la salida a ese punto
                 else {
@@ -256,15 +254,16 @@ public class Environment extends BaseInternalFrame {
         // Si el agente está fuera del laberinto, no dejamos que se mueva. De esta
         // forma, cuando un agente sale del laberinto se queda quieto fuera del
         // mismo y no vuelve a entrar ni se va lejos de la salida.
-        if (!m_maze.containsPoint(pos) || m_maze.get(pos.y, pos.x).hasWall(dir))
+        if (!m_maze.containsPoint(pos) || m_maze.hasWall(pos.y, pos.x, dir))
             return MazeCell.Vision.WALL;
 
-        Point n_pos = dir.movePoint(pos);
-        if (!m_maze.containsPoint(n_pos))
+        int n_x = pos.x + dir.getDeltaX(), n_y = pos.y + dir.getDeltaY();
+        if (n_x < 0 || n_y < 0 || n_x >= m_maze.getWidth() || n_y >= m_maze.getHeight())
             return MazeCell.Vision.OFFLIMITS;
 
-        for (Agent ag : m_agents) {
-            if (ag.getX() == n_pos.getX() && ag.getY() == n_pos.getY())
+        for (int i = 0; i < m_agents.size(); i++) {
+            Agent ag = m_agents.get(i);
+            if (ag.getX() == n_x && ag.getY() == n_y)
                 return MazeCell.Vision.AGENT;
         }
 
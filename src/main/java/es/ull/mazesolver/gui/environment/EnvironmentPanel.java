@@ -26,13 +26,18 @@
 package es.ull.mazesolver.gui.environment;
 
 import es.ull.mazesolver.maze.Maze;
-import es.ull.mazesolver.maze.MazeCell;
 import es.ull.mazesolver.util.Direction;
 
 import javax.swing.JPanel;
+import java.awt.AlphaComposite;
 import java.awt.Color;
+import java.awt.Composite;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
 
 /**
  * Clase que permite dibujar el laberinto de un entorno en un panel. Controla
@@ -44,9 +49,42 @@ public class EnvironmentPanel extends JPanel {
     private static final float HUE_DIFF = 0.3f;
     private static final float SAT_BRI_THRESHOLD = 0.5f;
 
+    /**
+     * Número máximo de píxeles de la imagen intermedia en la que se guardan las
+     * paredes del laberinto. Los laberintos más grandes se dibujan directamente.
+     */
+    private static final long MAX_CACHE_PIXELS = 1L << 24;
+
+    /**
+     * Número máximo de bytes que pueden ocupar entre todas las imágenes
+     * intermedias de los paneles. Cuando se supera, los paneles que no tienen
+     * imagen intermedia dibujan el laberinto directamente.
+     */
+    private static final long MAX_TOTAL_CACHE_BYTES = 1L << 26;
+
+    /**
+     * Paleta de las imágenes intermedias: las paredes son lo único que se
+     * guarda en ellas, así que basta con un bit por píxel.
+     */
+    private static final IndexColorModel CACHE_COLORS = new IndexColorModel(1, 2,
+            new byte[] {0, 0}, new byte[] {0, 0}, new byte[] {0, 0}, new byte[] {0, (byte) 255});
+
+    private static long s_cache_bytes = 0;
+
+    /**
+     * Número máximo de cambios que se aplican uno a uno sobre la imagen
+     * intermedia. Si hay más, se vuelve a dibujar completa.
+     */
+    private static final int MAX_INCREMENTAL_CHANGES = 256;
+
     private static double s_zoom = 1.0;
     protected Environment m_env;
 
+    private transient BufferedImage m_cache;
+    private transient Maze m_cache_maze;
+    private transient long m_cache_stamp;
+    private transient double m_cache_cell_size;
+
     /**
      * Crea un nuevo panel de dibujo de entornos del entorno especificado.
      *
@@ -147,27 +185,185 @@ public class EnvironmentPanel extends JPanel {
         // cálculos de dimensiones
         double cell_sz = getCellSize();
 
-        // Dibujamos el laberinto.
+        // Si el laberinto cabe en la imagen intermedia, la actualizamos sólo con
+        // lo que haya cambiado y la copiamos. En otro caso, dibujamos sólo las
+        // celdas que caen dentro de la zona que hay que repintar.
+        if (updateCache(maze, cell_sz)) {
+            g.drawImage(m_cache, 0, 0, null);
+            return;
+        }
+
+        Rectangle clip = g.getClipBounds();
+        int x_min = 0, y_min = 0;
+        int x_max = maze.getWidth() - 1, y_max = maze.getHeight() - 1;
+        if (clip != null) {
+            x_min = Math.max(x_min, (int) (clip.x / cell_sz) - 1);
+            y_min = Math.max(y_min, (int) (clip.y / cell_sz) - 1);
+            x_max = Math.min(x_max, (int) ((clip.x + clip.width) / cell_sz));
+            y_max = Math.min(y_max, (int) ((clip.y + clip.height) / cell_sz));
+        }
+
+        drawWalls(g, maze, cell_sz, x_min, y_min, x_max, y_max);
+    }
+
+    /**
+     * Actualiza la imagen intermedia que contiene las paredes del laberinto. Si
+     * el laberinto no ha cambiado no se hace nada, si se conocen los cambios
+     * sólo se vuelven a dibujar las celdas afectadas y, en otro caso, se dibuja
+     * la imagen completa.
+     *
+     * @param maze    Laberinto a dibujar.
+     * @param cell_sz Tamaño de cada celda en píxeles.
+     * @return Si se puede utilizar la imagen intermedia. Si el laberinto es
+     * demasiado grande no se utiliza.
+     */
+    private boolean updateCache(Maze maze, double cell_sz) {
+        int width = (int) Math.round((maze.getWidth() + 2) * cell_sz);
+        int height = (int) Math.round((maze.getHeight() + 2) * cell_sz);
+        if ((long) width * height > MAX_CACHE_PIXELS || width <= 0 || height <= 0) {
+            releaseCache();
+            return false;
+        }
+
+        int changes = maze.getChangeCount(m_cache_stamp);
+        boolean full = m_cache == null || m_cache_maze != maze || m_cache_cell_size != cell_sz ||
+                       m_cache.getWidth() != width || m_cache.getHeight() != height ||
+                       changes < 0 || changes > MAX_INCREMENTAL_CHANGES;
+
+        if (!full && changes == 0)
+            return true;
+
+        if (full && (m_cache == null || m_cache.getWidth() != width || m_cache.getHeight() != height)) {
+            releaseCache();
+            if (s_cache_bytes + cacheBytes(width, height) > MAX_TOTAL_CACHE_BYTES)
+                return false;
+
+            m_cache = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, CACHE_COLORS);
+            s_cache_bytes += cacheBytes(width, height);
+        }
+
+        Graphics2D g = m_cache.createGraphics();
+        if (full) {
+            clear(g, 0, 0, width, height);
+            drawWalls(g, maze, cell_sz, 0, 0, maze.getWidth() - 1, maze.getHeight() - 1);
+        }
+        else {
+            for (int i = 0; i < changes; i++) {
+                long change = maze.getChange(m_cache_stamp, i);
+                Direction dir = Maze.getChangeDirection(change);
+                int row = maze.getChangeRow(change), column = maze.getChangeColumn(change);
+
+                // Zona que ocupan las dos celdas que separa la pared
+                int x0 = Math.min(column, column + dir.getDeltaX());
+                int y0 = Math.min(row, row + dir.getDeltaY());
+                int x1 = Math.max(column, column + dir.getDeltaX());
+                int y1 = Math.max(row, row + dir.getDeltaY());
+
+                int left = (int) Math.round((x0 + 1) * cell_sz) - 1;
+                int top = (int) Math.round((y0 + 1) * cell_sz) - 1;
+                int right = (int) Math.round((x1 + 2) * cell_sz) + 1;
+                int bottom = (int) Math.round((y1 + 2) * cell_sz) + 1;
+
+                g.setClip(left, top, right - left + 1, bottom - top + 1);
+                clear(g, left, top, right - left + 1, bottom - top + 1);
+                drawWalls(g, maze, cell_sz,
+                        Math.max(0, x0 - 1), Math.max(0, y0 - 1),
+                        Math.min(maze.getWidth() - 1, x1 + 1), Math.min(maze.getHeight() - 1, y1 + 1));
+            }
+        }
+        g.dispose();
+
+        m_cache_maze = maze;
+        m_cache_stamp = maze.getStamp();
+        m_cache_cell_size = cell_sz;
+        return true;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see javax.swing.JComponent#removeNotify()
+     */
+    @Override
+    public void removeNotify() {
+        // Los paneles que no se muestran (entornos cerrados o minimizados) no
+        // ocupan memoria con su imagen intermedia
+        releaseCache();
+        super.removeNotify();
+    }
+
+    /**
+     * Libera la imagen intermedia del panel, si la tiene.
+     */
+    private void releaseCache() {
+        if (m_cache != null) {
+            s_cache_bytes -= cacheBytes(m_cache.getWidth(), m_cache.getHeight());
+            m_cache = null;
+        }
+        m_cache_maze = null;
+    }
+
+    /**
+     * Calcula la memoria que ocupa una imagen intermedia.
+     *
+     * @param width  Anchura de la imagen.
+     * @param height Altura de la imagen.
+     * @return Número de bytes que ocupa la imagen.
+     */
+    private static long cacheBytes(int width, int height) {
+        return (long) ((width + 7) / 8) * height;
+    }
+
+    /**
+     * Borra una zona de la imagen intermedia, dejándola transparente.
+     *
+     * @param g      Contexto gráfico de la imagen.
+     * @param x      Posición X de la zona.
+     * @param y      Posición Y de la zona.
+     * @param width  Anchura de la zona.
+     * @param height Altura de la zona.
+     */
+    private static void clear(Graphics2D g, int x, int y, int width, int height) {
+        Composite composite = g.getComposite();
+        g.setComposite(AlphaComposite.Clear);
+        g.fillRect(x, y, width, height);
+        g.setComposite(composite);
+    }
+
+    /**
+     * Dibuja las paredes de las celdas de una zona rectangular del laberinto.
+     *
+     * @param g       Contexto gráfico en el que dibujar.
+     * @param maze    Laberinto a dibujar.
+     * @param cell_sz Tamaño de cada celda en píxeles.
+     * @param x_min   Primera columna.
+     * @param y_min   Primera fila.
+     * @param x_max   Última columna (incluida).
+     * @param y_max   Última fila (incluida).
+     */
+    private static void drawWalls(Graphics g, Maze maze, double cell_sz,
+                                  int x_min, int y_min, int x_max, int y_max) {
         g.setColor(Color.BLACK);
-        for (int x = 0; x < maze.getWidth(); x++) {
-            for (int y = 0; y < maze.getHeight(); y++) {
-                final MazeCell actual = maze.get(y, x);
-                Point pos =
-                        new Point((int) Math.round((x + 1) * cell_sz), (int) Math.round((y + 1) * cell_sz));
+        for (int y = y_min; y <= y_max; y++) {
+            int top = (int) Math.round((y + 1) * cell_sz);
+            int bottom = (int) Math.round((y + 2) * cell_sz);
+
+            for (int x = x_min; x <= x_max; x++) {
+                short walls = maze.getWalls(y, x);
+                int left = (int) Math.round((x + 1) * cell_sz);
+                int right = (int) Math.round((x + 2) * cell_sz);
 
-                if (y == 0 && actual.hasWall(Direction.UP))
-                    g.drawLine(pos.x, pos.y, (int) Math.round(pos.x + cell_sz), pos.y);
+                if (y == 0 && (walls & Direction.UP.val) != 0)
+                    g.drawLine(left, top, right, top);
 
-                if (actual.hasWall(Direction.DOWN))
-                    g.drawLine(pos.x, (int) Math.round(pos.y + cell_sz),
-                            (int) Math.round(pos.x + cell_sz), (int) Math.round(pos.y + cell_sz));
+                if ((walls & Direction.DOWN.val) != 0)
+                    g.drawLine(left, bottom, right, bottom);
 
-                if (x == 0 && actual.hasWall(Direction.LEFT))
-                    g.drawLine(pos.x, pos.y, pos.x, (int) Math.round(pos.y + cell_sz));
+                if (x == 0 && (walls & Direction.LEFT.val) != 0)
+                    g.drawLine(left, top, left, bottom);
 
-                if (actual.hasWall(Direction.RIGHT))
-                    g.drawLine((int) Math.round(pos.x + cell_sz), pos.y,
-                            (int) Math.round(pos.x + cell_sz), (int) Math.round(pos.y + cell_sz));
+                if ((walls & Direction.RIGHT.val) != 0)
+                    g.drawLine(right, top, right, bottom);
             }
         }
     }
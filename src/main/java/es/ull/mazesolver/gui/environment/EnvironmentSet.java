@@ -108,6 +108,17 @@ public class EnvironmentSet extends JScrollableDesktopPane {
         }
     }
 
+    /**
+     * Elimina todos los entornos del conjunto.
+     */
+    public void removeAllEnvironments() {
+        for (Environment env : m_envs)
+            remove(env);
+
+        m_envs.clear();
+        repaint();
+    }
+
     /**
      * Añade un agente al entorno seleccionado y actualiza la referencia al
      * entorno por si se trataba de un entorno simple y tras la adición de un
@@ -26,6 +26,11 @@
 package es.ull.mazesolver.maze;
 
 import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.maze.storage.CellWallStore;
+import es.ull.mazesolver.maze.storage.MappedWallStore;
+import es.ull.mazesolver.maze.storage.MazeFile;
+import es.ull.mazesolver.maze.storage.TiledWallStore;
+import es.ull.mazesolver.maze.storage.WallStore;
 import es.ull.mazesolver.util.Direction;
 
 import java.awt.Point;
@@ -33,15 +38,50 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 
 /**
  * Clase que representa un laberinto.
+ * <br><br>
+ * Las paredes se guardan en un {@link WallStore}, de manera que se pueden
+ * consultar y modificar sin crear ningún objeto a través de los métodos
+ * {@link Maze#hasWall}, {@link Maze#setWall}, {@link Maze#unsetWall} y
+ * {@link Maze#toggleWall}.
+ * <br><br>
+ * Cada modificación incrementa un sello de modificación
+ * ({@link Maze#getStamp}) y se anota en un registro circular de cambios, de
+ * manera que quien guarde el último sello que ha visto puede saber si el
+ * laberinto ha cambiado y, si el registro todavía los contiene, qué muros han
+ * cambiado desde entonces.
+ * <br><br>
+ * Además, el laberinto mantiene una huella de 64 bits de su contenido
+ * ({@link Maze#getFingerprint}) que no depende de su historia, de manera que
+ * dos laberintos con las mismas paredes y la misma salida tienen la misma
+ * huella aunque se hayan cargado de ficheros distintos.
  */
 public class Maze {
-    private ArrayList<ArrayList<MazeCell>> m_maze;
+    /**
+     * Número máximo de cambios que se guardan en el registro de cambios.
+     */
+    public static final int JOURNAL_SIZE = 1024;
+
+    private WallStore m_walls;
     private Point m_exit;
+    private MazeGraph m_graph;
+    private MazeDistanceField m_distances;
+    private SharedIndex m_shared;
+
+    private long m_fingerprint;
+    private boolean m_has_fingerprint;
+
+    private long m_stamp;
+    private long m_journal_start;
+    private long[] m_journal;
 
     /**
      * Crea un laberinto a partir de un algoritmo de generación de laberintos
@@ -51,13 +91,28 @@ public class Maze {
      */
     public Maze(MazeCreationAlgorithm alg) {
         if (alg != null) {
-            m_maze = alg.createMaze();
+            m_walls = alg.createMaze();
             m_exit = alg.getExit();
         } else
             throw new IllegalArgumentException(
                     MainWindow.getTranslations().exception().invalidMazeCreationAlgorithm());
     }
 
+    /**
+     * Crea un laberinto a partir de un almacén de paredes ya inicializado.
+     *
+     * @param walls Almacén con las paredes del laberinto.
+     * @param exit  Posición de la salida del laberinto.
+     */
+    public Maze(WallStore walls, Point exit) {
+        if (walls == null || exit == null)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().invalidMaze());
+
+        m_walls = walls;
+        m_exit = new Point(exit);
+    }
+
     /**
      * Crea un laberinto a partir de su versión serializada en un fichero.
      *
@@ -71,13 +126,18 @@ public class Maze {
 
     /**
      * Obtiene la celda situada en una posición concreta del laberinto.
+     * <br><br>
+     * La celda devuelta es una vista sobre el laberinto: las modificaciones que
+     * se hagan sobre ella se aplican directamente al laberinto. Es preferible
+     * utilizar {@link Maze#hasWall} y el resto de métodos de consulta directa,
+     * que no crean objetos.
      *
      * @param row    Fila.
      * @param column Columna.
      * @return Celda en la posición indicada.
      */
     public MazeCell get(int row, int column) {
-        return m_maze.get(row).get(column);
+        return new MazeCell(this, row, column);
     }
 
     /**
@@ -88,7 +148,332 @@ public class Maze {
      * @param cell   Celda que se quiere introducir.
      */
     public void set(int row, int column, MazeCell cell) {
-        m_maze.get(row).set(column, cell);
+        short walls = cell.getWalls();
+        short changed = (short) (m_walls.getWalls(row, column) ^ walls);
+        m_walls.setWalls(row, column, walls);
+
+        for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
+            Direction dir = Direction.fromIndex(i);
+            if ((changed & dir.val) != 0)
+                wallChanged(row, column, dir, (walls & dir.val) != 0);
+        }
+    }
+
+    /**
+     * Obtiene las paredes de una celda como un campo de bits.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @return Combinación de los valores {@link Direction#val} de las direcciones
+     * en las que la celda tiene pared.
+     */
+    public short getWalls(int row, int column) {
+        return m_walls.getWalls(row, column);
+    }
+
+    /**
+     * Indica si hay un muro en la dirección indicada de una celda.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda que se quiere consultar.
+     * @return Si hay una pared en esa dirección o no.
+     */
+    public boolean hasWall(int row, int column, Direction dir) {
+        return m_walls.hasWall(row, column, dir);
+    }
+
+    /**
+     * Indica si existe una pared horizontal del laberinto.
+     *
+     * @param row    Fila, entre 0 y el número de filas (incluido).
+     * @param column Columna.
+     * @return Si existe la pared superior de la celda o la inferior de la
+     * última fila si la fila es el número de filas.
+     */
+    public boolean hasHorizontalWall(int row, int column) {
+        return row < getHeight() ? hasWall(row, column, Direction.UP) :
+                                   hasWall(row - 1, column, Direction.DOWN);
+    }
+
+    /**
+     * Indica si existe una pared vertical del laberinto.
+     *
+     * @param row    Fila.
+     * @param column Columna, entre 0 y el número de columnas (incluido).
+     * @return Si existe la pared izquierda de la celda o la derecha de la
+     * última columna si la columna es el número de columnas.
+     */
+    public boolean hasVerticalWall(int row, int column) {
+        return column < getWidth() ? hasWall(row, column, Direction.LEFT) :
+                                     hasWall(row, column - 1, Direction.RIGHT);
+    }
+
+    /**
+     * Pone un muro en la dirección especificada de una celda y en el
+     * lado opuesto de su vecina, ya que ambas comparten la pared.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda que se quiere modificar.
+     */
+    public void setWall(int row, int column, Direction dir) {
+        if (dir != Direction.NONE && !m_walls.hasWall(row, column, dir)) {
+            m_walls.setWall(row, column, dir);
+            wallChanged(row, column, dir, true);
+        }
+    }
+
+    /**
+     * Quita el muro en la dirección especificada de una celda y en el
+     * lado opuesto de su vecina, ya que ambas comparten la pared.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda que se quiere modificar.
+     */
+    public void unsetWall(int row, int column, Direction dir) {
+        if (m_walls.hasWall(row, column, dir)) {
+            m_walls.unsetWall(row, column, dir);
+            wallChanged(row, column, dir, false);
+        }
+    }
+
+    /**
+     * Cambia el estado de la pared en la dirección especificada de una celda.
+     * La celda vecina comparte la pared, así que también ve el cambio.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda que se quiere modificar.
+     */
+    public void toggleWall(int row, int column, Direction dir) {
+        if (dir != Direction.NONE) {
+            m_walls.toggleWall(row, column, dir);
+            wallChanged(row, column, dir, m_walls.hasWall(row, column, dir));
+        }
+    }
+
+    /**
+     * Elimina todas las paredes del laberinto, incluidas las del contorno.
+     */
+    public void removeWalls() {
+        m_walls.fill((short) 0);
+        m_graph = null;
+        m_distances = null;
+        m_shared = null;
+        m_has_fingerprint = false;
+        resetJournal();
+    }
+
+    /**
+     * Obtiene el sello de modificación del laberinto. Es un número que aumenta
+     * cada vez que cambia alguna pared, así que si no ha cambiado desde la
+     * última vez que se consultó, el laberinto tampoco ha cambiado.
+     *
+     * @return Sello de modificación actual.
+     */
+    public long getStamp() {
+        return m_stamp;
+    }
+
+    /**
+     * Obtiene la huella del contenido del laberinto. Se calcula combinando
+     * mediante XOR una clave pseudoaleatoria por cada pared presente, otra por la
+     * posición de la salida y otra por las dimensiones del laberinto (hashing de
+     * Zobrist), así que sólo se recorre el laberinto completo la primera vez que
+     * se solicita. A partir de entonces cada cambio de pared la actualiza en
+     * tiempo constante.
+     * <br><br>
+     * Dos laberintos con la misma huella tienen, con una probabilidad
+     * abrumadora, el mismo contenido, así que sirve como clave para guardar
+     * resultados asociados a un laberinto o para detectar laberintos repetidos.
+     * Al contrario que el sello de modificación, vuelve a su valor anterior si se
+     * deshace un cambio.
+     *
+     * @return Huella de 64 bits del contenido del laberinto.
+     */
+    public long getFingerprint() {
+        if (!m_has_fingerprint) {
+            int rows = getHeight(), columns = getWidth();
+            long fingerprint = mix(((long) rows << 32) | columns) ^ exitKey(m_exit);
+
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < columns; x++) {
+                    if (m_walls.hasWall(y, x, Direction.UP))
+                        fingerprint ^= wallKey(y, x, Direction.UP);
+                    if (m_walls.hasWall(y, x, Direction.LEFT))
+                        fingerprint ^= wallKey(y, x, Direction.LEFT);
+                }
+                if (m_walls.hasWall(y, columns - 1, Direction.RIGHT))
+                    fingerprint ^= wallKey(y, columns - 1, Direction.RIGHT);
+            }
+            for (int x = 0; x < columns; x++)
+                if (m_walls.hasWall(rows - 1, x, Direction.DOWN))
+                    fingerprint ^= wallKey(rows - 1, x, Direction.DOWN);
+
+            m_fingerprint = fingerprint;
+            m_has_fingerprint = true;
+        }
+
+        return m_fingerprint;
+    }
+
+    /**
+     * Indica si otro laberinto tiene el mismo contenido que éste. Las
+     * instantáneas obtenidas con {@link Maze#snapshot()} y los laberintos
+     * cargados varias veces son objetos distintos, así que los resultados de
+     * las simulaciones se agrupan con este criterio y no por referencia.
+     *
+     * @param other Laberinto con el que comparar.
+     * @return Si ambos laberintos tienen las mismas dimensiones, la misma salida
+     * y la misma huella.
+     */
+    public boolean sameContent(Maze other) {
+        if (other == this)
+            return true;
+
+        return other != null && other.getWidth() == getWidth() && other.getHeight() == getHeight() &&
+               other.m_exit.equals(m_exit) && other.getFingerprint() == getFingerprint();
+    }
+
+    /**
+     * Obtiene el número de cambios hechos en el laberinto desde un sello de
+     * modificación, si todavía se pueden consultar en el registro de cambios.
+     *
+     * @param since Sello de modificación a partir del cual se quieren conocer
+     *              los cambios.
+     * @return Número de cambios desde ese sello o -1 si el registro ya no los
+     * contiene todos y hay que considerar que ha cambiado todo el laberinto.
+     */
+    public int getChangeCount(long since) {
+        if (since < m_journal_start || since > m_stamp || m_stamp - since > JOURNAL_SIZE)
+            return -1;
+
+        return (int) (m_stamp - since);
+    }
+
+    /**
+     * Obtiene uno de los cambios hechos en el laberinto desde un sello de
+     * modificación. Para interpretar el cambio se utilizan los métodos
+     * {@link Maze#getChangeRow}, {@link Maze#getChangeColumn},
+     * {@link Maze#getChangeDirection} y {@link Maze#isChangeWall}.
+     *
+     * @param since Sello de modificación a partir del cual se consultan los
+     *              cambios.
+     * @param index Índice del cambio, menor que el valor devuelto por
+     *              {@link Maze#getChangeCount}.
+     * @return El cambio codificado.
+     */
+    public long getChange(long since, int index) {
+        return m_journal[(int) ((since + index) & (JOURNAL_SIZE - 1))];
+    }
+
+    /**
+     * @param change Cambio obtenido con {@link Maze#getChange}.
+     * @return Fila de la celda cuya pared cambió.
+     */
+    public int getChangeRow(long change) {
+        return (int) ((change >>> 4) / getWidth());
+    }
+
+    /**
+     * @param change Cambio obtenido con {@link Maze#getChange}.
+     * @return Columna de la celda cuya pared cambió.
+     */
+    public int getChangeColumn(long change) {
+        return (int) ((change >>> 4) % getWidth());
+    }
+
+    /**
+     * @param change Cambio obtenido con {@link Maze#getChange}.
+     * @return Lado de la celda en el que cambió la pared.
+     */
+    public static Direction getChangeDirection(long change) {
+        return Direction.fromIndex((int) ((change >>> 1) & 0x7));
+    }
+
+    /**
+     * @param change Cambio obtenido con {@link Maze#getChange}.
+     * @return Si el cambio puso una pared (true) o la quitó (false).
+     */
+    public static boolean isChangeWall(long change) {
+        return (change & 0x1) != 0;
+    }
+
+    /**
+     * Obtiene el índice de adyacencia del laberinto, construyéndolo la primera
+     * vez que se solicita. El índice se mantiene actualizado con los cambios
+     * que se hagan sobre las paredes a través de esta clase.
+     *
+     * @return Índice de adyacencia del laberinto.
+     */
+    public MazeGraph getGraph() {
+        if (m_graph == null) {
+            if (m_shared != null)
+                return m_shared.getGraph();
+
+            m_graph = new MazeGraph(this);
+        }
+
+        return m_graph;
+    }
+
+    /**
+     * Obtiene el campo de distancias hasta la salida del laberinto,
+     * calculándolo la primera vez que se solicita. Al igual que el índice de
+     * adyacencia, se repara automáticamente con los cambios que se hagan sobre
+     * las paredes a través de esta clase, así que todos los agentes que se
+     * muevan por este laberinto pueden compartirlo.
+     *
+     * @return Campo de distancias hasta la salida.
+     */
+    public MazeDistanceField getDistanceField() {
+        if (m_distances == null) {
+            if (m_shared != null)
+                return m_shared.getDistanceField();
+
+            m_distances = new MazeDistanceField(getGraph());
+        }
+
+        return m_distances;
+    }
+
+    /**
+     * Crea una instantánea del laberinto con copia en escritura. La instantánea
+     * y el laberinto original comparten sus paredes por bloques y sólo se
+     * duplican los bloques que alguno de los dos modifica, así que se pueden
+     * tener muchas instantáneas de un laberinto grande sin multiplicar la
+     * memoria utilizada.
+     * <br><br>
+     * La primera vez que se llama, el laberinto pasa a guardar sus paredes en
+     * un {@link TiledWallStore} que lee del almacén anterior. Si éste estaba
+     * proyectado sobre un fichero, los cambios posteriores ya no se guardan en
+     * él.
+     * <br><br>
+     * Mientras no se modifiquen, todas las instantáneas comparten también el
+     * índice de adyacencia y el campo de distancias, que sólo se construyen una
+     * vez. La primera que cambie deja de compartirlos y, si los necesita,
+     * construye los suyos.
+     *
+     * @return Una instantánea independiente del laberinto.
+     */
+    public Maze snapshot() {
+        if (!(m_walls instanceof TiledWallStore))
+            m_walls = new TiledWallStore(m_walls);
+
+        // Los índices compartidos se construyen sobre una instantánea que no se
+        // modifica nunca, de manera que sigan siendo válidos cambie quien cambie.
+        // Si este laberinto ya tiene los suyos, los conserva
+        if (m_shared == null)
+            m_shared = new SharedIndex(new Maze(((TiledWallStore) m_walls).snapshot(), m_exit));
+
+        Maze snapshot = new Maze(((TiledWallStore) m_walls).snapshot(), m_exit);
+        snapshot.m_fingerprint = m_fingerprint;
+        snapshot.m_has_fingerprint = m_has_fingerprint;
+        snapshot.m_shared = m_shared;
+
+        return snapshot;
     }
 
     /**
@@ -97,7 +482,7 @@ public class Maze {
      * @return Anchura (en celdas) del laberinto.
      */
     public int getWidth() {
-        return m_maze.get(0).size();
+        return m_walls.getColumns();
     }
 
     /**
@@ -106,7 +491,7 @@ public class Maze {
      * @return Altura (en celdas) del laberinto.
      */
     public int getHeight() {
-        return m_maze.size();
+        return m_walls.getRows();
     }
 
     /**
@@ -128,15 +513,18 @@ public class Maze {
         if (dir.isHorizontal() && pos >= getHeight())
             return;
 
+        if (m_has_fingerprint)
+            m_fingerprint ^= exitKey(m_exit);
+
         // Tapamos la salida anterior antes de modificar su posición
         if (m_exit.x < 0)
-            m_maze.get(m_exit.y).get(0).setWall(Direction.LEFT);
+            setWall(m_exit.y, 0, Direction.LEFT);
         else if (m_exit.x >= getWidth())
-            m_maze.get(m_exit.y).get(getWidth() - 1).setWall(Direction.RIGHT);
+            setWall(m_exit.y, getWidth() - 1, Direction.RIGHT);
         else if (m_exit.y < 0)
-            m_maze.get(0).get(m_exit.x).setWall(Direction.UP);
+            setWall(0, m_exit.x, Direction.UP);
         else if (m_exit.y >= getHeight())
-            m_maze.get(getHeight() - 1).get(m_exit.x).setWall(Direction.DOWN);
+            setWall(getHeight() - 1, m_exit.x, Direction.DOWN);
 
         // Modificamos la salida del laberinto y abrimos la pared
         switch (dir) {
@@ -156,8 +544,14 @@ public class Maze {
                 break;
         }
 
-        m_maze.get(m_exit.y).get(m_exit.x).unsetWall(dir);
+        unsetWall(m_exit.y, m_exit.x, dir);
         m_exit.setLocation(dir.movePoint(m_exit));
+        if (m_has_fingerprint)
+            m_fingerprint ^= exitKey(m_exit);
+        m_walls.exitChanged(m_exit);
+        m_shared = null;
+        if (m_graph != null)
+            m_graph.exitChanged(m_exit);
     }
 
     /**
@@ -180,30 +574,49 @@ public class Maze {
     }
 
     /**
-     * Carga una instancia de laberinto de un fichero que contiene una instancia
-     * de esta clase serializada.
+     * Carga un laberinto de un fichero guardado con {@link Maze#saveFile}.
+     * <br><br>
+     * El fichero se lee de manera secuencial a través de un
+     * {@link FileChannel} en el formato descrito en {@link MazeFile}. También se
+     * aceptan los ficheros antiguos, que contenían una instancia de esta clase
+     * serializada (ya sea el almacén de paredes o la matriz de objetos
+     * {@link MazeCell}). Se distinguen por la cabecera de la serialización de
+     * Java.
      *
      * @param fileName Nombre del fichero del que cargar el laberinto.
      * @throws IOException Cuando no se encuentra el fichero, no se puede abrir para su
      *                     lectura o no contiene un laberinto válido.
      */
-    @SuppressWarnings("unchecked")
     public void loadFile(String fileName) throws IOException {
+        FileInputStream fileIn = new FileInputStream(fileName);
         try {
-            FileInputStream fileIn = new FileInputStream(fileName);
-            ObjectInputStream in = new ObjectInputStream(fileIn);
-            m_maze = (ArrayList<ArrayList<MazeCell>>) in.readObject();
-            m_exit = (Point) in.readObject();
-            in.close();
+            FileChannel channel = fileIn.getChannel();
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            channel.read(magic);
+            channel.position(0);
+
+            if (magic.position() == 2 && magic.getShort(0) == ObjectStreamConstants.STREAM_MAGIC)
+                loadLegacyFile(fileIn);
+            else {
+                MazeFile.Header header = MazeFile.readHeader(channel);
+                m_walls = MazeFile.readWalls(channel, header);
+                m_exit = header.exit;
+            }
+        } finally {
             fileIn.close();
-        } catch (ClassNotFoundException c) {
-            throw new IOException(c);
         }
+
+        m_graph = null;
+        m_distances = null;
+        m_shared = null;
+        m_has_fingerprint = false;
+        resetJournal();
     }
 
     /**
-     * Guarda la actual instancia de la clase {@link Maze} en un fichero mediante
-     * su serialización.
+     * Guarda el laberinto en un fichero en el formato binario descrito en
+     * {@link MazeFile}, escribiéndolo de manera secuencial a través de un
+     * {@link FileChannel}.
      *
      * @param fileName Nombre del fichero donde guardar el laberinto.
      * @throws IOException Cuando el fichero no se puede abrir o no se tienen permisos de
@@ -211,11 +624,220 @@ public class Maze {
      */
     public void saveFile(String fileName) throws IOException {
         FileOutputStream fileOut = new FileOutputStream(fileName);
-        ObjectOutputStream out = new ObjectOutputStream(fileOut);
-        out.writeObject(m_maze);
-        out.writeObject(m_exit);
-        out.close();
-        fileOut.close();
+        try {
+            MazeFile.write(fileOut.getChannel(), m_walls, m_exit);
+        } finally {
+            fileOut.close();
+        }
+    }
+
+    /**
+     * Escribe el laberinto en el formato descrito en {@link MazeFile} a través
+     * de un canal secuencial cualquiera, que puede estar sobre un flujo
+     * comprimido o en memoria.
+     *
+     * @param channel Canal de salida.
+     * @throws IOException Si no se puede escribir en el canal.
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        MazeFile.write(channel, m_walls, m_exit);
+    }
+
+    /**
+     * Lee un laberinto escrito con {@link Maze#write(WritableByteChannel)}.
+     *
+     * @param channel Canal de entrada.
+     * @return El laberinto leído.
+     * @throws IOException Si no se puede leer el canal o no contiene un
+     *                     laberinto válido.
+     */
+    public static Maze read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MazeFile.HEADER_SIZE);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+        buffer.flip();
+
+        MazeFile.Header header = MazeFile.readHeader(buffer);
+        return new Maze(MazeFile.readWalls(channel, header), header.exit);
+    }
+
+    /**
+     * Abre un laberinto guardado en el formato empaquetado descrito en
+     * {@link MazeFile} proyectándolo en memoria. Las paredes no se cargan al
+     * abrirlo, sino a medida que se consultan, así que se pueden abrir laberintos
+     * más grandes que la memoria disponible.
+     *
+     * @param fileName  Nombre del fichero.
+     * @param read_only Si se quiere abrir en modo de sólo lectura. En caso
+     *                  contrario, los cambios en el laberinto se guardan en el
+     *                  fichero.
+     * @return El laberinto proyectado sobre el fichero.
+     * @throws IOException Cuando el fichero no se puede abrir o no contiene un
+     *                     laberinto válido.
+     */
+    public static Maze map(String fileName, boolean read_only) throws IOException {
+        MappedWallStore walls = new MappedWallStore(fileName, read_only);
+        return new Maze(walls, walls.getExit());
+    }
+
+    /**
+     * Abre un laberinto guardado en el formato empaquetado descrito en
+     * {@link MazeFile} mediante una proyección privada. El laberinto se puede
+     * editar, pero los cambios se quedan en memoria y sólo llegan a un fichero
+     * si se guarda explícitamente con {@link Maze#saveMapped}. El fichero debe
+     * tener permiso de escritura.
+     *
+     * @param fileName Nombre del fichero.
+     * @return El laberinto proyectado sobre el fichero.
+     * @throws IOException Cuando el fichero no se puede abrir o no contiene un
+     *                     laberinto válido.
+     */
+    public static Maze mapPrivate(String fileName) throws IOException {
+        MappedWallStore walls = MappedWallStore.openPrivate(fileName);
+        return new Maze(walls, walls.getExit());
+    }
+
+    /**
+     * Guarda el laberinto en el formato empaquetado descrito en {@link MazeFile},
+     * que se puede abrir posteriormente mediante {@link Maze#map}.
+     *
+     * @param fileName Nombre del fichero donde guardar el laberinto.
+     * @throws IOException Cuando el fichero no se puede crear.
+     */
+    public void saveMapped(String fileName) throws IOException {
+        MappedWallStore.create(fileName, m_walls, m_exit).flush();
+    }
+
+    /**
+     * Anota en el registro que ha cambiado una pared, actualiza la huella y
+     * notifica al índice de adyacencia y al campo de distancias, si existen. Si
+     * eran compartidos con otras instantáneas, se dejan de utilizar.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda que ha cambiado.
+     * @param wall   Si ahora hay pared o no.
+     */
+    private void wallChanged(int row, int column, Direction dir, boolean wall) {
+        if (m_journal == null)
+            m_journal = new long[JOURNAL_SIZE];
+
+        long cell = (long) row * getWidth() + column;
+        m_journal[(int) (m_stamp & (JOURNAL_SIZE - 1))] =
+                (cell << 4) | (dir.ordinal() << 1) | (wall ? 1 : 0);
+        m_stamp++;
+
+        if (m_has_fingerprint)
+            m_fingerprint ^= wallKey(row, column, dir);
+        m_shared = null;
+        if (m_graph != null)
+            m_graph.wallChanged(row, column, dir);
+        if (m_distances != null)
+            m_distances.wallChanged(row, column, dir);
+    }
+
+    /**
+     * Marca que ha cambiado todo el laberinto, de manera que los cambios
+     * anteriores ya no se pueden consultar en el registro.
+     */
+    private void resetJournal() {
+        m_stamp++;
+        m_journal_start = m_stamp;
+    }
+
+    /**
+     * Obtiene la clave de Zobrist de una pared. Cada pared se identifica por su
+     * posición entre las paredes horizontales o verticales del laberinto, de
+     * manera que los dos lados de una pared compartida tienen la misma clave.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda.
+     * @return Clave de la pared.
+     */
+    private long wallKey(int row, int column, Direction dir) {
+        long columns = getWidth();
+        long horizontal = (getHeight() + 1) * columns;
+
+        switch (dir) {
+            case UP:
+                return mix(row * columns + column);
+            case DOWN:
+                return mix((row + 1) * columns + column);
+            case LEFT:
+                return mix(horizontal + row * (columns + 1) + column);
+            case RIGHT:
+                return mix(horizontal + row * (columns + 1) + column + 1);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Obtiene la clave de Zobrist de una posición de la salida.
+     *
+     * @param exit Posición de la salida.
+     * @return Clave de la salida.
+     */
+    private static long exitKey(Point exit) {
+        return mix(~(((long) exit.x << 32) | (exit.y & 0xFFFFFFFFL)));
+    }
+
+    /**
+     * Función de mezcla de SplitMix64, que convierte un identificador en una
+     * clave pseudoaleatoria de 64 bits sin necesidad de guardar una tabla.
+     *
+     * @param x Identificador.
+     * @return Clave asociada al identificador.
+     */
+    private static long mix(long x) {
+        long z = x + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Carga el laberinto de un fichero en el formato antiguo, que contiene el
+     * almacén de paredes o la matriz de celdas serializados, seguidos de la
+     * posición de la salida.
+     *
+     * @param fileIn Fichero abierto, situado al principio.
+     * @throws IOException Si el fichero no contiene un laberinto válido.
+     */
+    @SuppressWarnings("unchecked")
+    private void loadLegacyFile(FileInputStream fileIn) throws IOException {
+        try {
+            ObjectInputStream in = new ObjectInputStream(fileIn);
+            Object walls = in.readObject();
+            m_exit = (Point) in.readObject();
+
+            if (walls instanceof WallStore)
+                m_walls = (WallStore) walls;
+            else
+                m_walls = fromCells((ArrayList<ArrayList<MazeCell>>) walls);
+        } catch (ClassNotFoundException | ClassCastException c) {
+            throw new IOException(c);
+        }
+    }
+
+    /**
+     * Convierte una matriz de celdas, tal y como se guardaba antiguamente el
+     * laberinto, en un almacén de paredes.
+     *
+     * @param cells Matriz de celdas.
+     * @return Almacén con las mismas paredes que la matriz.
+     */
+    private static WallStore fromCells(ArrayList<ArrayList<MazeCell>> cells) {
+        WallStore walls = new CellWallStore(cells.size(), cells.get(0).size());
+        for (int y = 0; y < walls.getRows(); y++) {
+            ArrayList<MazeCell> row = cells.get(y);
+            for (int x = 0; x < walls.getColumns(); x++)
+                walls.setWalls(y, x, row.get(x).getWalls());
+        }
+
+        return walls;
     }
 
     /**
@@ -243,4 +865,46 @@ public class Maze {
     public static int perfectMazeEdges(int rows, int columns) {
         return (rows * columns) - 1;
     }
+
+    /**
+     * Índice de adyacencia y campo de distancias que comparten un laberinto y
+     * sus instantáneas mientras ninguno de ellos cambia. Se construyen la
+     * primera vez que alguno los necesita, a partir de una instantánea propia
+     * que no se modifica.
+     */
+    private static class SharedIndex {
+        private final Maze m_frozen;
+        private MazeGraph m_graph;
+        private MazeDistanceField m_distances;
+
+        /**
+         * Constructor.
+         *
+         * @param frozen Instantánea sobre la que se construyen los índices.
+         */
+        SharedIndex(Maze frozen) {
+            m_frozen = frozen;
+        }
+
+        /**
+         * @return Índice de adyacencia compartido.
+         */
+        synchronized MazeGraph getGraph() {
+            if (m_graph == null)
+                m_graph = new MazeGraph(m_frozen);
+
+            return m_graph;
+        }
+
+        /**
+         * @return Campo de distancias compartido.
+         */
+        synchronized MazeDistanceField getDistanceField() {
+            if (m_distances == null)
+                m_distances = new MazeDistanceField(getGraph());
+
+            return m_distances;
+        }
+    }
+
 }
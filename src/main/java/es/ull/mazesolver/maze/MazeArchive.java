@@ -0,0 +1,398 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeArchive.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.maze.storage.MazeFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Fichero que contiene muchos laberintos, pensado para guardar colecciones
+ * grandes de laberintos generados.
+ * <br><br>
+ * Cada laberinto se guarda en el formato descrito en {@link MazeFile},
+ * comprimido de manera independiente con Deflate. Al final del fichero hay un
+ * índice con la posición, el tamaño comprimido, las dimensiones y la huella
+ * ({@link Maze#getFingerprint}) de cada laberinto, seguido de una cola de
+ * {@link MazeArchive#TRAILER_SIZE} bytes que indica dónde empieza el índice:
+ * <ul>
+ * <li>Cabecera: número mágico ({@code int}), versión ({@code short}),
+ * opciones ({@code short}) y 8 bytes reservados.</li>
+ * <li>Bloques comprimidos, uno por laberinto.</li>
+ * <li>Índice: para cada laberinto, posición y tamaño del bloque
+ * ({@code long}), huella ({@code long}), filas y columnas ({@code int}).</li>
+ * <li>Cola: posición del índice ({@code long}), número de laberintos
+ * ({@code int}) y número mágico ({@code int}).</li>
+ * </ul>
+ * El índice se proyecta en memoria al abrir el fichero, así que se puede
+ * recorrer la colección completa sin descomprimir ningún laberinto, y cargar
+ * uno cualquiera sólo requiere leer y descomprimir su bloque.
+ */
+public class MazeArchive implements Closeable {
+    /**
+     * Número mágico que identifica los ficheros en este formato ("MZAR").
+     */
+    public static final int MAGIC = 0x4D5A4152;
+
+    /**
+     * Versión actual del formato.
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * Tamaño de la cabecera en bytes.
+     */
+    public static final int HEADER_SIZE = 16;
+
+    /**
+     * Tamaño de la cola del fichero en bytes.
+     */
+    public static final int TRAILER_SIZE = 16;
+
+    /**
+     * Tamaño de cada entrada del índice en bytes.
+     */
+    public static final int ENTRY_SIZE = 32;
+
+    private RandomAccessFile m_file;
+    private FileChannel m_channel;
+    private MappedByteBuffer m_index;
+    private int m_count;
+
+    /**
+     * Abre un fichero de laberintos y proyecta su índice en memoria.
+     *
+     * @param fileName Nombre del fichero.
+     * @throws IOException Si no se puede abrir el fichero o no es válido.
+     */
+    public MazeArchive(String fileName) throws IOException {
+        m_file = new RandomAccessFile(fileName, "r");
+        try {
+            m_channel = m_file.getChannel();
+            long size = m_channel.size();
+
+            ByteBuffer header = readFully(HEADER_SIZE, 0);
+            if (size < HEADER_SIZE + TRAILER_SIZE || header.getInt() != MAGIC || header.getShort() != VERSION)
+                throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+            ByteBuffer trailer = readFully(TRAILER_SIZE, size - TRAILER_SIZE);
+            long index = trailer.getLong();
+            m_count = trailer.getInt();
+            if (trailer.getInt() != MAGIC || m_count < 0 || index < HEADER_SIZE ||
+                index + (long) m_count * ENTRY_SIZE != size - TRAILER_SIZE)
+                throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+            m_index = m_channel.map(FileChannel.MapMode.READ_ONLY, index, (long) m_count * ENTRY_SIZE);
+        } catch (IOException e) {
+            m_file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Crea un fichero de laberintos vacío al que se pueden ir añadiendo
+     * laberintos.
+     *
+     * @param fileName Nombre del fichero.
+     * @return Objeto con el que añadir laberintos al fichero.
+     * @throws IOException Si no se puede crear el fichero.
+     */
+    public static Writer create(String fileName) throws IOException {
+        return new Writer(fileName);
+    }
+
+    /**
+     * @return Número de laberintos que contiene el fichero.
+     */
+    public int size() {
+        return m_count;
+    }
+
+    /**
+     * @param index Índice del laberinto.
+     * @return Número de filas del laberinto.
+     */
+    public int getRows(int index) {
+        return m_index.getInt(entry(index) + 24);
+    }
+
+    /**
+     * @param index Índice del laberinto.
+     * @return Número de columnas del laberinto.
+     */
+    public int getColumns(int index) {
+        return m_index.getInt(entry(index) + 28);
+    }
+
+    /**
+     * @param index Índice del laberinto.
+     * @return Huella del contenido del laberinto.
+     */
+    public long getFingerprint(int index) {
+        return m_index.getLong(entry(index) + 16);
+    }
+
+    /**
+     * Busca un laberinto a partir de su huella sin descomprimir ninguno.
+     *
+     * @param fingerprint Huella del laberinto, obtenida con
+     *                    {@link Maze#getFingerprint}.
+     * @return Índice del primer laberinto con esa huella o -1 si no hay ninguno.
+     */
+    public int find(long fingerprint) {
+        for (int i = 0; i < m_count; i++)
+            if (getFingerprint(i) == fingerprint)
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * Carga uno de los laberintos del fichero, leyendo y descomprimiendo sólo
+     * su bloque.
+     *
+     * @param index Índice del laberinto.
+     * @return Laberinto cargado.
+     * @throws IOException Si el bloque no se puede leer o no es válido.
+     */
+    public Maze load(int index) throws IOException {
+        long offset = m_index.getLong(entry(index));
+        long length = m_index.getLong(entry(index) + 8);
+        if (length < 0 || length > Integer.MAX_VALUE - 8)
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+        ByteBuffer block = readFully((int) length, offset);
+
+        // El descompresor reserva memoria nativa, que se libera aunque el bloque
+        // no sea válido
+        Inflater inflater = new Inflater();
+        try {
+            return Maze.read(Channels.newChannel(
+                    new InflaterInputStream(new ByteArrayInputStream(block.array()), inflater)));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Carga todos los laberintos del fichero.
+     *
+     * @return Vector con los laberintos en el orden en el que se guardaron.
+     * @throws IOException Si algún bloque no se puede leer o no es válido.
+     */
+    public Maze[] loadAll() throws IOException {
+        Maze[] mazes = new Maze[m_count];
+        for (int i = 0; i < m_count; i++)
+            mazes[i] = load(i);
+
+        return mazes;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        m_file.close();
+    }
+
+    /**
+     * Calcula la posición de una entrada en el índice.
+     *
+     * @param index Índice del laberinto.
+     * @return Posición de la entrada dentro del índice proyectado.
+     */
+    private int entry(int index) {
+        if (index < 0 || index >= m_count)
+            throw new IndexOutOfBoundsException(Integer.toString(index));
+
+        return index * ENTRY_SIZE;
+    }
+
+    /**
+     * Lee un fragmento del fichero completo.
+     *
+     * @param length Número de bytes a leer.
+     * @param offset Posición del fichero en la que empezar a leer.
+     * @return Buffer preparado para leer su contenido.
+     * @throws IOException Si el fichero se acaba antes de tiempo.
+     */
+    private ByteBuffer readFully(int length, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            int read = m_channel.read(buffer, offset + buffer.position());
+            if (read < 0)
+                throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+        }
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Escribe un fichero de laberintos de manera secuencial. El índice se
+     * escribe al cerrarlo, así que el fichero no es válido hasta entonces.
+     */
+    public static class Writer implements Closeable {
+        private FileOutputStream m_out;
+        private FileChannel m_channel;
+        private Deflater m_deflater;
+
+        private long[] m_entries;
+        private int m_count;
+
+        /**
+         * Crea el fichero y escribe su cabecera.
+         *
+         * @param fileName Nombre del fichero.
+         * @throws IOException Si no se puede crear el fichero.
+         */
+        private Writer(String fileName) throws IOException {
+            m_out = new FileOutputStream(fileName);
+            m_channel = m_out.getChannel();
+            m_deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            m_entries = new long[4 * 16];
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort(VERSION);
+            header.putShort((short) 0);
+            header.putLong(0);
+            header.flip();
+            write(header);
+        }
+
+        /**
+         * @return Número de laberintos añadidos hasta el momento.
+         */
+        public int size() {
+            return m_count;
+        }
+
+        /**
+         * Añade un laberinto al final del fichero, comprimido en un bloque
+         * independiente.
+         *
+         * @param maze Laberinto a añadir.
+         * @return Índice del laberinto dentro del fichero.
+         * @throws IOException Si no se puede escribir en el fichero.
+         */
+        public int add(Maze maze) throws IOException {
+            long offset = m_channel.position();
+
+            // El flujo comprimido no debe cerrar el fichero al terminar el bloque
+            OutputStream block = new FilterOutputStream(m_out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+
+            m_deflater.reset();
+            DeflaterOutputStream out = new DeflaterOutputStream(block, m_deflater, 1 << 16);
+            maze.write(Channels.newChannel(out));
+            out.finish();
+
+            if (m_count * 4 == m_entries.length)
+                m_entries = Arrays.copyOf(m_entries, m_entries.length * 2);
+
+            int first = m_count * 4;
+            m_entries[first] = offset;
+            m_entries[first + 1] = m_channel.position() - offset;
+            m_entries[first + 2] = maze.getFingerprint();
+            m_entries[first + 3] = ((long) maze.getHeight() << 32) | maze.getWidth();
+
+            return m_count++;
+        }
+
+        /**
+         * Escribe el índice y la cola del fichero y lo cierra.
+         *
+         * @throws IOException Si no se puede escribir en el fichero.
+         */
+        @Override
+        public void close() throws IOException {
+            if (m_channel == null)
+                return;
+
+            try {
+                long index = m_channel.position();
+                ByteBuffer buffer = ByteBuffer.allocate(m_count * ENTRY_SIZE + TRAILER_SIZE);
+                for (int i = 0; i < m_count * 4; i += 4) {
+                    buffer.putLong(m_entries[i]);
+                    buffer.putLong(m_entries[i + 1]);
+                    buffer.putLong(m_entries[i + 2]);
+                    buffer.putInt((int) (m_entries[i + 3] >>> 32));
+                    buffer.putInt((int) m_entries[i + 3]);
+                }
+                buffer.putLong(index);
+                buffer.putInt(m_count);
+                buffer.putInt(MAGIC);
+                buffer.flip();
+                write(buffer);
+            } finally {
+                m_deflater.end();
+                m_out.close();
+                m_channel = null;
+            }
+        }
+
+        /**
+         * Escribe un buffer completo en la posición actual del fichero.
+         *
+         * @param buffer Buffer a escribir.
+         * @throws IOException Si no se puede escribir en el fichero.
+         */
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining())
+                m_channel.write(buffer);
+        }
+    }
+
+}
@@ -31,12 +31,20 @@ import java.io.Serializable;
 
 /**
  * Clase que representa una celda del laberinto.
+ * <br><br>
+ * Las celdas obtenidas mediante {@link Maze#get} son vistas ligeras sobre el
+ * laberinto, que leen y modifican directamente sus paredes. Las celdas creadas
+ * con el constructor por defecto (o cargadas de ficheros antiguos) guardan sus
+ * propias paredes.
  */
 public class MazeCell implements Serializable {
     private static final long serialVersionUID = 4328443829621010840L;
 
     private short m_cell;
 
+    private transient Maze m_maze;
+    private transient int m_row, m_column;
+
     /**
      * Constructor por defecto. La celda creada está rodeada de muros.
      */
@@ -47,6 +55,19 @@ public class MazeCell implements Serializable {
         m_cell |= Direction.LEFT.val;
     }
 
+    /**
+     * Crea una vista sobre una celda de un laberinto.
+     *
+     * @param maze   Laberinto al que pertenece la celda.
+     * @param row    Fila de la celda.
+     * @param column Columna de la celda.
+     */
+    MazeCell(Maze maze, int row, int column) {
+        m_maze = maze;
+        m_row = row;
+        m_column = column;
+    }
+
     /**
      * Cambia el estado de la dirección especificada. Si no había muro, ahora lo
      * hay y viceversa.
@@ -66,7 +87,10 @@ public class MazeCell implements Serializable {
      * @param dir Lado de la celda que se quiere modificar.
      */
     public void setWall(Direction dir) {
-        m_cell |= dir.val;
+        if (m_maze != null)
+            m_maze.setWall(m_row, m_column, dir);
+        else
+            m_cell |= dir.val;
     }
 
     /**
@@ -75,14 +99,18 @@ public class MazeCell implements Serializable {
      * @param dir Lado de la celda que se quiere modificar.
      */
     public void unsetWall(Direction dir) {
-        m_cell &= ~dir.val;
+        if (m_maze != null)
+            m_maze.unsetWall(m_row, m_column, dir);
+        else
+            m_cell &= ~dir.val;
     }
 
     /**
      * Elimina todas las paredes de la celda.
      */
     public void removeWalls() {
-        m_cell = 0;
+        for (int i = 1; i < Direction.MAX_DIRECTIONS; i++)
+            unsetWall(Direction.fromIndex(i));
     }
 
     /**
@@ -92,7 +120,17 @@ public class MazeCell implements Serializable {
      * @return Si hay una celda en esa dirección o no.
      */
     public boolean hasWall(Direction dir) {
-        return (m_cell & dir.val) != 0;
+        return (getWalls() & dir.val) != 0;
+    }
+
+    /**
+     * Obtiene las paredes de la celda como un campo de bits.
+     *
+     * @return Combinación de los valores {@link Direction#val} de las direcciones
+     * en las que la celda tiene pared.
+     */
+    short getWalls() {
+        return m_maze != null ? m_maze.getWalls(m_row, m_column) : m_cell;
     }
 
     /**
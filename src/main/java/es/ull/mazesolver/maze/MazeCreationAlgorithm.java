@@ -26,11 +26,12 @@
 package es.ull.mazesolver.maze;
 
 import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.maze.storage.EdgeWallStore;
+import es.ull.mazesolver.maze.storage.WallStore;
 import es.ull.mazesolver.util.Direction;
-import es.ull.mazesolver.util.Pair;
 
 import java.awt.Point;
-import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 /**
  * Interfaz que encapsula un algoritmo de creación de laberintos.
@@ -57,15 +58,25 @@ public abstract class MazeCreationAlgorithm {
     protected int m_columns;
 
     /**
-     * Matriz de celdas del laberinto que se va a crear o se esá creando.
+     * Paredes del laberinto que se va a crear o se está creando.
      */
-    protected ArrayList<ArrayList<MazeCell>> m_maze;
+    protected WallStore m_maze;
 
     /**
      * Punto de salida del laberinto.
      */
     protected Point m_maze_exit;
 
+    /**
+     * Generador de números aleatorios del que deben salir todas las decisiones
+     * aleatorias del algoritmo. Se crea a partir de la semilla cada vez que se
+     * llama a {@link MazeCreationAlgorithm#createMaze()}. Los trabajos que se
+     * ejecuten en paralelo deben usar cada uno su propio generador, obtenido con
+     * {@link SplittableRandom#split()}.
+     */
+    protected SplittableRandom m_random;
+
+    private long m_seed;
     private int m_cycles, m_walls;
 
     /**
@@ -82,6 +93,7 @@ public abstract class MazeCreationAlgorithm {
         m_rows = rows;
         m_columns = columns;
         m_maze = initializeMaze();
+        m_seed = new SplittableRandom().nextLong();
     }
 
     /**
@@ -96,9 +108,10 @@ public abstract class MazeCreationAlgorithm {
     /**
      * Crea el laberinto, coloca la salida y añade los ciclos y paredes indicados.
      *
-     * @return La matriz que contiene las celdas del laberinto.
+     * @return El almacén que contiene las paredes del laberinto.
      */
-    public ArrayList<ArrayList<MazeCell>> createMaze() {
+    public WallStore createMaze() {
+        m_random = new SplittableRandom(m_seed);
         runCreationAlgorithm();
         createExit();
         addRandomCycles(m_cycles);
@@ -107,6 +120,26 @@ public abstract class MazeCreationAlgorithm {
         return m_maze;
     }
 
+    /**
+     * Devuelve la semilla a partir de la que se genera el laberinto. Si no se ha
+     * establecido ninguna, se elige una aleatoria al crear el algoritmo.
+     *
+     * @return Semilla del generador de números aleatorios.
+     */
+    public long getSeed() {
+        return m_seed;
+    }
+
+    /**
+     * Establece la semilla a partir de la que se genera el laberinto. Una misma
+     * semilla con los mismos parámetros genera siempre el mismo laberinto.
+     *
+     * @param seed Semilla del generador de números aleatorios.
+     */
+    public void setSeed(long seed) {
+        m_seed = seed;
+    }
+
     /**
      * Establece el número de ciclos que se quiere que genere el algoritmo.
      *
@@ -142,15 +175,8 @@ public abstract class MazeCreationAlgorithm {
      *
      * @return Un laberinto vacío del tamaño especificado.
      */
-    protected ArrayList<ArrayList<MazeCell>> initializeMaze() {
-        ArrayList<ArrayList<MazeCell>> maze = new ArrayList<ArrayList<MazeCell>>(m_rows);
-        for (int y = 0; y < m_rows; y++) {
-            maze.add(new ArrayList<MazeCell>(m_columns));
-            for (int x = 0; x < m_columns; x++)
-                maze.get(y).add(new MazeCell());
-        }
-
-        return maze;
+    protected WallStore initializeMaze() {
+        return new EdgeWallStore(m_rows, m_columns);
     }
 
     /**
@@ -162,9 +188,7 @@ public abstract class MazeCreationAlgorithm {
      * @param dir Dirección hacia la que abrir el camino.
      */
     protected void openPassage(int y, int x, final Direction dir) {
-        Pair<Integer, Integer> desp = dir.decompose();
-        m_maze.get(y).get(x).unsetWall(dir);
-        m_maze.get(y + desp.second).get(x + desp.first).unsetWall(dir.getOpposite());
+        m_maze.unsetWall(y, x, dir);
     }
 
     /**
@@ -172,15 +196,15 @@ public abstract class MazeCreationAlgorithm {
      */
     private void createExit() {
         // Decidimos en qué borde vamos a crear la salida
-        Direction dir = Direction.random();
+        Direction dir = Direction.random(m_random);
 
         // Posición en la que se abrirá el hueco: Puede ser tanto una coordenada en
         // X como en Y
         int pos;
         if (dir.isVertical())
-            pos = (int) (Math.random() * m_columns);
+            pos = m_random.nextInt(m_columns);
         else
-            pos = (int) (Math.random() * m_rows);
+            pos = m_random.nextInt(m_rows);
 
         // Cogemos la celda de salida y abrimos el hueco
         m_maze_exit = new Point();
@@ -201,7 +225,7 @@ public abstract class MazeCreationAlgorithm {
                 break;
         }
 
-        m_maze.get(m_maze_exit.y).get(m_maze_exit.x).unsetWall(dir);
+        m_maze.unsetWall(m_maze_exit.y, m_maze_exit.x, dir);
         m_maze_exit.setLocation(dir.movePoint(m_maze_exit));
     }
 
@@ -216,28 +240,7 @@ public abstract class MazeCreationAlgorithm {
             throw new IllegalArgumentException(
                     MainWindow.getTranslations().exception().tooManyWalls());
 
-        int k = 0;
-        Direction dir;
-        while (k < n) {
-            int x = (int) (Math.random() * m_columns);
-            int y = (int) (Math.random() * m_rows);
-            Point p = new Point(x, y);
-            ArrayList<Direction> directions = new ArrayList<Direction>();
-
-            for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
-                dir = Direction.fromIndex(i);
-                Point p2 = dir.movePoint(p);
-                if (p2.y >= 0 && p2.y < m_rows && p2.x >= 0 && p2.x < m_columns
-                        && m_maze.get(p.y).get(p.x).hasWall(dir))
-                    directions.add(dir);
-            }
-
-            if (!directions.isEmpty()) {
-                dir = directions.get((int) (Math.random() * directions.size()));
-                openPassage(p.y, p.x, dir);
-                k++;
-            }
-        }
+        toggleRandomEdges(n, true);
     }
 
     /**
@@ -251,30 +254,61 @@ public abstract class MazeCreationAlgorithm {
             throw new IllegalArgumentException(
                     MainWindow.getTranslations().exception().tooManyWalls());
 
-        int k = 0;
-        Direction dir;
-        while (k < n) {
-            int x = (int) (Math.random() * m_columns);
-            int y = (int) (Math.random() * m_rows);
-            Point p = new Point(x, y);
-            ArrayList<Direction> directions = new ArrayList<Direction>();
-
-            for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
-                dir = Direction.fromIndex(i);
-                Point p2 = dir.movePoint(p);
-                if (p2.y >= 0 && p2.y < m_rows && p2.x >= 0 && p2.x < m_columns
-                        && !m_maze.get(p.y).get(p.x).hasWall(dir))
-                    directions.add(dir);
-            }
+        toggleRandomEdges(n, false);
+    }
 
-            if (!directions.isEmpty()) {
-                dir = directions.get((int) (Math.random() * directions.size()));
-                m_maze.get(p.y).get(p.x).setWall(dir);
-                p = dir.movePoint(p);
-                m_maze.get(p.y).get(p.x).setWall(dir.getOpposite());
-                k++;
+    /**
+     * Elige al azar, de manera uniforme y sin repetición, varios lados entre
+     * celdas del laberinto que tengan pared (o que no la tengan) y les cambia el
+     * estado.
+     * <br><br>
+     * Se recorre el laberinto una única vez para guardar los lados candidatos en
+     * un vector, y después se eligen mediante un Fisher-Yates parcial, de manera
+     * que el coste de la elección no depende de cuántos candidatos queden.
+     *
+     * @param n     Número de lados que se quieren cambiar.
+     * @param walls Si los candidatos son los lados con pared (que se abren) o
+     *              los lados sin pared (que se cierran).
+     */
+    private void toggleRandomEdges(int n, boolean walls) {
+        if (n <= 0)
+            return;
+
+        if ((long) m_rows * m_columns * 2 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().mazeTooLarge());
+
+        // Cada lado se codifica como celda * 2, más 1 si es el inferior
+        int[] edges = new int[m_rows * (m_columns - 1) + (m_rows - 1) * m_columns];
+        int count = 0;
+
+        for (int y = 0; y < m_rows; y++) {
+            for (int x = 0; x < m_columns; x++) {
+                int cell = y * m_columns + x;
+                if (x < m_columns - 1 && m_maze.hasWall(y, x, Direction.RIGHT) == walls)
+                    edges[count++] = cell * 2;
+                if (y < m_rows - 1 && m_maze.hasWall(y, x, Direction.DOWN) == walls)
+                    edges[count++] = cell * 2 + 1;
             }
         }
+
+        if (n > count)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().tooManyWalls());
+
+        for (int i = 0; i < n; i++) {
+            int j = i + m_random.nextInt(count - i);
+            int edge = edges[j];
+            edges[j] = edges[i];
+            edges[i] = edge;
+
+            int cell = edge >>> 1;
+            Direction dir = (edge & 1) != 0 ? Direction.DOWN : Direction.RIGHT;
+            if (walls)
+                openPassage(cell / m_columns, cell % m_columns, dir);
+            else
+                m_maze.setWall(cell / m_columns, cell % m_columns, dir);
+        }
     }
 
 }
@@ -0,0 +1,304 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeDistanceField.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze;
+
+import es.ull.mazesolver.util.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Campo de distancias desde cada celda del laberinto hasta la salida, medidas
+ * en número de pasos a través de los pasillos abiertos.
+ * <br><br>
+ * Se calcula una sola vez mediante una búsqueda en anchura desde la salida
+ * sobre el {@link MazeGraph} del laberinto y lo comparten todos los que
+ * trabajen sobre el mismo {@link Maze}. Cuando cambia una pared, el propio
+ * laberinto avisa al campo, que sólo recalcula las celdas cuya distancia ha
+ * podido cambiar:
+ * <ul>
+ * <li>Al abrir un pasillo, se propagan hacia fuera las distancias que hayan
+ * mejorado.</li>
+ * <li>Al cerrar un pasillo que formaba parte de un camino mínimo, se buscan las
+ * celdas que se quedan sin ningún otro camino de la misma longitud y sólo ésas
+ * se vuelven a calcular a partir de las celdas vecinas que no han cambiado.</li>
+ * </ul>
+ */
+public class MazeDistanceField {
+    /**
+     * Distancia de las celdas desde las que no se puede llegar a la salida.
+     */
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private MazeGraph m_graph;
+    private int[] m_distance;
+
+    // Memoria auxiliar para las reparaciones, reservada la primera vez que se
+    // necesita
+    private int[] m_queue;
+    private int[] m_mark;
+    private int m_pass;
+
+    /**
+     * Construye el campo de distancias a partir del índice de adyacencia de un
+     * laberinto.
+     *
+     * @param graph Índice de adyacencia del laberinto.
+     */
+    MazeDistanceField(MazeGraph graph) {
+        m_graph = graph;
+        m_distance = new int[graph.getNodeCount()];
+        m_queue = new int[graph.getNodeCount()];
+        Arrays.fill(m_distance, UNREACHABLE);
+
+        int exit = graph.getExitNode();
+        m_distance[exit] = 0;
+
+        // La salida no tiene enlaces de salida, así que la búsqueda empieza por
+        // las celdas del borde que están abiertas hacia ella
+        int tail = 0;
+        for (int node = 0; node < exit; node++) {
+            if (graph.isOpen(node, exit)) {
+                m_distance[node] = 1;
+                m_queue[tail++] = node;
+            }
+        }
+
+        for (int head = 0; head < tail; head++) {
+            int node = m_queue[head];
+            int next_dist = m_distance[node] + 1;
+            int degree = graph.getDegree(node);
+            for (int i = 0; i < degree; i++) {
+                int next = graph.getNeighbour(node, i);
+                if (m_distance[next] == UNREACHABLE) {
+                    m_distance[next] = next_dist;
+                    m_queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtiene la distancia desde una posición hasta la salida.
+     *
+     * @param x Columna.
+     * @param y Fila.
+     * @return Número de pasos mínimo hasta la salida o {@link #UNREACHABLE} si
+     * no se puede llegar a ella. Las posiciones fuera del laberinto se
+     * consideran parte de la salida.
+     */
+    public int getDistance(int x, int y) {
+        return m_distance[m_graph.getNode(x, y)];
+    }
+
+    /**
+     * Obtiene la distancia desde un nodo del {@link MazeGraph} hasta la salida.
+     *
+     * @param node Identificador de nodo.
+     * @return Número de pasos mínimo hasta la salida o {@link #UNREACHABLE} si
+     * no se puede llegar a ella.
+     */
+    public int getDistance(int node) {
+        return m_distance[node];
+    }
+
+    /**
+     * Repara el campo después de que cambie una pared del laberinto. El índice
+     * de adyacencia ya tiene que estar actualizado.
+     *
+     * @param row    Fila de la celda.
+     * @param column Columna de la celda.
+     * @param dir    Lado de la celda en el que ha cambiado la pared.
+     */
+    void wallChanged(int row, int column, Direction dir) {
+        int node = m_graph.getNode(column, row);
+        int target = m_graph.getNode(column + dir.getDeltaX(), row + dir.getDeltaY());
+
+        if (m_graph.isOpen(node, target))
+            edgeOpened(node, target);
+        else
+            edgeClosed(node, target);
+    }
+
+    /**
+     * Propaga las mejoras de distancia que produce un nuevo pasillo.
+     *
+     * @param node   Celda.
+     * @param target Celda vecina o nodo de la salida.
+     */
+    private void edgeOpened(int node, int target) {
+        int from, to;
+        if (m_distance[target] != UNREACHABLE && m_distance[node] > m_distance[target] + 1) {
+            from = target;
+            to = node;
+        }
+        else if (target != m_graph.getExitNode() && m_distance[node] != UNREACHABLE &&
+                 m_distance[target] > m_distance[node] + 1) {
+            from = node;
+            to = target;
+        }
+        else
+            return;
+
+        // Al partir de una sola celda las distancias salen de la cola en orden,
+        // así que cada celda se actualiza una sola vez
+        m_distance[to] = m_distance[from] + 1;
+        m_queue[0] = to;
+        int tail = 1;
+        for (int head = 0; head < tail; head++) {
+            int current = m_queue[head];
+            int next_dist = m_distance[current] + 1;
+            int degree = m_graph.getDegree(current);
+            for (int i = 0; i < degree; i++) {
+                int next = m_graph.getNeighbour(current, i);
+                if (m_distance[next] > next_dist) {
+                    m_distance[next] = next_dist;
+                    m_queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Recalcula las distancias de las celdas afectadas por el cierre de un
+     * pasillo.
+     *
+     * @param node   Celda.
+     * @param target Celda vecina o nodo de la salida.
+     */
+    private void edgeClosed(int node, int target) {
+        // Sólo importa si el pasillo formaba parte de un camino mínimo. En ese
+        // caso la celda más alejada de la salida es la que puede empeorar
+        int child;
+        if (target != m_graph.getExitNode() && m_distance[node] != UNREACHABLE &&
+            m_distance[target] == m_distance[node] + 1)
+            child = target;
+        else if (m_distance[target] != UNREACHABLE && m_distance[node] == m_distance[target] + 1)
+            child = node;
+        else
+            return;
+
+        if (m_mark == null)
+            m_mark = new int[m_distance.length];
+        if (++m_pass == 0) {
+            Arrays.fill(m_mark, 0);
+            m_pass = 1;
+        }
+
+        if (hasSupport(child))
+            return;
+
+        // Se buscan las celdas que se quedan sin ningún camino mínimo. Como se
+        // recorren por niveles de distancia, al examinar una celda ya están
+        // marcadas todas las afectadas del nivel anterior
+        m_mark[child] = m_pass;
+        m_queue[0] = child;
+        int count = 1;
+        for (int head = 0; head < count; head++) {
+            int current = m_queue[head];
+            int next_dist = m_distance[current] + 1;
+            int degree = m_graph.getDegree(current);
+            for (int i = 0; i < degree; i++) {
+                int next = m_graph.getNeighbour(current, i);
+                if (m_distance[next] == next_dist && m_mark[next] != m_pass && !hasSupport(next)) {
+                    m_mark[next] = m_pass;
+                    m_queue[count++] = next;
+                }
+            }
+        }
+
+        // Cada celda afectada parte de la mejor distancia que le ofrecen sus
+        // vecinas no afectadas
+        for (int i = 0; i < count; i++)
+            m_distance[m_queue[i]] = UNREACHABLE;
+
+        long[] seeds = new long[count];
+        int seed_count = 0;
+        for (int i = 0; i < count; i++) {
+            int current = m_queue[i];
+            int best = UNREACHABLE;
+            int degree = m_graph.getDegree(current);
+            for (int j = 0; j < degree; j++) {
+                int next = m_graph.getNeighbour(current, j);
+                if (m_mark[next] != m_pass && m_distance[next] != UNREACHABLE)
+                    best = Math.min(best, m_distance[next] + 1);
+            }
+            if (best != UNREACHABLE)
+                seeds[seed_count++] = ((long) best << 32) | current;
+        }
+        Arrays.sort(seeds, 0, seed_count);
+        for (int i = 0; i < seed_count; i++)
+            m_distance[(int) seeds[i]] = (int) (seeds[i] >>> 32);
+
+        // Búsqueda en anchura con varios orígenes de distinta distancia: se
+        // mezclan los orígenes ordenados con la cola, de manera que siempre se
+        // expande la celda más cercana a la salida. Los orígenes que la cola ya
+        // ha mejorado se descartan y, como las distancias salen en orden, cada
+        // celda entra en la cola como mucho una vez
+        int[] queue = new int[count];
+        int head = 0, tail = 0, seed = 0;
+        while (seed < seed_count || head < tail) {
+            int current;
+            if (head == tail || (seed < seed_count &&
+                                 (seeds[seed] >>> 32) <= m_distance[queue[head]])) {
+                current = (int) seeds[seed];
+                if (m_distance[current] < (int) (seeds[seed++] >>> 32))
+                    continue;
+            }
+            else
+                current = queue[head++];
+
+            int next_dist = m_distance[current] + 1;
+            int degree = m_graph.getDegree(current);
+            for (int i = 0; i < degree; i++) {
+                int next = m_graph.getNeighbour(current, i);
+                if (m_mark[next] == m_pass && m_distance[next] > next_dist) {
+                    m_distance[next] = next_dist;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * Indica si una celda tiene algún vecino accesible no marcado como afectado
+     * que esté un paso más cerca de la salida.
+     *
+     * @param node Celda.
+     * @return Si la celda conserva su distancia gracias a ese vecino.
+     */
+    private boolean hasSupport(int node) {
+        int prev_dist = m_distance[node] - 1;
+        int degree = m_graph.getDegree(node);
+        for (int i = 0; i < degree; i++) {
+            int next = m_graph.getNeighbour(node, i);
+            if (m_distance[next] == prev_dist && m_mark[next] != m_pass)
+                return true;
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,340 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeGraph.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.util.Direction;
+
+import java.awt.Point;
+
+/**
+ * Índice de adyacencia de un laberinto en formato CSR (compressed sparse row).
+ * <br><br>
+ * Cada celda es un nodo identificado por el entero {@code fila * columnas +
+ * columna}, y la salida del laberinto es un nodo adicional,
+ * {@link MazeGraph#getExitNode()}. Los vecinos de cada nodo se guardan de forma
+ * contigua en un único vector de enteros: primero aquellos a los que se puede
+ * pasar porque no hay pared de por medio ({@link MazeGraph#getDegree}) y a
+ * continuación el resto de celdas adyacentes ({@link MazeGraph#getAdjacentCount}).
+ * De esta manera los algoritmos de búsqueda pueden recorrer el grafo sin crear
+ * objetos.
+ * <br><br>
+ * El índice lo mantiene actualizado el propio {@link Maze}: cada vez que cambia
+ * una pared sólo se intercambian de sitio un par de vecinos, en tiempo
+ * constante.
+ */
+public class MazeGraph {
+    private Maze m_maze;
+    private int m_rows, m_columns;
+    private int m_exit_node;
+    private Point m_exit;
+
+    private int[] m_offsets;
+    private int[] m_targets;
+    private byte[] m_degree;
+
+    /**
+     * Construye el índice a partir de las paredes de un laberinto.
+     *
+     * @param maze Laberinto del que construir el índice.
+     */
+    MazeGraph(Maze maze) {
+        m_maze = maze;
+        m_rows = maze.getHeight();
+        m_columns = maze.getWidth();
+        m_exit = maze.getExit();
+
+        long nodes = (long) m_rows * m_columns;
+        long inner = (long) Math.max(0, m_rows - 2) * Math.max(0, m_columns - 2);
+        long slots = 4 * nodes - 2L * (m_rows + m_columns) + (nodes - inner);
+        if (slots > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().mazeTooLarge());
+
+        m_exit_node = (int) nodes;
+        m_offsets = new int[m_exit_node + 2];
+        m_targets = new int[(int) slots];
+        m_degree = new byte[m_exit_node + 1];
+
+        int next = 0;
+        for (int y = 0; y < m_rows; y++) {
+            for (int x = 0; x < m_columns; x++) {
+                int node = y * m_columns + x;
+                m_offsets[node] = next;
+
+                // Primero los vecinos accesibles y después el resto, de manera que
+                // los accesibles queden en las primeras posiciones
+                boolean border = false, exit = false;
+                for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
+                    Direction dir = Direction.fromIndex(i);
+                    int target = neighbour(y, x, dir);
+                    boolean open = !maze.hasWall(y, x, dir);
+
+                    if (target == m_exit_node) {
+                        border = true;
+                        exit |= open;
+                    }
+                    else if (open)
+                        m_targets[next++] = target;
+                }
+                if (exit)
+                    m_targets[next++] = m_exit_node;
+                m_degree[node] = (byte) (next - m_offsets[node]);
+
+                for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
+                    Direction dir = Direction.fromIndex(i);
+                    int target = neighbour(y, x, dir);
+                    if (target != m_exit_node && maze.hasWall(y, x, dir))
+                        m_targets[next++] = target;
+                }
+                if (border && !exit)
+                    m_targets[next++] = m_exit_node;
+            }
+        }
+
+        m_offsets[m_exit_node] = next;
+        m_offsets[m_exit_node + 1] = next;
+    }
+
+    /**
+     * @return Número de nodos del grafo, incluyendo el de la salida.
+     */
+    public int getNodeCount() {
+        return m_exit_node + 1;
+    }
+
+    /**
+     * @return Identificador del nodo que representa la salida del laberinto.
+     * Todas las celdas del borde con alguna pared exterior abierta están
+     * conectadas con él.
+     */
+    public int getExitNode() {
+        return m_exit_node;
+    }
+
+    /**
+     * Obtiene el identificador de nodo correspondiente a una posición.
+     *
+     * @param x Columna.
+     * @param y Fila.
+     * @return El nodo de la celda o el nodo de la salida si la posición está
+     * fuera del laberinto.
+     */
+    public int getNode(int x, int y) {
+        if (x < 0 || y < 0 || x >= m_columns || y >= m_rows)
+            return m_exit_node;
+
+        return y * m_columns + x;
+    }
+
+    /**
+     * @param node Identificador de nodo.
+     * @return Columna del nodo. En el caso de la salida, la posición X de la
+     * salida del laberinto.
+     */
+    public int getX(int node) {
+        return node == m_exit_node ? m_exit.x : node % m_columns;
+    }
+
+    /**
+     * @param node Identificador de nodo.
+     * @return Fila del nodo. En el caso de la salida, la posición Y de la salida
+     * del laberinto.
+     */
+    public int getY(int node) {
+        return node == m_exit_node ? m_exit.y : node / m_columns;
+    }
+
+    /**
+     * @param node Identificador de nodo.
+     * @return Número de vecinos accesibles desde el nodo.
+     */
+    public int getDegree(int node) {
+        return m_degree[node];
+    }
+
+    /**
+     * @param node Identificador de nodo.
+     * @return Número de vecinos del nodo, tanto accesibles como separados por una
+     * pared.
+     */
+    public int getAdjacentCount(int node) {
+        return m_offsets[node + 1] - m_offsets[node];
+    }
+
+    /**
+     * Obtiene uno de los vecinos de un nodo. Los índices menores que
+     * {@link MazeGraph#getDegree} corresponden a vecinos accesibles y el resto,
+     * hasta {@link MazeGraph#getAdjacentCount}, a vecinos separados por una
+     * pared.
+     *
+     * @param node  Identificador de nodo.
+     * @param index Índice del vecino.
+     * @return Identificador del nodo vecino.
+     */
+    public int getNeighbour(int node, int index) {
+        return m_targets[m_offsets[node] + index];
+    }
+
+    /**
+     * Obtiene la dirección en la que hay que moverse para ir de un nodo a uno de
+     * sus vecinos.
+     *
+     * @param from Nodo de origen.
+     * @param to   Nodo de destino, adyacente al de origen.
+     * @return Dirección del movimiento.
+     */
+    public Direction getDirection(int from, int to) {
+        if (to == m_exit_node) {
+            // Se elige el borde abierto, dando preferencia al que lleva justo a la
+            // salida si la celda está en una esquina
+            int x = from % m_columns, y = from / m_columns;
+            Direction border = Direction.NONE;
+            for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
+                Direction dir = Direction.fromIndex(i);
+                if (neighbour(y, x, dir) == m_exit_node && !m_maze.hasWall(y, x, dir)) {
+                    if (x + dir.getDeltaX() == m_exit.x && y + dir.getDeltaY() == m_exit.y)
+                        return dir;
+                    if (border == Direction.NONE)
+                        border = dir;
+                }
+            }
+            return border;
+        }
+
+        int diff = to - from;
+        if (diff == 1)
+            return Direction.RIGHT;
+        if (diff == -1)
+            return Direction.LEFT;
+
+        return diff > 0 ? Direction.DOWN : Direction.UP;
+    }
+
+    /**
+     * Indica si se puede pasar directamente de un nodo a otro.
+     *
+     * @param from Nodo de origen.
+     * @param to   Nodo de destino.
+     * @return Si son vecinos y no hay pared entre ellos.
+     */
+    public boolean isOpen(int from, int to) {
+        int first = m_offsets[from], last = first + m_degree[from];
+        for (int i = first; i < last; i++)
+            if (m_targets[i] == to)
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Actualiza el índice después de que cambie una pared del laberinto.
+     *
+     * @param row    Fila de la celda.
+     * @param column Columna de la celda.
+     * @param dir    Lado de la celda en el que ha cambiado la pared.
+     */
+    void wallChanged(int row, int column, Direction dir) {
+        int node = row * m_columns + column;
+        int target = neighbour(row, column, dir);
+
+        if (target != m_exit_node) {
+            boolean open = !m_maze.hasWall(row, column, dir);
+            setOpen(node, target, open);
+            setOpen(target, node, open);
+        }
+        else {
+            // Una celda de una esquina tiene dos paredes exteriores y sólo un
+            // enlace con la salida, así que hay que mirar las dos
+            boolean open = false;
+            for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
+                Direction d = Direction.fromIndex(i);
+                if (neighbour(row, column, d) == m_exit_node && !m_maze.hasWall(row, column, d))
+                    open = true;
+            }
+            setOpen(node, m_exit_node, open);
+        }
+    }
+
+    /**
+     * Actualiza la posición de la salida del laberinto.
+     *
+     * @param exit Nueva posición de la salida.
+     */
+    void exitChanged(Point exit) {
+        m_exit = new Point(exit);
+    }
+
+    /**
+     * Mueve un vecino a la parte de vecinos accesibles o a la de no accesibles.
+     *
+     * @param node   Nodo cuya lista se modifica.
+     * @param target Vecino a mover.
+     * @param open   Si el vecino debe ser accesible o no.
+     */
+    private void setOpen(int node, int target, boolean open) {
+        int first = m_offsets[node], last = m_offsets[node + 1];
+        int degree = m_degree[node];
+
+        int index = first;
+        while (index < last && m_targets[index] != target)
+            index++;
+        if (index == last)
+            return;
+
+        if (open && index >= first + degree) {
+            swap(index, first + degree);
+            m_degree[node]++;
+        }
+        else if (!open && index < first + degree) {
+            swap(index, first + degree - 1);
+            m_degree[node]--;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int tmp = m_targets[i];
+        m_targets[i] = m_targets[j];
+        m_targets[j] = tmp;
+    }
+
+    /**
+     * Calcula el nodo adyacente a una celda en una dirección.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Dirección.
+     * @return Nodo vecino o el nodo de la salida si queda fuera del laberinto.
+     */
+    private int neighbour(int row, int column, Direction dir) {
+        int n_row = row + dir.getDeltaY(), n_column = column + dir.getDeltaX();
+        if (n_row < 0 || n_row >= m_rows || n_column < 0 || n_column >= m_columns)
+            return m_exit_node;
+
+        return n_row * m_columns + n_column;
+    }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeImageWriter.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze;
+
+import es.ull.mazesolver.gui.MainWindow;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Exporta la imagen de un laberinto a un fichero PNG sin pasar por la
+ * interfaz gráfica ni construir la imagen completa en memoria.
+ * <br><br>
+ * La imagen se divide en franjas horizontales de {@link MazeImageWriter#BAND_ROWS}
+ * filas de píxeles que se dibujan escribiendo directamente las paredes en un
+ * vector de bytes (1 bit por píxel) y se comprimen en paralelo. Cada franja se
+ * comprime por separado terminando con un vaciado sincronizado del compresor,
+ * de manera que los fragmentos comprimidos se pueden concatenar en un único
+ * flujo zlib, que se va escribiendo en orden a medida que están listos. Sólo
+ * hay en memoria a la vez unas pocas franjas por hilo.
+ */
+public final class MazeImageWriter {
+    /**
+     * Número de filas de píxeles de cada franja.
+     */
+    public static final int BAND_ROWS = 256;
+
+    private static final byte[] PNG_SIGNATURE = {
+            (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+
+    private MazeImageWriter() {}
+
+    /**
+     * Exporta la imagen de un laberinto, con las paredes en negro sobre fondo
+     * blanco.
+     *
+     * @param maze      Laberinto.
+     * @param fileName  Nombre del fichero PNG.
+     * @param cell_size Tamaño de cada celda en píxeles, incluyendo una de sus
+     *                  paredes.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    public static void writePng(final Maze maze, String fileName, final int cell_size)
+            throws IOException {
+        final long width = (long) maze.getWidth() * cell_size + 1;
+        final long height = (long) maze.getHeight() * cell_size + 1;
+        final int row_bytes = (int) ((width + 7) >>> 3);
+        if (cell_size < 2 || width > Integer.MAX_VALUE || height > Integer.MAX_VALUE ||
+            (long) (row_bytes + 1) * BAND_ROWS > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().mazeTooLarge());
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16));
+
+        try {
+            out.write(PNG_SIGNATURE);
+
+            // Cabecera: escala de grises de 1 bit por píxel, sin entrelazado
+            byte[] header = new byte[13];
+            putInt(header, 0, (int) width);
+            putInt(header, 4, (int) height);
+            header[8] = 1;
+            writeChunk(out, "IHDR", header, header.length);
+
+            // Cabecera zlib: Deflate con ventana de 32 KB y sin diccionario
+            writeChunk(out, "IDAT", new byte[]{0x78, 0x01}, 2);
+
+            final int bands = (int) ((height + BAND_ROWS - 1) / BAND_ROWS);
+            ArrayDeque<Future<byte[][]>> pending = new ArrayDeque<Future<byte[][]>>();
+            Adler32 adler = new Adler32();
+            int next = 0;
+
+            for (int band = 0; band < bands; band++) {
+                // Se mantienen unas pocas franjas en curso por hilo
+                while (next < bands && pending.size() < 2 * threads) {
+                    final int index = next++;
+                    pending.add(executor.submit(new Callable<byte[][]>() {
+                        @Override
+                        public byte[][] call() {
+                            byte[] raw = renderBand(maze, index, cell_size, (int) height, row_bytes);
+                            return new byte[][]{raw, compress(raw, index == bands - 1)};
+                        }
+                    }));
+                }
+
+                byte[][] result = pending.poll().get();
+                adler.update(result[0]);
+                writeChunk(out, "IDAT", result[1], result[1].length);
+            }
+
+            byte[] checksum = new byte[4];
+            putInt(checksum, 0, (int) adler.getValue());
+            writeChunk(out, "IDAT", checksum, 4);
+            writeChunk(out, "IEND", new byte[0], 0);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+
+    /**
+     * Dibuja una franja de la imagen. Cada fila empieza por el byte del tipo de
+     * filtro de PNG (ninguno) seguido de los píxeles, 8 por byte, con el bit más
+     * significativo a la izquierda. Un bit a 0 es negro.
+     *
+     * @param maze      Laberinto.
+     * @param band      Índice de la franja.
+     * @param cell_size Tamaño de cada celda en píxeles.
+     * @param height    Altura total de la imagen.
+     * @param row_bytes Bytes de píxeles de cada fila.
+     * @return Filas de la franja sin comprimir.
+     */
+    private static byte[] renderBand(Maze maze, int band, int cell_size, int height, int row_bytes) {
+        int first = band * BAND_ROWS, last = Math.min(first + BAND_ROWS, height);
+        int columns = maze.getWidth(), rows = maze.getHeight();
+        int stride = row_bytes + 1;
+        byte[] raw = new byte[(last - first) * stride];
+
+        for (int py = first; py < last; py++) {
+            int offset = (py - first) * stride + 1;
+            int y = py / cell_size;
+            fill(raw, offset, 0, row_bytes * 8, true);
+
+            if (py % cell_size == 0) {
+                // Fila de paredes horizontales, incluidas las esquinas
+                for (int x = 0; x < columns; x++) {
+                    if (maze.hasHorizontalWall(y, x))
+                        fill(raw, offset, x * cell_size, x * cell_size + cell_size + 1, false);
+                }
+                for (int x = 0; x <= columns; x++) {
+                    if ((y > 0 && maze.hasVerticalWall(y - 1, x)) ||
+                        (y < rows && maze.hasVerticalWall(y, x)))
+                        fill(raw, offset, x * cell_size, x * cell_size + 1, false);
+                }
+            }
+            else {
+                for (int x = 0; x <= columns; x++)
+                    if (maze.hasVerticalWall(y, x))
+                        fill(raw, offset, x * cell_size, x * cell_size + 1, false);
+            }
+        }
+
+        return raw;
+    }
+
+    /**
+     * Comprime una franja como un fragmento de un flujo Deflate. Las franjas
+     * intermedias terminan con un vaciado sincronizado para que el siguiente
+     * fragmento empiece en un límite de byte, y la última cierra el flujo.
+     *
+     * @param raw  Franja sin comprimir.
+     * @param last Si es la última franja.
+     * @return Franja comprimida.
+     */
+    private static byte[] compress(byte[] raw, boolean last) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(raw);
+            if (last)
+                deflater.finish();
+
+            byte[] buffer = new byte[Math.max(64, raw.length / 8)];
+            int length = 0;
+            while (true) {
+                length += deflater.deflate(buffer, length, buffer.length - length,
+                                           last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                if (length < buffer.length && (last ? deflater.finished() : deflater.needsInput()))
+                    break;
+                if (length == buffer.length)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Pone a 1 (blanco) o a 0 (negro) un intervalo de píxeles de una fila.
+     *
+     * @param row    Vector de píxeles.
+     * @param offset Posición del primer byte de la fila.
+     * @param from   Primer píxel.
+     * @param to     Píxel siguiente al último.
+     * @param white  Si se pintan de blanco o de negro.
+     */
+    private static void fill(byte[] row, int offset, int from, int to, boolean white) {
+        if (from >= to)
+            return;
+
+        int first = offset + (from >>> 3), last = offset + ((to - 1) >>> 3);
+        int head = 0xFF >>> (from & 7), tail = 0xFF << (7 - ((to - 1) & 7));
+
+        // Los bytes de los extremos pueden estar a medias, y los del interior se
+        // escriben enteros
+        if (first == last)
+            head &= tail;
+        if (white) {
+            row[first] |= head;
+            if (first != last) {
+                Arrays.fill(row, first + 1, last, (byte) 0xFF);
+                row[last] |= tail;
+            }
+        }
+        else {
+            row[first] &= ~head;
+            if (first != last) {
+                Arrays.fill(row, first + 1, last, (byte) 0);
+                row[last] &= ~tail;
+            }
+        }
+    }
+
+    /**
+     * Escribe un bloque de PNG con su longitud y su código de redundancia.
+     *
+     * @param out    Flujo de salida.
+     * @param type   Tipo del bloque.
+     * @param data   Contenido del bloque.
+     * @param length Longitud del contenido.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    private static void writeChunk(DataOutputStream out, String type, byte[] data, int length)
+            throws IOException {
+        byte[] type_bytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(type_bytes);
+        crc.update(data, 0, length);
+
+        out.writeInt(length);
+        out.write(type_bytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Escribe un entero en orden big-endian en un vector de bytes.
+     *
+     * @param bytes  Vector de bytes.
+     * @param offset Posición del primer byte.
+     * @param value  Valor a escribir.
+     */
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+}
@@ -0,0 +1,488 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeTextFormat.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.maze.storage.EdgeWallStore;
+import es.ull.mazesolver.util.Direction;
+
+import java.awt.Point;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Importa y exporta laberintos en formatos de texto utilizados por otras
+ * herramientas:
+ * <ul>
+ * <li>Dibujos ASCII con {@code +} en las esquinas, {@code -} en las paredes
+ * horizontales y {@code |} en las verticales. Se acepta cualquier anchura de
+ * celda, siempre que sea la misma en todo el dibujo.</li>
+ * <li>Mapas de celdas bloqueadas en el formato {@code .map} de los conjuntos de
+ * pruebas de búsqueda de caminos, en los que las celdas {@code .}, {@code G} y
+ * {@code S} son transitables y el resto están bloqueadas.</li>
+ * </ul>
+ * Los ficheros se proyectan en memoria y se analizan byte a byte sin crear una
+ * cadena de caracteres por línea, construyendo directamente las palabras de
+ * paredes de un {@link EdgeWallStore}.
+ */
+public final class MazeTextFormat {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private MazeTextFormat() {}
+
+    /**
+     * Importa un laberinto dibujado en ASCII. La salida se coloca en la primera
+     * abertura del contorno que se encuentre, empezando por el borde superior.
+     *
+     * @param fileName Nombre del fichero.
+     * @return Laberinto importado.
+     * @throws IOException Si no se puede leer el fichero o no contiene un dibujo
+     *                     válido.
+     */
+    public static Maze readAscii(String fileName) throws IOException {
+        ByteBuffer text = map(fileName);
+        int[] lines = lineStarts(text);
+        int line_count = lines.length - 1;
+        while (line_count > 0 && lineLength(text, lines, line_count - 1) == 0)
+            line_count--;
+
+        // La anchura de las celdas es la distancia entre las dos primeras esquinas
+        int first_length = line_count > 0 ? lineLength(text, lines, 0) : 0;
+        int cell = 1;
+        while (cell < first_length && text.get(lines[0] + cell) != '+')
+            cell++;
+
+        int rows = (line_count - 1) / 2, columns = (first_length - 1) / cell;
+        if (first_length == 0 || text.get(lines[0]) != '+' || cell == 1 || rows <= 0 || columns <= 0)
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+        EdgeWallStore walls = new EdgeWallStore(rows, columns);
+        for (int y = 0; y <= rows; y++) {
+            for (int w = 0; w < walls.getHorizontalStride(); w++) {
+                long word = 0;
+                int last = Math.min((w + 1) << 6, columns);
+                for (int x = w << 6; x < last; x++)
+                    if (charAt(text, lines, 2 * y, x * cell + 1) != ' ')
+                        word |= 1L << x;
+                walls.setHorizontalWord(y, w, word);
+            }
+
+            if (y < rows) {
+                for (int w = 0; w < walls.getVerticalStride(); w++) {
+                    long word = 0;
+                    int last = Math.min((w + 1) << 6, columns + 1);
+                    for (int x = w << 6; x < last; x++)
+                        if (charAt(text, lines, 2 * y + 1, x * cell) != ' ')
+                            word |= 1L << x;
+                    walls.setVerticalWord(y, w, word);
+                }
+            }
+        }
+
+        return new Maze(walls, findExit(walls));
+    }
+
+    /**
+     * Exporta un laberinto como un dibujo ASCII con celdas de 2 caracteres de
+     * ancho.
+     *
+     * @param maze     Laberinto a exportar.
+     * @param fileName Nombre del fichero.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    public static void writeAscii(Maze maze, String fileName) throws IOException {
+        int rows = maze.getHeight(), columns = maze.getWidth();
+        byte[] line = new byte[3 * columns + 2];
+        line[line.length - 1] = '\n';
+
+        FileOutputStream out = new FileOutputStream(fileName);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, line.length));
+
+            for (int y = 0; y <= rows; y++) {
+                for (int x = 0; x < columns; x++) {
+                    byte wall = maze.hasHorizontalWall(y, x) ? (byte) '-' : (byte) ' ';
+                    line[3 * x] = '+';
+                    line[3 * x + 1] = line[3 * x + 2] = wall;
+                }
+                line[3 * columns] = '+';
+                put(channel, buffer, line);
+
+                if (y < rows) {
+                    for (int x = 0; x <= columns; x++) {
+                        line[3 * x] = maze.hasVerticalWall(y, x) ? (byte) '|' : (byte) ' ';
+                        if (x < columns)
+                            line[3 * x + 1] = line[3 * x + 2] = ' ';
+                    }
+                    put(channel, buffer, line);
+                }
+            }
+            flush(channel, buffer);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Importa un mapa de celdas bloqueadas en formato {@code .map}. Cada celda
+     * del mapa es una celda del laberinto: las celdas bloqueadas quedan
+     * rodeadas de paredes y entre dos celdas transitables vecinas no hay pared.
+     * Como el formato no tiene salida, se abre el contorno de la primera celda
+     * transitable del borde que se encuentre, empezando por el borde superior.
+     *
+     * @param fileName Nombre del fichero.
+     * @return Laberinto importado.
+     * @throws IOException Si no se puede leer el fichero o no contiene un mapa
+     *                     válido.
+     */
+    public static Maze readGridMap(String fileName) throws IOException {
+        ByteBuffer text = map(fileName);
+        int[] lines = lineStarts(text);
+
+        // Cabecera: "type", "height", "width" y "map", en cualquier orden
+        int rows = -1, columns = -1, first = -1;
+        for (int i = 0; i < lines.length - 1 && first < 0; i++) {
+            if (startsWith(text, lines, i, "height"))
+                rows = parseNumber(text, lines, i);
+            else if (startsWith(text, lines, i, "width"))
+                columns = parseNumber(text, lines, i);
+            else if (startsWith(text, lines, i, "map"))
+                first = i + 1;
+        }
+
+        if (rows <= 0 || columns <= 0 || first < 0 || first + rows > lines.length - 1)
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+        // Una pared existe salvo que separe dos celdas transitables, así que se
+        // calcula palabra a palabra a partir de las celdas transitables de cada
+        // fila y de la anterior
+        EdgeWallStore walls = new EdgeWallStore(rows, columns);
+        int h_stride = walls.getHorizontalStride(), v_stride = walls.getVerticalStride();
+        long[] previous = new long[h_stride], current = new long[h_stride];
+
+        for (int y = 0; y <= rows; y++) {
+            for (int w = 0; w < h_stride; w++) {
+                long word = 0;
+                if (y < rows) {
+                    int last = Math.min((w + 1) << 6, columns);
+                    for (int x = w << 6; x < last; x++)
+                        if (isPassable(charAt(text, lines, first + y, x)))
+                            word |= 1L << x;
+                }
+                current[w] = word;
+                walls.setHorizontalWord(y, w, ~(previous[w] & current[w]));
+            }
+
+            if (y < rows) {
+                for (int w = 0; w < v_stride; w++) {
+                    // Bit x: celdas x - 1 y x transitables
+                    long cells = w < h_stride ? current[w] : 0;
+                    long left = (cells << 1) | (w > 0 ? current[w - 1] >>> 63 : 0);
+                    walls.setVerticalWord(y, w, ~(cells & left));
+                }
+            }
+
+            long[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+
+        // Si no hay ninguna celda transitable en el borde, la salida queda cerrada
+        Point exit = new Point(-1, 0);
+        openBorder(walls, text, lines, first, exit);
+
+        return new Maze(walls, exit);
+    }
+
+    /**
+     * Exporta un laberinto como un mapa de celdas bloqueadas en formato
+     * {@code .map}. Como el formato no tiene paredes, cada celda, pared y
+     * esquina del laberinto ocupa una celda del mapa, que tiene por tanto
+     * {@code 2 * filas + 1} filas y {@code 2 * columnas + 1} columnas.
+     *
+     * @param maze     Laberinto a exportar.
+     * @param fileName Nombre del fichero.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    public static void writeGridMap(Maze maze, String fileName) throws IOException {
+        int rows = maze.getHeight(), columns = maze.getWidth();
+        byte[] line = new byte[2 * columns + 2];
+        line[line.length - 1] = '\n';
+
+        FileOutputStream out = new FileOutputStream(fileName);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, line.length));
+            put(channel, buffer, ("type octile\nheight " + (2 * rows + 1) + "\nwidth " +
+                                  (2 * columns + 1) + "\nmap\n").getBytes("US-ASCII"));
+
+            for (int y = 0; y <= rows; y++) {
+                for (int x = 0; x < columns; x++) {
+                    line[2 * x] = '@';
+                    line[2 * x + 1] = maze.hasHorizontalWall(y, x) ? (byte) '@' : (byte) '.';
+                }
+                line[2 * columns] = '@';
+                put(channel, buffer, line);
+
+                if (y < rows) {
+                    for (int x = 0; x <= columns; x++) {
+                        line[2 * x] = maze.hasVerticalWall(y, x) ? (byte) '@' : (byte) '.';
+                        if (x < columns)
+                            line[2 * x + 1] = '.';
+                    }
+                    put(channel, buffer, line);
+                }
+            }
+            flush(channel, buffer);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Proyecta un fichero completo en memoria.
+     *
+     * @param fileName Nombre del fichero.
+     * @return Buffer con el contenido del fichero.
+     * @throws IOException Si no se puede abrir o es demasiado grande.
+     */
+    private static ByteBuffer map(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException(MainWindow.getTranslations().exception().mazeTooLarge());
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return buffer;
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Localiza el principio de cada línea de un texto.
+     *
+     * @param text Texto.
+     * @return Vector con la posición de comienzo de cada línea, seguido de la
+     * posición del final del texto más uno.
+     */
+    private static int[] lineStarts(ByteBuffer text) {
+        int limit = text.limit(), count = 1;
+        for (int i = 0; i < limit; i++)
+            if (text.get(i) == '\n')
+                count++;
+
+        int[] lines = new int[count + 1];
+        int line = 1;
+        for (int i = 0; i < limit; i++)
+            if (text.get(i) == '\n')
+                lines[line++] = i + 1;
+        lines[count] = limit + 1;
+
+        return lines;
+    }
+
+    /**
+     * Calcula la longitud de una línea, sin contar el salto de línea.
+     *
+     * @param text  Texto.
+     * @param lines Comienzo de cada línea.
+     * @param line  Índice de la línea.
+     * @return Número de caracteres de la línea.
+     */
+    private static int lineLength(ByteBuffer text, int[] lines, int line) {
+        int end = lines[line + 1] - 1;
+        if (end > lines[line] && text.get(end - 1) == '\r')
+            end--;
+
+        return end - lines[line];
+    }
+
+    /**
+     * Obtiene un carácter del texto, considerando que las líneas cortas se
+     * completan con espacios.
+     *
+     * @param text   Texto.
+     * @param lines  Comienzo de cada línea.
+     * @param line   Índice de la línea.
+     * @param column Posición del carácter dentro de la línea.
+     * @return El carácter o un espacio si la línea no es tan larga.
+     */
+    private static byte charAt(ByteBuffer text, int[] lines, int line, int column) {
+        if (line >= lines.length - 1 || column >= lineLength(text, lines, line))
+            return ' ';
+
+        return text.get(lines[line] + column);
+    }
+
+    /**
+     * Indica si una línea empieza por una palabra.
+     *
+     * @param text   Texto.
+     * @param lines  Comienzo de cada línea.
+     * @param line   Índice de la línea.
+     * @param prefix Palabra.
+     * @return Si la línea empieza por la palabra.
+     */
+    private static boolean startsWith(ByteBuffer text, int[] lines, int line, String prefix) {
+        if (lineLength(text, lines, line) < prefix.length())
+            return false;
+
+        for (int i = 0; i < prefix.length(); i++)
+            if (text.get(lines[line] + i) != prefix.charAt(i))
+                return false;
+
+        return true;
+    }
+
+    /**
+     * Lee el número que aparece en una línea de la forma "nombre número".
+     *
+     * @param text  Texto.
+     * @param lines Comienzo de cada línea.
+     * @param line  Índice de la línea.
+     * @return Número leído o -1 si no hay ninguno.
+     */
+    private static int parseNumber(ByteBuffer text, int[] lines, int line) {
+        long value = -1;
+        int length = lineLength(text, lines, line);
+        for (int i = 0; i < length; i++) {
+            byte c = text.get(lines[line] + i);
+            if (c >= '0' && c <= '9') {
+                value = Math.max(value, 0) * 10 + (c - '0');
+                if (value > Integer.MAX_VALUE)
+                    return -1;
+            }
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * @param c Carácter de un mapa de celdas bloqueadas.
+     * @return Si el carácter representa una celda transitable.
+     */
+    private static boolean isPassable(byte c) {
+        return c == '.' || c == 'G' || c == 'S';
+    }
+
+    /**
+     * Abre el contorno de la primera celda transitable del borde de un mapa de
+     * celdas bloqueadas.
+     *
+     * @param walls Paredes del laberinto.
+     * @param text  Texto del mapa.
+     * @param lines Comienzo de cada línea.
+     * @param first Índice de la primera línea del mapa.
+     * @param exit  Posición donde guardar la salida.
+     * @return Si se ha encontrado alguna celda transitable en el borde.
+     */
+    private static boolean openBorder(EdgeWallStore walls, ByteBuffer text, int[] lines, int first,
+                                      Point exit) {
+        int rows = walls.getRows(), columns = walls.getColumns();
+        for (int i = 0; i < 2 * (rows + columns); i++) {
+            int x, y;
+            Direction dir;
+            if (i < columns) {
+                x = i; y = 0; dir = Direction.UP;
+            } else if (i < 2 * columns) {
+                x = i - columns; y = rows - 1; dir = Direction.DOWN;
+            } else if (i < 2 * columns + rows) {
+                x = 0; y = i - 2 * columns; dir = Direction.LEFT;
+            } else {
+                x = columns - 1; y = i - 2 * columns - rows; dir = Direction.RIGHT;
+            }
+
+            if (isPassable(charAt(text, lines, first + y, x))) {
+                walls.unsetWall(y, x, dir);
+                exit.setLocation(x + dir.getDeltaX(), y + dir.getDeltaY());
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Busca la primera abertura del contorno de un laberinto.
+     *
+     * @param walls Paredes del laberinto.
+     * @return Posición de la salida, fuera del laberinto.
+     */
+    private static Point findExit(EdgeWallStore walls) {
+        int rows = walls.getRows(), columns = walls.getColumns();
+        for (int x = 0; x < columns; x++) {
+            if (!walls.hasHorizontal(0, x))
+                return new Point(x, -1);
+            if (!walls.hasHorizontal(rows, x))
+                return new Point(x, rows);
+        }
+        for (int y = 0; y < rows; y++) {
+            if (!walls.hasVertical(y, 0))
+                return new Point(-1, y);
+            if (!walls.hasVertical(y, columns))
+                return new Point(columns, y);
+        }
+
+        return new Point(-1, 0);
+    }
+
+    /**
+     * Añade bytes al buffer de escritura, volcándolo al fichero si no caben.
+     *
+     * @param channel Canal en el que escribir.
+     * @param buffer  Buffer en modo de escritura.
+     * @param bytes   Bytes a escribir.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    private static void put(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        if (buffer.remaining() < bytes.length)
+            flush(channel, buffer);
+
+        buffer.put(bytes);
+    }
+
+    /**
+     * Vuelca al fichero el contenido del buffer de escritura y lo vacía.
+     *
+     * @param channel Canal en el que escribir.
+     * @param buffer  Buffer en modo de escritura.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+}
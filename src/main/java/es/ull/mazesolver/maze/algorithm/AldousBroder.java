@@ -66,8 +66,8 @@ public class AldousBroder extends MazeCreationAlgorithm {
      */
     @Override
     public void runCreationAlgorithm() {
-        int x = (int) (Math.random() * m_columns);
-        int y = (int) (Math.random() * m_rows);
+        int x = m_random.nextInt(m_columns);
+        int y = m_random.nextInt(m_rows);
         Point p = new Point(x, y);
 
         while (cellVisitedCount < (m_columns * m_rows)) {
@@ -95,7 +95,7 @@ public class AldousBroder extends MazeCreationAlgorithm {
         Direction dir;
 
         do {
-            dir = Direction.random();
+            dir = Direction.random(m_random);
             next_pos = dir.movePoint(p);
         }
         while (next_pos.y < 0 || next_pos.y >= m_rows || next_pos.x < 0 || next_pos.x >= m_columns);
@@ -0,0 +1,344 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file Eller.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.algorithm;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.maze.MazeCreationAlgorithm;
+import es.ull.mazesolver.maze.storage.MazeRowSink;
+import es.ull.mazesolver.maze.storage.MazeRowWriter;
+import es.ull.mazesolver.maze.storage.WallStore;
+import es.ull.mazesolver.util.Direction;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.SplittableRandom;
+
+/**
+ * Implementación del algoritmo de Eller para la generación aleatoria de
+ * laberintos perfectos.
+ * <br><br>
+ * El laberinto se genera fila a fila y cada fila terminada se envía a un
+ * {@link MazeRowSink}, así que sólo se guardan los conjuntos a los que
+ * pertenecen las celdas de la fila actual, como un union-find sobre sus
+ * columnas. La memoria utilizada depende de la anchura del laberinto pero no
+ * de su altura, lo que permite escribir directamente en un fichero laberintos
+ * que no cabrían en memoria mediante {@link Eller#writeMaze(String)}.
+ */
+public class Eller extends MazeCreationAlgorithm {
+    private static final byte ALL_WALLS = (byte) (Direction.UP.val | Direction.DOWN.val
+            | Direction.LEFT.val | Direction.RIGHT.val);
+
+    // Conjuntos de la fila actual y de la siguiente: cada columna apunta a otra
+    // columna de su mismo conjunto, y las raíces a sí mismas
+    private int[] m_parent, m_next;
+
+    // Marcas auxiliares indexadas por la raíz de cada conjunto. Valen -1 cuando
+    // no se están usando
+    private int[] m_mark;
+
+    private boolean[] m_down;
+    private byte[] m_walls;
+
+    /**
+     * Constructor. Crea una nueva instancia de la clase.
+     *
+     * @param rows    Número de filas del laberinto.
+     * @param columns Número de columnas del laberinto.
+     */
+    public Eller(int rows, int columns) {
+        super(rows, columns);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.MazeCreationAlgorithm#initializeMaze()
+     */
+    @Override
+    protected WallStore initializeMaze() {
+        // El almacén completo sólo se reserva si se crea el laberinto en memoria
+        return null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.MazeCreationAlgorithm#createMaze()
+     */
+    @Override
+    public WallStore createMaze() {
+        m_maze = super.initializeMaze();
+        return super.createMaze();
+    }
+
+    /**
+     * Genera el laberinto fila a fila, enviando cada fila al destino indicado
+     * en lugar de guardarla en memoria. No se añaden los ciclos ni las paredes
+     * adicionales que se hayan configurado.
+     *
+     * @param sink Destino de las filas del laberinto.
+     * @param exit Salida del laberinto. Debe ser una posición adyacente al borde
+     *             del laberinto, o {@code null} para no abrir ninguna salida.
+     * @throws IOException Si el destino no puede guardar alguna de las filas.
+     */
+    public void createMaze(MazeRowSink sink, Point exit) throws IOException {
+        m_random = new SplittableRandom(getSeed());
+        m_maze_exit = exit == null ? null : new Point(exit);
+        generate(sink, exit);
+    }
+
+    /**
+     * Genera el laberinto y lo escribe en un fichero con el formato descrito en
+     * {@link es.ull.mazesolver.maze.storage.MazeFile}, sin tenerlo completo en
+     * memoria en ningún momento. La salida se coloca en un punto aleatorio del
+     * borde.
+     *
+     * @param fileName Nombre del fichero.
+     * @throws IOException Si no se puede escribir el fichero, en cuyo caso se
+     *                     borra lo que se hubiera escrito.
+     */
+    public void writeMaze(String fileName) throws IOException {
+        m_random = new SplittableRandom(getSeed());
+
+        Direction dir = Direction.random(m_random);
+        int pos = m_random.nextInt(dir.isVertical() ? m_columns : m_rows);
+        switch (dir) {
+            case UP:
+                m_maze_exit = new Point(pos, -1);
+                break;
+            case DOWN:
+                m_maze_exit = new Point(pos, m_rows);
+                break;
+            case LEFT:
+                m_maze_exit = new Point(-1, pos);
+                break;
+            default:
+                m_maze_exit = new Point(m_columns, pos);
+                break;
+        }
+
+        MazeRowWriter writer = new MazeRowWriter(fileName, m_rows, m_columns, m_maze_exit);
+        try {
+            generate(writer, m_maze_exit);
+        } catch (IOException | RuntimeException | Error e) {
+            discard(writer, fileName, e);
+            throw e;
+        }
+
+        try {
+            writer.close();
+        } catch (IOException e) {
+            new File(fileName).delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Cierra y borra un fichero que no se ha podido terminar de escribir. Los
+     * errores al cerrarlo se añaden al error original, que es el que se
+     * notifica.
+     *
+     * @param writer   Fichero incompleto.
+     * @param fileName Nombre del fichero.
+     * @param cause    Error por el que no se pudo terminar el fichero.
+     */
+    private static void discard(MazeRowWriter writer, String fileName, Throwable cause) {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+
+        new File(fileName).delete();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.MazeCreationAlgorithm#runCreationAlgorithm()
+     */
+    @Override
+    protected void runCreationAlgorithm() {
+        try {
+            generate(new MazeRowSink() {
+                private int m_row = 0;
+
+                @Override
+                public void writeRow(byte[] walls) {
+                    for (int x = 0; x < m_columns; x++)
+                        m_maze.setWalls(m_row, x, walls[x]);
+                    m_row++;
+                }
+            }, null);
+        } catch (IOException e) {
+            // El almacén en memoria nunca lanza esta excepción
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Genera todas las filas del laberinto y las envía al destino indicado.
+     *
+     * @param sink Destino de las filas del laberinto.
+     * @param exit Salida del laberinto, o {@code null}.
+     * @throws IOException Si el destino no puede guardar alguna de las filas.
+     */
+    private void generate(MazeRowSink sink, Point exit) throws IOException {
+        Direction exit_dir = exit == null ? Direction.NONE : exitDirection(exit);
+        Point exit_cell = exit == null ? null : exit_dir.getOpposite().movePoint(exit);
+
+        m_parent = new int[m_columns];
+        m_next = new int[m_columns];
+        m_mark = new int[m_columns];
+        m_down = new boolean[m_columns];
+        m_walls = new byte[m_columns];
+
+        for (int x = 0; x < m_columns; x++) {
+            m_parent[x] = x;
+            m_mark[x] = -1;
+        }
+
+        for (int y = 0; y < m_rows; y++) {
+            boolean last = y == m_rows - 1;
+
+            for (int x = 0; x < m_columns; x++) {
+                m_walls[x] = ALL_WALLS;
+                if (y > 0 && m_down[x])
+                    m_walls[x] &= ~Direction.UP.val;
+            }
+
+            // En la última fila se unen todos los conjuntos que queden separados
+            for (int x = 0; x < m_columns - 1; x++) {
+                int a = find(x), b = find(x + 1);
+                if (a != b && (last || m_random.nextBoolean())) {
+                    m_parent[b] = a;
+                    m_walls[x] &= ~Direction.RIGHT.val;
+                    m_walls[x + 1] &= ~Direction.LEFT.val;
+                }
+            }
+
+            if (!last)
+                joinDown();
+
+            if (exit_cell != null && exit_cell.y == y)
+                m_walls[exit_cell.x] &= ~exit_dir.val;
+
+            sink.writeRow(m_walls);
+        }
+
+        m_parent = m_next = m_mark = null;
+        m_down = null;
+        m_walls = null;
+    }
+
+    /**
+     * Abre pasillos aleatorios hacia la fila siguiente, al menos uno por cada
+     * conjunto para que ninguno quede aislado, y prepara los conjuntos de la
+     * fila siguiente a partir de ellos.
+     */
+    private void joinDown() {
+        // La marca de cada conjunto es -2 si ya baja por alguna celda, o la última
+        // celda vista del conjunto si todavía no baja por ninguna
+        for (int x = 0; x < m_columns; x++) {
+            int root = find(x);
+            m_down[x] = m_random.nextBoolean();
+            if (m_down[x])
+                m_mark[root] = -2;
+            else if (m_mark[root] != -2)
+                m_mark[root] = x;
+        }
+
+        for (int x = 0; x < m_columns; x++) {
+            int root = find(x);
+            if (m_mark[root] >= 0)
+                m_down[m_mark[root]] = true;
+            m_mark[root] = -1;
+        }
+
+        // Las celdas que bajan desde un mismo conjunto forman un conjunto en la
+        // fila siguiente, cuya raíz es la primera de ellas. El resto empieza en
+        // un conjunto propio
+        for (int x = 0; x < m_columns; x++) {
+            if (m_down[x]) {
+                m_walls[x] &= ~Direction.DOWN.val;
+                int root = find(x);
+                if (m_mark[root] < 0)
+                    m_mark[root] = x;
+                m_next[x] = m_mark[root];
+            } else
+                m_next[x] = x;
+        }
+
+        for (int x = 0; x < m_columns; x++)
+            if (m_down[x])
+                m_mark[find(x)] = -1;
+
+        int[] tmp = m_parent;
+        m_parent = m_next;
+        m_next = tmp;
+    }
+
+    /**
+     * Busca la raíz del conjunto al que pertenece una columna de la fila actual,
+     * acortando el camino recorrido.
+     *
+     * @param x Columna.
+     * @return Columna raíz de su conjunto.
+     */
+    private int find(int x) {
+        while (m_parent[x] != x) {
+            m_parent[x] = m_parent[m_parent[x]];
+            x = m_parent[x];
+        }
+        return x;
+    }
+
+    /**
+     * Obtiene el borde del laberinto por el que sale una salida.
+     *
+     * @param exit Posición de la salida, fuera del laberinto.
+     * @return Dirección en la que está la salida respecto a su celda.
+     */
+    private Direction exitDirection(Point exit) {
+        if (exit.x >= 0 && exit.x < m_columns) {
+            if (exit.y == -1)
+                return Direction.UP;
+            if (exit.y == m_rows)
+                return Direction.DOWN;
+        }
+        if (exit.y >= 0 && exit.y < m_rows) {
+            if (exit.x == -1)
+                return Direction.LEFT;
+            if (exit.x == m_columns)
+                return Direction.RIGHT;
+        }
+
+        throw new IllegalArgumentException(MainWindow.getTranslations().exception().invalidMaze());
+    }
+
+}
@@ -65,8 +65,8 @@ public class HuntAndKill extends MazeCreationAlgorithm {
      */
     @Override
     public void runCreationAlgorithm() {
-        int x = (int) (Math.random() * m_rows);
-        int y = (int) (Math.random() * m_columns);
+        int x = m_random.nextInt(m_columns);
+        int y = m_random.nextInt(m_rows);
 
         Point p = new Point(x, y);
         while (p != null) {
@@ -143,7 +143,7 @@ public class HuntAndKill extends MazeCreationAlgorithm {
         if (directions.isEmpty())
             return Direction.NONE;
         else
-            return directions.get((int) (Math.random() * directions.size()));
+            return directions.get(m_random.nextInt(directions.size()));
     }
 
 }
@@ -25,19 +25,50 @@
  */
 package es.ull.mazesolver.maze.algorithm;
 
+import es.ull.mazesolver.gui.MainWindow;
 import es.ull.mazesolver.maze.MazeCreationAlgorithm;
 import es.ull.mazesolver.util.Direction;
-import es.ull.mazesolver.util.Pair;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Implementación del algoritmo de Kruskal para la generación aleatoria de
  * laberintos.
+ * <br><br>
+ * Los muros interiores se codifican como enteros (celda * 2, más 1 si separan
+ * la celda de la de abajo en lugar de la de la derecha) y se barajan de
+ * antemano en un vector. Los conjuntos de celdas conectadas se representan con
+ * un bosque de conjuntos disjuntos sobre un vector de enteros, con compresión
+ * de caminos y unión por rango, de manera que el coste total es prácticamente
+ * lineal en el número de celdas.
+ * <br><br>
+ * Opcionalmente se puede usar la variante "filter-Kruskal": a partir de cierto
+ * punto, antes de procesar cada bloque de muros se descartan en paralelo los
+ * muros restantes que ya separan celdas conectadas. El laberinto resultante es el mismo que con
+ * la variante secuencial para el mismo orden de los muros.
  */
 public class Kruskal extends MazeCreationAlgorithm {
-    private ArrayList<Integer> disjoint_set;
-    private ArrayList<short[]> walls;
+    // Fracción de los muros que se procesa antes de empezar a filtrar
+    private static final double FIRST_JOIN_FRACTION = 0.6;
+
+    // Número mínimo de muros que se procesan entre cada filtrado
+    private static final int FILTER_BLOCK = 1 << 16;
+
+    // Número de tareas en las que se divide cada filtrado por procesador
+    private static final int FILTER_TASKS_PER_THREAD = 4;
+
+    private boolean m_parallel;
+
+    // Padre de cada celda en el bosque de conjuntos disjuntos, o -(rango + 1) si
+    // es la raíz de su conjunto
+    private int[] m_parent;
 
     /**
      * Constructor. Crea una nueva instancia de la clase.
@@ -47,16 +78,21 @@ public class Kruskal extends MazeCreationAlgorithm {
      */
     public Kruskal(int rows, int columns) {
         super(rows, columns);
-        walls = new ArrayList<short[]>();
 
-        // Creamos una matriz de visitados para saber en cada momento cuáles son
-        // las celdas que no se han visitado todavía.
-        disjoint_set = new ArrayList<Integer>();
-
-        for (int i = 0; i < m_rows * m_columns; i++)
-            disjoint_set.add(i);
+        if ((long) rows * columns * 2 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().mazeTooLarge());
+    }
 
-        addAll();
+    /**
+     * Indica si se deben descartar en paralelo los muros que ya separan celdas
+     * conectadas (variante "filter-Kruskal"). Sólo compensa en laberintos muy
+     * grandes.
+     *
+     * @param parallel Si se debe usar la variante paralela.
+     */
+    public void setParallel(boolean parallel) {
+        m_parallel = parallel;
     }
 
     /*
@@ -66,83 +102,204 @@ public class Kruskal extends MazeCreationAlgorithm {
      */
     @Override
     public void runCreationAlgorithm() {
-        int nextWall, y, x;
-        while (!walls.isEmpty()) {
-            // Seleccionamos una celda y una direccion de dentro de las posibles que
-            // no hemos escogido aun.
-            nextWall = (int) Math.round(0 + (Math.random() * (walls.size() - 1)));
-            y = walls.get(nextWall)[0];
-            x = walls.get(nextWall)[1];
-            Direction dir = Direction.fromValue(walls.get(nextWall)[2]);
-            Pair<Integer, Integer> desp = dir.decompose();
-
-            // Si la celda vecina a la posicion i,j +dir pertenece a otro conjunto
-            // entonces, la marcamos del mismo conjunto (y a cada elemento del mismo)
-            // y abrimos el pasillo por ahi.
-            if (value(y, x) != value(y + desp.second, x + desp.first)) {
-                openPassage(y, x, dir);
-                union(value(y, x), value(y + desp.second, x + desp.first));
+        m_parent = new int[m_rows * m_columns];
+        Arrays.fill(m_parent, -1);
+
+        int[] walls = shuffledWalls();
+        int sets = m_parent.length;
+
+        if (!m_parallel)
+            join(walls, 0, walls.length, sets);
+        else {
+            // Hasta que no se han procesado la mitad de los muros casi no hay
+            // grandes conjuntos de celdas (umbral de percolación de la
+            // cuadrícula), así que no merece la pena filtrar hasta algo después.
+            // Tras cada filtrado se procesa la mitad de los muros que quedan
+            int from = (int) (walls.length * FIRST_JOIN_FRACTION), to = walls.length;
+            sets = join(walls, 0, from, sets);
+
+            while (from < to && sets > 1) {
+                to = filter(walls, from, to);
+                int end = from + Math.max((to - from) / 2, Math.min(FILTER_BLOCK, to - from));
+                sets = join(walls, from, end, sets);
+                from = end;
+            }
+        }
+
+        m_parent = null;
+    }
+
+    /**
+     * Crea el vector de todos los muros interiores del laberinto, en orden
+     * aleatorio.
+     *
+     * @return Vector de muros codificados.
+     */
+    private int[] shuffledWalls() {
+        int[] walls = new int[m_rows * (m_columns - 1) + (m_rows - 1) * m_columns];
+
+        int n = 0;
+        for (int y = 0; y < m_rows; y++) {
+            for (int x = 0; x < m_columns; x++) {
+                int cell = y * m_columns + x;
+                if (x < m_columns - 1)
+                    walls[n++] = cell * 2;
+                if (y < m_rows - 1)
+                    walls[n++] = cell * 2 + 1;
+            }
+        }
+
+        // Fisher-Yates
+        SplittableRandom random = m_random;
+        for (int i = walls.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = walls[i];
+            walls[i] = walls[j];
+            walls[j] = tmp;
+        }
+
+        return walls;
+    }
+
+    /**
+     * Recorre un rango de muros en orden, abriendo los que separan celdas de
+     * distintos conjuntos y uniendo sus conjuntos.
+     *
+     * @param walls Vector de muros.
+     * @param from  Primer muro del rango.
+     * @param to    Posición siguiente al último muro del rango.
+     * @param sets  Número de conjuntos antes de recorrer el rango.
+     * @return Número de conjuntos después de recorrer el rango.
+     */
+    private int join(int[] walls, int from, int to, int sets) {
+        for (int i = from; i < to && sets > 1; i++) {
+            int cell = walls[i] >>> 1;
+            boolean down = (walls[i] & 1) != 0;
+
+            int root_a = find(cell);
+            int root_b = find(down ? cell + m_columns : cell + 1);
+
+            if (root_a != root_b) {
+                openPassage(cell / m_columns, cell % m_columns, down ? Direction.DOWN : Direction.RIGHT);
+                union(root_a, root_b);
+                sets--;
             }
-            walls.remove(nextWall);
         }
+
+        return sets;
     }
 
     /**
-     * Añade todos los muros a la lista de muros a elegir aleatoriamente.
+     * Descarta en paralelo los muros de un rango que separan celdas del mismo
+     * conjunto, compactando los restantes al principio del rango sin cambiar su
+     * orden.
+     *
+     * @param walls Vector de muros.
+     * @param from  Primer muro del rango.
+     * @param to    Posición siguiente al último muro del rango.
+     * @return Posición siguiente al último muro que queda en el rango.
      */
-    private void addAll() {
-        for (int y = 0; y < m_rows; y++)
-            for (int x = 0; x < m_columns; x++)
-                for (short k = 1; k < Direction.MAX_DIRECTIONS; k++) {
-                    Direction dir = Direction.fromIndex(k);
-                    Pair<Integer, Integer> desp = dir.decompose();
-                    if ((y + desp.second >= 0) && (x + desp.first >= 0) && (y + desp.second < m_rows)
-                            && (x + desp.first < m_columns)) {
-                        short[] aux = {(short) y, (short) x, dir.val};
-                        walls.add(aux);
+    private int filter(final int[] walls, int from, int to) {
+        int tasks = Runtime.getRuntime().availableProcessors() * FILTER_TASKS_PER_THREAD;
+        int chunk = (int) Math.max(((long) to - from + tasks - 1) / tasks, FILTER_BLOCK);
+
+        // Cada tarea compacta su parte del rango, y después se juntan las partes
+        List<Callable<Integer>> filters = new ArrayList<Callable<Integer>>();
+        final ArrayList<Integer> starts = new ArrayList<Integer>();
+        for (int start = from; start < to; start += chunk) {
+            final int chunk_from = start;
+            final int chunk_to = (int) Math.min((long) start + chunk, to);
+            starts.add(start);
+
+            filters.add(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int n = chunk_from;
+                    for (int i = chunk_from; i < chunk_to; i++) {
+                        int cell = walls[i] >>> 1;
+                        int neighbour = (walls[i] & 1) != 0 ? cell + m_columns : cell + 1;
+
+                        if (root(cell) != root(neighbour))
+                            walls[n++] = walls[i];
                     }
+
+                    return n;
                 }
+            });
+        }
+
+        try {
+            List<Future<Integer>> results = ForkJoinPool.commonPool().invokeAll(filters);
+
+            int n = from;
+            for (int i = 0; i < results.size(); i++) {
+                int start = starts.get(i);
+                int length = results.get(i).get() - start;
+                System.arraycopy(walls, start, walls, n, length);
+                n += length;
+            }
+
+            return n;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
     }
 
     /**
-     * Obtiene el índice que representa la posición (x, y).
+     * Obtiene la raíz del conjunto de una celda, acortando el camino hasta ella
+     * (cada celda del camino pasa a apuntar a su abuelo).
      *
-     * @param y Posición en el eje Y.
-     * @param x Posición en el eje X.
-     * @return La posición del vector dada por el punto (x, y).
+     * @param cell Índice de la celda.
+     * @return Raíz del conjunto de la celda.
      */
-    private int pos(int y, int x) {
-        // FIXME Esto está invertido. La fórmula real sería (y * m_columns) + x
-        // No lo cambio porque no sé si hay código que depende de este
-        // comportamiento erróneo.
-        return (x * m_columns) + y;
+    private int find(int cell) {
+        int parent;
+        while ((parent = m_parent[cell]) >= 0) {
+            int grandparent = m_parent[parent];
+            if (grandparent < 0)
+                return parent;
+
+            m_parent[cell] = grandparent;
+            cell = grandparent;
+        }
+
+        return cell;
     }
 
     /**
-     * Une dos conjuntos disjuntos, de la forma siguiente: Todo conjunto que
-     * tenga como valor representativo value_from, lo mueve al conjunto de valor
-     * value_to.
+     * Obtiene la raíz del conjunto de una celda sin modificar el bosque, de
+     * manera que se puede llamar desde varios hilos a la vez.
      *
-     * @param value_from Valor representativo del conjunto que se va a ser unido al otro
-     *                   conjunto.
-     * @param value_to   Valor representativo del conjunto al que se va a unir el otro
-     *                   conjunto.
+     * @param cell Índice de la celda.
+     * @return Raíz del conjunto de la celda.
      */
-    private void union(int value_from, int value_to) {
-        for (int k = 0; k < disjoint_set.size(); k++)
-            if (disjoint_set.get(k) == value_from)
-                disjoint_set.set(k, value_to);
+    private int root(int cell) {
+        while (m_parent[cell] >= 0)
+            cell = m_parent[cell];
+
+        return cell;
     }
 
     /**
-     * Obtiene el valor del conjunto del elemento (x, y).
+     * Une dos conjuntos disjuntos, colgando el de menor rango del de mayor
+     * rango.
      *
-     * @param y Posición en el eje Y.
-     * @param x Posición en el eje X.
-     * @return Valor del conjunto del elemento (x, y).
+     * @param root_a Raíz del primer conjunto.
+     * @param root_b Raíz del segundo conjunto.
      */
-    private int value(int y, int x) {
-        return disjoint_set.get(pos(y, x));
+    private void union(int root_a, int root_b) {
+        // Como las raíces guardan -(rango + 1), el de mayor rango tiene el valor
+        // más pequeño
+        if (m_parent[root_a] > m_parent[root_b])
+            m_parent[root_a] = root_b;
+        else {
+            if (m_parent[root_a] == m_parent[root_b])
+                m_parent[root_a]--;
+            m_parent[root_b] = root_a;
+        }
     }
 
 }
@@ -0,0 +1,270 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file ParallelTiles.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.algorithm;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.maze.MazeCreationAlgorithm;
+import es.ull.mazesolver.maze.storage.WallStore;
+import es.ull.mazesolver.util.Direction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Generador que divide el laberinto en bloques, crea cada bloque en paralelo
+ * con otro algoritmo de creación de laberintos y después los une en un único
+ * laberinto perfecto.
+ * <br><br>
+ * Los bloques se unen abriendo un único pasillo a través de cada frontera entre
+ * dos bloques que forme parte de un árbol de expansión aleatorio sobre la
+ * cuadrícula de bloques. Como cada bloque es un laberinto perfecto, el
+ * resultado también lo es.
+ * <br><br>
+ * Los bloques se generan en {@link ForkJoinPool#commonPool()} y cada uno copia
+ * sus paredes interiores en el laberinto en cuanto termina. Los límites entre
+ * columnas de bloques están alineados a 64 columnas para que dos bloques no
+ * modifiquen nunca la misma palabra del almacén de paredes.
+ */
+public class ParallelTiles extends MazeCreationAlgorithm {
+    /**
+     * Número de filas y columnas de cada bloque si no se indica otro.
+     */
+    public static final int DEFAULT_TILE_SIZE = 512;
+
+    private static final int TILE_ALIGN = 64;
+
+    /**
+     * Crea el algoritmo que genera cada bloque. Se llama desde varios hilos a
+     * la vez, así que cada llamada debe devolver una instancia nueva.
+     */
+    public interface TileFactory {
+        /**
+         * @param rows    Número de filas del bloque.
+         * @param columns Número de columnas del bloque.
+         * @return Algoritmo que genera el bloque.
+         */
+        MazeCreationAlgorithm create(int rows, int columns);
+    }
+
+    private TileFactory m_factory;
+    private int m_tile_size;
+
+    // Primera fila y columna de cada bloque, terminadas por el número de filas y
+    // de columnas del laberinto
+    private int[] m_row_bounds, m_column_bounds;
+
+    /**
+     * Constructor. Crea una nueva instancia de la clase.
+     *
+     * @param rows    Número de filas del laberinto.
+     * @param columns Número de columnas del laberinto.
+     * @param factory Crea el algoritmo con el que se genera cada bloque.
+     */
+    public ParallelTiles(int rows, int columns, TileFactory factory) {
+        super(rows, columns);
+
+        if (factory == null)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().invalidMazeCreationAlgorithm());
+
+        m_factory = factory;
+        m_tile_size = DEFAULT_TILE_SIZE;
+    }
+
+    /**
+     * Establece el tamaño aproximado de cada bloque. Se redondea a un múltiplo de
+     * 64, y los bloques del borde inferior y derecho pueden ser hasta el doble de
+     * grandes para repartir las filas y columnas que sobran.
+     *
+     * @param size Número de filas y columnas de cada bloque.
+     */
+    public void setTileSize(int size) {
+        m_tile_size = Math.max(TILE_ALIGN, (size + TILE_ALIGN - 1) / TILE_ALIGN * TILE_ALIGN);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.MazeCreationAlgorithm#runCreationAlgorithm()
+     */
+    @Override
+    protected void runCreationAlgorithm() {
+        m_row_bounds = bounds(m_rows);
+        m_column_bounds = bounds(m_columns);
+
+        int tile_rows = m_row_bounds.length - 1;
+        int tile_columns = m_column_bounds.length - 1;
+
+        // Las semillas se eligen antes de repartir el trabajo para que el
+        // resultado no dependa del orden en que se ejecuten los bloques
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(tile_rows * tile_columns);
+        for (int ty = 0; ty < tile_rows; ty++) {
+            for (int tx = 0; tx < tile_columns; tx++) {
+                final int tile_y = ty, tile_x = tx;
+                final long seed = m_random.nextLong();
+                tasks.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        generateTile(tile_y, tile_x, seed);
+                        return null;
+                    }
+                });
+            }
+        }
+
+        try {
+            List<Future<Void>> results = ForkJoinPool.commonPool().invokeAll(tasks);
+            for (Future<Void> result : results)
+                result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+
+        stitch(tile_rows, tile_columns);
+        m_row_bounds = m_column_bounds = null;
+    }
+
+    /**
+     * Calcula los límites de los bloques a lo largo de una dimensión.
+     *
+     * @param length Número de filas o columnas del laberinto.
+     * @return Primera posición de cada bloque, seguida de {@code length}.
+     */
+    private int[] bounds(int length) {
+        int n = Math.max(1, length / m_tile_size);
+        int[] bounds = new int[n + 1];
+
+        for (int i = 0; i < n; i++)
+            bounds[i] = i * m_tile_size;
+        bounds[n] = length;
+
+        return bounds;
+    }
+
+    /**
+     * Genera un bloque y copia sus paredes interiores en el laberinto.
+     *
+     * @param ty   Fila del bloque.
+     * @param tx   Columna del bloque.
+     * @param seed Semilla del algoritmo que genera el bloque.
+     */
+    private void generateTile(int ty, int tx, long seed) {
+        int y0 = m_row_bounds[ty], x0 = m_column_bounds[tx];
+        int height = m_row_bounds[ty + 1] - y0;
+        int width = m_column_bounds[tx + 1] - x0;
+
+        MazeCreationAlgorithm alg = m_factory.create(height, width);
+        alg.setSeed(seed);
+        WallStore tile = alg.createMaze();
+
+        // La salida que abre el algoritmo en el borde del bloque no se copia
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (x < width - 1 && !tile.hasWall(y, x, Direction.RIGHT))
+                    openPassage(y0 + y, x0 + x, Direction.RIGHT);
+                if (y < height - 1 && !tile.hasWall(y, x, Direction.DOWN))
+                    openPassage(y0 + y, x0 + x, Direction.DOWN);
+            }
+        }
+    }
+
+    /**
+     * Une los bloques abriendo un pasillo aleatorio a través de cada frontera de
+     * un árbol de expansión aleatorio sobre la cuadrícula de bloques, obtenido
+     * con el algoritmo de Kruskal.
+     *
+     * @param tile_rows    Número de filas de bloques.
+     * @param tile_columns Número de columnas de bloques.
+     */
+    private void stitch(int tile_rows, int tile_columns) {
+        int tiles = tile_rows * tile_columns;
+        int[] parent = new int[tiles];
+        for (int i = 0; i < tiles; i++)
+            parent[i] = i;
+
+        // Cada frontera se codifica como bloque * 2, más 1 si es la inferior
+        int[] borders = new int[tiles * 2];
+        int n = 0;
+        for (int i = 0; i < tiles; i++) {
+            if (i % tile_columns < tile_columns - 1)
+                borders[n++] = i * 2;
+            if (i / tile_columns < tile_rows - 1)
+                borders[n++] = i * 2 + 1;
+        }
+
+        for (int i = n - 1; i > 0; i--) {
+            int j = m_random.nextInt(i + 1);
+            int tmp = borders[i];
+            borders[i] = borders[j];
+            borders[j] = tmp;
+        }
+
+        for (int i = 0; i < n; i++) {
+            int tile = borders[i] >>> 1;
+            boolean down = (borders[i] & 1) != 0;
+            int ty = tile / tile_columns, tx = tile % tile_columns;
+
+            int a = find(parent, tile);
+            int b = find(parent, down ? tile + tile_columns : tile + 1);
+            if (a == b)
+                continue;
+
+            parent[a] = b;
+            if (down) {
+                int x = m_column_bounds[tx]
+                        + m_random.nextInt(m_column_bounds[tx + 1] - m_column_bounds[tx]);
+                openPassage(m_row_bounds[ty + 1] - 1, x, Direction.DOWN);
+            } else {
+                int y = m_row_bounds[ty]
+                        + m_random.nextInt(m_row_bounds[ty + 1] - m_row_bounds[ty]);
+                openPassage(y, m_column_bounds[tx + 1] - 1, Direction.RIGHT);
+            }
+        }
+    }
+
+    /**
+     * Obtiene la raíz del conjunto de un bloque, acortando el camino hasta ella.
+     *
+     * @param parent Padre de cada bloque en el union-find.
+     * @param tile   Índice del bloque.
+     * @return Raíz del conjunto del bloque.
+     */
+    private static int find(int[] parent, int tile) {
+        while (parent[tile] != tile) {
+            parent[tile] = parent[parent[tile]];
+            tile = parent[tile];
+        }
+        return tile;
+    }
+
+}
@@ -25,19 +25,28 @@
  */
 package es.ull.mazesolver.maze.algorithm;
 
+import es.ull.mazesolver.gui.MainWindow;
 import es.ull.mazesolver.maze.MazeCreationAlgorithm;
 import es.ull.mazesolver.util.Direction;
-import es.ull.mazesolver.util.Pair;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * Implementación del algoritmo de Prim para la generación aleatoria de
  * laberintos perfectos.
+ * <br><br>
+ * La frontera (muros entre una celda incluida y una vecina) se guarda en un
+ * vector de enteros, codificando cada muro como celda * 4 más el índice de la
+ * dirección, y los muros elegidos se eliminan intercambiándolos con el último.
+ * Las celdas incluidas se marcan en un campo de bits.
  */
 public class Prim extends MazeCreationAlgorithm {
-    private ArrayList<ArrayList<Boolean>> m_included_cells;
-    private ArrayList<short[]> walls;
+    private static final int INITIAL_FRONTIER = 1024;
+
+    private long[] m_included;
+    private int[] m_frontier;
+    private int m_frontier_size;
 
     /**
      * Constructor. Crea una nueva instancia de la clase.
@@ -47,16 +56,10 @@ public class Prim extends MazeCreationAlgorithm {
      */
     public Prim(int rows, int columns) {
         super(rows, columns);
-        walls = new ArrayList<short[]>();
-        m_included_cells = new ArrayList<ArrayList<Boolean>>(rows);
-
-        // Creamos una matriz de visitados para saber en cada momento cuáles son
-        // las celdas que no se han visitado todavía.
-        for (int y = 0; y < rows; y++) {
-            m_included_cells.add(new ArrayList<Boolean>(columns));
-            for (int x = 0; x < columns; x++)
-                m_included_cells.get(y).add(false);
-        }
+
+        if ((long) rows * columns * 4 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().mazeTooLarge());
     }
 
     /*
@@ -66,51 +69,72 @@ public class Prim extends MazeCreationAlgorithm {
      */
     @Override
     public void runCreationAlgorithm() {
-        short y = 0;
-        short x = 0;
+        m_included = new long[(m_rows * m_columns + 63) >>> 6];
+        m_frontier = new int[INITIAL_FRONTIER];
+        m_frontier_size = 0;
+
         // Empezar el laberinto con todo lleno de paredes y selecionar una celda.
-        m_included_cells.get(y).set(x, true);
-        addCell(y, x);
-        // Mientras haya celdas sin visitar, seguir visitando.
-        int nextWall = 0;
-        while (!walls.isEmpty()) {
-            // Seleccionamos una celda y una direccion de dentro de las posibles que
-            // no hemos escogido aun.
-            nextWall = (int) Math.round(0 + (Math.random() * (walls.size() - 1)));
-            y = walls.get(nextWall)[0];
-            x = walls.get(nextWall)[1];
-            Direction dir = Direction.fromValue(walls.get(nextWall)[2]);
-            Pair<Integer, Integer> desp = dir.decompose();
-
-            // Si la celda vecina a la posicion i,j +dir sigue estando disponible
-            // la elegimos y agregamos las celdas vecinas a esta al conjunto, si no
-            // eliminamos dicha posicion con dicha direccion para que no vuelva
-            // a salir de forma aleatoria
-            if (!m_included_cells.get(y + desp.second).get(x + desp.first)) {
-                openPassage(y, x, dir);
-                m_included_cells.get(y + desp.second).set(x + desp.first, true);
-                addCell(y + desp.second, x + desp.first);
+        addCell(0);
+
+        // Mientras haya muros en la frontera, seguir visitando.
+        SplittableRandom random = m_random;
+        while (m_frontier_size > 0) {
+            // Seleccionamos un muro de la frontera y lo quitamos de ella
+            int next = random.nextInt(m_frontier_size);
+            int wall = m_frontier[next];
+            m_frontier[next] = m_frontier[--m_frontier_size];
+
+            int cell = wall >>> 2;
+            Direction dir = Direction.fromIndex((wall & 3) + 1);
+            int neighbour = cell + dir.getDeltaY() * m_columns + dir.getDeltaX();
+
+            // Si la celda vecina sigue estando disponible la elegimos y agregamos
+            // sus muros a la frontera
+            if (!isIncluded(neighbour)) {
+                openPassage(cell / m_columns, cell % m_columns, dir);
+                addCell(neighbour);
             }
-            walls.remove(nextWall);
         }
+
+        m_included = null;
+        m_frontier = null;
     }
 
     /**
-     * Añade las celdas adyacentes a la (x, y) a la lista de paredes.
+     * Incluye una celda en el laberinto y añade a la frontera los muros que la
+     * separan de las celdas vecinas que no están incluidas.
      *
-     * @param y Posición en el eje Y desde la que se quiere partir.
-     * @param x Posición en el eje X desde la que se quiere partir.
+     * @param cell Índice de la celda (fila * columnas + columna).
      */
-    private void addCell(final int y, final int x) {
-        for (short k = 1; k < Direction.MAX_DIRECTIONS; k++) {
+    private void addCell(int cell) {
+        m_included[cell >>> 6] |= 1L << cell;
+
+        int y = cell / m_columns;
+        int x = cell % m_columns;
+
+        for (int k = 1; k < Direction.MAX_DIRECTIONS; k++) {
             Direction dir = Direction.fromIndex(k);
-            Pair<Integer, Integer> desp = dir.decompose();
-            if ((y + desp.second >= 0) && (x + desp.first >= 0) && (y + desp.second < m_rows)
-                    && (x + desp.first < m_columns)
-                    && !m_included_cells.get(y + desp.second).get(x + desp.first)) {
-                short[] aux = {(short) y, (short) x, dir.val};
-                walls.add(aux);
+            int ny = y + dir.getDeltaY();
+            int nx = x + dir.getDeltaX();
+
+            if (ny >= 0 && nx >= 0 && ny < m_rows && nx < m_columns &&
+                !isIncluded(ny * m_columns + nx)) {
+                if (m_frontier_size == m_frontier.length)
+                    m_frontier = Arrays.copyOf(m_frontier, m_frontier_size * 2);
+
+                m_frontier[m_frontier_size++] = cell * 4 + (k - 1);
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Indica si una celda ya forma parte del laberinto.
+     *
+     * @param cell Índice de la celda.
+     * @return Si la celda está incluida.
+     */
+    private boolean isIncluded(int cell) {
+        return (m_included[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+}
@@ -110,7 +110,7 @@ public class RecursiveBacktracking extends MazeCreationAlgorithm {
         if (directions.isEmpty())
             return Direction.NONE;
         else
-            return directions.get((int) (Math.random() * directions.size()));
+            return directions.get(m_random.nextInt(directions.size()));
     }
 
 }
@@ -26,20 +26,39 @@
 package es.ull.mazesolver.maze.algorithm;
 
 import es.ull.mazesolver.maze.MazeCreationAlgorithm;
+import es.ull.mazesolver.maze.storage.EdgeWallStore;
 import es.ull.mazesolver.util.Direction;
-import es.ull.mazesolver.util.Pair;
 
-import java.awt.Point;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 
 /**
  * Implementación de algoritmo Division Recursiva para la generación aleatoria
  * de laberintos perfectos.
+ * <br><br>
+ * Cuando una cámara grande se divide con un muro horizontal, las dos
+ * sub-cámaras ocupan filas distintas, así que en el almacén de paredes no
+ * comparten ninguna palabra y se pueden dividir en paralelo sin bloqueos. Las
+ * dos mitades de una división vertical comparten palabras, por lo que se
+ * dividen una detrás de otra dentro de la misma tarea. Cada sub-cámara que se
+ * puede dividir por separado usa su propio generador de números aleatorios,
+ * obtenido con {@link SplittableRandom#split()}, de manera que el laberinto es
+ * el mismo tanto en paralelo como en secuencial.
  */
 public class RecursiveDivision extends MazeCreationAlgorithm {
 
     private final static int HORIZONTAL = 0;
     private final static int VERTICAL = 1;
 
+    // Número mínimo de celdas que debe tener una cámara para que sus dos
+    // sub-cámaras se dividan por separado
+    private final static int FORK_THRESHOLD = 1 << 14;
+
+    private EdgeWallStore m_edges;
+    private boolean m_parallel;
+
     /**
      * Constructor. Crea una nueva instancia de la clase.
      *
@@ -48,15 +67,29 @@ public class RecursiveDivision extends MazeCreationAlgorithm {
      */
     public RecursiveDivision(int rows, int columns) {
         super(rows, columns);
-        for (int y = 0; y < m_rows; y++)
-            for (int x = 0; x < m_columns; x++)
-                for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
-                    Direction dir = Direction.fromIndex(i);
-                    Point next = dir.movePoint(new Point(x, y));
-
-                    if (next.y >= 0 && next.y < m_rows && next.x >= 0 && next.x < m_columns)
-                        m_maze.get(y).get(x).toggleWall(dir);
-                }
+        m_edges = (EdgeWallStore) m_maze;
+
+        // Quitamos todas las paredes interiores, dejando sólo el contorno
+        m_edges.fill((short) 0);
+        for (int w = 0; w < m_edges.getHorizontalStride(); w++) {
+            m_edges.setHorizontalWord(0, w, -1L);
+            m_edges.setHorizontalWord(m_rows, w, -1L);
+        }
+        for (int y = 0; y < m_rows; y++) {
+            m_edges.setWall(y, 0, Direction.LEFT);
+            m_edges.setWall(y, m_columns - 1, Direction.RIGHT);
+        }
+    }
+
+    /**
+     * Indica si las cámaras grandes se deben dividir en paralelo en
+     * {@link ForkJoinPool#commonPool()}. El laberinto generado es el mismo en
+     * ambos casos.
+     *
+     * @param parallel Si se debe usar la variante paralela.
+     */
+    public void setParallel(boolean parallel) {
+        m_parallel = parallel;
     }
 
     /*
@@ -66,7 +99,12 @@ public class RecursiveDivision extends MazeCreationAlgorithm {
      */
     @Override
     protected void runCreationAlgorithm() {
-        divide(0, 0, m_columns, m_rows, chooseOrientation(m_columns, m_rows));
+        Division root = new Division(0, 0, m_columns, m_rows,
+                                     chooseOrientation(m_columns, m_rows, m_random), m_random);
+        if (m_parallel)
+            ForkJoinPool.commonPool().invoke(root);
+        else
+            root.compute();
     }
 
     /**
@@ -77,50 +115,79 @@ public class RecursiveDivision extends MazeCreationAlgorithm {
      * @param width       Número de columnas del sub laberinto.
      * @param height      Número de filas del sub Laberinto.
      * @param orientation Orientación a seguir para generar el sub laberinto
+     * @param random      Generador de números aleatorios de la cámara.
      */
-    private void divide(int x, int y, int width, int height, int orientation) {
+    private void divide(int x, int y, int width, int height, int orientation,
+                        SplittableRandom random) {
         if (height > 1 && width > 1) {
 
             // Inicio del muro del sub laberinto
             int wx = x, wy = y;
-            wx += (orientation == HORIZONTAL) ? 0 : (int) (Math.random() * (width - 1));
-            wy += (orientation == HORIZONTAL) ? (int) (Math.random() * (height - 1)) : 0;
+            wx += (orientation == HORIZONTAL) ? 0 : random.nextInt(width - 1);
+            wy += (orientation == HORIZONTAL) ? random.nextInt(height - 1) : 0;
 
             // Posicion de la puerta
             int px = wx, py = wy;
-            px += (orientation == HORIZONTAL) ? (int) (Math.random() * width) : 0;
-            py += (orientation == HORIZONTAL) ? 0 : (int) (Math.random() * height);
-
-            // Direccion a la que moverse
-            int dx = (orientation == HORIZONTAL) ? 1 : 0;
-            int dy = (orientation == HORIZONTAL) ? 0 : 1;
-
-            // Longitud del muro
-            int length = (orientation == HORIZONTAL) ? width : height;
-
-            // Direccion donde dibujar el muro
-            Direction dir = (orientation == HORIZONTAL) ? Direction.DOWN : Direction.RIGHT;
-
-            for (int i = 0; i < length; i++) {
-                if (wx != px || wy != py) {
-                    Pair<Integer, Integer> desp = dir.decompose();
-                    m_maze.get(wy).get(wx).setWall(dir);
-                    m_maze.get(wy + desp.second).get(wx + desp.first).setWall(dir.getOpposite());
-                }
-                wx += dx;
-                wy += dy;
+            px += (orientation == HORIZONTAL) ? random.nextInt(width) : 0;
+            py += (orientation == HORIZONTAL) ? 0 : random.nextInt(height);
+
+            if (orientation == HORIZONTAL)
+                drawHorizontalWall(wy + 1, x, x + width, px);
+            else {
+                for (int i = y; i < y + height; i++)
+                    if (i != py)
+                        m_edges.setWall(i, wx, Direction.RIGHT);
             }
 
             int nx = x, ny = y;
             int w = (orientation == HORIZONTAL) ? width : wx - x + 1;
             int h = (orientation == HORIZONTAL) ? wy - y + 1 : height;
-            divide(nx, ny, w, h, chooseOrientation(w, h));
 
-            nx = (orientation == HORIZONTAL) ? x : wx + 1;
-            ny = (orientation == HORIZONTAL) ? wy + 1 : y;
-            w = (orientation == HORIZONTAL) ? width : x + width - wx - 1;
-            h = (orientation == HORIZONTAL) ? y + height - wy - 1 : height;
-            divide(nx, ny, w, h, chooseOrientation(w, h));
+            int sx = (orientation == HORIZONTAL) ? x : wx + 1;
+            int sy = (orientation == HORIZONTAL) ? wy + 1 : y;
+            int sw = (orientation == HORIZONTAL) ? width : x + width - wx - 1;
+            int sh = (orientation == HORIZONTAL) ? y + height - wy - 1 : height;
+
+            if (orientation == HORIZONTAL && (long) width * height >= FORK_THRESHOLD) {
+                Division second = new Division(sx, sy, sw, sh, chooseOrientation(sw, sh, random),
+                                               random.split());
+                if (m_parallel) {
+                    second.fork();
+                    divide(nx, ny, w, h, chooseOrientation(w, h, random), random);
+                    second.join();
+                } else {
+                    divide(nx, ny, w, h, chooseOrientation(w, h, random), random);
+                    second.compute();
+                }
+            } else {
+                divide(nx, ny, w, h, chooseOrientation(w, h, random), random);
+                divide(sx, sy, sw, sh, chooseOrientation(sw, sh, random), random);
+            }
+        }
+    }
+
+    /**
+     * Añade un muro horizontal en una fila de paredes, escribiendo palabras
+     * completas del almacén en lugar de pared a pared.
+     *
+     * @param row  Fila de paredes horizontales, entre 1 y el número de filas.
+     * @param from Primera columna del muro.
+     * @param to   Columna siguiente a la última del muro.
+     * @param door Columna en la que se deja la puerta.
+     */
+    private void drawHorizontalWall(int row, int from, int to, int door) {
+        int first = from >>> 6, last = (to - 1) >>> 6;
+
+        for (int word = first; word <= last; word++) {
+            long bits = -1L;
+            if (word == first)
+                bits &= -1L << from;
+            if (word == last)
+                bits &= -1L >>> (63 - ((to - 1) & 63));
+            if (word == door >>> 6)
+                bits &= ~(1L << door);
+
+            m_edges.setHorizontalWord(row, word, m_edges.getHorizontalWord(row, word) | bits);
         }
     }
 
@@ -130,15 +197,56 @@ public class RecursiveDivision extends MazeCreationAlgorithm {
      *
      * @param width  Número de columnas del Laberinto.
      * @param height Número de filas del laberinto.
+     * @param random Generador de números aleatorios de la cámara.
      * @return Orientación a seguir para ir dividiendo el laberinto.
      */
-    private int chooseOrientation(int width, int height) {
+    private int chooseOrientation(int width, int height, SplittableRandom random) {
         if (width < height)
             return HORIZONTAL;
         else if (height < width)
             return VERTICAL;
         else
-            return (int) (Math.random() * 2);
+            return random.nextInt(2);
+    }
+
+    /**
+     * Tarea que divide una cámara del laberinto.
+     */
+    private class Division extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private int m_x, m_y, m_width, m_height, m_orientation;
+        private SplittableRandom m_stream;
+
+        /**
+         * Constructor. Crea una nueva instancia de la clase.
+         *
+         * @param x           Posición en el eje X de la cámara.
+         * @param y           Posición en el eje Y de la cámara.
+         * @param width       Número de columnas de la cámara.
+         * @param height      Número de filas de la cámara.
+         * @param orientation Orientación del primer muro.
+         * @param random      Generador de números aleatorios de la cámara.
+         */
+        public Division(int x, int y, int width, int height, int orientation,
+                        SplittableRandom random) {
+            m_x = x;
+            m_y = y;
+            m_width = width;
+            m_height = height;
+            m_orientation = orientation;
+            m_stream = random;
+        }
+
+        /*
+         * (non-Javadoc)
+         *
+         * @see java.util.concurrent.RecursiveAction#compute()
+         */
+        @Override
+        protected void compute() {
+            divide(m_x, m_y, m_width, m_height, m_orientation, m_stream);
+        }
     }
 
 }
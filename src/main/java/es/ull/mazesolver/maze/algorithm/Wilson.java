@@ -25,19 +25,30 @@
  */
 package es.ull.mazesolver.maze.algorithm;
 
+import es.ull.mazesolver.gui.MainWindow;
 import es.ull.mazesolver.maze.MazeCreationAlgorithm;
 import es.ull.mazesolver.util.Direction;
 
-import java.awt.Point;
-import java.util.ArrayList;
+import java.util.SplittableRandom;
 
 /**
  * Implementación del algoritmo Wilson para la generación aleatoria de
  * laberintos perfectos.
+ * <br><br>
+ * Los paseos aleatorios guardan la última dirección tomada desde cada celda en
+ * un único vector que se reutiliza entre paseos: no hace falta limpiarlo,
+ * porque al recorrer el camino sin ciclos sólo se consultan celdas que ha
+ * visitado el paseo actual. Las celdas que todavía no forman parte del
+ * laberinto se guardan en un vector junto con la posición de cada una en él,
+ * de manera que se puede elegir una al azar y eliminarla en tiempo constante.
  */
 public class Wilson extends MazeCreationAlgorithm {
+    private byte[] m_walk;
+
+    // Celdas que no forman parte del laberinto y posición de cada celda en ese
+    // vector (-1 si ya forma parte del laberinto)
+    private int[] m_unvisited, m_position;
     private int m_remaining;
-    private ArrayList<ArrayList<Boolean>> m_included_cells;
 
     /**
      * Constructor. Crea una nueva instancia de la clase.
@@ -48,19 +59,9 @@ public class Wilson extends MazeCreationAlgorithm {
     public Wilson(int rows, int columns) {
         super(rows, columns);
 
-        // Creamos una matriz de visitados para saber en cada momento cuáles son
-        // las celdas que no se han visitado todavía.
-        m_included_cells = new ArrayList<ArrayList<Boolean>>(rows);
-
-        for (int y = 0; y < rows; y++) {
-            m_included_cells.add(new ArrayList<Boolean>(columns));
-            for (int x = 0; x < columns; x++)
-                m_included_cells.get(y).add(false);
-        }
-        m_remaining = columns * rows - 1;
-        int x = (int) (Math.random() * m_columns);
-        int y = (int) (Math.random() * m_rows);
-        m_included_cells.get(y).set(x, true);
+        if ((long) rows * columns > Integer.MAX_VALUE)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().mazeTooLarge());
     }
 
     /*
@@ -70,98 +71,101 @@ public class Wilson extends MazeCreationAlgorithm {
      */
     @Override
     protected void runCreationAlgorithm() {
-        while (m_remaining > 0) {
-            ArrayList<Short[]> path = walk();
-            for (int i = 0; i < path.size(); i++) {
-                Short[] aux = path.get(i);
-                Point p = new Point(aux[0], aux[1]);
-                Direction dir = Direction.fromValue(aux[2]);
-                m_included_cells.get(p.y).set(p.x, true);
-                openPassage(p.y, p.x, dir);
-                m_remaining -= 1;
-            }
-        }
+        int cells = m_rows * m_columns;
+        m_walk = new byte[cells];
+        m_unvisited = new int[cells];
+        m_position = new int[cells];
+        m_remaining = cells;
+
+        for (int i = 0; i < cells; i++)
+            m_unvisited[i] = m_position[i] = i;
+
+        SplittableRandom random = m_random;
+        include(m_unvisited[random.nextInt(m_remaining)]);
+
+        while (m_remaining > 0)
+            walk(random);
+
+        m_walk = null;
+        m_unvisited = m_position = null;
     }
 
     /**
-     * Método que calcula un camino a seguir.
+     * Hace un paseo aleatorio desde una celda que no forma parte del laberinto
+     * hasta llegar al laberinto, y añade a éste el camino sin ciclos que
+     * resulta de seguir la última dirección tomada desde cada celda.
      *
-     * @return Lista de puntos con su respectiva dirección que hemos de seguir
-     * para llegar a una zona visitada.
+     * @param random Generador de números aleatorios.
      */
-    private ArrayList<Short[]> walk() {
-        Point p_start = getRandomStarter();
-        ArrayList<ArrayList<Direction>> directionsTaken;
-        directionsTaken = new ArrayList<ArrayList<Direction>>(m_rows);
-
-        for (int y = 0; y < m_rows; y++) {
-            directionsTaken.add(new ArrayList<Direction>(m_columns));
-            for (int x = 0; x < m_columns; x++)
-                directionsTaken.get(y).add(Direction.NONE);
+    private void walk(SplittableRandom random) {
+        int start = m_unvisited[random.nextInt(m_remaining)];
+
+        int cell = start;
+        while (m_position[cell] >= 0) {
+            int dir = randomDirection(cell, random);
+            m_walk[cell] = (byte) dir;
+            cell = neighbour(cell, dir);
         }
-        Point p = p_start;
-        do {
-            Direction dir = getRandomDirection(p.y, p.x);
-            directionsTaken.get(p.y).set(p.x, dir);
-            p = dir.movePoint(p);
-        }
-        while (!m_included_cells.get(p.y).get(p.x));
-
-        p = p_start;
-        ArrayList<Short[]> path = new ArrayList<Short[]>();
-        do {
-            Direction dir = directionsTaken.get(p.y).get(p.x);
-            Short[] pos = {(short) p.x, (short) p.y, dir.val};
-            path.add(pos);
-            p = dir.movePoint(p);
-        }
-        while (!m_included_cells.get(p.y).get(p.x));
 
-        return path;
+        cell = start;
+        while (m_position[cell] >= 0) {
+            int dir = m_walk[cell];
+            openPassage(cell / m_columns, cell % m_columns, Direction.fromIndex(dir));
+            include(cell);
+            cell = neighbour(cell, dir);
+        }
     }
 
     /**
-     * Obtiene una dirección aleatoria desde la posición indicada que la conecte
-     * con una posición no explorada dentro del laberinto que se está creando.
+     * Obtiene una dirección aleatoria desde una celda que la lleve a otra celda
+     * dentro del laberinto que se está creando.
      *
-     * @param y Posición en el eje Y desde la que se quiere partir.
-     * @param x Posición en el eje X desde la que se quiere partir.
-     * @return Una direccion aleatoria dentro de las posibles a las que ir
-     * en la casilla dada por las posiciones i y j.
+     * @param cell   Índice de la celda.
+     * @param random Generador de números aleatorios.
+     * @return Índice de la dirección elegida.
      */
-    private Direction getRandomDirection(int y, int x) {
-        ArrayList<Direction> directions = new ArrayList<Direction>();
-        Point actual = new Point(x, y);
-
-        // Comprobamos qué posiciones de alrededor son válidas y no se han visitado
-        // Suponemos que la posición proporcionada es válida para empezar
-        for (int i = 1; i < Direction.MAX_DIRECTIONS; i++) {
-            Direction dir = Direction.fromIndex(i);
-            Point next = dir.movePoint(actual);
-
-            if (next.y >= 0 && next.y < m_rows && next.x >= 0 && next.x < m_columns)
-                directions.add(dir);
+    private int randomDirection(int cell, SplittableRandom random) {
+        int y = cell / m_columns;
+        int x = cell % m_columns;
+
+        // Se descartan las direcciones que salen del laberinto, de manera que
+        // todas las demás tienen la misma probabilidad
+        while (true) {
+            int dir = 1 + random.nextInt(Direction.MAX_DIRECTIONS - 1);
+            Direction d = Direction.fromIndex(dir);
+            int ny = y + d.getDeltaY();
+            int nx = x + d.getDeltaX();
+
+            if (ny >= 0 && ny < m_rows && nx >= 0 && nx < m_columns)
+                return dir;
         }
+    }
 
-        if (directions.isEmpty())
-            return Direction.NONE;
-        else
-            return directions.get((int) (Math.random() * directions.size()));
+    /**
+     * Obtiene la celda vecina en una dirección.
+     *
+     * @param cell Índice de la celda.
+     * @param dir  Índice de la dirección.
+     * @return Índice de la celda vecina.
+     */
+    private int neighbour(int cell, int dir) {
+        Direction d = Direction.fromIndex(dir);
+        return cell + d.getDeltaY() * m_columns + d.getDeltaX();
     }
 
     /**
-     * Obtiene un punto inicial de manera aleatoria desde el cual se puede llamar
-     * al método {@link Wilson#walk}.
+     * Añade una celda al laberinto, quitándola del conjunto de celdas que no
+     * forman parte de él.
      *
-     * @return Punto inicial aleatorio para metodo walk
+     * @param cell Índice de la celda.
      */
-    private Point getRandomStarter() {
-        ArrayList<Point> freePoints = new ArrayList<Point>();
-        for (int y = 0; y < m_rows; y++)
-            for (int x = 0; x < m_columns; x++)
-                if (!m_included_cells.get(y).get(x))
-                    freePoints.add(new Point(x, y));
-        return freePoints.get((int) (Math.random() * freePoints.size()));
+    private void include(int cell) {
+        int last = m_unvisited[--m_remaining];
+        int position = m_position[cell];
+
+        m_unvisited[position] = last;
+        m_position[last] = position;
+        m_position[cell] = -1;
     }
 
 }
@@ -0,0 +1,195 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file CellWallStore.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.storage;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.util.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Almacén de paredes que guarda un byte por celda en un único vector ordenado
+ * por filas. Sustituye a la matriz de objetos {@link es.ull.mazesolver.maze.MazeCell},
+ * de manera que cada celda ocupa un byte en lugar de un objeto completo y
+ * acceder a ella sólo requiere un acceso a un vector.
+ * <br><br>
+ * Cada pared interior aparece en las dos celdas que separa, así que las
+ * modificaciones se replican en la celda vecina para mantenerlas de acuerdo.
+ */
+public class CellWallStore extends WallStore {
+    private static final long serialVersionUID = -2786396471183327551L;
+
+    /**
+     * Valor de una celda rodeada de muros.
+     */
+    public static final short ALL_WALLS =
+            (short) (Direction.UP.val | Direction.DOWN.val | Direction.LEFT.val | Direction.RIGHT.val);
+
+    private byte[] m_cells;
+
+    /**
+     * Constructor. Crea un almacén en el que todas las celdas están rodeadas de
+     * muros.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     */
+    public CellWallStore(int rows, int columns) {
+        super(rows, columns);
+
+        if ((long) rows * columns > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().mazeTooLarge());
+
+        m_cells = new byte[rows * columns];
+        fill(ALL_WALLS);
+    }
+
+    /**
+     * Constructor de copia.
+     *
+     * @param other Almacén del que copiar las paredes.
+     */
+    public CellWallStore(WallStore other) {
+        this(other.getRows(), other.getColumns());
+        for (int y = 0; y < m_rows; y++)
+            for (int x = 0; x < m_columns; x++)
+                m_cells[y * m_columns + x] = (byte) other.getWalls(y, x);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#getWalls(int, int)
+     */
+    @Override
+    public short getWalls(int row, int column) {
+        return m_cells[row * m_columns + column];
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#setWalls(int, int, short)
+     */
+    @Override
+    public void setWalls(int row, int column, short walls) {
+        short changed = (short) ((m_cells[row * m_columns + column] ^ walls) & ALL_WALLS);
+        for (int i = 1; i < Direction.MAX_DIRECTIONS && changed != 0; i++) {
+            Direction dir = Direction.fromIndex(i);
+            if ((changed & dir.val) != 0)
+                toggleWall(row, column, dir);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#hasWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public boolean hasWall(int row, int column, Direction dir) {
+        return (m_cells[row * m_columns + column] & dir.val) != 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#setWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void setWall(int row, int column, Direction dir) {
+        m_cells[row * m_columns + column] |= dir.val;
+
+        int adj = neighbour(row, column, dir);
+        if (adj >= 0)
+            m_cells[adj] |= dir.getOpposite().val;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#unsetWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void unsetWall(int row, int column, Direction dir) {
+        m_cells[row * m_columns + column] &= ~dir.val;
+
+        int adj = neighbour(row, column, dir);
+        if (adj >= 0)
+            m_cells[adj] &= ~dir.getOpposite().val;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#toggleWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void toggleWall(int row, int column, Direction dir) {
+        if (hasWall(row, column, dir))
+            unsetWall(row, column, dir);
+        else
+            setWall(row, column, dir);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#fill(short)
+     */
+    @Override
+    public void fill(short walls) {
+        Arrays.fill(m_cells, (byte) walls);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#copy()
+     */
+    @Override
+    public WallStore copy() {
+        return new CellWallStore(this);
+    }
+
+    /**
+     * Calcula la posición en el vector de la celda vecina en una dirección.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Dirección en la que está la vecina.
+     * @return Índice de la celda vecina o -1 si queda fuera del laberinto.
+     */
+    private int neighbour(int row, int column, Direction dir) {
+        int n_row = row + dir.getDeltaY(), n_column = column + dir.getDeltaX();
+        if (n_row < 0 || n_row >= m_rows || n_column < 0 || n_column >= m_columns)
+            return -1;
+
+        return n_row * m_columns + n_column;
+    }
+
+}
@@ -0,0 +1,384 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file EdgeWallStore.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.storage;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.util.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Almacén de paredes que guarda cada pared una única vez, como un bit en uno
+ * de dos vectores: uno para las paredes horizontales y otro para las
+ * verticales. Al no haber copias de una misma pared en celdas distintas, es
+ * imposible que dos celdas vecinas no estén de acuerdo, y cada celda ocupa
+ * unos 2 bits.
+ * <br><br>
+ * La pared horizontal (fila, columna) es la pared superior de esa celda, de
+ * manera que hay una fila más de paredes horizontales que de celdas. Del mismo
+ * modo, la pared vertical (fila, columna) es la pared izquierda de esa celda y
+ * hay una columna más de paredes verticales que de celdas. Cada fila de paredes
+ * empieza en una palabra nueva, para poder recorrer filas enteras palabra a
+ * palabra.
+ */
+public class EdgeWallStore extends WallStore {
+    private static final long serialVersionUID = 4217005793018642741L;
+
+    private int m_h_stride, m_v_stride;
+    private long[] m_horizontal, m_vertical;
+
+    /**
+     * Constructor. Crea un almacén en el que todas las celdas están rodeadas de
+     * muros.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     */
+    public EdgeWallStore(int rows, int columns) {
+        super(rows, columns);
+
+        if (!fits(rows, columns))
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().mazeTooLarge());
+
+        m_h_stride = (columns + 63) >>> 6;
+        m_v_stride = (columns + 1 + 63) >>> 6;
+
+        m_horizontal = new long[(rows + 1) * m_h_stride];
+        m_vertical = new long[rows * m_v_stride];
+        fill(CellWallStore.ALL_WALLS);
+    }
+
+    /**
+     * Indica si las paredes de un laberinto de las dimensiones indicadas caben
+     * en un almacén de este tipo.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     * @return Si se puede crear el almacén.
+     */
+    public static boolean fits(int rows, int columns) {
+        long h_stride = ((long) columns + 63) >>> 6;
+        long v_stride = ((long) columns + 1 + 63) >>> 6;
+
+        return (rows + 1L) * h_stride <= Integer.MAX_VALUE - 8 &&
+               (long) rows * v_stride <= Integer.MAX_VALUE - 8;
+    }
+
+    /**
+     * Constructor de copia.
+     *
+     * @param other Almacén del que copiar las paredes.
+     */
+    public EdgeWallStore(WallStore other) {
+        this(other.getRows(), other.getColumns());
+        if (other instanceof EdgeWallStore) {
+            EdgeWallStore edges = (EdgeWallStore) other;
+            System.arraycopy(edges.m_horizontal, 0, m_horizontal, 0, m_horizontal.length);
+            System.arraycopy(edges.m_vertical, 0, m_vertical, 0, m_vertical.length);
+        }
+        else {
+            for (int y = 0; y < m_rows; y++)
+                for (int x = 0; x < m_columns; x++) {
+                    short walls = other.getWalls(y, x);
+                    assign(m_horizontal, y * m_h_stride, x, (walls & Direction.UP.val) != 0);
+                    assign(m_horizontal, (y + 1) * m_h_stride, x, (walls & Direction.DOWN.val) != 0);
+                    assign(m_vertical, y * m_v_stride, x, (walls & Direction.LEFT.val) != 0);
+                    assign(m_vertical, y * m_v_stride, x + 1, (walls & Direction.RIGHT.val) != 0);
+                }
+        }
+    }
+
+    /**
+     * Indica si existe la pared horizontal indicada, es decir, la pared superior
+     * de la celda (fila, columna).
+     *
+     * @param row    Fila, entre 0 y el número de filas (incluido).
+     * @param column Columna.
+     * @return Si hay pared o no.
+     */
+    public boolean hasHorizontal(int row, int column) {
+        return (m_horizontal[row * m_h_stride + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    /**
+     * Indica si existe la pared vertical indicada, es decir, la pared izquierda
+     * de la celda (fila, columna).
+     *
+     * @param row    Fila.
+     * @param column Columna, entre 0 y el número de columnas (incluido).
+     * @return Si hay pared o no.
+     */
+    public boolean hasVertical(int row, int column) {
+        return (m_vertical[row * m_v_stride + (column >>> 6)] & (1L << column)) != 0;
+    }
+
+    /**
+     * Obtiene una palabra de 64 paredes horizontales consecutivas de una fila.
+     * El bit menos significativo corresponde a la columna {@code word * 64}.
+     *
+     * @param row  Fila, entre 0 y el número de filas (incluido).
+     * @param word Índice de la palabra dentro de la fila.
+     * @return Palabra con las paredes.
+     */
+    public long getHorizontalWord(int row, int word) {
+        return m_horizontal[row * m_h_stride + word];
+    }
+
+    /**
+     * Obtiene una palabra de 64 paredes verticales consecutivas de una fila. El
+     * bit menos significativo corresponde a la columna {@code word * 64}.
+     *
+     * @param row  Fila.
+     * @param word Índice de la palabra dentro de la fila.
+     * @return Palabra con las paredes.
+     */
+    public long getVerticalWord(int row, int word) {
+        return m_vertical[row * m_v_stride + word];
+    }
+
+    /**
+     * Sustituye una palabra de 64 paredes horizontales consecutivas de una fila.
+     * Los bits que quedan fuera del laberinto se descartan.
+     *
+     * @param row   Fila, entre 0 y el número de filas (incluido).
+     * @param word  Índice de la palabra dentro de la fila.
+     * @param walls Palabra con las paredes.
+     */
+    public void setHorizontalWord(int row, int word, long walls) {
+        m_horizontal[row * m_h_stride + word] = walls & mask(word, m_columns);
+    }
+
+    /**
+     * Sustituye una palabra de 64 paredes verticales consecutivas de una fila.
+     * Los bits que quedan fuera del laberinto se descartan.
+     *
+     * @param row   Fila.
+     * @param word  Índice de la palabra dentro de la fila.
+     * @param walls Palabra con las paredes.
+     */
+    public void setVerticalWord(int row, int word, long walls) {
+        m_vertical[row * m_v_stride + word] = walls & mask(word, m_columns + 1);
+    }
+
+    /**
+     * @return Número de palabras que ocupa cada fila de paredes horizontales.
+     */
+    public int getHorizontalStride() {
+        return m_h_stride;
+    }
+
+    /**
+     * @return Número de palabras que ocupa cada fila de paredes verticales.
+     */
+    public int getVerticalStride() {
+        return m_v_stride;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#getWalls(int, int)
+     */
+    @Override
+    public short getWalls(int row, int column) {
+        int walls = 0;
+        if (hasHorizontal(row, column))
+            walls |= Direction.UP.val;
+        if (hasHorizontal(row + 1, column))
+            walls |= Direction.DOWN.val;
+        if (hasVertical(row, column))
+            walls |= Direction.LEFT.val;
+        if (hasVertical(row, column + 1))
+            walls |= Direction.RIGHT.val;
+
+        return (short) walls;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#setWalls(int, int, short)
+     */
+    @Override
+    public void setWalls(int row, int column, short walls) {
+        assign(m_horizontal, row * m_h_stride, column, (walls & Direction.UP.val) != 0);
+        assign(m_horizontal, (row + 1) * m_h_stride, column, (walls & Direction.DOWN.val) != 0);
+        assign(m_vertical, row * m_v_stride, column, (walls & Direction.LEFT.val) != 0);
+        assign(m_vertical, row * m_v_stride, column + 1, (walls & Direction.RIGHT.val) != 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#hasWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public boolean hasWall(int row, int column, Direction dir) {
+        switch (dir) {
+            case UP:
+                return hasHorizontal(row, column);
+            case DOWN:
+                return hasHorizontal(row + 1, column);
+            case LEFT:
+                return hasVertical(row, column);
+            case RIGHT:
+                return hasVertical(row, column + 1);
+            default:
+                return false;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#setWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void setWall(int row, int column, Direction dir) {
+        modify(row, column, dir, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#unsetWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void unsetWall(int row, int column, Direction dir) {
+        modify(row, column, dir, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#toggleWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void toggleWall(int row, int column, Direction dir) {
+        modify(row, column, dir, !hasWall(row, column, dir));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#fill(short)
+     */
+    @Override
+    public void fill(short walls) {
+        fillRows(m_horizontal, m_h_stride, m_columns,
+                 (walls & (Direction.UP.val | Direction.DOWN.val)) != 0);
+        fillRows(m_vertical, m_v_stride, m_columns + 1,
+                 (walls & (Direction.LEFT.val | Direction.RIGHT.val)) != 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#copy()
+     */
+    @Override
+    public WallStore copy() {
+        return new EdgeWallStore(this);
+    }
+
+    /**
+     * Pone o quita la pared situada en un lado de una celda.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda.
+     * @param wall   Si se quiere que haya pared o no.
+     */
+    private void modify(int row, int column, Direction dir, boolean wall) {
+        switch (dir) {
+            case UP:
+                assign(m_horizontal, row * m_h_stride, column, wall);
+                break;
+            case DOWN:
+                assign(m_horizontal, (row + 1) * m_h_stride, column, wall);
+                break;
+            case LEFT:
+                assign(m_vertical, row * m_v_stride, column, wall);
+                break;
+            case RIGHT:
+                assign(m_vertical, row * m_v_stride, column + 1, wall);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Activa o desactiva un bit de una fila de paredes.
+     *
+     * @param bits   Vector de paredes.
+     * @param offset Índice de la primera palabra de la fila.
+     * @param column Posición del bit dentro de la fila.
+     * @param value  Valor que se le quiere dar al bit.
+     */
+    private static void assign(long[] bits, int offset, int column, boolean value) {
+        if (value)
+            bits[offset + (column >>> 6)] |= 1L << column;
+        else
+            bits[offset + (column >>> 6)] &= ~(1L << column);
+    }
+
+    /**
+     * Calcula la máscara de los bits válidos de una palabra de una fila.
+     *
+     * @param word   Índice de la palabra dentro de la fila.
+     * @param length Número de paredes por fila.
+     * @return Máscara con los bits que corresponden a paredes de la fila.
+     */
+    private static long mask(int word, int length) {
+        int valid = length - (word << 6);
+        return valid >= 64 ? -1L : (1L << valid) - 1;
+    }
+
+    /**
+     * Pone o quita todas las paredes de un vector, dejando a cero los bits que
+     * sobran al final de cada fila.
+     *
+     * @param bits   Vector de paredes.
+     * @param stride Palabras por fila.
+     * @param length Número de paredes por fila.
+     * @param value  Si se quiere que haya paredes o no.
+     */
+    private static void fillRows(long[] bits, int stride, int length, boolean value) {
+        if (!value) {
+            Arrays.fill(bits, 0L);
+            return;
+        }
+
+        long last = (length & 63) == 0 ? -1L : (1L << length) - 1;
+        for (int i = 0; i < bits.length; i += stride) {
+            Arrays.fill(bits, i, i + stride - 1, -1L);
+            bits[i + stride - 1] = last;
+        }
+    }
+
+}
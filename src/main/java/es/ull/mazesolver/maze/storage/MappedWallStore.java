@@ -0,0 +1,477 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MappedWallStore.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.storage;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.util.Direction;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Almacén de paredes proyectado en memoria sobre un fichero con el formato
+ * descrito en {@link MazeFile}. Las paredes no se cargan en el heap: el
+ * sistema operativo lee las páginas del fichero a medida que se accede a
+ * ellas, por lo que abrir un laberinto es prácticamente instantáneo sea cual
+ * sea su tamaño.
+ * <br><br>
+ * Como un buffer proyectado no puede superar los 2GB, el fichero se proyecta
+ * en varios segmentos de {@link MappedWallStore#SEGMENT_SIZE} bytes. Al estar
+ * todas las palabras alineadas a 8 bytes, ninguna queda partida entre dos
+ * segmentos.
+ * <br><br>
+ * El fichero se puede abrir en modo de sólo lectura, de lectura y escritura, o
+ * con una proyección privada en la que las modificaciones sólo afectan a la
+ * copia en memoria y nunca llegan al fichero.
+ */
+public class MappedWallStore extends WallStore {
+    private static final long serialVersionUID = -6083927155823718834L;
+
+    private static final int SEGMENT_SHIFT = 30;
+
+    /**
+     * Tamaño de cada uno de los segmentos en los que se proyecta el fichero.
+     */
+    public static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private transient MappedByteBuffer[] m_segments;
+    private transient FileChannel.MapMode m_mode;
+    private transient boolean m_read_only;
+    private transient Point m_exit;
+    private transient int m_h_stride, m_v_stride;
+    private transient long m_record;
+
+    /**
+     * Abre un fichero de laberinto y lo proyecta en memoria.
+     *
+     * @param fileName  Nombre del fichero.
+     * @param read_only Si se quiere abrir en modo de sólo lectura. En modo de
+     *                  lectura y escritura los cambios se guardan en el fichero.
+     * @throws IOException Si no se puede abrir el fichero o no tiene un formato
+     *                     válido.
+     */
+    public MappedWallStore(String fileName, boolean read_only) throws IOException {
+        this(fileName, read_only ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE);
+    }
+
+    /**
+     * Abre un fichero de laberinto y lo proyecta en memoria de forma privada: el
+     * laberinto se puede modificar, pero los cambios no se escriben nunca en el
+     * fichero. El fichero debe tener permiso de escritura.
+     *
+     * @param fileName Nombre del fichero.
+     * @return Almacén proyectado sobre el fichero.
+     * @throws IOException Si no se puede abrir el fichero o no tiene un formato
+     *                     válido.
+     */
+    public static MappedWallStore openPrivate(String fileName) throws IOException {
+        return new MappedWallStore(fileName, FileChannel.MapMode.PRIVATE);
+    }
+
+    /**
+     * Abre un fichero de laberinto y lo proyecta en memoria con el modo indicado.
+     *
+     * @param fileName Nombre del fichero.
+     * @param mode     Modo de la proyección.
+     * @throws IOException Si no se puede abrir el fichero o no tiene un formato
+     *                     válido.
+     */
+    private MappedWallStore(String fileName, FileChannel.MapMode mode) throws IOException {
+        super(0, 0);
+        m_mode = mode;
+        m_read_only = mode == FileChannel.MapMode.READ_ONLY;
+
+        // Las proyecciones privadas necesitan un canal de escritura, aunque nunca
+        // se escribe en él
+        RandomAccessFile file = new RandomAccessFile(fileName, m_read_only ? "r" : "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            map(channel, channel.size());
+        } finally {
+            file.close();
+        }
+
+        MazeFile.Header header = MazeFile.readHeader(m_segments[0].duplicate());
+        initialize(header.rows, header.columns);
+        m_exit = header.exit;
+
+        if (MazeFile.fileSize(m_rows, m_columns) != size())
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+    }
+
+    /**
+     * Crea un fichero de laberinto a partir de un almacén de paredes y lo abre
+     * en modo de lectura y escritura.
+     *
+     * @param fileName Nombre del fichero a crear. Si existe, se sobreescribe.
+     * @param walls    Paredes que se quieren guardar.
+     * @param exit     Posición de la salida del laberinto.
+     * @return Almacén proyectado sobre el nuevo fichero.
+     * @throws IOException Si no se puede crear el fichero.
+     */
+    public static MappedWallStore create(String fileName, WallStore walls, Point exit)
+            throws IOException {
+        MappedWallStore store = new MappedWallStore(walls.getRows(), walls.getColumns());
+        store.m_exit = new Point(exit);
+
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        try {
+            long size = MazeFile.fileSize(store.m_rows, store.m_columns);
+            file.setLength(size);
+            store.map(file.getChannel(), size);
+        } finally {
+            file.close();
+        }
+
+        MazeFile.writeHeader(store.m_segments[0].duplicate(),
+                new MazeFile.Header(store.m_rows, store.m_columns, exit));
+
+        if (walls instanceof EdgeWallStore) {
+            EdgeWallStore edges = (EdgeWallStore) walls;
+            for (int y = 0; y <= store.m_rows; y++)
+                for (int w = 0; w < store.m_h_stride; w++)
+                    store.putWord(store.horizontal(y, w), edges.getHorizontalWord(y, w));
+            for (int y = 0; y < store.m_rows; y++)
+                for (int w = 0; w < store.m_v_stride; w++)
+                    store.putWord(store.vertical(y, w), edges.getVerticalWord(y, w));
+        }
+        else {
+            for (int y = 0; y < store.m_rows; y++)
+                for (int x = 0; x < store.m_columns; x++)
+                    store.setWalls(y, x, walls.getWalls(y, x));
+        }
+
+        return store;
+    }
+
+    /**
+     * Constructor utilizado para crear ficheros nuevos.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     */
+    private MappedWallStore(int rows, int columns) {
+        super(rows, columns);
+        m_mode = FileChannel.MapMode.READ_WRITE;
+        initialize(rows, columns);
+    }
+
+    /**
+     * @return Si el almacén se ha abierto en modo de sólo lectura.
+     */
+    public boolean isReadOnly() {
+        return m_read_only;
+    }
+
+    /**
+     * @return La posición de la salida guardada en el fichero.
+     */
+    public Point getExit() {
+        return new Point(m_exit);
+    }
+
+    /**
+     * Fuerza la escritura en disco de los cambios hechos sobre el laberinto.
+     */
+    public void flush() {
+        if (m_mode == FileChannel.MapMode.READ_WRITE)
+            for (MappedByteBuffer segment : m_segments)
+                segment.force();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#exitChanged(java.awt.Point)
+     */
+    @Override
+    public void exitChanged(Point exit) {
+        checkWritable();
+        m_exit = new Point(exit);
+        MazeFile.writeExit(m_segments[0], exit);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#getWalls(int, int)
+     */
+    @Override
+    public short getWalls(int row, int column) {
+        int walls = 0;
+        if (bit(horizontal(row, column >>> 6), column))
+            walls |= Direction.UP.val;
+        if (bit(horizontal(row + 1, column >>> 6), column))
+            walls |= Direction.DOWN.val;
+        if (bit(vertical(row, column >>> 6), column))
+            walls |= Direction.LEFT.val;
+        if (bit(vertical(row, (column + 1) >>> 6), column + 1))
+            walls |= Direction.RIGHT.val;
+
+        return (short) walls;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#setWalls(int, int, short)
+     */
+    @Override
+    public void setWalls(int row, int column, short walls) {
+        checkWritable();
+        assign(horizontal(row, column >>> 6), column, (walls & Direction.UP.val) != 0);
+        assign(horizontal(row + 1, column >>> 6), column, (walls & Direction.DOWN.val) != 0);
+        assign(vertical(row, column >>> 6), column, (walls & Direction.LEFT.val) != 0);
+        assign(vertical(row, (column + 1) >>> 6), column + 1, (walls & Direction.RIGHT.val) != 0);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#hasWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public boolean hasWall(int row, int column, Direction dir) {
+        long pos = position(row, column, dir);
+        return pos >= 0 && bit(pos, column + (dir == Direction.RIGHT ? 1 : 0));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#setWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void setWall(int row, int column, Direction dir) {
+        modify(row, column, dir, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#unsetWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void unsetWall(int row, int column, Direction dir) {
+        modify(row, column, dir, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#toggleWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void toggleWall(int row, int column, Direction dir) {
+        modify(row, column, dir, !hasWall(row, column, dir));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#fill(short)
+     */
+    @Override
+    public void fill(short walls) {
+        checkWritable();
+
+        boolean h = (walls & (Direction.UP.val | Direction.DOWN.val)) != 0;
+        boolean v = (walls & (Direction.LEFT.val | Direction.RIGHT.val)) != 0;
+        long h_last = lastWord(m_columns), v_last = lastWord(m_columns + 1);
+
+        for (int y = 0; y <= m_rows; y++) {
+            for (int w = 0; w < m_h_stride; w++)
+                putWord(horizontal(y, w), !h ? 0 : w == m_h_stride - 1 ? h_last : -1L);
+
+            if (y < m_rows)
+                for (int w = 0; w < m_v_stride; w++)
+                    putWord(vertical(y, w), !v ? 0 : w == m_v_stride - 1 ? v_last : -1L);
+        }
+    }
+
+    /**
+     * Crea una copia en memoria del laberinto. Sólo debe utilizarse si el
+     * laberinto cabe en el heap.
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#copy()
+     */
+    @Override
+    public WallStore copy() {
+        return new EdgeWallStore(this);
+    }
+
+    /**
+     * Al serializar el almacén se guarda una copia en memoria, ya que la
+     * proyección del fichero no se puede serializar.
+     *
+     * @return Copia en memoria del almacén.
+     * @throws ObjectStreamException Nunca.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        return copy();
+    }
+
+    /**
+     * Calcula los tamaños de las filas de paredes.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     */
+    private void initialize(int rows, int columns) {
+        m_rows = rows;
+        m_columns = columns;
+        m_h_stride = MazeFile.horizontalStride(columns);
+        m_v_stride = MazeFile.verticalStride(columns);
+        m_record = MazeFile.recordSize(columns);
+    }
+
+    /**
+     * Proyecta el fichero en segmentos.
+     *
+     * @param channel Canal abierto sobre el fichero.
+     * @param size    Tamaño del fichero.
+     * @throws IOException Si el fichero no se puede proyectar.
+     */
+    private void map(FileChannel channel, long size) throws IOException {
+        if (size < MazeFile.HEADER_SIZE)
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+        m_segments = new MappedByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+        for (int i = 0; i < m_segments.length; i++) {
+            long start = (long) i << SEGMENT_SHIFT;
+            m_segments[i] = channel.map(m_mode, start, Math.min(SEGMENT_SIZE, size - start));
+        }
+    }
+
+    /**
+     * @return Tamaño total proyectado.
+     */
+    private long size() {
+        long size = 0;
+        for (MappedByteBuffer segment : m_segments)
+            size += segment.capacity();
+        return size;
+    }
+
+    /**
+     * Posición en el fichero de una palabra de paredes horizontales.
+     *
+     * @param row  Fila, entre 0 y el número de filas (incluido).
+     * @param word Palabra dentro de la fila.
+     * @return Posición en bytes.
+     */
+    private long horizontal(int row, int word) {
+        return MazeFile.HEADER_SIZE + row * m_record + 8L * word;
+    }
+
+    /**
+     * Posición en el fichero de una palabra de paredes verticales.
+     *
+     * @param row  Fila.
+     * @param word Palabra dentro de la fila.
+     * @return Posición en bytes.
+     */
+    private long vertical(int row, int word) {
+        return MazeFile.HEADER_SIZE + row * m_record + 8L * (m_h_stride + word);
+    }
+
+    /**
+     * Posición de la palabra que contiene la pared de un lado de una celda.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda.
+     * @return Posición en bytes o -1 si la dirección no es válida.
+     */
+    private long position(int row, int column, Direction dir) {
+        switch (dir) {
+            case UP:
+                return horizontal(row, column >>> 6);
+            case DOWN:
+                return horizontal(row + 1, column >>> 6);
+            case LEFT:
+                return vertical(row, column >>> 6);
+            case RIGHT:
+                return vertical(row, (column + 1) >>> 6);
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Pone o quita la pared situada en un lado de una celda.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda.
+     * @param wall   Si se quiere que haya pared o no.
+     */
+    private void modify(int row, int column, Direction dir, boolean wall) {
+        checkWritable();
+        long pos = position(row, column, dir);
+        if (pos >= 0)
+            assign(pos, column + (dir == Direction.RIGHT ? 1 : 0), wall);
+    }
+
+    private long getWord(long pos) {
+        return m_segments[(int) (pos >>> SEGMENT_SHIFT)].getLong((int) (pos & SEGMENT_MASK));
+    }
+
+    private void putWord(long pos, long word) {
+        m_segments[(int) (pos >>> SEGMENT_SHIFT)].putLong((int) (pos & SEGMENT_MASK), word);
+    }
+
+    private boolean bit(long pos, int column) {
+        return (getWord(pos) & (1L << column)) != 0;
+    }
+
+    private void assign(long pos, int column, boolean value) {
+        long word = getWord(pos);
+        putWord(pos, value ? word | (1L << column) : word & ~(1L << column));
+    }
+
+    private static long lastWord(int length) {
+        return (length & 63) == 0 ? -1L : (1L << length) - 1;
+    }
+
+    /**
+     * Comprueba que se puede modificar el laberinto.
+     *
+     * @throws IllegalStateException Si el almacén es de sólo lectura.
+     */
+    private void checkWritable() {
+        if (m_read_only)
+            throw new IllegalStateException(
+                    MainWindow.getTranslations().exception().readOnlyMaze());
+    }
+
+}
@@ -0,0 +1,430 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeFile.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.storage;
+
+import es.ull.mazesolver.gui.MainWindow;
+
+import es.ull.mazesolver.util.Direction;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Describe el formato binario empaquetado en el que se guardan las paredes de
+ * un laberinto para poder proyectarlo en memoria o leerlo por bloques.
+ * <br><br>
+ * El fichero empieza por una cabecera de {@link MazeFile#HEADER_SIZE} bytes:
+ * <ul>
+ * <li>Número mágico ({@code int}).</li>
+ * <li>Versión del formato ({@code short}) y opciones ({@code short}).</li>
+ * <li>Número de filas y de columnas ({@code int}).</li>
+ * <li>Posición X e Y de la salida ({@code int}).</li>
+ * <li>8 bytes reservados.</li>
+ * </ul>
+ * A continuación, para cada fila de celdas se guarda un registro con la fila
+ * de paredes horizontales superiores y la fila de paredes verticales
+ * izquierdas, con la misma disposición en palabras de 64 bits que
+ * {@link EdgeWallStore}. Tras el último registro se guarda la fila de paredes
+ * horizontales del borde inferior. Todos los valores se guardan en orden
+ * big-endian.
+ * <br><br>
+ * Además de las utilidades para calcular la posición de cada fila en el
+ * fichero, que utiliza {@link MappedWallStore}, esta clase permite leer y
+ * escribir el fichero completo de manera secuencial a través de un canal, que
+ * es como se guardan y cargan normalmente los laberintos. Al no necesitar
+ * acceso aleatorio, el canal puede estar sobre un flujo comprimido.
+ */
+public final class MazeFile {
+    /**
+     * Número mágico que identifica los ficheros en este formato ("MZWS").
+     */
+    public static final int MAGIC = 0x4D5A5753;
+
+    /**
+     * Versión actual del formato.
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * Tamaño de la cabecera en bytes.
+     */
+    public static final int HEADER_SIZE = 32;
+
+    private static final int EXIT_OFFSET = 16;
+    static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Información contenida en la cabecera de un fichero.
+     */
+    public static class Header {
+        public int rows, columns;
+        public Point exit;
+
+        /**
+         * Constructor.
+         *
+         * @param rows    Número de filas.
+         * @param columns Número de columnas.
+         * @param exit    Posición de la salida.
+         */
+        public Header(int rows, int columns, Point exit) {
+            this.rows = rows;
+            this.columns = columns;
+            this.exit = exit;
+        }
+    }
+
+    private MazeFile() {}
+
+    /**
+     * @param columns Número de columnas del laberinto.
+     * @return Número de palabras de cada fila de paredes horizontales.
+     */
+    public static int horizontalStride(int columns) {
+        return (columns + 63) >>> 6;
+    }
+
+    /**
+     * @param columns Número de columnas del laberinto.
+     * @return Número de palabras de cada fila de paredes verticales.
+     */
+    public static int verticalStride(int columns) {
+        return (columns + 1 + 63) >>> 6;
+    }
+
+    /**
+     * @param columns Número de columnas del laberinto.
+     * @return Tamaño en bytes del registro de cada fila de celdas.
+     */
+    public static long recordSize(int columns) {
+        return 8L * (horizontalStride(columns) + verticalStride(columns));
+    }
+
+    /**
+     * Calcula la posición en el fichero de una fila de paredes horizontales.
+     *
+     * @param row     Fila, entre 0 y el número de filas (incluido).
+     * @param columns Número de columnas del laberinto.
+     * @return Posición en bytes desde el principio del fichero.
+     */
+    public static long horizontalOffset(int row, int columns) {
+        return HEADER_SIZE + row * recordSize(columns);
+    }
+
+    /**
+     * Calcula la posición en el fichero de una fila de paredes verticales.
+     *
+     * @param row     Fila.
+     * @param columns Número de columnas del laberinto.
+     * @return Posición en bytes desde el principio del fichero.
+     */
+    public static long verticalOffset(int row, int columns) {
+        return horizontalOffset(row, columns) + 8L * horizontalStride(columns);
+    }
+
+    /**
+     * Calcula el tamaño total de un fichero.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     * @return Tamaño en bytes.
+     */
+    public static long fileSize(int rows, int columns) {
+        return horizontalOffset(rows, columns) + 8L * horizontalStride(columns);
+    }
+
+    /**
+     * Escribe la cabecera en la posición actual de un buffer.
+     *
+     * @param buffer Buffer con al menos {@link MazeFile#HEADER_SIZE} bytes libres.
+     * @param header Información a escribir.
+     */
+    public static void writeHeader(ByteBuffer buffer, Header header) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) 0);
+        buffer.putInt(header.rows);
+        buffer.putInt(header.columns);
+        buffer.putInt(header.exit.x);
+        buffer.putInt(header.exit.y);
+        buffer.putLong(0);
+    }
+
+    /**
+     * Escribe la posición de la salida en la cabecera, en posiciones absolutas
+     * de un buffer que empieza al principio del fichero.
+     *
+     * @param buffer Buffer que contiene la cabecera.
+     * @param exit   Nueva posición de la salida.
+     */
+    public static void writeExit(ByteBuffer buffer, Point exit) {
+        buffer.putInt(EXIT_OFFSET, exit.x);
+        buffer.putInt(EXIT_OFFSET + 4, exit.y);
+    }
+
+    /**
+     * Lee y valida la cabecera desde la posición actual de un buffer.
+     *
+     * @param buffer Buffer con al menos {@link MazeFile#HEADER_SIZE} bytes.
+     * @return Información contenida en la cabecera.
+     * @throws IOException Si la cabecera no es válida.
+     */
+    public static Header readHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getShort() != VERSION)
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+        buffer.getShort();
+        int rows = buffer.getInt(), columns = buffer.getInt();
+        Point exit = new Point(buffer.getInt(), buffer.getInt());
+        buffer.getLong();
+
+        // Las columnas se limitan para que el cálculo del tamaño de las filas no
+        // desborde, y la salida tiene que estar justo fuera de una celda del borde
+        if (rows <= 0 || columns <= 0 || columns > Integer.MAX_VALUE - 64 ||
+            !validExit(exit, rows, columns))
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+        return new Header(rows, columns, exit);
+    }
+
+    /**
+     * Comprueba que la salida está al otro lado de una de las paredes del borde
+     * del laberinto.
+     *
+     * @param exit    Posición de la salida.
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     * @return Si la posición de la salida es válida.
+     */
+    private static boolean validExit(Point exit, int rows, int columns) {
+        if (exit.x == -1 || exit.x == columns)
+            return exit.y >= 0 && exit.y < rows;
+        if (exit.y == -1 || exit.y == rows)
+            return exit.x >= 0 && exit.x < columns;
+
+        return false;
+    }
+
+    /**
+     * Lee y valida la cabecera de un fichero desde su comienzo.
+     *
+     * @param channel Canal abierto sobre el fichero.
+     * @return Información contenida en la cabecera.
+     * @throws IOException Si no se puede leer o la cabecera no es válida.
+     */
+    public static Header readHeader(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE);
+        channel.position(0);
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+        buffer.flip();
+        Header header = readHeader(buffer);
+        if (channel.size() < fileSize(header.rows, header.columns))
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+        return header;
+    }
+
+    /**
+     * Lee de manera secuencial todas las paredes de un fichero, cuya cabecera ya
+     * se ha leído.
+     *
+     * @param channel Canal de lectura, situado justo tras la cabecera.
+     * @param header  Cabecera del fichero.
+     * @return Almacén con las paredes leídas.
+     * @throws IOException Si el fichero está incompleto, no se puede leer o el
+     *                     laberinto no cabe en memoria.
+     */
+    public static EdgeWallStore readWalls(ReadableByteChannel channel, Header header) throws IOException {
+        if (!EdgeWallStore.fits(header.rows, header.columns))
+            throw new IOException(MainWindow.getTranslations().exception().mazeTooLarge());
+
+        EdgeWallStore walls = new EdgeWallStore(header.rows, header.columns);
+        int h_stride = horizontalStride(header.columns), v_stride = verticalStride(header.columns);
+
+        ByteBuffer buffer = allocateBuffer(header.rows, header.columns);
+        buffer.flip();
+        for (int y = 0; y <= header.rows; y++) {
+            for (int w = 0; w < h_stride; w++)
+                walls.setHorizontalWord(y, w, nextWord(channel, buffer));
+            if (y < header.rows)
+                for (int w = 0; w < v_stride; w++)
+                    walls.setVerticalWord(y, w, nextWord(channel, buffer));
+        }
+
+        return walls;
+    }
+
+    /**
+     * Escribe de manera secuencial un fichero completo a partir de un almacén
+     * de paredes cualquiera.
+     *
+     * @param channel Canal de escritura, situado donde debe empezar el fichero.
+     * @param walls   Paredes del laberinto.
+     * @param exit    Posición de la salida.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    public static void write(WritableByteChannel channel, WallStore walls, Point exit) throws IOException {
+        int rows = walls.getRows(), columns = walls.getColumns();
+        int h_stride = horizontalStride(columns), v_stride = verticalStride(columns);
+
+        ByteBuffer buffer = allocateBuffer(rows, columns);
+        writeHeader(buffer, new Header(rows, columns, exit));
+        for (int y = 0; y <= rows; y++) {
+            for (int w = 0; w < h_stride; w++)
+                putWord(channel, buffer, horizontalWord(walls, y, w));
+            if (y < rows)
+                for (int w = 0; w < v_stride; w++)
+                    putWord(channel, buffer, verticalWord(walls, y, w));
+        }
+        flush(channel, buffer);
+    }
+
+    /**
+     * Obtiene una palabra de paredes horizontales de cualquier almacén,
+     * construyéndola pared a pared si no es un {@link EdgeWallStore}.
+     *
+     * @param walls Almacén de paredes.
+     * @param row   Fila, entre 0 y el número de filas (incluido).
+     * @param word  Índice de la palabra dentro de la fila.
+     * @return Palabra con las paredes.
+     */
+    private static long horizontalWord(WallStore walls, int row, int word) {
+        if (walls instanceof EdgeWallStore)
+            return ((EdgeWallStore) walls).getHorizontalWord(row, word);
+
+        long bits = 0;
+        int rows = walls.getRows(), last = Math.min((word + 1) << 6, walls.getColumns());
+        for (int x = word << 6; x < last; x++) {
+            boolean wall = row < rows ? walls.hasWall(row, x, Direction.UP) :
+                                        walls.hasWall(rows - 1, x, Direction.DOWN);
+            if (wall)
+                bits |= 1L << x;
+        }
+
+        return bits;
+    }
+
+    /**
+     * Obtiene una palabra de paredes verticales de cualquier almacén,
+     * construyéndola pared a pared si no es un {@link EdgeWallStore}.
+     *
+     * @param walls Almacén de paredes.
+     * @param row   Fila.
+     * @param word  Índice de la palabra dentro de la fila.
+     * @return Palabra con las paredes.
+     */
+    private static long verticalWord(WallStore walls, int row, int word) {
+        if (walls instanceof EdgeWallStore)
+            return ((EdgeWallStore) walls).getVerticalWord(row, word);
+
+        long bits = 0;
+        int columns = walls.getColumns(), last = Math.min((word + 1) << 6, columns + 1);
+        for (int x = word << 6; x < last; x++) {
+            boolean wall = x < columns ? walls.hasWall(row, x, Direction.LEFT) :
+                                         walls.hasWall(row, columns - 1, Direction.RIGHT);
+            if (wall)
+                bits |= 1L << x;
+        }
+
+        return bits;
+    }
+
+    /**
+     * Reserva el buffer para leer o escribir un fichero completo. Los
+     * laberintos pequeños no necesitan el buffer completo, y reservarlo para
+     * cada uno encarece mucho la lectura de colecciones de laberintos.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     * @return Buffer vacío en modo de escritura.
+     */
+    static ByteBuffer allocateBuffer(int rows, int columns) {
+        long size = fileSize(rows, columns);
+        if (size < BUFFER_SIZE)
+            return ByteBuffer.allocate((int) size);
+
+        return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    /**
+     * Lee la siguiente palabra del fichero, rellenando el buffer cuando se
+     * vacía.
+     *
+     * @param channel Canal del que leer.
+     * @param buffer  Buffer en modo de lectura.
+     * @return Palabra leída.
+     * @throws IOException Si el fichero se acaba antes de tiempo.
+     */
+    static long nextWord(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 8) {
+            buffer.compact();
+            while (buffer.position() < 8)
+                if (channel.read(buffer) < 0)
+                    throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+            buffer.flip();
+        }
+
+        return buffer.getLong();
+    }
+
+    /**
+     * Añade una palabra al buffer de escritura, volcándolo al fichero cuando se
+     * llena.
+     *
+     * @param channel Canal en el que escribir.
+     * @param buffer  Buffer en modo de escritura.
+     * @param word    Palabra a escribir.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    static void putWord(WritableByteChannel channel, ByteBuffer buffer, long word) throws IOException {
+        if (buffer.remaining() < 8)
+            flush(channel, buffer);
+
+        buffer.putLong(word);
+    }
+
+    /**
+     * Vuelca al fichero el contenido del buffer de escritura y lo vacía.
+     *
+     * @param channel Canal en el que escribir.
+     * @param buffer  Buffer en modo de escritura.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    static void flush(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeRowReader.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.storage;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.util.Direction;
+
+import java.awt.Point;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Lee un laberinto guardado en el formato descrito en {@link MazeFile} fila a
+ * fila, sin necesidad de cargarlo completo en memoria. Sólo se guardan las
+ * paredes de la fila actual, las horizontales de la siguiente y un buffer de
+ * tamaño fijo, así que la memoria utilizada depende de la anchura del
+ * laberinto pero no de su altura.
+ * <br><br>
+ * Cada fila se devuelve como un vector con las paredes de cada celda,
+ * combinando los valores {@link Direction#val}, en el mismo formato que
+ * acepta {@link MazeRowWriter}.
+ */
+public class MazeRowReader implements Closeable {
+    private FileInputStream m_file;
+    private FileChannel m_channel;
+    private ByteBuffer m_buffer;
+
+    private MazeFile.Header m_header;
+    private int m_h_stride, m_v_stride;
+    private int m_row;
+    private long[] m_top, m_bottom, m_vertical;
+
+    /**
+     * Abre el fichero y lee su cabecera.
+     *
+     * @param fileName Nombre del fichero.
+     * @throws IOException Si no se puede abrir el fichero o no contiene un
+     *                     laberinto válido.
+     */
+    public MazeRowReader(String fileName) throws IOException {
+        m_file = new FileInputStream(fileName);
+        try {
+            m_channel = m_file.getChannel();
+            m_header = MazeFile.readHeader(m_channel);
+        } catch (IOException e) {
+            m_file.close();
+            throw e;
+        }
+
+        m_h_stride = MazeFile.horizontalStride(m_header.columns);
+        m_v_stride = MazeFile.verticalStride(m_header.columns);
+        m_top = new long[m_h_stride];
+        m_bottom = new long[m_h_stride];
+        m_vertical = new long[m_v_stride];
+
+        m_buffer = MazeFile.allocateBuffer(m_header.rows, m_header.columns);
+        m_buffer.flip();
+
+        // La fila de paredes horizontales superior se lee por adelantado
+        for (int w = 0; w < m_h_stride; w++)
+            m_bottom[w] = MazeFile.nextWord(m_channel, m_buffer);
+    }
+
+    /**
+     * @return Número de filas del laberinto.
+     */
+    public int getRows() {
+        return m_header.rows;
+    }
+
+    /**
+     * @return Número de columnas del laberinto.
+     */
+    public int getColumns() {
+        return m_header.columns;
+    }
+
+    /**
+     * @return Posición de la salida del laberinto.
+     */
+    public Point getExit() {
+        return new Point(m_header.exit);
+    }
+
+    /**
+     * @return Si quedan filas por leer.
+     */
+    public boolean hasNextRow() {
+        return m_row < m_header.rows;
+    }
+
+    /**
+     * Lee la siguiente fila del laberinto.
+     *
+     * @param walls Vector donde guardar las paredes de cada celda de la fila.
+     *              Debe tener tantos elementos como columnas tiene el laberinto.
+     * @return Índice de la fila leída.
+     * @throws IOException Si el fichero está incompleto o no se puede leer.
+     */
+    public int readRow(byte[] walls) throws IOException {
+        if (walls.length != m_header.columns || !hasNextRow())
+            throw new IllegalArgumentException(MainWindow.getTranslations().exception().invalidMaze());
+
+        // Las paredes inferiores de la fila anterior son las superiores de ésta
+        long[] tmp = m_top;
+        m_top = m_bottom;
+        m_bottom = tmp;
+
+        for (int w = 0; w < m_v_stride; w++)
+            m_vertical[w] = MazeFile.nextWord(m_channel, m_buffer);
+        for (int w = 0; w < m_h_stride; w++)
+            m_bottom[w] = MazeFile.nextWord(m_channel, m_buffer);
+
+        for (int x = 0; x < m_header.columns; x++) {
+            int cell = 0;
+            if ((m_top[x >>> 6] & (1L << x)) != 0)
+                cell |= Direction.UP.val;
+            if ((m_bottom[x >>> 6] & (1L << x)) != 0)
+                cell |= Direction.DOWN.val;
+            if ((m_vertical[x >>> 6] & (1L << x)) != 0)
+                cell |= Direction.LEFT.val;
+            if ((m_vertical[(x + 1) >>> 6] & (1L << (x + 1))) != 0)
+                cell |= Direction.RIGHT.val;
+            walls[x] = (byte) cell;
+        }
+
+        return m_row++;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        m_file.close();
+    }
+
+}
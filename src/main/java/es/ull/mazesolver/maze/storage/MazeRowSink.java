@@ -0,0 +1,48 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeRowSink.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.storage;
+
+import es.ull.mazesolver.util.Direction;
+
+import java.io.IOException;
+
+/**
+ * Destino al que se envían las filas de un laberinto a medida que se generan,
+ * de arriba a abajo, sin necesidad de tener el laberinto completo en memoria.
+ * <br><br>
+ * Cada fila se describe mediante un vector con las paredes de cada celda,
+ * combinando los valores {@link Direction#val}.
+ */
+public interface MazeRowSink {
+    /**
+     * Recibe la siguiente fila del laberinto. El vector puede reutilizarse para
+     * las filas siguientes, así que no se debe guardar una referencia a él.
+     *
+     * @param walls Paredes de cada celda de la fila.
+     * @throws IOException Si no se puede guardar la fila.
+     */
+    void writeRow(byte[] walls) throws IOException;
+}
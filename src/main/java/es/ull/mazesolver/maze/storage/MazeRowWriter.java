@@ -0,0 +1,160 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file MazeRowWriter.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.storage;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.util.Direction;
+
+import java.awt.Point;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Escribe un laberinto en el formato descrito en {@link MazeFile} fila a fila,
+ * sin necesidad de tener el laberinto completo en memoria. Sólo se guarda la
+ * fila anterior y un buffer de tamaño fijo, así que la memoria utilizada depende
+ * de la anchura del laberinto pero no de su altura.
+ * <br><br>
+ * Cada fila se describe mediante un vector con las paredes de cada celda,
+ * combinando los valores {@link Direction#val}. Como las celdas vecinas
+ * comparten sus paredes, una pared existe si cualquiera de las dos celdas la
+ * tiene.
+ */
+public class MazeRowWriter implements MazeRowSink, Closeable {
+    private FileOutputStream m_file;
+    private FileChannel m_channel;
+    private ByteBuffer m_buffer;
+
+    private int m_rows, m_columns;
+    private int m_h_stride, m_v_stride;
+    private int m_row;
+    private long[] m_horizontal, m_vertical;
+
+    /**
+     * Crea el fichero y escribe su cabecera.
+     *
+     * @param fileName Nombre del fichero.
+     * @param rows     Número de filas que se van a escribir.
+     * @param columns  Número de columnas.
+     * @param exit     Posición de la salida del laberinto.
+     * @throws IOException Si no se puede crear el fichero.
+     */
+    public MazeRowWriter(String fileName, int rows, int columns, Point exit) throws IOException {
+        if (rows <= 0 || columns <= 0 || exit == null)
+            throw new IllegalArgumentException(MainWindow.getTranslations().exception().invalidMaze());
+
+        m_rows = rows;
+        m_columns = columns;
+        m_h_stride = MazeFile.horizontalStride(columns);
+        m_v_stride = MazeFile.verticalStride(columns);
+        m_horizontal = new long[m_h_stride];
+        m_vertical = new long[m_v_stride];
+
+        m_file = new FileOutputStream(fileName);
+        m_channel = m_file.getChannel();
+        m_buffer = MazeFile.allocateBuffer(rows, columns);
+        MazeFile.writeHeader(m_buffer, new MazeFile.Header(rows, columns, exit));
+    }
+
+    /**
+     * @return Número de filas que ya se han escrito.
+     */
+    public int getRowsWritten() {
+        return m_row;
+    }
+
+    /**
+     * Escribe la siguiente fila del laberinto.
+     *
+     * @param walls Paredes de cada celda de la fila. Debe tener tantos elementos
+     *              como columnas tiene el laberinto.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    @Override
+    public void writeRow(byte[] walls) throws IOException {
+        if (walls.length != m_columns || m_row >= m_rows)
+            throw new IllegalArgumentException(MainWindow.getTranslations().exception().invalidMaze());
+
+        // La pared superior de cada celda es también la inferior de la celda de
+        // arriba, que se guardó al escribir la fila anterior
+        for (int x = 0; x < m_columns; x++)
+            if ((walls[x] & Direction.UP.val) != 0)
+                m_horizontal[x >>> 6] |= 1L << x;
+
+        for (int x = 0; x < m_columns; x++) {
+            if ((walls[x] & Direction.LEFT.val) != 0)
+                m_vertical[x >>> 6] |= 1L << x;
+            if ((walls[x] & Direction.RIGHT.val) != 0)
+                m_vertical[(x + 1) >>> 6] |= 1L << (x + 1);
+        }
+
+        for (int w = 0; w < m_h_stride; w++)
+            MazeFile.putWord(m_channel, m_buffer, m_horizontal[w]);
+        for (int w = 0; w < m_v_stride; w++)
+            MazeFile.putWord(m_channel, m_buffer, m_vertical[w]);
+
+        // Se preparan las paredes horizontales de la siguiente fila
+        for (int w = 0; w < m_h_stride; w++)
+            m_horizontal[w] = 0;
+        for (int w = 0; w < m_v_stride; w++)
+            m_vertical[w] = 0;
+        for (int x = 0; x < m_columns; x++)
+            if ((walls[x] & Direction.DOWN.val) != 0)
+                m_horizontal[x >>> 6] |= 1L << x;
+
+        m_row++;
+    }
+
+    /**
+     * Escribe las paredes del borde inferior del laberinto y cierra el fichero.
+     *
+     * @throws IOException Si no se puede escribir en el fichero o no se han
+     *                     escrito todas las filas.
+     */
+    @Override
+    public void close() throws IOException {
+        if (m_channel == null)
+            return;
+
+        try {
+            if (m_row == m_rows) {
+                for (int w = 0; w < m_h_stride; w++)
+                    MazeFile.putWord(m_channel, m_buffer, m_horizontal[w]);
+                MazeFile.flush(m_channel, m_buffer);
+            }
+        } finally {
+            m_file.close();
+            m_channel = null;
+        }
+
+        if (m_row != m_rows)
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+    }
+
+}
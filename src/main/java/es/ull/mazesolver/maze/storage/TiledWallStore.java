@@ -0,0 +1,307 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file TiledWallStore.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.storage;
+
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.util.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Almacén de paredes dividido en bloques de {@link TiledWallStore#TILE_SIZE}
+ * x {@link TiledWallStore#TILE_SIZE} celdas que permite crear instantáneas
+ * con copia en escritura.
+ * <br><br>
+ * Una instantánea comparte todos los bloques con el almacén del que procede y
+ * sólo se duplica un bloque cuando uno de los dos lo modifica, así que muchos
+ * entornos pueden trabajar sobre el mismo laberinto ocupando únicamente la
+ * memoria de los bloques que han editado. Los bloques que aún no se han
+ * modificado nunca se leen directamente de un almacén base, que no se
+ * modifica.
+ */
+public class TiledWallStore extends WallStore {
+    private static final long serialVersionUID = -1525370218069946287L;
+
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_MASK = (1 << TILE_SHIFT) - 1;
+
+    /**
+     * Número de filas y de columnas de celdas de cada bloque.
+     */
+    public static final int TILE_SIZE = 1 << TILE_SHIFT;
+
+    private WallStore m_base;
+    private int m_tile_columns;
+    private byte[][] m_tiles;
+    private boolean[] m_owned;
+
+    /**
+     * Constructor. Crea un almacén en el que todas las celdas están rodeadas de
+     * muros.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     */
+    public TiledWallStore(int rows, int columns) {
+        this(rows, columns, null);
+        fill(CellWallStore.ALL_WALLS);
+    }
+
+    /**
+     * Crea un almacén cuyo contenido inicial es el de otro almacén. Los bloques
+     * se copian del almacén base a medida que se modifican, por lo que éste no
+     * se debe modificar mientras se utilice este almacén.
+     *
+     * @param base Almacén del que se leen los bloques no modificados.
+     */
+    public TiledWallStore(WallStore base) {
+        this(base.getRows(), base.getColumns(), base);
+    }
+
+    /**
+     * Constructor común.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     * @param base    Almacén base o null si no lo hay.
+     */
+    private TiledWallStore(int rows, int columns, WallStore base) {
+        super(rows, columns);
+
+        m_tile_columns = (columns + TILE_MASK) >>> TILE_SHIFT;
+        long tiles = (long) ((rows + TILE_MASK) >>> TILE_SHIFT) * m_tile_columns;
+        if (tiles > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().mazeTooLarge());
+
+        m_base = base;
+        m_tiles = new byte[(int) tiles][];
+        m_owned = new boolean[(int) tiles];
+    }
+
+    /**
+     * Crea una instantánea del almacén. La instantánea y el almacén original
+     * comparten todos los bloques hasta que alguno de los dos los modifica, de
+     * manera que los cambios en uno nunca se ven en el otro.
+     *
+     * @return Nueva instantánea del almacén.
+     */
+    public TiledWallStore snapshot() {
+        TiledWallStore copy = new TiledWallStore(m_rows, m_columns, m_base);
+        System.arraycopy(m_tiles, 0, copy.m_tiles, 0, m_tiles.length);
+
+        // A partir de ahora ninguno de los dos es propietario exclusivo de los
+        // bloques, así que el primero en modificar uno debe copiarlo
+        Arrays.fill(m_owned, false);
+        return copy;
+    }
+
+    /**
+     * @return Número de bloques que este almacén ha copiado o creado y que no
+     * comparte con ningún otro.
+     */
+    public int getOwnedTiles() {
+        int owned = 0;
+        for (boolean o : m_owned)
+            if (o)
+                owned++;
+        return owned;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#getWalls(int, int)
+     */
+    @Override
+    public short getWalls(int row, int column) {
+        byte[] tile = m_tiles[tile(row, column)];
+        if (tile == null)
+            return m_base.getWalls(row, column);
+
+        return tile[offset(row, column)];
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#setWalls(int, int, short)
+     */
+    @Override
+    public void setWalls(int row, int column, short walls) {
+        short changed = (short) ((getWalls(row, column) ^ walls) & CellWallStore.ALL_WALLS);
+        for (int i = 1; i < Direction.MAX_DIRECTIONS && changed != 0; i++) {
+            Direction dir = Direction.fromIndex(i);
+            if ((changed & dir.val) != 0)
+                toggleWall(row, column, dir);
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#hasWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public boolean hasWall(int row, int column, Direction dir) {
+        return (getWalls(row, column) & dir.val) != 0;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#setWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void setWall(int row, int column, Direction dir) {
+        modify(row, column, dir, true);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#unsetWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void unsetWall(int row, int column, Direction dir) {
+        modify(row, column, dir, false);
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#toggleWall(int, int, es.ull.mazesolver.util.Direction)
+     */
+    @Override
+    public void toggleWall(int row, int column, Direction dir) {
+        modify(row, column, dir, !hasWall(row, column, dir));
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#fill(short)
+     */
+    @Override
+    public void fill(short walls) {
+        // Todos los bloques quedan iguales, así que comparten uno solo que se
+        // copiará cuando se modifique
+        byte[] tile = new byte[TILE_SIZE * TILE_SIZE];
+        Arrays.fill(tile, (byte) walls);
+        Arrays.fill(m_tiles, tile);
+        Arrays.fill(m_owned, false);
+        m_base = null;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see es.ull.mazesolver.maze.storage.WallStore#copy()
+     */
+    @Override
+    public WallStore copy() {
+        return snapshot();
+    }
+
+    /**
+     * Pone o quita la pared de un lado de una celda y del lado opuesto de su
+     * vecina, copiando antes los bloques que sea necesario.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda.
+     * @param wall   Si se quiere que haya pared o no.
+     */
+    private void modify(int row, int column, Direction dir, boolean wall) {
+        if (dir == Direction.NONE)
+            return;
+
+        assign(row, column, dir.val, wall);
+
+        int n_row = row + dir.getDeltaY(), n_column = column + dir.getDeltaX();
+        if (n_row >= 0 && n_row < m_rows && n_column >= 0 && n_column < m_columns)
+            assign(n_row, n_column, dir.getOpposite().val, wall);
+    }
+
+    /**
+     * Activa o desactiva uno de los bits de una celda.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param bit    Bit de la dirección que se quiere modificar.
+     * @param value  Valor que se le quiere dar.
+     */
+    private void assign(int row, int column, short bit, boolean value) {
+        byte[] tile = writableTile(tile(row, column), row, column);
+        int offset = offset(row, column);
+
+        if (value)
+            tile[offset] |= bit;
+        else
+            tile[offset] &= ~bit;
+    }
+
+    /**
+     * Obtiene un bloque que se pueda modificar, copiándolo si es compartido o
+     * cargándolo del almacén base si todavía no existe.
+     *
+     * @param index  Índice del bloque.
+     * @param row    Fila de una celda del bloque.
+     * @param column Columna de una celda del bloque.
+     * @return Bloque del que este almacén es el único propietario.
+     */
+    private byte[] writableTile(int index, int row, int column) {
+        if (m_owned[index])
+            return m_tiles[index];
+
+        byte[] tile;
+        if (m_tiles[index] != null)
+            tile = m_tiles[index].clone();
+        else {
+            tile = new byte[TILE_SIZE * TILE_SIZE];
+
+            int first_row = row & ~TILE_MASK, first_column = column & ~TILE_MASK;
+            int last_row = Math.min(first_row + TILE_SIZE, m_rows);
+            int last_column = Math.min(first_column + TILE_SIZE, m_columns);
+            for (int y = first_row; y < last_row; y++)
+                for (int x = first_column; x < last_column; x++)
+                    tile[offset(y, x)] = (byte) m_base.getWalls(y, x);
+        }
+
+        m_tiles[index] = tile;
+        m_owned[index] = true;
+        return tile;
+    }
+
+    private int tile(int row, int column) {
+        return (row >>> TILE_SHIFT) * m_tile_columns + (column >>> TILE_SHIFT);
+    }
+
+    private static int offset(int row, int column) {
+        return ((row & TILE_MASK) << TILE_SHIFT) | (column & TILE_MASK);
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file WallStore.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.maze.storage;
+
+import es.ull.mazesolver.util.Direction;
+
+import java.awt.Point;
+import java.io.Serializable;
+
+/**
+ * Clase abstracta que representa el almacenamiento de las paredes de un
+ * laberinto. Las paredes de cada celda se consultan y modifican mediante
+ * campos de bits formados por los valores de {@link Direction}, de manera que
+ * no es necesario crear objetos para acceder a ellas.
+ * <br><br>
+ * Cada pared es compartida por las dos celdas que separa: al poner o quitar un
+ * muro en una celda también se pone o se quita en la celda vecina, por lo que
+ * dos celdas adyacentes nunca pueden contradecirse.
+ */
+public abstract class WallStore implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Número de filas del laberinto almacenado.
+     */
+    protected int m_rows;
+
+    /**
+     * Número de columnas del laberinto almacenado.
+     */
+    protected int m_columns;
+
+    /**
+     * Constructor. Crea un almacén para un laberinto de las dimensiones dadas.
+     *
+     * @param rows    Número de filas.
+     * @param columns Número de columnas.
+     */
+    protected WallStore(int rows, int columns) {
+        m_rows = rows;
+        m_columns = columns;
+    }
+
+    /**
+     * @return El número de filas (altura) del laberinto.
+     */
+    public int getRows() {
+        return m_rows;
+    }
+
+    /**
+     * @return El número de columnas (anchura) del laberinto.
+     */
+    public int getColumns() {
+        return m_columns;
+    }
+
+    /**
+     * Obtiene las paredes de una celda como un campo de bits.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @return Combinación de los valores {@link Direction#val} de las direcciones
+     * en las que la celda tiene pared.
+     */
+    public abstract short getWalls(int row, int column);
+
+    /**
+     * Sustituye las paredes de una celda por las indicadas en el campo de bits.
+     * Como las paredes son compartidas, las celdas vecinas también ven el cambio.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param walls  Combinación de los valores {@link Direction#val} de las
+     *               direcciones en las que se quiere que haya pared.
+     */
+    public abstract void setWalls(int row, int column, short walls);
+
+    /**
+     * Indica si hay un muro en la dirección indicada de una celda.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda que se quiere consultar.
+     * @return Si hay una pared en esa dirección o no.
+     */
+    public boolean hasWall(int row, int column, Direction dir) {
+        return (getWalls(row, column) & dir.val) != 0;
+    }
+
+    /**
+     * Pone un muro en la dirección especificada de una celda y en el lado
+     * opuesto de su vecina.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda que se quiere modificar.
+     */
+    public void setWall(int row, int column, Direction dir) {
+        setWalls(row, column, (short) (getWalls(row, column) | dir.val));
+    }
+
+    /**
+     * Quita el muro en la dirección especificada de una celda y en el lado
+     * opuesto de su vecina.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda que se quiere modificar.
+     */
+    public void unsetWall(int row, int column, Direction dir) {
+        setWalls(row, column, (short) (getWalls(row, column) & ~dir.val));
+    }
+
+    /**
+     * Cambia el estado de la pared en la dirección especificada de una celda. Si
+     * no había muro, ahora lo hay y viceversa. La celda vecina ve el mismo
+     * cambio.
+     *
+     * @param row    Fila.
+     * @param column Columna.
+     * @param dir    Lado de la celda que se quiere modificar.
+     */
+    public void toggleWall(int row, int column, Direction dir) {
+        setWalls(row, column, (short) (getWalls(row, column) ^ dir.val));
+    }
+
+    /**
+     * Asigna las mismas paredes a todas las celdas del laberinto. Sólo tiene
+     * sentido con campos de bits simétricos, en los que arriba y abajo, así como
+     * izquierda y derecha, tienen el mismo valor.
+     *
+     * @param walls Campo de bits con las paredes de cada celda.
+     */
+    public void fill(short walls) {
+        for (int y = 0; y < m_rows; y++)
+            for (int x = 0; x < m_columns; x++)
+                setWalls(y, x, walls);
+    }
+
+    /**
+     * Notifica al almacén de que la salida del laberinto ha cambiado de sitio,
+     * para los almacenes que la guardan junto a las paredes. Por defecto no se
+     * hace nada.
+     *
+     * @param exit Nueva posición de la salida.
+     */
+    public void exitChanged(Point exit) {
+    }
+
+    /**
+     * Crea una copia independiente del almacén.
+     *
+     * @return Un nuevo almacén con las mismas paredes.
+     */
+    public abstract WallStore copy();
+
+}
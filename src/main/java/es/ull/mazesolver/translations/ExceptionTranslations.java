@@ -62,4 +62,8 @@ public interface ExceptionTranslations {
     String unnamedEnv();
 
     String repeatedEnvName();
+
+    String mazeTooLarge();
+
+    String readOnlyMaze();
 }
@@ -49,4 +49,6 @@ public interface MazeSelectorTranslations {
     String addWalls();
 
     String mazeType();
+
+    String parallelTiles();
 }
@@ -42,6 +42,8 @@ public interface MenuTranslations {
 
     String configEnv();
 
+    String openMazes();
+
     String saveMaze();
 
     String closeEnv();
@@ -60,6 +62,14 @@ public interface MenuTranslations {
 
     String removeAgent();
 
+    String recordTrace();
+
+    String replayTrace();
+
+    String saveCheckpoints();
+
+    String resumeCheckpoint();
+
     String simulation();
 
     String configuration();
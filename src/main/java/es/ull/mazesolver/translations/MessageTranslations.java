@@ -70,4 +70,22 @@ public interface MessageTranslations {
     String codeCompiled();
 
     String urlLaunchFailed();
+
+    String mappedMazeFiles();
+
+    String mazeArchiveFiles();
+
+    String asciiMazeFiles();
+
+    String gridMapFiles();
+
+    String pngImageFiles();
+
+    String traceFiles();
+
+    String loadingMazes();
+
+    String checkpointFiles();
+
+    String closeEnvironments();
 }
@@ -34,4 +34,8 @@ import com.github.rodionmoiseev.c10n.C10NMessages;
 @C10NMessages
 public interface OtherTranslations {
     String numberSteps();
+
+    String replayStep();
+
+    String stepInterval();
 }
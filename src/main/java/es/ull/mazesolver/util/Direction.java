@@ -27,6 +27,7 @@ package es.ull.mazesolver.util;
 
 import java.awt.Point;
 import java.io.Serializable;
+import java.util.SplittableRandom;
 
 /**
  * Enum que representa una dirección de movimiento en 2D. Cada posible opción es
@@ -34,11 +35,11 @@ import java.io.Serializable;
  * varias direcciones en la misma variable simultáneamente.
  */
 public enum Direction implements Serializable {
-    NONE((short) 0x00),
-    UP((short) 0x01),
-    DOWN((short) 0x02),
-    LEFT((short) 0x04),
-    RIGHT((short) 0x08);
+    NONE((short) 0x00, 0, 0),
+    UP((short) 0x01, 0, -1),
+    DOWN((short) 0x02, 0, 1),
+    LEFT((short) 0x04, -1, 0),
+    RIGHT((short) 0x08, 1, 0);
 
     /**
      * Número máximo de direcciones.
@@ -50,10 +51,14 @@ public enum Direction implements Serializable {
      */
     public short val;
 
+    private final int dx, dy;
+
     private static Direction[] values = Direction.values();
 
-    private Direction(short val) {
+    private Direction(short val, int dx, int dy) {
         this.val = val;
+        this.dx = dx;
+        this.dy = dy;
     }
 
     /**
@@ -119,10 +124,11 @@ public enum Direction implements Serializable {
     /**
      * Crea una dirección de forma aleatoria.
      *
+     * @param random Generador de números aleatorios.
      * @return Una dirección aleatoria. No va a ser {@code Direction.NONE}.
      */
-    public static Direction random() {
-        return values[1 + (int) (Math.random() * 4.0)];
+    public static Direction random(SplittableRandom random) {
+        return values[1 + random.nextInt(4)];
     }
 
     /**
@@ -131,24 +137,27 @@ public enum Direction implements Serializable {
      * @return Pareja con la descomposición de la dirección (x, y).
      */
     public Pair<Integer, Integer> decompose() {
-        Pair<Integer, Integer> p = new Pair<Integer, Integer>(0, 0);
-        switch (this) {
-            case NONE:
-                break;
-            case UP:
-                p.second = -1;
-                break;
-            case DOWN:
-                p.second = 1;
-                break;
-            case LEFT:
-                p.first = -1;
-                break;
-            case RIGHT:
-                p.first = 1;
-                break;
-        }
-        return p;
+        return new Pair<Integer, Integer>(dx, dy);
+    }
+
+    /**
+     * Obtiene el desplazamiento en el eje X (columnas) asociado a la dirección,
+     * sin reservar memoria.
+     *
+     * @return -1, 0 ó 1 dependiendo de la dirección.
+     */
+    public int getDeltaX() {
+        return dx;
+    }
+
+    /**
+     * Obtiene el desplazamiento en el eje Y (filas) asociado a la dirección,
+     * sin reservar memoria.
+     *
+     * @return -1, 0 ó 1 dependiendo de la dirección.
+     */
+    public int getDeltaY() {
+        return dy;
     }
 
     /**
@@ -199,8 +208,7 @@ public enum Direction implements Serializable {
      * @return Nuevo punto equivalente al indicado desplazado en esta dirección.
      */
     public Point movePoint(final Point p) {
-        Pair<Integer, Integer> desp = decompose();
-        return new Point(p.x + desp.first, p.y + desp.second);
+        return new Point(p.x + dx, p.y + dy);
     }
 
     /**
@@ -25,9 +25,21 @@
  */
 package es.ull.mazesolver.util;
 
+import es.ull.mazesolver.agent.Agent;
+import es.ull.mazesolver.agent.AgentFile;
 import es.ull.mazesolver.agent.util.MessageCommunication;
 import es.ull.mazesolver.agent.util.MessageCommunication.Message;
+import es.ull.mazesolver.agent.util.MessageCommunication.MessageType;
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.gui.environment.Environment;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
@@ -217,4 +229,135 @@ public class MessageManager {
         // Si el mensaje es nuevo, lo añadimos a la lista de mensajes del receptor
         r_msgs.add(msg);
     }
+
+    /**
+     * Escribe en un flujo binario los grupos, sus suscriptores y los mensajes
+     * pendientes de enviar. Los agentes se identifican por su posición dentro
+     * del entorno, y los suscriptores o emisores que no sean agentes del mismo
+     * no se guardan. El contenido de los mensajes se guarda mediante la
+     * serialización de Java.
+     *
+     * @param out Flujo de salida.
+     * @param env Entorno al que pertenece el gestor.
+     * @throws IOException Si no se puede escribir en el flujo o el contenido de
+     *                     algún mensaje no se puede serializar.
+     */
+    void write(DataOutput out, Environment env) throws IOException {
+        out.writeInt(m_groups.size());
+        for (Entry<String, Pair<ArrayList<Pair<MessageCommunication, Message>>, ArrayList<MessageCommunication>>> entry : m_groups
+                .entrySet()) {
+            out.writeUTF(entry.getKey());
+
+            ArrayList<Pair<MessageCommunication, Message>> queue = entry.getValue().first;
+            out.writeInt(queue.size());
+            for (Pair<MessageCommunication, Message> msg : queue) {
+                out.writeInt(agentIndex(env, msg.first));
+                out.writeByte(msg.second.getType().ordinal());
+
+                Object content = msg.second.getContent();
+                out.writeBoolean(content != null);
+                if (content != null) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    ObjectOutputStream object_out = new ObjectOutputStream(bytes);
+                    object_out.writeObject(content);
+                    object_out.close();
+
+                    out.writeInt(bytes.size());
+                    out.write(bytes.toByteArray());
+                }
+            }
+
+            ArrayList<MessageCommunication> subscribers = entry.getValue().second;
+            out.writeInt(subscribers.size());
+            for (MessageCommunication agent : subscribers)
+                out.writeInt(agentIndex(env, agent));
+        }
+    }
+
+    /**
+     * Restaura los grupos y mensajes escritos con
+     * {@link MessageManager#write(DataOutput, Environment)}, sustituyendo los
+     * actuales.
+     *
+     * @param in  Flujo de entrada.
+     * @param env Entorno al que pertenece el gestor, que debe tener los mismos
+     *            agentes que cuando se escribieron los mensajes.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es
+     *                     válido.
+     */
+    void read(DataInput in, Environment env) throws IOException {
+        m_groups.clear();
+
+        int groups = in.readInt();
+        for (int i = 0; i < groups; i++) {
+            String name = in.readUTF();
+
+            ArrayList<Pair<MessageCommunication, Message>> queue = new ArrayList<>();
+            int messages = in.readInt();
+            for (int j = 0; j < messages; j++) {
+                MessageCommunication sender = agent(env, in.readInt());
+                MessageType type = AgentFile.readEnum(in, MessageType.values());
+
+                Object content = null;
+                if (in.readBoolean()) {
+                    int length = in.readInt();
+                    if (length < 0)
+                        throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+
+                    try {
+                        content = new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+                    } catch (ClassNotFoundException e) {
+                        throw new IOException(e);
+                    }
+                }
+
+                queue.add(new Pair<>(sender, new Message(type, content)));
+            }
+
+            ArrayList<MessageCommunication> subscribers = new ArrayList<>();
+            int count = in.readInt();
+            for (int j = 0; j < count; j++) {
+                MessageCommunication agent = agent(env, in.readInt());
+                if (agent != null)
+                    subscribers.add(agent);
+            }
+
+            m_groups.put(name, new Pair<>(queue, subscribers));
+        }
+    }
+
+    /**
+     * Busca la posición de un agente dentro del entorno.
+     *
+     * @param env   Entorno.
+     * @param agent Agente.
+     * @return Índice del agente en el entorno o -1 si no está en él.
+     */
+    private static int agentIndex(Environment env, MessageCommunication agent) {
+        for (int i = 0; i < env.getAgentCount(); i++)
+            if (env.getAgent(i) == agent)
+                return i;
+
+        return -1;
+    }
+
+    /**
+     * Obtiene el agente del entorno que se encuentra en una posición.
+     *
+     * @param env   Entorno.
+     * @param index Índice del agente o -1.
+     * @return El agente, o {@code null} si el índice es -1 o el agente no se
+     * puede comunicar mediante mensajes.
+     * @throws IOException Si el índice no es válido.
+     */
+    private static MessageCommunication agent(Environment env, int index) throws IOException {
+        if (index < -1 || index >= env.getAgentCount())
+            throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+        Agent agent = index >= 0 ? env.getAgent(index) : null;
+        return agent instanceof MessageCommunication ? (MessageCommunication) agent : null;
+    }
+
 }
@@ -0,0 +1,648 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file SimulationCheckpoint.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.util;
+
+import es.ull.mazesolver.agent.Agent;
+import es.ull.mazesolver.agent.AgentFile;
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.gui.environment.Environment;
+import es.ull.mazesolver.gui.environment.EnvironmentSet;
+import es.ull.mazesolver.maze.Maze;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Fichero de puntos de control de una simulación, que guarda todo el espacio
+ * de trabajo (entornos, laberintos, agentes con su memoria, mensajes
+ * pendientes y resultados) para poder continuar la simulación más adelante
+ * con {@link SimulationCheckpoint#resume(String, SimulationManager)}.
+ * <br><br>
+ * El estado se divide en registros: uno por laberinto, uno con la estructura
+ * de cada entorno (nombre, laberinto y configuración de sus agentes), otro con
+ * los resultados y mensajes de cada entorno, uno por agente con su estado de
+ * ejecución y otro con el estado del simulador. El fichero es un registro de
+ * sólo escritura al final: tras la cabecera (número mágico y versión) hay una
+ * secuencia de tramas, cada una con los registros que han cambiado desde la
+ * anterior y un código de redundancia. Al cargar se aplican las tramas en
+ * orden y se descarta una trama final incompleta, así que un fallo mientras
+ * se escribe un punto de control no afecta a los anteriores. Cuando el
+ * fichero crece demasiado se reescribe con una sola trama en un fichero
+ * temporal, que sustituye al original de forma atómica.
+ * <br><br>
+ * En el hilo de la simulación sólo se hace lo imprescindible para que la
+ * captura sea coherente, y únicamente con lo que ha cambiado desde la captura
+ * anterior: se convierte a bytes el estado de los agentes, resultados y
+ * mensajes de los entornos que han avanzado desde entonces, y se toma una
+ * instantánea ({@link Maze#snapshot()}) de los laberintos cuya huella
+ * ({@link Maze#getFingerprint()}) ha cambiado. La configuración de los
+ * entornos sólo se convierte en la primera captura tras arrancar la
+ * simulación, ya que no se puede modificar mientras se ejecuta. La compresión
+ * de los laberintos, la comparación con el punto de control anterior y la
+ * escritura en disco se hacen en un hilo aparte.
+ */
+public class SimulationCheckpoint implements Closeable {
+    /**
+     * Número mágico que identifica los ficheros en este formato ("MZCK").
+     */
+    public static final int MAGIC = 0x4D5A434B;
+
+    /**
+     * Versión actual del formato.
+     */
+    public static final short VERSION = 1;
+
+    private static final int FRAME_MAGIC = 0x4D5A4652;
+    private static final long MIN_COMPACT_SIZE = 1 << 20;
+
+    // Tipos de registro
+    private static final int RECORD_MANAGER = 0;
+    private static final int RECORD_MAZE = 1;
+    private static final int RECORD_ENVIRONMENT = 2;
+    private static final int RECORD_RESULTS = 3;
+    private static final int RECORD_AGENT = 4;
+
+    private final File m_file;
+    private final ExecutorService m_writer;
+    private Future<?> m_pending;
+    private volatile IOException m_error;
+
+    // Laberintos y entornos parados en la última captura, que sólo se usan en el
+    // hilo de simulación
+    private ArrayList<Maze> m_mazes;
+    private long[] m_maze_fingerprints;
+    private boolean[] m_stopped;
+    private boolean m_full;
+
+    // Registros escritos, que sólo se usan en el hilo de escritura
+    private HashMap<Long, byte[]> m_records;
+    private FileChannel m_channel;
+    private long m_sequence, m_log_size;
+
+    /**
+     * Crea un fichero de puntos de control vacío. El fichero no se crea hasta
+     * que se escribe el primer punto de control, que sustituye a su contenido
+     * anterior.
+     *
+     * @param fileName Nombre del fichero.
+     */
+    public SimulationCheckpoint(String fileName) {
+        m_file = new File(fileName);
+        m_writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Simulation checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        m_mazes = new ArrayList<Maze>();
+        m_maze_fingerprints = new long[0];
+        m_stopped = new boolean[0];
+        m_full = true;
+        m_records = new HashMap<Long, byte[]>();
+    }
+
+    /**
+     * Captura el estado actual de la simulación y lo escribe en el fichero en
+     * segundo plano. Se debe llamar desde el hilo que ejecuta la simulación,
+     * entre dos pasos. Si el punto de control anterior todavía se está
+     * escribiendo, no se hace nada.
+     * <br><br>
+     * Si falla la escritura de algún punto de control, no se capturan más y el
+     * error se lanza en {@link SimulationCheckpoint#flush()} o
+     * {@link SimulationCheckpoint#close()}.
+     *
+     * @param manager Simulador.
+     */
+    public void capture(SimulationManager manager) {
+        if (m_error != null || (m_pending != null && !m_pending.isDone()))
+            return;
+
+        final LinkedHashMap<Long, byte[]> records = new LinkedHashMap<Long, byte[]>();
+        final LinkedHashMap<Long, Maze> snapshots = new LinkedHashMap<Long, Maze>();
+        ArrayList<Maze> mazes = new ArrayList<Maze>();
+
+        try {
+            ArrayList<Environment> envs = manager.getEnvironments().getEnvironmentList();
+            boolean full = m_full || envs.size() != m_stopped.length;
+            boolean[] stopped = new boolean[envs.size()];
+            IdentityHashMap<Maze, Integer> maze_ids = new IdentityHashMap<Maze, Integer>();
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            for (int i = 0; i < envs.size(); i++) {
+                Environment env = envs.get(i);
+
+                // Los entornos pueden compartir el laberinto
+                Integer maze_id = maze_ids.get(env.getMaze());
+                if (maze_id == null) {
+                    maze_id = mazes.size();
+                    maze_ids.put(env.getMaze(), maze_id);
+                    mazes.add(env.getMaze());
+                }
+
+                // Los registros que no han cambiado se marcan sin contenido
+                if (full) {
+                    bytes.reset();
+                    out.writeUTF(env.getEnvName());
+                    out.writeInt(maze_id);
+                    out.writeInt(env.getAgentCount());
+                    for (int j = 0; j < env.getAgentCount(); j++)
+                        AgentFile.writeAgent(out, env.getAgent(j));
+                    records.put(key(RECORD_ENVIRONMENT, i, 0), bytes.toByteArray());
+                } else
+                    records.put(key(RECORD_ENVIRONMENT, i, 0), null);
+
+                // Un entorno que ya estaba parado en la captura anterior no ha
+                // cambiado desde entonces
+                stopped[i] = manager.hasEnvironmentStopped(i);
+                if (full || !m_stopped[i]) {
+                    bytes.reset();
+                    manager.getResults().writeEnvironment(out, env);
+                    env.getMessageManager().write(out, env);
+                    records.put(key(RECORD_RESULTS, i, 0), bytes.toByteArray());
+
+                    for (int j = 0; j < env.getAgentCount(); j++) {
+                        bytes.reset();
+                        AgentFile.writeState(out, env.getAgent(j));
+                        records.put(key(RECORD_AGENT, i, j), bytes.toByteArray());
+                    }
+                } else {
+                    records.put(key(RECORD_RESULTS, i, 0), null);
+                    for (int j = 0; j < env.getAgentCount(); j++)
+                        records.put(key(RECORD_AGENT, i, j), null);
+                }
+            }
+
+            // De los laberintos que han cambiado desde la última captura sólo se
+            // toma una instantánea, que se comprime en el hilo de escritura
+            long[] fingerprints = new long[mazes.size()];
+            for (int i = 0; i < mazes.size(); i++) {
+                Maze maze = mazes.get(i);
+                fingerprints[i] = maze.getFingerprint();
+
+                boolean unchanged = i < m_mazes.size() && m_mazes.get(i) == maze &&
+                                    m_maze_fingerprints[i] == fingerprints[i];
+                records.put(key(RECORD_MAZE, i, 0), null);
+                if (!unchanged)
+                    snapshots.put(key(RECORD_MAZE, i, 0), maze.snapshot());
+            }
+
+            bytes.reset();
+            out.writeInt(envs.size());
+            out.writeInt(mazes.size());
+            manager.writeState(out);
+            records.put(key(RECORD_MANAGER, 0, 0), bytes.toByteArray());
+
+            m_mazes = mazes;
+            m_maze_fingerprints = fingerprints;
+            m_stopped = stopped;
+            m_full = false;
+        } catch (IOException e) {
+            m_error = e;
+            return;
+        }
+
+        m_pending = m_writer.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (Map.Entry<Long, Maze> entry : snapshots.entrySet())
+                        records.put(entry.getKey(), compress(entry.getValue()));
+                    write(records);
+                } catch (IOException e) {
+                    m_error = e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Hace que la siguiente captura vuelva a convertir el estado completo de
+     * todos los entornos. Se debe llamar desde el hilo de la simulación cada
+     * vez que ésta arranca, ya que mientras está parada se pueden modificar los
+     * entornos.
+     */
+    void invalidate() {
+        m_full = true;
+    }
+
+    /**
+     * Espera a que termine de escribirse el último punto de control capturado.
+     *
+     * @throws IOException Si ha fallado la escritura de algún punto de control.
+     */
+    public void flush() throws IOException {
+        if (m_pending != null) {
+            try {
+                m_pending.get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+
+        if (m_error != null)
+            throw m_error;
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        m_writer.shutdown();
+        try {
+            m_writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } finally {
+            if (m_channel != null)
+                m_channel.close();
+        }
+
+        if (m_error != null)
+            throw m_error;
+    }
+
+    /**
+     * Restaura el estado de una simulación guardado en un fichero de puntos de
+     * control. Los entornos se añaden al conjunto de entornos del simulador,
+     * que debe estar vacío y con la simulación parada. Si la simulación se
+     * estaba ejecutando cuando se capturó el estado, se continúa
+     * inmediatamente.
+     *
+     * @param fileName Nombre del fichero de puntos de control.
+     * @param manager  Simulador.
+     * @throws IOException Si no se puede leer el fichero o su contenido no es
+     *                     válido.
+     */
+    public static void resume(String fileName, SimulationManager manager) throws IOException {
+        EnvironmentSet env_set = manager.getEnvironments();
+        if (env_set.getEnvironmentCount() != 0 || !manager.isStopped())
+            throw new IllegalStateException(
+                    MainWindow.getTranslations().exception().invalidEnvironment());
+
+        HashMap<Long, byte[]> records = readRecords(fileName);
+        DataInputStream manager_in = record(records, key(RECORD_MANAGER, 0, 0));
+        int env_count = manager_in.readInt();
+        int maze_count = manager_in.readInt();
+        if (env_count < 0 || maze_count < 0)
+            throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+        Maze[] mazes = new Maze[maze_count];
+        for (int i = 0; i < maze_count; i++)
+            mazes[i] = decompress(records.get(key(RECORD_MAZE, i, 0)));
+
+        // Primero se crean todos los entornos con sus agentes, y después se
+        // restaura el estado de los agentes, que puede depender de los demás
+        // agentes de su entorno
+        Environment[] envs = new Environment[env_count];
+        for (int i = 0; i < env_count; i++) {
+            DataInputStream in = record(records, key(RECORD_ENVIRONMENT, i, 0));
+            String name = in.readUTF();
+            int maze_id = in.readInt();
+            if (maze_id < 0 || maze_id >= maze_count)
+                throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+            envs[i] = new Environment(mazes[maze_id], name);
+            int agents = in.readInt();
+            for (int j = 0; j < agents; j++)
+                envs[i].addAgent(AgentFile.readAgent(in, envs[i]));
+
+            env_set.addEnvironment(envs[i]);
+        }
+
+        for (int i = 0; i < env_count; i++)
+            for (int j = 0; j < envs[i].getAgentCount(); j++)
+                AgentFile.readState(record(records, key(RECORD_AGENT, i, j)), envs[i].getAgent(j));
+
+        boolean running = manager.readState(manager_in);
+        for (int i = 0; i < env_count; i++) {
+            DataInputStream in = record(records, key(RECORD_RESULTS, i, 0));
+            manager.getResults().readEnvironment(in, envs[i]);
+            envs[i].getMessageManager().read(in, envs[i]);
+        }
+
+        if (running)
+            manager.startSimulation();
+    }
+
+    /**
+     * Escribe los registros de una captura en el fichero. Sólo se escriben los
+     * que han cambiado desde la captura anterior, salvo que el fichero haya
+     * crecido tanto que convenga reescribirlo entero.
+     *
+     * @param records Registros de la captura. Los que no tienen contenido no
+     *                han cambiado desde la captura anterior.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    private void write(LinkedHashMap<Long, byte[]> records) throws IOException {
+        HashMap<Long, byte[]> latest = new HashMap<Long, byte[]>(records.size() * 2);
+        ArrayList<Long> changed = new ArrayList<Long>();
+        long live_size = 0;
+
+        for (Map.Entry<Long, byte[]> entry : records.entrySet()) {
+            byte[] previous = m_records.get(entry.getKey());
+            byte[] bytes = entry.getValue();
+
+            if (bytes == null)
+                bytes = previous;
+            else if (previous == null || !Arrays.equals(previous, bytes))
+                changed.add(entry.getKey());
+
+            latest.put(entry.getKey(), bytes);
+            live_size += bytes.length;
+        }
+
+        if (m_channel == null || m_log_size > Math.max(2 * live_size, MIN_COMPACT_SIZE))
+            compact(latest);
+        else if (!changed.isEmpty()) {
+            ByteBuffer frame = frame(latest, changed);
+            m_log_size += frame.remaining();
+            while (frame.hasRemaining())
+                m_channel.write(frame);
+            m_channel.force(false);
+        }
+
+        m_records = latest;
+    }
+
+    /**
+     * Reescribe el fichero con una única trama que contiene todos los
+     * registros. Se escribe en un fichero temporal que después sustituye al
+     * original, de manera que siempre hay un punto de control completo.
+     *
+     * @param records Registros actuales.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    private void compact(HashMap<Long, byte[]> records) throws IOException {
+        if (m_channel != null) {
+            m_channel.close();
+            m_channel = null;
+        }
+
+        File temp = new File(m_file.getPath() + ".tmp");
+        FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(6);
+            header.putInt(MAGIC).putShort(VERSION).flip();
+            ByteBuffer frame = frame(records, new ArrayList<Long>(records.keySet()));
+
+            m_log_size = header.remaining() + frame.remaining();
+            while (header.hasRemaining())
+                channel.write(header);
+            while (frame.hasRemaining())
+                channel.write(frame);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+
+        Files.move(temp.toPath(), m_file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        m_channel = FileChannel.open(m_file.toPath(), StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Construye una trama con algunos de los registros: número mágico, número
+     * de secuencia ({@code long}), número de registros ({@code int}), cada
+     * registro con su clave ({@code long}), longitud ({@code int}) y contenido,
+     * y el CRC-32 de todo lo anterior salvo el número mágico ({@code int}).
+     *
+     * @param records Registros actuales.
+     * @param keys    Claves de los registros que se incluyen en la trama.
+     * @return Contenido de la trama.
+     * @throws IOException Si no se puede construir la trama.
+     */
+    private ByteBuffer frame(HashMap<Long, byte[]> records, ArrayList<Long> keys)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(FRAME_MAGIC);
+        out.writeLong(m_sequence++);
+        out.writeInt(keys.size());
+        for (Long key : keys) {
+            byte[] record = records.get(key);
+            out.writeLong(key);
+            out.writeInt(record.length);
+            out.write(record);
+        }
+
+        byte[] frame = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(frame, 4, frame.length - 4);
+
+        ByteBuffer buffer = ByteBuffer.allocate(frame.length + 4);
+        buffer.put(frame).putInt((int) crc.getValue()).flip();
+        return buffer;
+    }
+
+    /**
+     * Lee todos los registros de un fichero de puntos de control, aplicando
+     * las tramas en orden. Se ignora la última trama si está incompleta o
+     * dañada.
+     *
+     * @param fileName Nombre del fichero.
+     * @return Último contenido de cada registro.
+     * @throws IOException Si no se puede leer el fichero o no tiene el formato
+     *                     esperado.
+     */
+    private static HashMap<Long, byte[]> readRecords(String fileName) throws IOException {
+        FileInputStream file = new FileInputStream(fileName);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(file, 1 << 16));
+
+        try {
+            if (in.readInt() != MAGIC || in.readShort() > VERSION)
+                throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+            HashMap<Long, byte[]> records = new HashMap<Long, byte[]>();
+            HashMap<Long, byte[]> frame = new HashMap<Long, byte[]>();
+
+            // Bytes que quedan en el fichero tras la cabecera
+            long available = file.getChannel().size() - 6;
+            long length;
+            while ((length = readFrame(in, available, frame)) >= 0) {
+                records.putAll(frame);
+                frame.clear();
+                available -= length;
+            }
+
+            return records;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Lee una trama del fichero de puntos de control.
+     *
+     * Las longitudes de los registros se comprueban contra los bytes que
+     * quedan en el fichero antes de reservar memoria, ya que el CRC-32 no se
+     * puede comprobar hasta el final de la trama.
+     *
+     * @param in        Flujo de entrada.
+     * @param available Bytes que quedan en el fichero desde el inicio de la
+     *                  trama.
+     * @param frame     Mapa en el que guardar los registros de la trama.
+     * @return Número de bytes de la trama, o -1 si no se ha leído una trama
+     *         completa o su CRC-32 no es correcto.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    private static long readFrame(DataInputStream in, long available, HashMap<Long, byte[]> frame)
+            throws IOException {
+        try {
+            if (in.readInt() != FRAME_MAGIC)
+                return -1;
+
+            CRC32 crc = new CRC32();
+            DataInputStream frame_in = new DataInputStream(new CheckedInputStream(in, crc));
+            frame_in.readLong();
+
+            // Cabecera de la trama: marca, secuencia y número de registros
+            long read = 16;
+            int count = frame_in.readInt();
+            for (int i = 0; i < count; i++) {
+                long key = frame_in.readLong();
+                int length = frame_in.readInt();
+                read += 12;
+                if (length < 0 || length > available - read)
+                    return -1;
+
+                byte[] record = new byte[length];
+                frame_in.readFully(record);
+                frame.put(key, record);
+                read += length;
+            }
+
+            return in.readInt() == (int) crc.getValue() ? read + 4 : -1;
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Obtiene un flujo para leer el contenido de un registro.
+     *
+     * @param records Registros del fichero.
+     * @param key     Clave del registro.
+     * @return Flujo sobre el contenido del registro.
+     * @throws IOException Si el registro no existe.
+     */
+    private static DataInputStream record(HashMap<Long, byte[]> records, long key)
+            throws IOException {
+        byte[] record = records.get(key);
+        if (record == null)
+            throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+        return new DataInputStream(new ByteArrayInputStream(record));
+    }
+
+    /**
+     * Convierte un laberinto a bytes en el formato de {@link Maze#write},
+     * comprimido con Deflate.
+     *
+     * @param maze Laberinto.
+     * @return Laberinto comprimido.
+     * @throws IOException Si no se puede escribir el laberinto.
+     */
+    static byte[] compress(Maze maze) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DeflaterOutputStream out = new DeflaterOutputStream(bytes);
+        maze.write(Channels.newChannel(out));
+        out.close();
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reconstruye un laberinto comprimido con
+     * {@link SimulationCheckpoint#compress(Maze)}.
+     *
+     * @param bytes Laberinto comprimido.
+     * @return Laberinto.
+     * @throws IOException Si no se proporciona el laberinto o no es válido.
+     */
+    static Maze decompress(byte[] bytes) throws IOException {
+        if (bytes == null)
+            throw new IOException(MainWindow.getTranslations().exception().invalidMaze());
+
+        return Maze.read(Channels.newChannel(
+                new InflaterInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    /**
+     * Calcula la clave de un registro.
+     *
+     * @param type  Tipo de registro.
+     * @param env   Índice del entorno.
+     * @param index Índice dentro del entorno (del agente).
+     * @return Clave del registro.
+     */
+    private static long key(int type, int env, int index) {
+        return ((long) type << 56) | ((long) env << 28) | index;
+    }
+
+}
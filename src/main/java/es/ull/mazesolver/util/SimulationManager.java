@@ -32,6 +32,9 @@ import es.ull.mazesolver.gui.environment.EnvironmentSet;
 import javax.swing.Timer;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Observable;
 
@@ -52,6 +55,10 @@ public class SimulationManager extends Observable {
 
     private SimulationResults m_results;
 
+    private SimulationCheckpoint m_checkpoint;
+    private int m_checkpoint_interval, m_steps_done;
+    private SimulationTrace m_trace;
+
     /**
      * Constructor por defecto del simulador.
      *
@@ -96,6 +103,44 @@ public class SimulationManager extends Observable {
         m_environments = env_set;
     }
 
+    /**
+     * @return Conjunto de entornos que manipula la simulación.
+     */
+    EnvironmentSet getEnvironments() {
+        return m_environments;
+    }
+
+    /**
+     * Hace que se guarde periódicamente el estado de la simulación mientras se
+     * ejecuta, para poder continuarla más adelante con
+     * {@link SimulationCheckpoint#resume(String, SimulationManager)}.
+     *
+     * @param checkpoint Punto de control en el que se guarda el estado, o
+     *                   {@code null} para dejar de guardarlo.
+     * @param interval   Número de pasos de simulación entre cada captura.
+     */
+    public void setCheckpoint(SimulationCheckpoint checkpoint, int interval) {
+        m_checkpoint = checkpoint;
+        m_checkpoint_interval = Math.max(interval, 1);
+        m_steps_done = 0;
+    }
+
+    /**
+     * Hace que se grabe cada paso de la simulación, empezando por el estado
+     * actual de los entornos, para poder reproducirla más adelante con
+     * {@link SimulationReplay}. El simulador no cierra la grabación.
+     *
+     * @param trace Grabación en la que se guardan los pasos, o {@code null} para
+     *              dejar de grabar.
+     * @throws IOException Si no se puede escribir el estado inicial.
+     */
+    public void setTrace(SimulationTrace trace) throws IOException {
+        if (trace != null)
+            trace.begin(m_environments);
+
+        m_trace = trace;
+    }
+
     /**
      * Comienza la simulación. Si está pausada, la reanuda. Nota: No se pueden
      * agregar o eliminar entornos mientras la simulación se está ejecutando.
@@ -108,6 +153,9 @@ public class SimulationManager extends Observable {
         if (isStopped()) {
             m_finished = new boolean[m_environments.getEnvironmentCount()];
             m_results.clear();
+
+            if (m_checkpoint != null)
+                m_checkpoint.invalidate();
         }
 
         m_paused = false;
@@ -224,6 +272,17 @@ public class SimulationManager extends Observable {
         return m_sim_finished;
     }
 
+    /**
+     * Indica si un entorno ya no avanza en la simulación actual, bien porque
+     * han terminado sus agentes o porque se añadió después de arrancarla.
+     *
+     * @param index Índice del entorno.
+     * @return Si el entorno no avanza en la simulación.
+     */
+    boolean hasEnvironmentStopped(int index) {
+        return m_finished == null || index >= m_finished.length || m_finished[index];
+    }
+
     /**
      * Devuelve los resultados de la simulación actual. Puede ser que sean incompletos,
      * dado que puede ser que la simulación no haya acabado.
@@ -255,9 +314,10 @@ public class SimulationManager extends Observable {
         int amount_finished = 0;
 
         // Hacemos que ejecuten un paso todos los agentes de todos los entornos
-        // donde no haya acabado algún agente
+        // donde no haya acabado algún agente. Los entornos que se hayan cargado
+        // en segundo plano durante la simulación no participan en ella
         ArrayList<Environment> envs = m_environments.getEnvironmentList();
-        for (int i = 0; i < envs.size(); i++) {
+        for (int i = 0; i < m_finished.length; i++) {
             if (!m_finished[i])
                 m_finished[i] = envs.get(i).runStep(m_results);
             else
@@ -265,9 +325,69 @@ public class SimulationManager extends Observable {
         }
 
         // Si todos los agentes han terminado de ejecutar, paramos la simulación
-        if (amount_finished == m_environments.getEnvironmentCount()) {
+        if (amount_finished == m_finished.length) {
             m_sim_finished = true;
             stopSimulation();
         }
+
+        if (m_trace != null)
+            m_trace.record();
+
+        if (m_checkpoint != null && (++m_steps_done % m_checkpoint_interval == 0 || m_sim_finished))
+            m_checkpoint.capture(this);
+    }
+
+    /**
+     * Escribe en un flujo binario el estado del simulador, sin incluir los
+     * entornos.
+     *
+     * @param out Flujo de salida.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(m_steps);
+        out.writeBoolean(m_sim_finished);
+        out.writeBoolean(isRunning());
+        out.writeBoolean(isStopped());
+        out.writeLong(m_results.getElapsedTime());
+
+        int count = m_finished != null ? m_finished.length : 0;
+        out.writeInt(count);
+        for (int i = 0; i < count; i++)
+            out.writeBoolean(m_finished[i]);
+    }
+
+    /**
+     * Restaura el estado del simulador escrito con
+     * {@link SimulationManager#writeState(DataOutput)}. La simulación queda
+     * pausada, salvo que estuviera parada cuando se guardó el estado.
+     *
+     * @param in Flujo de entrada.
+     * @return Si la simulación se estaba ejecutando cuando se guardó el estado.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es
+     *                     válido.
+     */
+    boolean readState(DataInput in) throws IOException {
+        m_timer.stop();
+
+        m_steps = in.readInt();
+        m_sim_finished = in.readBoolean();
+        boolean running = in.readBoolean();
+        boolean stopped = in.readBoolean();
+
+        m_results.clear();
+        m_results.setElapsedTime(in.readLong());
+
+        int count = in.readInt();
+        if (count < 0 || count > m_environments.getEnvironmentCount())
+            throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+        m_finished = new boolean[m_environments.getEnvironmentCount()];
+        for (int i = 0; i < count; i++)
+            m_finished[i] = in.readBoolean();
+
+        m_paused = !stopped;
+        setInterval(m_steps >= 0 ? FAST_INTERVAL : DEFAULT_INTERVAL);
+        return running;
     }
 }
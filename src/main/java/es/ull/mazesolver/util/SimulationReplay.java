@@ -0,0 +1,397 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file SimulationReplay.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.util;
+
+import es.ull.mazesolver.agent.Agent;
+import es.ull.mazesolver.agent.AgentFile;
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.gui.environment.Environment;
+import es.ull.mazesolver.maze.Maze;
+
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Reproducción de una simulación grabada con {@link SimulationTrace}. Al abrir
+ * la grabación se crean sus entornos, con los mismos laberintos y agentes, y
+ * después se mueven los agentes según los pasos grabados, sin calcular sus
+ * movimientos.
+ * <br><br>
+ * Para saltar a un paso cualquiera se parte del fotograma clave anterior, de
+ * manera que nunca hay que leer más que un intervalo entre fotogramas clave.
+ */
+public class SimulationReplay implements Closeable {
+    private final FileChannel m_channel;
+    private final ArrayList<Environment> m_environments;
+    private final Agent[] m_agents;
+    private final byte[] m_mask, m_moves;
+
+    private long m_step_count;
+    private long[] m_keyframe_steps, m_keyframe_offsets;
+    private int m_keyframes;
+
+    private DataInputStream m_in;
+    private long m_step;
+
+    /**
+     * Abre una grabación para reproducirla. Los agentes quedan en su posición
+     * inicial.
+     *
+     * @param fileName Nombre del fichero.
+     * @throws IOException Si no se puede leer el fichero o no tiene el formato
+     *                     esperado.
+     */
+    public SimulationReplay(String fileName) throws IOException {
+        m_channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        m_environments = new ArrayList<Environment>();
+
+        try {
+            ByteBuffer prefix = read(0, 10);
+            if (prefix.getInt() != SimulationTrace.MAGIC ||
+                prefix.getShort() > SimulationTrace.VERSION)
+                throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+            int header_length = prefix.getInt();
+            if (header_length < 0 || 10 + (long) header_length > m_channel.size())
+                throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+            DataInputStream header = new DataInputStream(
+                    new ByteArrayInputStream(read(10, header_length).array()));
+            header.readInt();
+
+            Maze[] mazes = new Maze[header.readInt()];
+            for (int i = 0; i < mazes.length; i++) {
+                byte[] bytes = new byte[header.readInt()];
+                header.readFully(bytes);
+                mazes[i] = SimulationCheckpoint.decompress(bytes);
+            }
+
+            ArrayList<Agent> agents = new ArrayList<Agent>();
+            int env_count = header.readInt();
+            for (int i = 0; i < env_count; i++) {
+                String name = header.readUTF();
+                int maze_id = header.readInt();
+                if (maze_id < 0 || maze_id >= mazes.length)
+                    throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+                Environment env = new Environment(mazes[maze_id], name);
+                int agent_count = header.readInt();
+                for (int j = 0; j < agent_count; j++) {
+                    Agent ag = AgentFile.readAgent(header, env);
+                    env.addAgent(ag);
+                    agents.add(ag);
+                }
+
+                m_environments.add(env);
+            }
+
+            m_agents = agents.toArray(new Agent[agents.size()]);
+            m_mask = new byte[(m_agents.length + 7) / 8];
+            m_moves = new byte[(m_agents.length + 3) / 4];
+
+            m_keyframe_steps = new long[16];
+            m_keyframe_offsets = new long[16];
+            if (!readIndex(10 + (long) header_length))
+                buildIndex(10 + (long) header_length);
+
+            if (m_keyframes == 0 || m_keyframe_steps[0] != 0)
+                throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+
+            seek(0);
+        } catch (EOFException e) {
+            m_channel.close();
+            throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+        } catch (IOException e) {
+            m_channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Entornos de la grabación.
+     */
+    public ArrayList<Environment> getEnvironments() {
+        return m_environments;
+    }
+
+    /**
+     * @return Número de pasos grabados.
+     */
+    public long getStepCount() {
+        return m_step_count;
+    }
+
+    /**
+     * @return Paso que se está mostrando actualmente. El paso 0 es el estado
+     *         inicial.
+     */
+    public long getStep() {
+        return m_step;
+    }
+
+    /**
+     * Avanza la reproducción un paso.
+     *
+     * @return Si se ha avanzado o la reproducción ya estaba en el último paso.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    public boolean step() throws IOException {
+        if (m_step >= m_step_count)
+            return false;
+
+        readRecord(false);
+        repaint();
+        return true;
+    }
+
+    /**
+     * Coloca los agentes en la posición en la que se encontraban tras un paso
+     * de la simulación.
+     *
+     * @param step Paso de la simulación, entre 0 (estado inicial) y el número
+     *             de pasos grabados.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    public void seek(long step) throws IOException {
+        if (step < 0 || step > m_step_count)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().invalidEnvironment());
+
+        // Se parte del fotograma clave anterior al paso salvo que el paso actual
+        // ya esté entre los dos
+        int keyframe = Arrays.binarySearch(m_keyframe_steps, 0, m_keyframes, step);
+        if (keyframe < 0)
+            keyframe = -keyframe - 2;
+
+        if (m_in == null || step < m_step || m_step < m_keyframe_steps[keyframe]) {
+            m_in = input(m_keyframe_offsets[keyframe]);
+            readRecord(true);
+        }
+
+        while (m_step < step)
+            readRecord(false);
+
+        repaint();
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        m_channel.close();
+    }
+
+    /**
+     * Lee el siguiente registro de la grabación y mueve los agentes.
+     *
+     * @param jump Si los agentes pueden estar en cualquier posición, porque se
+     *             ha saltado a otra parte de la grabación.
+     * @throws IOException Si no se puede leer el fichero o el registro no es
+     *                     válido.
+     */
+    private void readRecord(boolean jump) throws IOException {
+        byte type = m_in.readByte();
+
+        if (type == SimulationTrace.RECORD_STEP) {
+            m_in.readFully(m_mask);
+
+            int moved = 0;
+            for (byte b : m_mask)
+                moved += Integer.bitCount(b & 0xFF);
+            m_in.readFully(m_moves, 0, (moved + 3) / 4);
+
+            moved = 0;
+            for (int i = 0; i < m_agents.length; i++) {
+                if ((m_mask[i >> 3] & (1 << (i & 7))) != 0) {
+                    int code = (m_moves[moved >> 2] >> ((moved & 3) * 2)) & 3;
+                    m_agents[i].doMovement(Direction.fromIndex(code + 1));
+                    moved++;
+                }
+            }
+
+            m_step++;
+        } else if (type == SimulationTrace.RECORD_KEYFRAME) {
+            m_step = m_in.readLong();
+
+            for (Agent ag : m_agents) {
+                Point pos = new Point(m_in.readInt(), m_in.readInt());
+                Direction dir = jump ? null : Direction.fromPoints(ag.getPos(), pos);
+
+                // Los movimientos de una casilla se hacen igual que en la simulación,
+                // para no perder la memoria de los agentes
+                if (dir == null)
+                    ag.setPosition(pos);
+                else if (dir != Direction.NONE)
+                    ag.doMovement(dir);
+            }
+        } else
+            throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+    }
+
+    /**
+     * Lee el índice de fotogramas clave que se escribe al final de la grabación.
+     *
+     * @param body Posición en el fichero del primer registro.
+     * @return Si la grabación contiene el índice.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    private boolean readIndex(long body) throws IOException {
+        long size = m_channel.size();
+        if (size < body + 12)
+            return false;
+
+        ByteBuffer trailer = read(size - 12, 12);
+        long offset = trailer.getLong();
+        if (trailer.getInt() != SimulationTrace.MAGIC || offset < body || offset > size - 12)
+            return false;
+
+        DataInputStream in = input(offset);
+        if (in.readByte() != SimulationTrace.RECORD_INDEX)
+            return false;
+
+        m_step_count = in.readLong();
+        int count = in.readInt();
+        if (m_step_count < 0 || count < 0 || count > (size - offset) / 16)
+            return false;
+
+        m_keyframe_steps = new long[Math.max(count, 1)];
+        m_keyframe_offsets = new long[Math.max(count, 1)];
+        for (m_keyframes = 0; m_keyframes < count; m_keyframes++) {
+            m_keyframe_steps[m_keyframes] = in.readLong();
+            m_keyframe_offsets[m_keyframes] = in.readLong();
+        }
+
+        return true;
+    }
+
+    /**
+     * Reconstruye el índice de fotogramas clave recorriendo todos los
+     * registros, cuando la grabación no se cerró correctamente. Los pasos
+     * incompletos al final del fichero se descartan.
+     *
+     * @param body Posición en el fichero del primer registro.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    private void buildIndex(long body) throws IOException {
+        DataInputStream in = input(body);
+        byte[] skip = new byte[8 * m_agents.length];
+        long offset = body;
+        long step = -1;
+
+        try {
+            while (true) {
+                byte type = in.readByte();
+
+                if (type == SimulationTrace.RECORD_STEP && step >= 0) {
+                    in.readFully(m_mask);
+
+                    int moved = 0;
+                    for (byte b : m_mask)
+                        moved += Integer.bitCount(b & 0xFF);
+                    in.readFully(m_moves, 0, (moved + 3) / 4);
+
+                    offset += 1 + m_mask.length + (moved + 3) / 4;
+                } else if (type == SimulationTrace.RECORD_KEYFRAME) {
+                    if (in.readLong() != step + 1)
+                        break;
+                    in.readFully(skip);
+
+                    if (m_keyframes == m_keyframe_steps.length) {
+                        m_keyframe_steps = Arrays.copyOf(m_keyframe_steps, m_keyframes * 2);
+                        m_keyframe_offsets = Arrays.copyOf(m_keyframe_offsets, m_keyframes * 2);
+                    }
+                    m_keyframe_steps[m_keyframes] = step + 1;
+                    m_keyframe_offsets[m_keyframes] = offset;
+                    m_keyframes++;
+
+                    offset += 9 + skip.length;
+                } else
+                    break;
+
+                step++;
+            }
+        } catch (EOFException e) {
+            // Se ha llegado al final de la parte completa de la grabación
+        }
+
+        m_step_count = Math.max(step, 0);
+    }
+
+    /**
+     * Vuelve a pintar los entornos de la grabación.
+     */
+    private void repaint() {
+        for (Environment env : m_environments)
+            env.repaint();
+    }
+
+    /**
+     * Lee un fragmento del fichero.
+     *
+     * @param offset Posición del fragmento.
+     * @param length Longitud del fragmento.
+     * @return Contenido del fragmento, preparado para leerlo.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    private ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining())
+            if (m_channel.read(buffer, offset + buffer.position()) < 0)
+                throw new EOFException();
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Crea un flujo para leer el fichero de manera secuencial a partir de una
+     * posición.
+     *
+     * @param offset Posición en el fichero.
+     * @return Flujo de entrada.
+     * @throws IOException Si no se puede leer el fichero.
+     */
+    private DataInputStream input(long offset) throws IOException {
+        m_channel.position(offset);
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(m_channel), 1 << 16));
+    }
+
+}
@@ -26,9 +26,13 @@
 package es.ull.mazesolver.util;
 
 import es.ull.mazesolver.agent.Agent;
+import es.ull.mazesolver.gui.MainWindow;
 import es.ull.mazesolver.gui.environment.Environment;
 import es.ull.mazesolver.maze.Maze;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -59,6 +63,7 @@ public class SimulationResults {
 
     private Map<Environment, EnvironmentSimulationInfo> m_info;
     private long m_acc_time, m_start_time;
+    private boolean m_timing;
 
     /**
      * Constructor por defecto. Inicializa los atributos de la clase.
@@ -76,6 +81,7 @@ public class SimulationResults {
     public void clear() {
         m_info.clear();
         m_acc_time = m_start_time = 0;
+        m_timing = false;
     }
 
     /**
@@ -84,6 +90,7 @@ public class SimulationResults {
      */
     public void startTimer() {
         m_start_time = System.currentTimeMillis();
+        m_timing = true;
     }
 
     /**
@@ -91,7 +98,9 @@ public class SimulationResults {
      * ejecutándose seguirá presente.
      */
     public void pauseTimer() {
-        m_acc_time += System.currentTimeMillis() - m_start_time;
+        if (m_timing)
+            m_acc_time += System.currentTimeMillis() - m_start_time;
+        m_timing = false;
     }
 
     /**
@@ -150,7 +159,8 @@ public class SimulationResults {
 
     /**
      * Busca el agente colocado en el laberinto especificado que salió antes del
-     * mismo, esté en el entorno que esté.
+     * mismo, esté en el entorno que esté. Se consideran el mismo laberinto todos
+     * los que tengan el mismo contenido, aunque se hayan cargado por separado.
      *
      * @param maze Laberinto del que salió.
      * @return Agente que salió primero del laberinto, si alguno ha salido.
@@ -162,7 +172,7 @@ public class SimulationResults {
         // Buscamos entre todos los entornos donde el laberinto sea el mismo, aquel
         // agente que haya llegado el primero al exterior
         for (Environment env : m_info.keySet()) {
-            if (env.getMaze() == maze) {
+            if (env.getMaze().sameContent(maze)) {
                 EnvironmentSimulationInfo info = m_info.get(env);
                 if (info != null) {
                     Agent other_winner = info.winner_agent;
@@ -231,7 +241,7 @@ public class SimulationResults {
         long min_time = Long.MAX_VALUE;
 
         for (Environment env : m_info.keySet()) {
-            if (env.getMaze() == maze) {
+            if (env.getMaze().sameContent(maze)) {
                 long time = timeTakenFirst(env);
                 if (time > -1 && time < min_time)
                     min_time = time;
@@ -263,7 +273,7 @@ public class SimulationResults {
         long max_time = Long.MIN_VALUE;
 
         for (Environment env : m_info.keySet()) {
-            if (env.getMaze() == maze) {
+            if (env.getMaze().sameContent(maze)) {
                 long time = timeTakenLast(env);
                 if (time > max_time)
                     max_time = time;
@@ -273,6 +283,89 @@ public class SimulationResults {
         return max_time != Long.MIN_VALUE ? max_time : -1;
     }
 
+    /**
+     * @return Tiempo que ha estado en marcha el temporizador hasta ahora.
+     */
+    long getElapsedTime() {
+        return m_acc_time + (m_timing ? System.currentTimeMillis() - m_start_time : 0);
+    }
+
+    /**
+     * Cambia el tiempo acumulado por el temporizador, que queda parado.
+     *
+     * @param elapsed Tiempo acumulado en milisegundos.
+     */
+    void setElapsedTime(long elapsed) {
+        m_acc_time = elapsed;
+        m_timing = false;
+    }
+
+    /**
+     * Escribe en un flujo binario la información de la simulación en un
+     * entorno. Los agentes se identifican por su posición dentro del entorno.
+     *
+     * @param out Flujo de salida.
+     * @param env Entorno.
+     * @throws IOException Si no se puede escribir en el flujo.
+     */
+    void writeEnvironment(DataOutput out, Environment env) throws IOException {
+        EnvironmentSimulationInfo info = m_info.get(env);
+        out.writeBoolean(info != null);
+        if (info == null)
+            return;
+
+        int winner = -1;
+        for (int i = 0; i < env.getAgentCount(); i++)
+            if (env.getAgent(i) == info.winner_agent)
+                winner = i;
+
+        out.writeLong(info.first_elapsed);
+        out.writeLong(info.last_elapsed);
+        out.writeInt(winner);
+
+        out.writeInt(env.getAgentCount());
+        for (int i = 0; i < env.getAgentCount(); i++) {
+            Agent agent = env.getAgent(i);
+            out.writeInt(info.steps.getOrDefault(agent, 0));
+            out.writeInt(info.iterations.getOrDefault(agent, 0));
+        }
+    }
+
+    /**
+     * Restaura la información de la simulación en un entorno escrita con
+     * {@link SimulationResults#writeEnvironment(DataOutput, Environment)}.
+     *
+     * @param in  Flujo de entrada.
+     * @param env Entorno, que debe tener los mismos agentes que cuando se
+     *            escribió la información.
+     * @throws IOException Si no se puede leer el flujo o su contenido no es
+     *                     válido.
+     */
+    void readEnvironment(DataInput in, Environment env) throws IOException {
+        m_info.remove(env);
+        if (!in.readBoolean())
+            return;
+
+        EnvironmentSimulationInfo info = new EnvironmentSimulationInfo();
+        info.first_elapsed = in.readLong();
+        info.last_elapsed = in.readLong();
+        int winner = in.readInt();
+
+        int count = in.readInt();
+        if (count != env.getAgentCount() || winner >= count)
+            throw new IOException(MainWindow.getTranslations().exception().invalidEnvironment());
+        if (winner >= 0)
+            info.winner_agent = env.getAgent(winner);
+
+        for (int i = 0; i < count; i++) {
+            Agent agent = env.getAgent(i);
+            info.steps.put(agent, in.readInt());
+            info.iterations.put(agent, in.readInt());
+        }
+
+        m_info.put(env, info);
+    }
+
     /**
      * Busca en m_info la información del entorno asociado al agente indicado. Si
      * no lo encuentra, lo crea.
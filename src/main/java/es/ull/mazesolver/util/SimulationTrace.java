@@ -0,0 +1,320 @@
+/*
+ * This file is part of MazeSolver.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (c) 2014 MazeSolver
+ * Sergio M. Afonso Fumero <theSkatrak@gmail.com>
+ * Kevin I. Robayna Hernández <kevinirobaynahdez@gmail.com>
+ */
+
+/**
+ * @file SimulationTrace.java
+ * @date 18/10/2026
+ */
+package es.ull.mazesolver.util;
+
+import es.ull.mazesolver.agent.Agent;
+import es.ull.mazesolver.agent.AgentFile;
+import es.ull.mazesolver.gui.MainWindow;
+import es.ull.mazesolver.gui.environment.Environment;
+import es.ull.mazesolver.gui.environment.EnvironmentSet;
+import es.ull.mazesolver.maze.Maze;
+
+import java.awt.Point;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Grabación de todos los pasos de una simulación en un fichero, que se puede
+ * reproducir más adelante con {@link SimulationReplay} sin volver a ejecutar
+ * los agentes.
+ * <br><br>
+ * El fichero empieza por el número mágico, la versión y la longitud de la
+ * cabecera, que contiene el intervalo entre fotogramas clave, los laberintos
+ * (comprimidos) y los entornos con la configuración de sus agentes. Después viene un registro por paso:
+ * <ul>
+ * <li>Los pasos normales guardan una máscara de bits con los agentes que se
+ * han movido y, para cada uno de ellos, la dirección del movimiento en 2 bits.
+ * Los agentes que no se mueven se han quedado bloqueados o han salido del
+ * laberinto, lo que se deduce de su posición.</li>
+ * <li>Cada cierto número de pasos, o cuando algún agente cambia de posición
+ * sin dar un paso (porque el usuario lo ha movido), se guarda en su lugar un
+ * fotograma clave con la posición de todos los agentes.</li>
+ * </ul>
+ * Al cerrar la grabación se añade un índice con la posición en el fichero de
+ * cada fotograma clave, que permite saltar a cualquier paso leyendo como mucho
+ * un intervalo de registros. Si la grabación no se cierra correctamente, el
+ * índice se reconstruye al abrirla.
+ */
+public class SimulationTrace implements Closeable {
+    /**
+     * Número mágico que identifica los ficheros en este formato ("MZTR").
+     */
+    public static final int MAGIC = 0x4D5A5452;
+
+    /**
+     * Versión actual del formato.
+     */
+    public static final short VERSION = 1;
+
+    /**
+     * Número de pasos por defecto entre cada fotograma clave.
+     */
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 1024;
+
+    // Tipos de registro
+    static final byte RECORD_STEP = 0;
+    static final byte RECORD_KEYFRAME = 1;
+    static final byte RECORD_INDEX = 2;
+
+    private final OutputStream m_file;
+    private final ByteArrayOutputStream m_buffer;
+    private final DataOutputStream m_out;
+    private final int m_keyframe_interval;
+
+    private Agent[] m_agents;
+    private Point[] m_pos;
+    private byte[] m_mask, m_moves;
+
+    private long m_step, m_offset;
+    private long[] m_keyframe_steps, m_keyframe_offsets;
+    private int m_keyframes;
+    private IOException m_error;
+
+    /**
+     * Crea un fichero de grabación vacío. La grabación empieza al asociarla a
+     * un simulador con
+     * {@link SimulationManager#setTrace(SimulationTrace)}.
+     *
+     * @param fileName          Nombre del fichero.
+     * @param keyframe_interval Número de pasos entre cada fotograma clave.
+     * @throws IOException Si no se puede crear el fichero.
+     */
+    public SimulationTrace(String fileName, int keyframe_interval) throws IOException {
+        if (keyframe_interval < 1)
+            throw new IllegalArgumentException(
+                    MainWindow.getTranslations().exception().invalidEnvironment());
+
+        m_file = new BufferedOutputStream(new FileOutputStream(fileName), 1 << 16);
+        m_buffer = new ByteArrayOutputStream();
+        m_out = new DataOutputStream(m_buffer);
+        m_keyframe_interval = keyframe_interval;
+
+        m_keyframe_steps = new long[16];
+        m_keyframe_offsets = new long[16];
+    }
+
+    /**
+     * Crea un fichero de grabación vacío, con el intervalo por defecto entre
+     * fotogramas clave.
+     *
+     * @param fileName Nombre del fichero.
+     * @throws IOException Si no se puede crear el fichero.
+     */
+    public SimulationTrace(String fileName) throws IOException {
+        this(fileName, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Escribe la cabecera del fichero con los entornos actuales y su estado
+     * inicial. Los agentes que se añadan después no se graban.
+     *
+     * @param env_set Conjunto de entornos que se va a grabar.
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    void begin(EnvironmentSet env_set) throws IOException {
+        if (m_agents != null)
+            throw new IllegalStateException(
+                    MainWindow.getTranslations().exception().invalidEnvironment());
+
+        ArrayList<Environment> envs = env_set.getEnvironmentList();
+        IdentityHashMap<Maze, Integer> maze_ids = new IdentityHashMap<Maze, Integer>();
+        ArrayList<Maze> mazes = new ArrayList<Maze>();
+        ArrayList<Agent> agents = new ArrayList<Agent>();
+
+        for (Environment env : envs) {
+            if (!maze_ids.containsKey(env.getMaze())) {
+                maze_ids.put(env.getMaze(), mazes.size());
+                mazes.add(env.getMaze());
+            }
+            for (int i = 0; i < env.getAgentCount(); i++)
+                agents.add(env.getAgent(i));
+        }
+
+        m_out.writeInt(m_keyframe_interval);
+
+        m_out.writeInt(mazes.size());
+        for (Maze maze : mazes) {
+            byte[] bytes = SimulationCheckpoint.compress(maze);
+            m_out.writeInt(bytes.length);
+            m_out.write(bytes);
+        }
+
+        m_out.writeInt(envs.size());
+        for (Environment env : envs) {
+            m_out.writeUTF(env.getEnvName());
+            m_out.writeInt(maze_ids.get(env.getMaze()));
+            m_out.writeInt(env.getAgentCount());
+            for (int i = 0; i < env.getAgentCount(); i++)
+                AgentFile.writeAgent(m_out, env.getAgent(i));
+        }
+
+        // La longitud de la cabecera permite localizar el primer paso sin
+        // interpretarla
+        byte[] header = m_buffer.toByteArray();
+        m_buffer.reset();
+        m_out.writeInt(MAGIC);
+        m_out.writeShort(VERSION);
+        m_out.writeInt(header.length);
+        m_out.write(header);
+
+        m_agents = agents.toArray(new Agent[agents.size()]);
+        m_pos = new Point[m_agents.length];
+        m_mask = new byte[(m_agents.length + 7) / 8];
+        m_moves = new byte[(m_agents.length + 3) / 4];
+
+        writeKeyframe();
+        flushBuffer();
+    }
+
+    /**
+     * Graba el paso de simulación que se acaba de ejecutar. Si falla la
+     * escritura no se graban más pasos, y el error se lanza al cerrar la
+     * grabación.
+     */
+    void record() {
+        if (m_agents == null || m_error != null)
+            return;
+
+        try {
+            m_step++;
+
+            if (m_step % m_keyframe_interval == 0 || !writeStep())
+                writeKeyframe();
+
+            flushBuffer();
+        } catch (IOException e) {
+            m_error = e;
+        }
+    }
+
+    /*
+     * (non-Javadoc)
+     *
+     * @see java.io.Closeable#close()
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (m_error == null && m_agents != null) {
+                long index_offset = m_offset;
+
+                m_out.writeByte(RECORD_INDEX);
+                m_out.writeLong(m_step);
+                m_out.writeInt(m_keyframes);
+                for (int i = 0; i < m_keyframes; i++) {
+                    m_out.writeLong(m_keyframe_steps[i]);
+                    m_out.writeLong(m_keyframe_offsets[i]);
+                }
+
+                m_out.writeLong(index_offset);
+                m_out.writeInt(MAGIC);
+                flushBuffer();
+            }
+        } finally {
+            m_file.close();
+        }
+
+        if (m_error != null)
+            throw m_error;
+    }
+
+    /**
+     * Escribe en el búfer el registro de un paso normal, si todos los agentes
+     * se han movido como mucho una casilla.
+     *
+     * @return Si se ha podido escribir el registro. En caso contrario hace
+     *         falta un fotograma clave.
+     */
+    private boolean writeStep() {
+        Arrays.fill(m_mask, (byte) 0);
+        Arrays.fill(m_moves, (byte) 0);
+
+        int moved = 0;
+        for (int i = 0; i < m_agents.length; i++) {
+            Direction dir = Direction.fromPoints(m_pos[i], m_agents[i].getPos());
+
+            if (dir == null)
+                return false;
+
+            if (dir != Direction.NONE) {
+                m_mask[i >> 3] |= 1 << (i & 7);
+                m_moves[moved >> 2] |= (dir.ordinal() - 1) << ((moved & 3) * 2);
+                m_pos[i] = new Point(m_agents[i].getPos());
+                moved++;
+            }
+        }
+
+        m_buffer.write(RECORD_STEP);
+        m_buffer.write(m_mask, 0, m_mask.length);
+        m_buffer.write(m_moves, 0, (moved + 3) / 4);
+        return true;
+    }
+
+    /**
+     * Escribe en el búfer un fotograma clave con la posición actual de todos
+     * los agentes y lo añade al índice.
+     *
+     * @throws IOException Si no se puede escribir en el búfer.
+     */
+    private void writeKeyframe() throws IOException {
+        if (m_keyframes == m_keyframe_steps.length) {
+            m_keyframe_steps = Arrays.copyOf(m_keyframe_steps, m_keyframes * 2);
+            m_keyframe_offsets = Arrays.copyOf(m_keyframe_offsets, m_keyframes * 2);
+        }
+
+        m_keyframe_steps[m_keyframes] = m_step;
+        m_keyframe_offsets[m_keyframes] = m_offset + m_buffer.size();
+        m_keyframes++;
+
+        m_out.writeByte(RECORD_KEYFRAME);
+        m_out.writeLong(m_step);
+        for (int i = 0; i < m_agents.length; i++) {
+            m_pos[i] = new Point(m_agents[i].getPos());
+            m_out.writeInt(m_pos[i].x);
+            m_out.writeInt(m_pos[i].y);
+        }
+    }
+
+    /**
+     * Pasa al fichero el contenido del búfer.
+     *
+     * @throws IOException Si no se puede escribir en el fichero.
+     */
+    private void flushBuffer() throws IOException {
+        m_buffer.writeTo(m_file);
+        m_offset += m_buffer.size();
+        m_buffer.reset();
+    }
+
+}